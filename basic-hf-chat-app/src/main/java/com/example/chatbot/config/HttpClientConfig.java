@@ -0,0 +1,84 @@
+package com.example.chatbot.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * Outbound HTTP client used by {@link com.example.chatbot.service.HuggingFaceService}.
+ * <p>
+ * Connections to the Hugging Face router are pooled and kept alive, so the TLS
+ * handshake is paid once per connection instead of once per {@code /ai/generate}
+ * call. Pool sizes, timeouts and idle eviction are set with the
+ * {@code huggingface.client.*} properties, and the pool state (leased, pending,
+ * available) is published as {@code httpcomponents.httpclient.pool.*} metrics.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    static final String POOL_NAME = "huggingface";
+
+    @Bean
+    public PoolingHttpClientConnectionManager huggingFaceConnectionManager(
+            @Value("${huggingface.client.max-connections:50}") int maxConnections,
+            @Value("${huggingface.client.max-connections-per-route:20}") int maxConnectionsPerRoute,
+            @Value("${huggingface.client.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${huggingface.client.read-timeout:60s}") Duration readTimeout,
+            @Value("${huggingface.client.time-to-live:5m}") Duration timeToLive) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        // Re-check a pooled connection only if it sat unused for a while
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public CloseableHttpClient huggingFaceHttpClient(
+            PoolingHttpClientConnectionManager huggingFaceConnectionManager,
+            @Value("${huggingface.client.connection-request-timeout:2s}") Duration connectionRequestTimeout,
+            @Value("${huggingface.client.read-timeout:60s}") Duration readTimeout,
+            @Value("${huggingface.client.idle-eviction:30s}") Duration idleEviction) {
+        return HttpClients.custom()
+                .setConnectionManager(huggingFaceConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient huggingFaceHttpClient) {
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(huggingFaceHttpClient))
+                .build();
+    }
+
+    @Bean
+    public MeterBinder huggingFaceConnectionPoolMetrics(PoolingHttpClientConnectionManager huggingFaceConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(huggingFaceConnectionManager, POOL_NAME);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Routing table for {@code huggingface.routing.*}, read by
+ * {@link com.example.chatbot.service.ModelRouter}.
+ *
+ * @param models           candidate models, most preferred (smallest, fastest) first
+ * @param defaultMaxTokens output tokens to plan for when a request does not set {@code max_tokens}
+ * @param ewmaAlpha        weight of the newest latency sample in each model's moving average
+ * @param staleAfter       a latency average with no new sample for this long is no longer trusted
+ */
+@ConfigurationProperties("huggingface.routing")
+public record ModelRoutingProperties(
+        @DefaultValue List<Route> models,
+        @DefaultValue("1024") int defaultMaxTokens,
+        @DefaultValue("0.2") double ewmaAlpha,
+        @DefaultValue("30s") Duration staleAfter) {
+
+    /**
+     * @param name          model id sent to the router, including any {@code :provider} suffix
+     * @param contextWindow prompt plus output tokens the model accepts
+     * @param maxLatency    skip this model while its latency average is above this; unset means never
+     */
+    public record Route(String name, @DefaultValue("8192") int contextWindow, Duration maxLatency) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.chatbot.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that get pinned to their carrier thread while blocking,
+ * e.g. inside a {@code synchronized} block around I/O.
+ * <p>
+ * Active only when {@code spring.threads.virtual.enabled=true}. Listens for the JFR
+ * {@code jdk.VirtualThreadPinned} event, logs the top frames of each pinning longer than
+ * {@code app.virtual-threads.pinning-threshold}, and counts occurrences in the
+ * {@code jvm.threads.virtual.pinned} counter when a meter registry is available.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Duration threshold;
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private final Counter pinnedCounter;
+    private RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(
+            @Value("${app.virtual-threads.pinning-threshold:20ms}") Duration threshold,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.threshold = threshold;
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.pinnedCounter = registry == null ? null : Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier for longer than the threshold")
+                .register(registry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        log.info("Watching for virtual thread pinning longer than {}", threshold);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+        if (pinnedCounter != null) {
+            pinnedCounter.increment();
+        }
+        log.warn("Virtual thread pinned for {} ms at:\n{}", event.getDuration().toMillis(), topFrames(event));
+    }
+
+    private static String topFrames(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "\t<no stack trace>";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        return frames.stream()
+                .limit(LOGGED_FRAMES)
+                .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + "(line " + frame.getLineNumber() + ")")
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * @return number of pinning events seen since startup
+     */
+    public long pinnedCount() {
+        return pinnedCount.get();
+    }
+
+    @Override
+    public void destroy() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.example.chatbot.controller;
 
 import com.example.chatbot.service.HuggingFaceService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
 @RestController
@@ -14,10 +18,42 @@ public class SimpleQuestionController {
     @Autowired
     private HuggingFaceService huggingFaceService;
 
+    @Autowired
+    private SseStreamExecutor streamExecutor;
+
     @GetMapping("/ai/generate")
-    public Map<String, String> generate(@RequestParam(value = "ask", defaultValue = "Tell me a joke") String message) {
-        String generatedText = huggingFaceService.generateTextFromPrompt(message);
+    public Map<String, String> generate(@RequestParam(value = "ask", defaultValue = "Tell me a joke") String message,
+                                        @RequestParam(value = "maxTokens", required = false) Integer maxTokens) {
+        String generatedText = maxTokens == null
+                ? huggingFaceService.generateTextFromPrompt(message)
+                : huggingFaceService.generateTextFromPrompt(message, maxTokens);
         return Map.of("generation", generatedText);
     }
 
+    @GetMapping(value = "/ai/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generateStream(@RequestParam(value = "ask", defaultValue = "Tell me a joke") String message) {
+        // Timeout comes from spring.mvc.async.request-timeout
+        SseEmitter emitter = new SseEmitter();
+        streamExecutor.execute(() -> {
+            try {
+                huggingFaceService.streamTextFromPrompt(message, delta -> send(emitter, delta));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, String delta) {
+        try {
+            // Clients strip one space after "data:", so it is always written to keep a delta's own
+            // leading space, as in " atoms?"
+            emitter.send(SseEmitter.event().data(" " + delta));
+        } catch (IOException e) {
+            // Client went away; failing here stops reading from the router
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
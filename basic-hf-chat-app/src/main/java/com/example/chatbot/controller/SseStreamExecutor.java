@@ -0,0 +1,75 @@
+package com.example.chatbot.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads that relay router streams to SSE clients.
+ * <p>
+ * Each stream holds its thread for the whole generation, so streams get their own pool rather
+ * than the application task executor, whose few core threads and unbounded queue would leave
+ * later streams waiting behind earlier ones and delay hedged requests and cache refreshes.
+ * At most {@code huggingface.streaming.max-concurrent} streams run at once; nothing is queued,
+ * and a stream beyond that is refused with 503 Service Unavailable.
+ * <p>
+ * Not an {@link java.util.concurrent.Executor} bean on purpose: one would replace the
+ * auto-configured application task executor.
+ */
+@Component
+public class SseStreamExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    @Autowired
+    public SseStreamExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${huggingface.streaming.max-concurrent:64}") int maxConcurrent,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("sse-stream-", 0).factory()
+                : Thread.ofPlatform().name("sse-stream-", 0).daemon().factory();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threads);
+        this.executor.allowCoreThreadTimeOut(true);
+        this.rejected = Counter.builder("huggingface.streams.rejected")
+                .description("Streams refused because max-concurrent streams were running")
+                .register(meterRegistry);
+        Gauge.builder("huggingface.streams.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Streams being relayed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a stream on its own thread.
+     *
+     * @throws ResponseStatusException with 503 if max-concurrent streams are already running
+     */
+    public void execute(Runnable stream) {
+        try {
+            executor.execute(stream);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many streams in progress, try again shortly", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.chatbot.service;
+
+/**
+ * The parts of a chat-completion response the application actually uses.
+ *
+ * @param content          text of {@code choices[0].message.content}, or {@code null} if absent
+ * @param finishReason     value of {@code choices[0].finish_reason}, or {@code null} if absent
+ * @param promptTokens     {@code usage.prompt_tokens}, or -1 if absent
+ * @param completionTokens {@code usage.completion_tokens}, or -1 if absent
+ * @param totalTokens      {@code usage.total_tokens}, or -1 if absent
+ */
+public record ChatCompletion(String content,
+                             String finishReason,
+                             long promptTokens,
+                             long completionTokens,
+                             long totalTokens) {
+}
@@ -0,0 +1,472 @@
+package com.example.chatbot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Single-pass, token-level parser for OpenAI-style chat-completion responses.
+ * <p>
+ * The parser walks the raw UTF-8 response bytes once, picks out
+ * {@code choices[0].message.content}, {@code choices[0].finish_reason} and the
+ * {@code usage} token counts, and skips everything else without materialising it.
+ * Streaming chunks are handled the same way, with {@code choices[0].delta.content}
+ * read in place of the message content.
+ * Strings without escape sequences are decoded straight from the body; the only
+ * other allocations are the returned {@link ChatCompletion} and its content string.
+ * <p>
+ * Instances are stateless and thread-safe.
+ */
+public final class ChatCompletionParser {
+
+    private static final byte[] CHOICES = ascii("choices");
+    private static final byte[] MESSAGE = ascii("message");
+    private static final byte[] DELTA = ascii("delta");
+    private static final byte[] CONTENT = ascii("content");
+    private static final byte[] FINISH_REASON = ascii("finish_reason");
+    private static final byte[] USAGE = ascii("usage");
+    private static final byte[] PROMPT_TOKENS = ascii("prompt_tokens");
+    private static final byte[] COMPLETION_TOKENS = ascii("completion_tokens");
+    private static final byte[] TOTAL_TOKENS = ascii("total_tokens");
+
+    // Finish reasons are returned as shared constants so the common case allocates nothing
+    private static final String[] KNOWN_FINISH_REASONS = {"stop", "length", "tool_calls", "content_filter"};
+    private static final byte[][] KNOWN_FINISH_REASON_BYTES = Arrays.stream(KNOWN_FINISH_REASONS)
+            .map(ChatCompletionParser::ascii)
+            .toArray(byte[][]::new);
+
+    /**
+     * Parses a complete chat-completion response body or a single streaming chunk.
+     *
+     * @param body the raw UTF-8 response body
+     * @return the extracted completion
+     * @throws IllegalArgumentException if the body is not well-formed JSON
+     */
+    public ChatCompletion parse(byte[] body) {
+        return parse(body, 0, body.length);
+    }
+
+    /**
+     * Parses a chat-completion object stored in {@code body[offset, offset + length)}.
+     *
+     * @param body   buffer holding the UTF-8 encoded JSON
+     * @param offset index of the first byte of the JSON object
+     * @param length number of bytes to parse
+     * @return the extracted completion
+     * @throws IllegalArgumentException if the range is not well-formed JSON
+     */
+    public ChatCompletion parse(byte[] body, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, body.length);
+        Reader reader = new Reader(body, offset, offset + length);
+        reader.readRoot();
+        return new ChatCompletion(reader.content, reader.finishReason,
+                reader.promptTokens, reader.completionTokens, reader.totalTokens);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Cursor over one parse; holds the fields collected so far.
+     */
+    private static final class Reader {
+
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+        private int keyStart;
+        private int keyEnd;
+
+        private String content;
+        private String finishReason;
+        private long promptTokens = -1;
+        private long completionTokens = -1;
+        private long totalTokens = -1;
+
+        Reader(byte[] buf, int start, int end) {
+            this.buf = buf;
+            this.pos = start;
+            this.end = end;
+        }
+
+        void readRoot() {
+            skipWhitespace();
+            expect('{');
+            if (consume('}')) {
+                return;
+            }
+            do {
+                readKey();
+                if (keyIs(CHOICES)) {
+                    readChoices();
+                } else if (keyIs(USAGE)) {
+                    readUsage();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+
+        private void readChoices() {
+            skipWhitespace();
+            if (peek() != '[') {
+                skipValue();
+                return;
+            }
+            pos++;
+            if (consume(']')) {
+                return;
+            }
+            readChoice();
+            while (consume(',')) {
+                skipValue();
+            }
+            expect(']');
+        }
+
+        private void readChoice() {
+            skipWhitespace();
+            if (peek() != '{') {
+                skipValue();
+                return;
+            }
+            pos++;
+            if (consume('}')) {
+                return;
+            }
+            do {
+                readKey();
+                if (keyIs(MESSAGE) || keyIs(DELTA)) {
+                    readMessage();
+                } else if (keyIs(FINISH_REASON)) {
+                    finishReason = readFinishReason();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+
+        private void readMessage() {
+            skipWhitespace();
+            if (peek() != '{') {
+                skipValue();
+                return;
+            }
+            pos++;
+            if (consume('}')) {
+                return;
+            }
+            do {
+                readKey();
+                if (keyIs(CONTENT)) {
+                    content = readNullableString();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+
+        private void readUsage() {
+            skipWhitespace();
+            if (peek() != '{') {
+                skipValue();
+                return;
+            }
+            pos++;
+            if (consume('}')) {
+                return;
+            }
+            do {
+                readKey();
+                if (keyIs(PROMPT_TOKENS)) {
+                    promptTokens = readLong();
+                } else if (keyIs(COMPLETION_TOKENS)) {
+                    completionTokens = readLong();
+                } else if (keyIs(TOTAL_TOKENS)) {
+                    totalTokens = readLong();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+
+        /**
+         * Reads an object key and the following colon, leaving the raw key bytes
+         * in {@code [keyStart, keyEnd)}.
+         */
+        private void readKey() {
+            skipWhitespace();
+            expect('"');
+            keyStart = pos;
+            keyEnd = scanStringEnd();
+            pos = keyEnd + 1;
+            skipWhitespace();
+            expect(':');
+        }
+
+        private boolean keyIs(byte[] name) {
+            return Arrays.equals(buf, keyStart, keyEnd, name, 0, name.length);
+        }
+
+        private String readNullableString() {
+            skipWhitespace();
+            if (peek() != '"') {
+                // null, or a non-string content shape we don't use
+                skipValue();
+                return null;
+            }
+            return readString();
+        }
+
+        private String readFinishReason() {
+            skipWhitespace();
+            if (peek() != '"') {
+                skipValue();
+                return null;
+            }
+            int start = pos + 1;
+            int stringEnd = scanStringEnd(start);
+            for (int i = 0; i < KNOWN_FINISH_REASON_BYTES.length; i++) {
+                byte[] known = KNOWN_FINISH_REASON_BYTES[i];
+                if (Arrays.equals(buf, start, stringEnd, known, 0, known.length)) {
+                    pos = stringEnd + 1;
+                    return KNOWN_FINISH_REASONS[i];
+                }
+            }
+            return readString();
+        }
+
+        private String readString() {
+            expect('"');
+            int start = pos;
+            boolean escaped = false;
+            int i = start;
+            while (i < end) {
+                byte b = buf[i];
+                if (b == '"') {
+                    break;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    i += 2;
+                } else {
+                    i++;
+                }
+            }
+            if (i >= end) {
+                throw fail("unterminated string");
+            }
+            pos = i + 1;
+            return escaped ? decodeEscaped(start, i) : new String(buf, start, i - start, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Decodes a string containing escape sequences. Escapes never expand, so the
+         * scratch buffer is bounded by the encoded length.
+         */
+        private String decodeEscaped(int start, int stop) {
+            byte[] out = new byte[stop - start];
+            int n = 0;
+            int i = start;
+            while (i < stop) {
+                byte b = buf[i++];
+                if (b != '\\') {
+                    out[n++] = b;
+                    continue;
+                }
+                byte e = buf[i++];
+                switch (e) {
+                    case '"', '\\', '/' -> out[n++] = e;
+                    case 'b' -> out[n++] = '\b';
+                    case 'f' -> out[n++] = '\f';
+                    case 'n' -> out[n++] = '\n';
+                    case 'r' -> out[n++] = '\r';
+                    case 't' -> out[n++] = '\t';
+                    case 'u' -> {
+                        int codePoint = readHex4(i, stop);
+                        i += 4;
+                        if (Character.isHighSurrogate((char) codePoint)
+                                && i + 6 <= stop && buf[i] == '\\' && buf[i + 1] == 'u') {
+                            int low = readHex4(i + 2, stop);
+                            if (Character.isLowSurrogate((char) low)) {
+                                codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                                i += 6;
+                            }
+                        }
+                        if (codePoint <= 0xFFFF && Character.isSurrogate((char) codePoint)) {
+                            codePoint = 0xFFFD;
+                        }
+                        n = writeUtf8(out, n, codePoint);
+                    }
+                    default -> throw fail("invalid escape '\\" + (char) e + "'");
+                }
+            }
+            return new String(out, 0, n, StandardCharsets.UTF_8);
+        }
+
+        private int readHex4(int at, int stop) {
+            if (at + 4 > stop) {
+                throw fail("truncated unicode escape");
+            }
+            int value = 0;
+            for (int i = at; i < at + 4; i++) {
+                int digit = Character.digit(buf[i], 16);
+                if (digit < 0) {
+                    throw fail("invalid unicode escape");
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+
+        private static int writeUtf8(byte[] out, int n, int codePoint) {
+            if (codePoint < 0x80) {
+                out[n++] = (byte) codePoint;
+            } else if (codePoint < 0x800) {
+                out[n++] = (byte) (0xC0 | (codePoint >> 6));
+                out[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (codePoint < 0x10000) {
+                out[n++] = (byte) (0xE0 | (codePoint >> 12));
+                out[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                out[n++] = (byte) (0xF0 | (codePoint >> 18));
+                out[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            return n;
+        }
+
+        /**
+         * Reads an integral number; fractional or exponent parts are consumed and ignored.
+         * Returns -1 for {@code null} or any non-numeric value.
+         */
+        private long readLong() {
+            skipWhitespace();
+            byte b = peek();
+            if (b != '-' && (b < '0' || b > '9')) {
+                skipValue();
+                return -1;
+            }
+            boolean negative = b == '-';
+            if (negative) {
+                pos++;
+            }
+            long value = 0;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos++] - '0');
+            }
+            while (pos < end && isNumberPart(buf[pos])) {
+                pos++;
+            }
+            return negative ? -value : value;
+        }
+
+        private void skipValue() {
+            skipWhitespace();
+            byte b = peek();
+            if (b == '"') {
+                pos = scanStringEnd(pos + 1) + 1;
+            } else if (b == '{' || b == '[') {
+                skipContainer();
+            } else {
+                int start = pos;
+                while (pos < end && !isDelimiter(buf[pos])) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw fail("unexpected '" + (char) b + "'");
+                }
+            }
+        }
+
+        private void skipContainer() {
+            int depth = 0;
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b == '"') {
+                    pos = scanStringEnd(pos + 1) + 1;
+                    continue;
+                }
+                pos++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw fail("unterminated container");
+        }
+
+        private int scanStringEnd() {
+            return scanStringEnd(pos);
+        }
+
+        /**
+         * Returns the index of the closing quote of a string whose content starts at {@code from}.
+         */
+        private int scanStringEnd(int from) {
+            int i = from;
+            while (i < end) {
+                byte b = buf[i];
+                if (b == '"') {
+                    return i;
+                }
+                i += b == '\\' ? 2 : 1;
+            }
+            throw fail("unterminated string");
+        }
+
+        private void skipWhitespace() {
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private boolean consume(char expected) {
+            skipWhitespace();
+            if (pos < end && buf[pos] == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            if (!consume(expected)) {
+                throw fail("expected '" + expected + "'");
+            }
+        }
+
+        private byte peek() {
+            if (pos >= end) {
+                throw fail("unexpected end of input");
+            }
+            return buf[pos];
+        }
+
+        private static boolean isNumberPart(byte b) {
+            return (b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-';
+        }
+
+        private static boolean isDelimiter(byte b) {
+            return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+
+        private IllegalArgumentException fail(String reason) {
+            return new IllegalArgumentException("Malformed chat completion at offset " + pos + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.chatbot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Reads a {@code stream: true} chat-completion response ({@code text/event-stream})
+ * and hands each content delta to a callback as soon as its {@code data:} line has
+ * arrived.
+ * <p>
+ * Lines are cut out of a single reusable read buffer and every chunk is parsed in
+ * place with {@link ChatCompletionParser}, so the full response is never buffered.
+ * The buffer only grows if a single event is larger than it.
+ */
+public class ChatCompletionStreamReader {
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final byte[] DATA_FIELD = {'d', 'a', 't', 'a', ':'};
+    private static final byte[] DONE = {'[', 'D', 'O', 'N', 'E', ']'};
+
+    private final ChatCompletionParser parser;
+
+    public ChatCompletionStreamReader(ChatCompletionParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Consumes the stream until {@code data: [DONE]} or end of input.
+     *
+     * @param in      the response body
+     * @param onDelta receives every non-empty content delta, in order
+     * @return the finish reason and usage reported by the stream; content is always {@code null}
+     * @throws IOException if reading from the stream fails
+     */
+    public ChatCompletion read(InputStream in, Consumer<String> onDelta) throws IOException {
+        byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+        int start = 0;
+        int limit = 0;
+        int scanFrom = 0;
+        String finishReason = null;
+        long promptTokens = -1;
+        long completionTokens = -1;
+        long totalTokens = -1;
+
+        while (true) {
+            int newline = indexOf(buf, scanFrom, limit, (byte) '\n');
+            if (newline < 0) {
+                // Need more bytes: compact what is left of the current line, grow if it fills the buffer
+                if (start > 0) {
+                    System.arraycopy(buf, start, buf, 0, limit - start);
+                    limit -= start;
+                    start = 0;
+                } else if (limit == buf.length) {
+                    byte[] grown = new byte[buf.length * 2];
+                    System.arraycopy(buf, 0, grown, 0, limit);
+                    buf = grown;
+                }
+                scanFrom = limit;
+                int read = in.read(buf, limit, buf.length - limit);
+                if (read < 0) {
+                    break;
+                }
+                limit += read;
+                continue;
+            }
+
+            int lineEnd = newline > start && buf[newline - 1] == '\r' ? newline - 1 : newline;
+            if (startsWith(buf, start, lineEnd, DATA_FIELD)) {
+                int payload = start + DATA_FIELD.length;
+                if (payload < lineEnd && buf[payload] == ' ') {
+                    payload++;
+                }
+                if (startsWith(buf, payload, lineEnd, DONE)) {
+                    break;
+                }
+                if (payload < lineEnd) {
+                    ChatCompletion chunk = parser.parse(buf, payload, lineEnd - payload);
+                    if (chunk.content() != null && !chunk.content().isEmpty()) {
+                        onDelta.accept(chunk.content());
+                    }
+                    if (chunk.finishReason() != null) {
+                        finishReason = chunk.finishReason();
+                    }
+                    if (chunk.totalTokens() >= 0) {
+                        promptTokens = chunk.promptTokens();
+                        completionTokens = chunk.completionTokens();
+                        totalTokens = chunk.totalTokens();
+                    }
+                }
+            }
+            start = newline + 1;
+            scanFrom = start;
+        }
+        return new ChatCompletion(null, finishReason, promptTokens, completionTokens, totalTokens);
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] buf, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.chatbot.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialises single-message chat-completion requests for one model.
+ * <p>
+ * Everything except the user's message and the optional {@code max_tokens} limit is
+ * constant per model and stream flag, so it is encoded to UTF-8 once at construction. Each request is then written in two
+ * passes over the message: one to measure its escaped UTF-8 length, one to write it
+ * into a body array of exactly that size. Quotes, backslashes and control characters
+ * are escaped, so any message produces valid JSON.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class ChatRequestSerializer {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PREFIX = "{\"messages\":[{\"role\":\"user\",\"content\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MAX_TOKENS_FIELD = ",\"max_tokens\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STREAM_FALSE = ",\"stream\":false}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STREAM_TRUE = ",\"stream\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] modelField;
+
+    public ChatRequestSerializer(String model) {
+        byte[] escapedModel = new byte[escapedLength(model)];
+        writeEscaped(model, escapedModel, 0);
+        this.modelField = ("\"}],\"model\":\"" + new String(escapedModel, StandardCharsets.UTF_8) + "\"")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param message the user's message, sent verbatim as the message content
+     * @param stream  value of the request's {@code stream} flag
+     * @return the UTF-8 request body, sized exactly
+     */
+    public byte[] serialize(String message, boolean stream) {
+        return serialize(message, 0, stream);
+    }
+
+    /**
+     * @param message   the user's message, sent verbatim as the message content
+     * @param maxTokens value of {@code max_tokens}; omitted when not positive
+     * @param stream    value of the request's {@code stream} flag
+     * @return the UTF-8 request body, sized exactly
+     */
+    public byte[] serialize(String message, int maxTokens, boolean stream) {
+        byte[] tail = stream ? STREAM_TRUE : STREAM_FALSE;
+        int digits = maxTokens > 0 ? stringSize(maxTokens) : 0;
+        int limitLength = maxTokens > 0 ? MAX_TOKENS_FIELD.length + digits : 0;
+        byte[] body = new byte[PREFIX.length + escapedLength(message) + modelField.length + limitLength + tail.length];
+        System.arraycopy(PREFIX, 0, body, 0, PREFIX.length);
+        int n = writeEscaped(message, body, PREFIX.length);
+        System.arraycopy(modelField, 0, body, n, modelField.length);
+        n += modelField.length;
+        if (maxTokens > 0) {
+            System.arraycopy(MAX_TOKENS_FIELD, 0, body, n, MAX_TOKENS_FIELD.length);
+            n += MAX_TOKENS_FIELD.length + digits;
+            for (int value = maxTokens, i = n - 1; i >= n - digits; i--, value /= 10) {
+                body[i] = (byte) ('0' + value % 10);
+            }
+        }
+        System.arraycopy(tail, 0, body, n, tail.length);
+        return body;
+    }
+
+    private static int stringSize(int positive) {
+        int digits = 1;
+        for (int value = positive; value >= 10; value /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Number of bytes {@link #writeEscaped} produces for {@code value}.
+     */
+    static int escapedLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f') {
+                length += 2;
+            } else if (c < 0x20) {
+                length += 6;
+            } else if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes {@code value} as the inside of a JSON string literal, UTF-8 encoded.
+     * Unpaired surrogates become {@code ?}, as with {@link String#getBytes}.
+     *
+     * @return the index just past the last byte written
+     */
+    static int writeEscaped(String value, byte[] out, int offset) {
+        int n = offset;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> { out[n++] = '\\'; out[n++] = '"'; }
+                case '\\' -> { out[n++] = '\\'; out[n++] = '\\'; }
+                case '\n' -> { out[n++] = '\\'; out[n++] = 'n'; }
+                case '\r' -> { out[n++] = '\\'; out[n++] = 'r'; }
+                case '\t' -> { out[n++] = '\\'; out[n++] = 't'; }
+                case '\b' -> { out[n++] = '\\'; out[n++] = 'b'; }
+                case '\f' -> { out[n++] = '\\'; out[n++] = 'f'; }
+                default -> {
+                    if (c < 0x20) {
+                        out[n++] = '\\';
+                        out[n++] = 'u';
+                        out[n++] = '0';
+                        out[n++] = '0';
+                        out[n++] = HEX[c >> 4];
+                        out[n++] = HEX[c & 0xF];
+                    } else if (c < 0x80) {
+                        out[n++] = (byte) c;
+                    } else if (c < 0x800) {
+                        out[n++] = (byte) (0xC0 | (c >> 6));
+                        out[n++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        out[n++] = (byte) (0xF0 | (codePoint >> 18));
+                        out[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        out[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        out[n++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        out[n++] = '?';
+                    } else {
+                        out[n++] = (byte) (0xE0 | (c >> 12));
+                        out[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        out[n++] = (byte) (0x80 | (c & 0x3F));
+                    }
+                }
+            }
+        }
+        return n;
+    }
+}
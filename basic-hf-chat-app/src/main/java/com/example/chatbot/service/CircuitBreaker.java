@@ -0,0 +1,201 @@
+package com.example.chatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker for calls to the Hugging Face router.
+ * <p>
+ * Records the outcome of the last {@code window-size} calls. Once at least
+ * {@code minimum-calls} are recorded, the circuit opens when the percentage of failed
+ * calls reaches {@code failure-rate-threshold} or the percentage of calls slower than
+ * {@code slow-call-duration} reaches {@code slow-call-rate-threshold}. While open, calls
+ * fail immediately with {@link CircuitOpenException}. After {@code open-duration} the
+ * circuit lets {@code half-open-calls} trial calls through and closes again if they stay
+ * under both thresholds, or reopens otherwise.
+ * <p>
+ * Client errors other than 429 are the caller's fault and are not counted as failures.
+ * The state is published as the {@code huggingface.circuit.state} gauge
+ * (0 closed, 1 open, 2 half-open).
+ */
+@Component
+public class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final int slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+    private final Counter rejected;
+    private final Counter opened;
+
+    // Guarded by this
+    private final byte[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+
+    @Autowired
+    public CircuitBreaker(
+            MeterRegistry meterRegistry,
+            @Value("${huggingface.circuit-breaker.enabled:true}") boolean enabled,
+            @Value("${huggingface.circuit-breaker.window-size:50}") int windowSize,
+            @Value("${huggingface.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${huggingface.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${huggingface.circuit-breaker.slow-call-duration:10s}") Duration slowCallDuration,
+            @Value("${huggingface.circuit-breaker.slow-call-rate-threshold:80}") int slowCallRateThreshold,
+            @Value("${huggingface.circuit-breaker.open-duration:30s}") Duration openDuration,
+            @Value("${huggingface.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this(meterRegistry, enabled, windowSize, minimumCalls, failureRateThreshold, slowCallDuration,
+                slowCallRateThreshold, openDuration, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(MeterRegistry meterRegistry, boolean enabled, int windowSize, int minimumCalls,
+                   int failureRateThreshold, Duration slowCallDuration, int slowCallRateThreshold,
+                   Duration openDuration, int halfOpenCalls, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.outcomes = new byte[Math.max(windowSize, halfOpenCalls)];
+        this.minimumCalls = Math.min(minimumCalls, outcomes.length);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+        this.rejected = Counter.builder("huggingface.circuit.rejected")
+                .description("Calls failed fast because the circuit was open")
+                .register(meterRegistry);
+        this.opened = Counter.builder("huggingface.circuit.opened")
+                .description("Times the circuit opened")
+                .register(meterRegistry);
+        Gauge.builder("huggingface.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("Circuit state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} if the circuit allows it and records how it went.
+     *
+     * @throws CircuitOpenException if the circuit is open
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        if (!tryAcquirePermission()) {
+            rejected.increment();
+            throw new CircuitOpenException("Circuit open for the Hugging Face router; not calling it");
+        }
+        long start = nanoClock.getAsLong();
+        try {
+            T result = call.get();
+            record(nanoClock.getAsLong() - start, false);
+            return result;
+        } catch (RuntimeException e) {
+            record(nanoClock.getAsLong() - start, isFailure(e));
+            throw e;
+        } catch (Error e) {
+            record(nanoClock.getAsLong() - start, true);
+            throw e;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = halfOpenCalls;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    private synchronized void record(long durationNanos, boolean failed) {
+        if (state == State.OPEN) {
+            // A call that started before the circuit opened
+            return;
+        }
+        byte outcome = (byte) ((failed ? FAILED : 0) | (durationNanos >= slowCallNanos ? SLOW : 0));
+        if (recorded == outcomes.length) {
+            byte evicted = outcomes[next];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (state == State.HALF_OPEN) {
+            if (recorded >= halfOpenCalls) {
+                transitionTo(exceedsThresholds() ? State.OPEN : State.CLOSED);
+            }
+        } else if (recorded >= minimumCalls && exceedsThresholds()) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private boolean exceedsThresholds() {
+        return failures * 100 >= failureRateThreshold * recorded
+                || slowCalls * 100 >= slowCallRateThreshold * recorded;
+    }
+
+    private void transitionTo(State newState) {
+        if (newState == State.OPEN) {
+            openedAt = nanoClock.getAsLong();
+            opened.increment();
+            log.warn("Opening circuit to the Hugging Face router: {} of {} recent calls failed, {} were slow",
+                    failures, recorded, slowCalls);
+        } else {
+            log.info("Circuit to the Hugging Face router is now {}", newState);
+        }
+        state = newState;
+        // Each state judges its own calls
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private static boolean isFailure(RuntimeException e) {
+        return !(e instanceof HttpClientErrorException clientError) || clientError.getStatusCode().value() == 429;
+    }
+}
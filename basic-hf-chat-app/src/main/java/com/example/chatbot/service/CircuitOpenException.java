@@ -0,0 +1,11 @@
+package com.example.chatbot.service;
+
+/**
+ * Thrown instead of calling the router while the {@link CircuitBreaker} is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
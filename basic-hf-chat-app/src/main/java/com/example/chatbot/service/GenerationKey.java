@@ -0,0 +1,31 @@
+package com.example.chatbot.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Identifies interchangeable generation requests: same model, same output limit and
+ * same prompt once leading, trailing and repeated whitespace is collapsed.
+ *
+ * @param model     the model the request is sent to
+ * @param prompt    the normalised prompt
+ * @param maxTokens the requested {@code max_tokens}, or 0 if the request leaves it to the model
+ */
+public record GenerationKey(String model, String prompt, int maxTokens) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static GenerationKey of(String model, String message) {
+        return of(model, message, 0);
+    }
+
+    public static GenerationKey of(String model, String message, int maxTokens) {
+        return new GenerationKey(model, WHITESPACE.matcher(message.strip()).replaceAll(" "), maxTokens);
+    }
+
+    /**
+     * Rough heap footprint of the key's strings, used to weigh cache entries.
+     */
+    int estimatedBytes() {
+        return 2 * (model.length() + prompt.length());
+    }
+}
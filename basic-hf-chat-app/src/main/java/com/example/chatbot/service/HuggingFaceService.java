@@ -1,47 +1,185 @@
 package com.example.chatbot.service;
 
-import org.springframework.ai.chat.prompt.Prompt;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 @Service
 public class HuggingFaceService {
 
+    private static final String PARSE_ERROR = "Error parsing response";
+
+    private final ChatCompletionParser parser = new ChatCompletionParser();
+    private final ChatCompletionStreamReader streamReader = new ChatCompletionStreamReader(parser);
+    private final Map<String, ChatRequestSerializer> serializers = new ConcurrentHashMap<>();
     private final RestTemplate restTemplate;
-    private final String apiKey;
     private final String apiUrl;
+    private final HttpHeaders headers;
+    private final HttpHeaders streamingHeaders;
+    private final Timer timeToFirstToken;
+    private final RequestCoalescer requestCoalescer;
+    private final ResponseCache responseCache;
+    private final CircuitBreaker circuitBreaker;
+    private final RequestHedger requestHedger;
+    private final String fallbackMessage;
+    private final ModelRouter modelRouter;
 
     public HuggingFaceService(
             RestTemplate restTemplate,
             @Value("${spring.ai.huggingface.chat.api-key}") String apiKey,
-            @Value("${spring.ai.huggingface.chat.url}") String apiUrl) {
+            @Value("${spring.ai.huggingface.chat.url}") String apiUrl,
+            MeterRegistry meterRegistry,
+            RequestCoalescer requestCoalescer,
+            ResponseCache responseCache,
+            CircuitBreaker circuitBreaker,
+            RequestHedger requestHedger,
+            @Value("${huggingface.circuit-breaker.fallback-message:The assistant is busy right now. Please try again in a moment.}") String fallbackMessage,
+            ModelRouter modelRouter) {
         this.restTemplate = restTemplate;
-        this.apiKey = apiKey;
         this.apiUrl = apiUrl;
+        // Same on every request, so build them once
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(apiKey);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+        this.streamingHeaders = HttpHeaders.readOnlyHttpHeaders(new HttpHeaders(headers));
+        this.requestCoalescer = requestCoalescer;
+        this.responseCache = responseCache;
+        this.circuitBreaker = circuitBreaker;
+        this.requestHedger = requestHedger;
+        this.fallbackMessage = fallbackMessage;
+        this.modelRouter = modelRouter;
+        this.timeToFirstToken = Timer.builder("huggingface.generate.ttft")
+                .description("Time from sending a streaming request until the first content delta arrives")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
     }
 
     public String generateTextFromPrompt(String message) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", "Bearer " + apiKey);
-        headers.set("Content-Type", "application/json");
-        Prompt prompt = new Prompt(message);
-        String requestBody = "{\"messages\": [{\"role\": \"user\", \"content\": \"" + prompt.getInstructions() + "\"}], \"model\": \"HuggingFaceTB/SmolLM3-3B:hf-inference\",\"stream\": false}";
-        HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
+        return generateTextFromPrompt(message, 0);
+    }
 
-        ResponseEntity<String> response = restTemplate.exchange(apiUrl, HttpMethod.POST, entity, String.class);
+    /**
+     * Generates a completion for {@code message} with the model the {@link ModelRouter}
+     * picks for it. Responses are served from the {@link ResponseCache} when possible,
+     * and concurrent misses for the same (whitespace-normalised) prompt, model and limit
+     * share a single upstream request.
+     * That request goes through the {@link CircuitBreaker} and, if enabled, is hedged
+     * by the {@link RequestHedger}. While the circuit is open the fallback message is
+     * returned without calling the router.
+     *
+     * @param maxTokens output limit sent as {@code max_tokens}, or 0 to leave it to the model
+     */
+    public String generateTextFromPrompt(String message, int maxTokens) {
+        String model = modelRouter.route(message, maxTokens);
+        GenerationKey key = GenerationKey.of(model, message, maxTokens);
+        try {
+            // A parse error is not cached, nor does it replace a stale entry, so a failure
+            // is never served for the whole TTL
+            return responseCache.get(key, () -> requestCoalescer.execute(key,
+                    () -> circuitBreaker.execute(() -> requestHedger.execute(() -> callRouter(model, message, maxTokens)))),
+                    text -> !PARSE_ERROR.equals(text));
+        } catch (CircuitOpenException e) {
+            return fallbackMessage;
+        }
+    }
 
-        // Parse the response (Hugging Face returns JSON like [{"generated_text": "..."}])
-        return parseResponse(response.getBody().toString());
+    private String callRouter(String model, String message, int maxTokens) {
+        HttpEntity<byte[]> entity = new HttpEntity<>(serializer(model).serialize(message, maxTokens, false), headers);
+        modelRouter.recordRequest(model);
+        long start = System.nanoTime();
+        try {
+            // Read the raw bytes so the parser can work on them without an intermediate String copy
+            ResponseEntity<byte[]> response = restTemplate.exchange(apiUrl, HttpMethod.POST, entity, byte[].class);
+            byte[] body = response.getBody();
+            if (body == null) {
+                throw new IllegalStateException("Empty response from " + apiUrl + " (status " + response.getStatusCode() + ")");
+            }
+            modelRouter.recordSuccess(model, System.nanoTime() - start);
+            return parseResponse(body);
+        } catch (RuntimeException e) {
+            // An attempt interrupted because its hedge won did not fail
+            if (!interrupted(e)) {
+                modelRouter.recordFailure(model, System.nanoTime() - start);
+            }
+            throw e;
+        }
     }
 
-    private String parseResponse(String responseBody) {
-        // Basic parsing; adjust based on actual response structure
-        return responseBody.contains("content") ? responseBody.split("\"content\":\"")[1].split("\"")[0] : "Error parsing response";
+    private static boolean interrupted(RuntimeException e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            // Timeouts are InterruptedIOExceptions too, but they are real failures
+            if (cause instanceof InterruptedIOException
+                    && !(cause instanceof SocketTimeoutException)
+                    && !(cause instanceof ConnectionRequestTimeoutException)) {
+                return true;
+            }
+        }
+        return false;
     }
-}
 
+    private ChatRequestSerializer serializer(String model) {
+        return serializers.computeIfAbsent(model, ChatRequestSerializer::new);
+    }
+
+    /**
+     * Sends the prompt in {@code stream: true} mode and passes every content delta to
+     * {@code onDelta} as it is read off the socket. Blocks until the stream ends.
+     * An exception thrown by {@code onDelta} aborts the stream and closes the connection.
+     *
+     * @param message the user's message
+     * @param onDelta receives each piece of generated text, in order
+     */
+    public void streamTextFromPrompt(String message, Consumer<String> onDelta) {
+        String model = modelRouter.route(message, 0);
+        byte[] requestBody = serializer(model).serialize(message, true);
+        modelRouter.recordRequest(model);
+        long startNanos = System.nanoTime();
+
+        restTemplate.execute(apiUrl, HttpMethod.POST, request -> {
+            request.getHeaders().addAll(streamingHeaders);
+            request.getBody().write(requestBody);
+        }, response -> streamReader.read(response.getBody(), new Consumer<>() {
+            private boolean first = true;
+
+            @Override
+            public void accept(String delta) {
+                if (first) {
+                    first = false;
+                    timeToFirstToken.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                }
+                onDelta.accept(delta);
+            }
+        }));
+    }
+
+    private String parseResponse(byte[] responseBody) {
+        // The router returns OpenAI-style JSON: {"choices":[{"message":{"content":"..."}}], "usage":{...}}
+        try {
+            String content = parser.parse(responseBody).content();
+            return content != null ? content : PARSE_ERROR;
+        } catch (IllegalArgumentException e) {
+            return PARSE_ERROR;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.ModelRoutingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the model for each request from the {@code huggingface.routing} table.
+ * <p>
+ * A model is a candidate when its context window holds the estimated prompt tokens plus
+ * the requested output ({@code max_tokens}, or {@code default-max-tokens}). The first
+ * candidate in table order wins unless its latency average (an EWMA over recent calls)
+ * is above its {@code max-latency}; then the next one is tried. If every candidate is
+ * over budget the fastest of them is used, and if none is large enough the model with
+ * the largest context window is used. An average with no sample for {@code stale-after}
+ * is ignored, so a model that was skipped for being slow gets traffic again later.
+Failed calls count toward the average too, as at least twice the model's {@code max-latency},
+so a model that keeps timing out or erroring is skipped like a slow one.
+ * <p>
+ * Per model, {@code huggingface.model.requests}, {@code huggingface.model.errors},
+ * {@code huggingface.model.latency} and {@code huggingface.model.latency.ewma} are
+ * published with a {@code model} tag. Requests are counted by {@link #recordRequest} when
+ * the model is actually called, not when it is picked, so answers served from the
+ * {@link ResponseCache} or a shared in-flight call do not count.
+ */
+@Component
+public class ModelRouter {
+
+    static final String DEFAULT_MODEL = "HuggingFaceTB/SmolLM3-3B:hf-inference";
+
+    private final Map<String, ModelStats> models = new LinkedHashMap<>();
+    private final ModelStats largest;
+    private final int defaultMaxTokens;
+    private final double ewmaAlpha;
+    private final long staleAfterNanos;
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public ModelRouter(ModelRoutingProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    ModelRouter(ModelRoutingProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.defaultMaxTokens = properties.defaultMaxTokens();
+        this.ewmaAlpha = properties.ewmaAlpha();
+        this.staleAfterNanos = properties.staleAfter().toNanos();
+        this.nanoClock = nanoClock;
+        List<ModelRoutingProperties.Route> routes = properties.models().isEmpty()
+                ? List.of(new ModelRoutingProperties.Route(DEFAULT_MODEL, 8192, null))
+                : properties.models();
+        ModelStats widest = null;
+        for (ModelRoutingProperties.Route route : routes) {
+            ModelStats stats = new ModelStats(route, meterRegistry);
+            models.put(route.name(), stats);
+            if (widest == null || route.contextWindow() > widest.contextWindow) {
+                widest = stats;
+            }
+        }
+        this.largest = widest;
+    }
+
+    /**
+     * Rough token count for routing decisions: about four characters per token for
+     * English text, rounded up.
+     */
+    static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    /**
+     * @param message   the prompt
+     * @param maxTokens requested output limit, or 0 if the request does not set one
+     * @return the model to send the request to
+     */
+    public String route(String message, int maxTokens) {
+        int needed = estimateTokens(message) + (maxTokens > 0 ? maxTokens : defaultMaxTokens);
+        long now = nanoClock.getAsLong();
+        ModelStats fastestOverBudget = null;
+        for (ModelStats stats : models.values()) {
+            if (stats.contextWindow < needed) {
+                continue;
+            }
+            if (!stats.overLatencyBudget(now)) {
+                return stats.name;
+            }
+            if (fastestOverBudget == null || stats.ewmaNanos < fastestOverBudget.ewmaNanos) {
+                fastestOverBudget = stats;
+            }
+        }
+        return (fastestOverBudget != null ? fastestOverBudget : largest).name;
+    }
+
+    /**
+     * Counts a call about to be sent to the model.
+     */
+    public void recordRequest(String model) {
+        ModelStats stats = models.get(model);
+        if (stats != null) {
+            stats.requests.increment();
+        }
+    }
+
+    /**
+     * Feeds a completed call's latency into the model's average.
+     */
+    public void recordSuccess(String model, long latencyNanos) {
+        ModelStats stats = models.get(model);
+        if (stats != null) {
+            stats.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+            stats.update(latencyNanos, nanoClock.getAsLong());
+        }
+    }
+
+    /**
+     * Counts a failed call and feeds it into the model's average as the time it took, or
+     * twice the model's {@code max-latency} if that is more, so that a few failures in a row
+     * push the average over budget however quickly they failed.
+     */
+    public void recordFailure(String model, long elapsedNanos) {
+        ModelStats stats = models.get(model);
+        if (stats != null) {
+            stats.errors.increment();
+            long penaltyNanos = stats.maxLatencyNanos == Long.MAX_VALUE ? 0 : 2 * stats.maxLatencyNanos;
+            stats.update(Math.max(elapsedNanos, penaltyNanos), nanoClock.getAsLong());
+        }
+    }
+
+    /**
+     * @return the configured models in table order
+     */
+    public List<String> models() {
+        return new ArrayList<>(models.keySet());
+    }
+
+    /**
+     * @return the model's latency average, or {@code null} if it has no trusted samples
+     */
+    Duration averageLatency(String model) {
+        ModelStats stats = models.get(model);
+        return stats == null || !stats.fresh(nanoClock.getAsLong()) ? null : Duration.ofNanos((long) stats.ewmaNanos);
+    }
+
+    private final class ModelStats {
+
+        private final String name;
+        private final int contextWindow;
+        private final long maxLatencyNanos;
+        private final Counter requests;
+        private final Counter errors;
+        private final Timer latency;
+        private volatile double ewmaNanos;
+        private volatile long lastSampleAt;
+        private volatile boolean sampled;
+
+        ModelStats(ModelRoutingProperties.Route route, MeterRegistry meterRegistry) {
+            this.name = route.name();
+            this.contextWindow = route.contextWindow();
+            this.maxLatencyNanos = route.maxLatency() == null ? Long.MAX_VALUE : route.maxLatency().toNanos();
+            this.requests = Counter.builder("huggingface.model.requests")
+                    .description("Calls sent to the model")
+                    .tag("model", name)
+                    .register(meterRegistry);
+            this.errors = Counter.builder("huggingface.model.errors")
+                    .description("Failed calls to the model")
+                    .tag("model", name)
+                    .register(meterRegistry);
+            this.latency = Timer.builder("huggingface.model.latency")
+                    .description("Latency of successful calls to the model")
+                    .tag("model", name)
+                    .publishPercentiles(0.5, 0.95)
+                    .register(meterRegistry);
+            Gauge.builder("huggingface.model.latency.ewma", this, stats -> stats.ewmaNanos / 1e9)
+                    .description("Moving average of the model's latency used for routing")
+                    .tag("model", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        boolean fresh(long now) {
+            return sampled && now - lastSampleAt < staleAfterNanos;
+        }
+
+        boolean overLatencyBudget(long now) {
+            return fresh(now) && ewmaNanos > maxLatencyNanos;
+        }
+
+        synchronized void update(long latencyNanos, long now) {
+            ewmaNanos = fresh(now) ? ewmaAlpha * latencyNanos + (1 - ewmaAlpha) * ewmaNanos : latencyNanos;
+            lastSampleAt = now;
+            sampled = true;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.chatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical upstream calls.
+ * <p>
+ * The first caller for a key runs the call; callers arriving with the same key while
+ * it is in flight wait for and share its result (or its exception) instead of making
+ * their own call. Each in-flight call accepts at most {@code maxWaitersPerKey} waiters;
+ * callers beyond that run their own call. Waiters give up after {@code timeout} with a
+ * {@link ResourceAccessException}, the same exception an HTTP read timeout produces.
+ */
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<Object, Flight> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxWaitersPerKey;
+    private final Duration timeout;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter hits;
+    private final Counter overflows;
+
+    public RequestCoalescer(
+            MeterRegistry meterRegistry,
+            @Value("${huggingface.coalescing.enabled:true}") boolean enabled,
+            @Value("${huggingface.coalescing.max-waiters-per-key:100}") int maxWaitersPerKey,
+            @Value("${huggingface.coalescing.timeout:60s}") Duration timeout) {
+        this.enabled = enabled;
+        this.maxWaitersPerKey = maxWaitersPerKey;
+        this.timeout = timeout;
+        this.hits = Counter.builder("huggingface.coalescing.hits")
+                .description("Requests served by another request's in-flight upstream call")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("huggingface.coalescing.overflows")
+                .description("Requests that made their own call because the waiter limit was reached")
+                .register(meterRegistry);
+        Gauge.builder("huggingface.coalescing.waiters", waiting, AtomicInteger::get)
+                .description("Requests currently waiting on an in-flight upstream call")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call}, or joins an in-flight call with the same key.
+     *
+     * @param key  identifies calls that are interchangeable
+     * @param call the upstream call
+     * @return the result of this call or of the in-flight call it joined
+     */
+    public String execute(Object key, Supplier<String> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            return lead(key, flight, call);
+        }
+        if (!existing.tryJoin(maxWaitersPerKey)) {
+            overflows.increment();
+            return call.get();
+        }
+        hits.increment();
+        return await(key, existing);
+    }
+
+    private String lead(Object key, Flight flight, Supplier<String> call) {
+        try {
+            String result = call.get();
+            flight.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private String await(Object key, Flight flight) {
+        waiting.incrementAndGet();
+        try {
+            return flight.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ResourceAccessException("Timed out after " + timeout + " waiting for in-flight request '" + key + "'");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting for in-flight request '" + key + "'");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private static final class Flight {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        boolean tryJoin(int maxWaiters) {
+            int current;
+            do {
+                current = waiters.get();
+                if (current >= maxWaiters) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+}
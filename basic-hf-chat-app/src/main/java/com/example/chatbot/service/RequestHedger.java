@@ -0,0 +1,242 @@
+package com.example.chatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hedged execution of idempotent upstream calls.
+ * <p>
+ * Latencies of successful calls are kept in a sliding window. The first attempt runs on the
+ * caller's thread. When it has taken longer than the window's 95th percentile (but at least
+ * {@code min-delay}), a second, identical call is started on the executor and whichever
+ * succeeds first wins; the other is interrupted. Nothing is hedged until the window holds
+ * {@code min-samples} latencies, and a call that fails before the hedge delay is not retried.
+ * <p>
+ * An interrupted attempt only stops early if its I/O responds to interrupts, as blocking
+ * socket reads do on virtual threads; otherwise the caller still waits for its own attempt
+ * to end before returning the second one's result.
+ * <p>
+ * Hedging trades extra upstream load for a shorter tail, so it is off by default.
+ */
+@Component
+public class RequestHedger {
+
+    private static final double QUANTILE = 0.95;
+
+    private final boolean enabled;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final Executor executor;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+
+    // Guarded by this
+    private final long[] latencies;
+    private int recorded;
+    private int next;
+
+    @Autowired
+    public RequestHedger(
+            MeterRegistry meterRegistry,
+            @Value("${huggingface.hedging.enabled:false}") boolean enabled,
+            @Value("${huggingface.hedging.min-delay:200ms}") Duration minDelay,
+            @Value("${huggingface.hedging.window-size:100}") int windowSize,
+            @Value("${huggingface.hedging.min-samples:20}") int minSamples,
+            TaskExecutor taskExecutor) {
+        this(meterRegistry, enabled, minDelay, windowSize, minSamples, (Executor) taskExecutor);
+    }
+
+    RequestHedger(MeterRegistry meterRegistry, boolean enabled, Duration minDelay, int windowSize, int minSamples,
+                  Executor executor) {
+        this.enabled = enabled;
+        this.minDelayNanos = minDelay.toNanos();
+        this.latencies = new long[windowSize];
+        this.minSamples = Math.min(minSamples, windowSize);
+        this.executor = executor;
+        this.hedges = Counter.builder("huggingface.hedging.hedges")
+                .description("Second attempts started because the first exceeded the hedge delay")
+                .register(meterRegistry);
+        this.hedgeWins = Counter.builder("huggingface.hedging.wins")
+                .description("Hedged calls where the second attempt answered first")
+                .register(meterRegistry);
+        Gauge.builder("huggingface.hedging.delay", this, hedger -> hedger.hedgeDelayNanos() / 1e9)
+                .description("Current delay before a second attempt is started; negative while not enough samples")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call}, starting a second attempt if the first is slower than usual.
+     *
+     * @param call an idempotent upstream call
+     * @return the result of the first attempt to succeed
+     */
+    public String execute(Supplier<String> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        long delayNanos = hedgeDelayNanos();
+        if (delayNanos < 0) {
+            return timed(call);
+        }
+        Backup backup = new Backup(call, Thread.currentThread());
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor).execute(backup);
+        String result;
+        try {
+            result = timed(call);
+        } catch (RuntimeException e) {
+            if (!backup.primaryFailed()) {
+                throw e;
+            }
+            return backup.await();
+        }
+        return backup.primarySucceeded() ? result : backup.await();
+    }
+
+    /**
+     * The second attempt of a call, run on the executor once the hedge delay has passed
+     * unless the first attempt has already settled the call. Whichever attempt succeeds first
+     * interrupts the other.
+     */
+    private final class Backup implements Runnable {
+
+        private final Supplier<String> call;
+        private final Thread caller;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        // Guarded by this
+        private boolean started;
+        private boolean decided;
+        private boolean callerInterrupted;
+        private Thread running;
+
+        Backup(Supplier<String> call, Thread caller) {
+            this.call = call;
+            this.caller = caller;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (decided) {
+                    return;
+                }
+                started = true;
+                running = Thread.currentThread();
+            }
+            hedges.increment();
+            try {
+                String text = timed(call);
+                synchronized (this) {
+                    if (!decided) {
+                        decided = true;
+                        callerInterrupted = true;
+                        hedgeWins.increment();
+                        caller.interrupt();
+                    }
+                }
+                result.complete(text);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    running = null;
+                }
+                // Don't leave the executor's thread interrupted by a primary that won
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * @return whether the first attempt won, in which case this one is interrupted
+         */
+        synchronized boolean primarySucceeded() {
+            if (decided) {
+                return false;
+            }
+            decided = true;
+            if (running != null) {
+                running.interrupt();
+            }
+            return true;
+        }
+
+        /**
+         * @return whether this attempt is under way, and so decides the call
+         */
+        synchronized boolean primaryFailed() {
+            if (!started) {
+                decided = true;
+            }
+            return started;
+        }
+
+        /**
+         * Waits for this attempt, on the caller's thread.
+         */
+        String await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            } finally {
+                // This attempt interrupted the caller before completing, so the flag is set by now
+                synchronized (this) {
+                    if (callerInterrupted) {
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private String timed(Supplier<String> call) {
+        long start = System.nanoTime();
+        String result = call.get();
+        record(System.nanoTime() - start);
+        return result;
+    }
+
+    private synchronized void record(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        recorded = Math.min(recorded + 1, latencies.length);
+    }
+
+    /**
+     * @return the delay before hedging, or -1 while fewer than {@code min-samples}
+     * latencies have been recorded
+     */
+    synchronized long hedgeDelayNanos() {
+        if (recorded < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, recorded);
+        Arrays.sort(sorted);
+        long p95 = sorted[Math.min(recorded - 1, (int) Math.ceil(QUANTILE * recorded) - 1)];
+        return Math.max(minDelayNanos, p95);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.chatbot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache of generated responses in front of the Hugging Face router.
+ * <p>
+ * Backed by Caffeine, which bounds the cache by total weight and admits new entries
+ * with W-TinyLFU, so a burst of one-off prompts cannot flush the popular ones. Each
+ * entry is weighed by the approximate heap size of its key and response text, and the
+ * {@code huggingface.cache.max-size} budget is in bytes.
+ * <p>
+ * Entries are fresh for {@code ttl}. If {@code stale-while-revalidate} is positive, an
+ * entry older than {@code ttl} is still returned for that much longer while a single
+ * background reload replaces it; otherwise it simply expires. A response the caller does not
+ * deem cacheable, such as a failure rendered as text, is returned but never stored, and a
+ * background reload producing one leaves the stale entry in place.
+ * <p>
+ * Hits, misses, evictions and size are published as {@code cache.*} metrics tagged
+ * {@code cache=huggingface.responses}.
+ */
+@Component
+public class ResponseCache {
+
+    static final String CACHE_NAME = "huggingface.responses";
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+    // Object header, String fields and entry bookkeeping per cached response
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final Executor refreshExecutor;
+    private final Cache<GenerationKey, CachedResponse> cache;
+    private final Counter staleHits;
+
+    @Autowired
+    public ResponseCache(
+            MeterRegistry meterRegistry,
+            @Value("${huggingface.cache.enabled:true}") boolean enabled,
+            @Value("${huggingface.cache.max-size:64MB}") DataSize maxSize,
+            @Value("${huggingface.cache.ttl:10m}") Duration ttl,
+            @Value("${huggingface.cache.stale-while-revalidate:0s}") Duration staleWhileRevalidate,
+            TaskExecutor taskExecutor) {
+        this(meterRegistry, enabled, maxSize, ttl, staleWhileRevalidate, Ticker.systemTicker(), taskExecutor);
+    }
+
+    ResponseCache(MeterRegistry meterRegistry, boolean enabled, DataSize maxSize, Duration ttl,
+                  Duration staleWhileRevalidate, Ticker ticker, Executor refreshExecutor) {
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+        this.refreshExecutor = refreshExecutor;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((GenerationKey key, CachedResponse value) -> ENTRY_OVERHEAD_BYTES + key.estimatedBytes() + 2 * value.text.length())
+                .expireAfterWrite(ttl.plus(staleWhileRevalidate))
+                .ticker(ticker)
+                .executor(refreshExecutor)
+                .recordStats()
+                .build();
+        this.staleHits = Counter.builder("huggingface.cache.stale.hits")
+                .description("Responses served past their TTL while a refresh was running")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("huggingface.cache.bytes", cache, c -> c.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .description("Approximate heap bytes held by cached responses")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached response for {@code key}, or runs {@code loader} and caches its
+     * result. The loader runs outside any cache lock; concurrent misses for the same key
+     * are expected to be collapsed by the caller (see {@link RequestCoalescer}).
+     */
+    public String get(GenerationKey key, Supplier<String> loader) {
+        return get(key, loader, text -> true);
+    }
+
+    /**
+     * Like {@link #get(GenerationKey, Supplier)}, but only caches the loaded responses
+     * {@code cacheable} accepts.
+     */
+    public String get(GenerationKey key, Supplier<String> loader, Predicate<String> cacheable) {
+        if (!enabled) {
+            return loader.get();
+        }
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null) {
+            String text = loader.get();
+            if (cacheable.test(text)) {
+                cache.put(key, new CachedResponse(text, ticker.read()));
+            }
+            return text;
+        }
+        if (ticker.read() - cached.writtenAt > ttlNanos) {
+            staleHits.increment();
+            refresh(key, cached, loader, cacheable);
+        }
+        return cached.text;
+    }
+
+    private void refresh(GenerationKey key, CachedResponse stale, Supplier<String> loader, Predicate<String> cacheable) {
+        if (!stale.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                String text = loader.get();
+                if (cacheable.test(text)) {
+                    cache.put(key, new CachedResponse(text, ticker.read()));
+                } else {
+                    // Keep serving the stale entry rather than the failure; the next hit will try again
+                    stale.refreshing.set(false);
+                    log.warn("Background refresh of cached response returned an uncacheable response");
+                }
+            } catch (RuntimeException e) {
+                // Keep serving the stale entry; the next hit will try again
+                stale.refreshing.set(false);
+                log.warn("Background refresh of cached response failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    public void invalidate(GenerationKey key) {
+        cache.invalidate(key);
+    }
+
+    long estimatedSize() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static final class CachedResponse {
+
+        private final String text;
+        private final long writtenAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CachedResponse(String text, long writtenAt) {
+            this.text = text;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.service.ChatCompletion;
+import com.example.chatbot.service.ChatCompletionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ChatCompletionParser} with the original {@code String.split} based
+ * parsing of chat-completion bodies of 1 KB, 64 KB and 1 MB.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.chatbot.benchmark.ChatCompletionParserBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatCompletionParserBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int bodySize;
+
+    private final ChatCompletionParser parser = new ChatCompletionParser();
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = responseOfSize(bodySize);
+    }
+
+    /**
+     * The pre-parser implementation: decode the whole body, then split twice.
+     */
+    @Benchmark
+    public String splitBased() {
+        String responseBody = new String(body, StandardCharsets.UTF_8);
+        return responseBody.contains("content") ? responseBody.split("\"content\":\"")[1].split("\"")[0] : "Error parsing response";
+    }
+
+    @Benchmark
+    public ChatCompletion tokenParser() {
+        return parser.parse(body);
+    }
+
+    /**
+     * Builds a router-shaped response whose content (with an escaped newline every
+     * sentence) pads the body to roughly {@code size} bytes.
+     */
+    static byte[] responseOfSize(int size) {
+        String head = "{\"id\":\"chatcmpl-bench\",\"object\":\"chat.completion\",\"created\":1700000000,"
+                + "\"model\":\"HuggingFaceTB/SmolLM3-3B\",\"choices\":[{\"index\":0,\"logprobs\":null,"
+                + "\"finish_reason\":\"stop\",\"message\":{\"role\":\"assistant\",\"content\":\"";
+        String tail = "\",\"tool_calls\":[]}}],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":4096,\"total_tokens\":4108}}";
+        StringBuilder json = new StringBuilder(size + 64).append(head);
+        while (json.length() + tail.length() < size) {
+            json.append("Why don't scientists trust atoms? Because they make up everything!\\n");
+        }
+        return json.append(tail).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChatCompletionParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.service.ChatRequestSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request cost of building the router request with
+ * {@link ChatRequestSerializer} and cached headers against the original approach of
+ * building a {@link Prompt}, concatenating the body and creating fresh headers, for
+ * prompts of 32 B, 1 KB and 16 KB. Look at {@code gc.alloc.rate.norm} for bytes
+ * allocated per request.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.chatbot.benchmark.ChatRequestSerializerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatRequestSerializerBenchmark {
+
+    private static final String MODEL = "HuggingFaceTB/SmolLM3-3B:hf-inference";
+
+    @Param({"32", "1024", "16384"})
+    private int promptSize;
+
+    private final ChatRequestSerializer serializer = new ChatRequestSerializer(MODEL);
+    private HttpHeaders cachedHeaders;
+    private String message;
+
+    @Setup
+    public void setUp() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth("hf_benchmark");
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        cachedHeaders = HttpHeaders.readOnlyHttpHeaders(headers);
+        StringBuilder prompt = new StringBuilder(promptSize);
+        while (prompt.length() < promptSize) {
+            prompt.append("Tell me a \"joke\" about atoms.\n");
+        }
+        message = prompt.substring(0, promptSize);
+    }
+
+    /**
+     * The pre-serializer implementation, which also produced invalid JSON for this prompt.
+     */
+    @Benchmark
+    public HttpEntity<byte[]> concatenated() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + "hf_benchmark");
+        headers.set("Content-Type", "application/json");
+        Prompt prompt = new Prompt(message);
+        String body = "{\"messages\": [{\"role\": \"user\", \"content\": \"" + prompt.getInstructions() + "\"}], \"model\": \"" + MODEL + "\",\"stream\": " + false + "}";
+        return new HttpEntity<>(body.getBytes(StandardCharsets.UTF_8), headers);
+    }
+
+    @Benchmark
+    public HttpEntity<byte[]> serializer() {
+        return new HttpEntity<>(serializer.serialize(message, false), cachedHeaders);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChatRequestSerializerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
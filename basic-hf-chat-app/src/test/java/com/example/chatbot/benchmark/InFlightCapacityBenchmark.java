@@ -0,0 +1,148 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.BasicHuggingFaceChatApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many concurrent {@code /ai/generate} chats the app keeps in flight with
+ * platform threads versus virtual threads, against a local stub router that answers
+ * after a fixed delay.
+ * <p>
+ * Run each mode in its own JVM with the same fixed heap, e.g.:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-Xmx256m -Dvirtual=true -Dconcurrency=2000 -classpath %classpath \
+ *     com.example.chatbot.benchmark.InFlightCapacityBenchmark"
+ * </pre>
+ * System properties: {@code virtual} (default false), {@code concurrency} (default 2000),
+ * {@code upstreamLatencyMs} (default 2000).
+ */
+public final class InFlightCapacityBenchmark {
+
+    private InFlightCapacityBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean virtual = Boolean.getBoolean("virtual");
+        int concurrency = Integer.getInteger("concurrency", 2000);
+        long upstreamLatencyMs = Long.getLong("upstreamLatencyMs", 2000);
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        HttpServer stubRouter = startStubRouter(upstreamLatencyMs, inFlight, peakInFlight);
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(BasicHuggingFaceChatApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.ai.huggingface.chat.api-key=load-test",
+                "--spring.ai.huggingface.chat.url=http://127.0.0.1:" + stubRouter.getAddress().getPort() + "/v1/chat/completions",
+                "--huggingface.client.max-connections=" + concurrency,
+                "--huggingface.client.max-connections-per-route=" + concurrency,
+                "--huggingface.client.connection-request-timeout=120s",
+                // Every prompt is unique anyway; keep both out of the measurement
+                "--huggingface.cache.enabled=false",
+                "--huggingface.coalescing.enabled=false",
+                "--logging.level.root=WARN");
+        int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            // Warm up class loading and the JIT on a single request first
+            client.send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/ai/generate?ask=warm-up")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            peakInFlight.set(0);
+
+            List<Long> latenciesMillis = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger failures = new AtomicInteger();
+            long start = System.nanoTime();
+            CompletableFuture<?>[] calls = new CompletableFuture<?>[concurrency];
+            for (int i = 0; i < concurrency; i++) {
+                long sent = System.nanoTime();
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/ai/generate?ask=joke-" + i))
+                        .timeout(Duration.ofMinutes(5))
+                        .build();
+                calls[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            if (error != null || response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            } else {
+                                latenciesMillis.add((System.nanoTime() - sent) / 1_000_000);
+                            }
+                        });
+            }
+            CompletableFuture.allOf(calls).exceptionally(e -> null).join();
+            long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+            List<Long> sorted = new ArrayList<>(latenciesMillis);
+            Collections.sort(sorted);
+            System.out.printf("mode=%s heapMax=%dMB concurrency=%d upstreamLatency=%dms%n",
+                    virtual ? "virtual" : "platform", Runtime.getRuntime().maxMemory() >> 20, concurrency, upstreamLatencyMs);
+            System.out.printf("peakInFlightUpstream=%d ok=%d failed=%d wall=%dms throughput=%.1f req/s%n",
+                    peakInFlight.get(), sorted.size(), failures.get(), wallMillis, sorted.size() * 1000.0 / wallMillis);
+            System.out.printf("latency p50=%dms p99=%dms peakHeapUsed=%dMB%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), peakHeapUsedBytes() >> 20);
+        } finally {
+            app.close();
+            stubRouter.stop(0);
+        }
+    }
+
+    private static HttpServer startStubRouter(long latencyMs, AtomicInteger inFlight, AtomicInteger peakInFlight) throws Exception {
+        byte[] body = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Why don't scientists trust atoms?\"},\"finish_reason\":\"stop\"}]}"
+                .getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 8192);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(latencyMs);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(quantile * sorted.size()) - 1));
+    }
+
+    private static long peakHeapUsedBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chatbot.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientConfigTest {
+
+    private final HttpClientConfig config = new HttpClientConfig();
+
+    private HttpServer server;
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientAddresses.add(exchange.getRemoteAddress());
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        connectionManager = config.huggingFaceConnectionManager(10, 4,
+                Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofMinutes(1));
+        httpClient = config.huggingFaceHttpClient(connectionManager,
+                Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(30));
+        restTemplate = config.restTemplate(new RestTemplateBuilder(), httpClient);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void connectionManager_AppliesPoolLimits() {
+        assertEquals(10, connectionManager.getMaxTotal());
+        assertEquals(4, connectionManager.getDefaultMaxPerRoute());
+    }
+
+    @Test
+    void restTemplate_ReusesPooledConnectionAcrossCalls() {
+        // Given
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ok", restTemplate.getForObject(url, String.class));
+        }
+
+        // Then - every call went over the same kept-alive socket
+        assertEquals(1, clientAddresses.size());
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+    }
+
+    @Test
+    void poolMetrics_ExposeLeasedPendingAndAvailable() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // When
+        config.huggingFaceConnectionPoolMetrics(connectionManager).bindTo(registry);
+
+        // Then
+        assertNotNull(registry.find("httpcomponents.httpclient.pool.total.connections").tag("state", "leased").gauge());
+        assertNotNull(registry.find("httpcomponents.httpclient.pool.total.connections").tag("state", "available").gauge());
+        assertNotNull(registry.find("httpcomponents.httpclient.pool.total.pending").gauge());
+        assertNotNull(registry.find("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", HttpClientConfig.POOL_NAME).gauge());
+    }
+}
@@ -1,18 +1,34 @@
 package com.example.chatbot.controller;
 
 import com.example.chatbot.service.HuggingFaceService;
-import org.junit.jupiter.api.BeforeEach;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 public class SimpleQuestionControllerTest {
@@ -20,9 +36,19 @@ public class SimpleQuestionControllerTest {
     @Mock
     private HuggingFaceService huggingFaceService;
 
+    private static final int MAX_CONCURRENT_STREAMS = 12;
+
+    @Spy
+    private SseStreamExecutor streamExecutor = new SseStreamExecutor(new SimpleMeterRegistry(), MAX_CONCURRENT_STREAMS, false);
+
     @InjectMocks
     private SimpleQuestionController controller;
 
+    @AfterEach
+    void tearDown() {
+        streamExecutor.destroy();
+    }
+
     @Test
     void generate_WithMessage_ReturnsGeneratedText() {
         // Arrange
@@ -31,7 +57,7 @@ public class SimpleQuestionControllerTest {
         doReturn(expectedResponse).when(huggingFaceService).generateTextFromPrompt(testMessage);
 
         // Act
-        Map<String, String> response = controller.generate(testMessage);
+        Map<String, String> response = controller.generate(testMessage, null);
 
         // Assert
         assertNotNull(response);
@@ -47,7 +73,7 @@ public class SimpleQuestionControllerTest {
         doReturn(expectedResponse).when(huggingFaceService).generateTextFromPrompt("Tell me a joke");
 
         // Act
-        Map<String, String> response = controller.generate("Tell me a joke");
+        Map<String, String> response = controller.generate("Tell me a joke", null);
 
         // Assert
         assertNotNull(response);
@@ -62,7 +88,7 @@ public class SimpleQuestionControllerTest {
         doReturn(expectedResponse).when(huggingFaceService).generateTextFromPrompt("");
 
         // Act
-        Map<String, String> response = controller.generate("");
+        Map<String, String> response = controller.generate("", null);
 
         // Assert
         assertNotNull(response);
@@ -78,10 +104,112 @@ public class SimpleQuestionControllerTest {
         doReturn(expectedResponse).when(huggingFaceService).generateTextFromPrompt(testMessage);
 
         // Act
-        Map<String, String> response = controller.generate(testMessage);
+        Map<String, String> response = controller.generate(testMessage, null);
 
         // Assert
         assertNotNull(response);
         assertEquals(expectedResponse, response.get("generation"));
     }
+
+    @Test
+    void generate_WithMaxTokens_PassesLimitToService() {
+        // Arrange
+        doReturn("Short joke").when(huggingFaceService).generateTextFromPrompt("Tell me a joke", 64);
+
+        // Act
+        Map<String, String> response = controller.generate("Tell me a joke", 64);
+
+        // Assert
+        assertEquals("Short joke", response.get("generation"));
+        verify(huggingFaceService, never()).generateTextFromPrompt("Tell me a joke");
+    }
+
+    @Test
+    void generateStream_ForwardsEachDeltaAsServerSentEvent() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            Consumer<String> onDelta = invocation.getArgument(1);
+            onDelta.accept("Why");
+            onDelta.accept(" atoms?");
+            return null;
+        }).when(huggingFaceService).streamTextFromPrompt(eq("Tell me a joke"), any());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/ai/generate/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        // Assert
+        assertEquals("data: Why\n\ndata:  atoms?\n\n", result.getResponse().getContentAsString());
+        verify(huggingFaceService).streamTextFromPrompt(eq("Tell me a joke"), any());
+    }
+
+    @Test
+    void generateStream_DeltaWithLeadingSpace_ArrivesIntact() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            Consumer<String> onDelta = invocation.getArgument(1);
+            onDelta.accept("Why don't");
+            onDelta.accept(" scientists");
+            return null;
+        }).when(huggingFaceService).streamTextFromPrompt(eq("Tell me a joke"), any());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/ai/generate/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        // Assert - read as an SSE client does, dropping one space after "data:"
+        StringBuilder text = new StringBuilder();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (line.startsWith("data:")) {
+                String value = line.substring("data:".length());
+                text.append(value.startsWith(" ") ? value.substring(1) : value);
+            }
+        }
+        assertEquals("Why don't scientists", text.toString());
+    }
+
+    @Test
+    void generateStream_MoreStreamsThanTaskExecutorCoreThreads_AllRunAtOnce() throws Exception {
+        // Arrange - each stream blocks until released, as a long generation would
+        CountDownLatch started = new CountDownLatch(MAX_CONCURRENT_STREAMS);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            Consumer<String> onDelta = invocation.getArgument(1);
+            onDelta.accept("done");
+            return null;
+        }).when(huggingFaceService).streamTextFromPrompt(eq("Tell me a joke"), any());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        try {
+            // Act
+            List<MvcResult> results = new ArrayList<>();
+            for (int i = 0; i < MAX_CONCURRENT_STREAMS; i++) {
+                results.add(mockMvc.perform(get("/ai/generate/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                        .andExpect(request().asyncStarted())
+                        .andReturn());
+            }
+
+            // Assert - all of them started, not just the application task executor's 8 core threads
+            assertTrue(started.await(5, TimeUnit.SECONDS), "streams still waiting: " + started.getCount());
+            // One more than the limit is refused rather than queued
+            mockMvc.perform(get("/ai/generate/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                    .andExpect(status().isServiceUnavailable());
+
+            release.countDown();
+            for (MvcResult result : results) {
+                result.getAsyncResult(5000);
+                assertEquals("data: done\n\n", result.getResponse().getContentAsString());
+            }
+        } finally {
+            release.countDown();
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package com.example.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatCompletionParserTest {
+
+    private final ChatCompletionParser parser = new ChatCompletionParser();
+
+    private ChatCompletion parse(String json) {
+        return parser.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parse_FullRouterResponse_ExtractsContentUsageAndFinishReason() {
+        // Given
+        String json = """
+                {"id":"chatcmpl-1","object":"chat.completion","created":1700000000,
+                 "model":"HuggingFaceTB/SmolLM3-3B",
+                 "choices":[{"index":0,"logprobs":null,"finish_reason":"stop",
+                   "message":{"role":"assistant","content":"Why don't scientists trust atoms?","tool_calls":[]}}],
+                 "usage":{"prompt_tokens":12,"completion_tokens":34,"total_tokens":46}}
+                """;
+
+        // When
+        ChatCompletion completion = parse(json);
+
+        // Then
+        assertEquals("Why don't scientists trust atoms?", completion.content());
+        assertEquals("stop", completion.finishReason());
+        assertEquals(12, completion.promptTokens());
+        assertEquals(34, completion.completionTokens());
+        assertEquals(46, completion.totalTokens());
+    }
+
+    @Test
+    void parse_EscapedContent_DecodesEscapeSequences() {
+        // Given
+        String json = "{\"choices\":[{\"message\":{\"content\":\"He said \\\"hi\\\"\\n\\tbye\\\\ \\u00e9 \\ud83d\\ude00\"}}]}";
+
+        // When
+        ChatCompletion completion = parse(json);
+
+        // Then
+        assertEquals("He said \"hi\"\n\tbye\\ \u00e9 \uD83D\uDE00", completion.content());
+    }
+
+    @Test
+    void parse_RawMultiByteContent_DecodesUtf8() {
+        // Given
+        String json = "{\"choices\":[{\"message\":{\"content\":\"caf\u00e9 \u65e5\u672c\"}}]}";
+
+        // When
+        ChatCompletion completion = parse(json);
+
+        // Then
+        assertEquals("caf\u00e9 \u65e5\u672c", completion.content());
+    }
+
+    @Test
+    void parse_OnlyFirstChoiceIsRead() {
+        // Given
+        String json = "{\"choices\":[{\"message\":{\"content\":\"first\"}},{\"message\":{\"content\":\"second\"}}]}";
+
+        // When
+        ChatCompletion completion = parse(json);
+
+        // Then
+        assertEquals("first", completion.content());
+    }
+
+    @Test
+    void parse_NestedDecoysBeforeChoices_AreSkipped() {
+        // Given
+        String json = "{\"meta\":{\"content\":\"decoy\",\"list\":[1,{\"x\":\"}]\"}]},\"choices\":[{\"message\":{\"content\":\"real\"}}]}";
+
+        // When
+        ChatCompletion completion = parse(json);
+
+        // Then
+        assertEquals("real", completion.content());
+        assertNull(completion.finishReason());
+        assertEquals(-1, completion.totalTokens());
+    }
+
+    @Test
+    void parse_NullContent_ReturnsNullContent() {
+        // Given
+        String json = "{\"choices\":[{\"message\":{\"content\":null},\"finish_reason\":\"tool_calls\"}]}";
+
+        // When
+        ChatCompletion completion = parse(json);
+
+        // Then
+        assertNull(completion.content());
+        assertEquals("tool_calls", completion.finishReason());
+    }
+
+    @Test
+    void parse_RangeWithinLargerBuffer_ParsesOnlyThatRange() {
+        // Given
+        byte[] buffer = "data: {\"choices\":[{\"message\":{\"content\":\"ok\"}}]}\n\n".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        ChatCompletion completion = parser.parse(buffer, 6, buffer.length - 8);
+
+        // Then
+        assertEquals("ok", completion.content());
+    }
+
+    @Test
+    void parse_MalformedJson_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> parse("invalid json"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"choices\":[{\"message\":{\"content\":\"unterminated"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"choices\":[{\"message\":{\"content\":\"bad \\q\"}}]}"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatCompletionStreamReaderTest {
+
+    private final ChatCompletionStreamReader reader = new ChatCompletionStreamReader(new ChatCompletionParser());
+
+    private static String chunk(String content) {
+        return "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + content + "\"}}]}\r\n\r\n";
+    }
+
+    @Test
+    void read_EmitsDeltasAndStopsAtDone() throws IOException {
+        // Given
+        String body = ": keep-alive comment\n\n"
+                + chunk("Hel") + chunk("lo\\n")
+                + "data: {\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2,\"total_tokens\":5}}\n\n"
+                + "data: [DONE]\n\n"
+                + chunk("ignored");
+        List<String> deltas = new ArrayList<>();
+
+        // When
+        ChatCompletion summary = reader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), deltas::add);
+
+        // Then
+        assertEquals(List.of("Hel", "lo\n"), deltas);
+        assertEquals("stop", summary.finishReason());
+        assertEquals(5, summary.totalTokens());
+        assertNull(summary.content());
+    }
+
+    @Test
+    void read_DeltasSplitAcrossReads_AreReassembled() throws IOException {
+        // Given - a stream that hands out one byte per read, and an event larger than the read buffer
+        String large = "x".repeat(20_000);
+        byte[] body = (chunk("a") + chunk(large) + chunk("\\u00e9")).getBytes(StandardCharsets.UTF_8);
+        InputStream trickle = new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        List<String> deltas = new ArrayList<>();
+
+        // When
+        reader.read(trickle, deltas::add);
+
+        // Then
+        assertEquals(List.of("a", large, "é"), deltas);
+    }
+}
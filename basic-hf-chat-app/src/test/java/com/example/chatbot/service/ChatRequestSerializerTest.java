@@ -0,0 +1,101 @@
+package com.example.chatbot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatRequestSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChatRequestSerializer serializer = new ChatRequestSerializer("HuggingFaceTB/SmolLM3-3B:hf-inference");
+
+    @Test
+    void serialize_PlainMessage_ProducesChatCompletionRequest() throws Exception {
+        // When
+        byte[] body = serializer.serialize("Tell me a joke", false);
+
+        // Then
+        assertEquals("{\"messages\":[{\"role\":\"user\",\"content\":\"Tell me a joke\"}],"
+                + "\"model\":\"HuggingFaceTB/SmolLM3-3B:hf-inference\",\"stream\":false}", new String(body, StandardCharsets.UTF_8));
+        assertFalse(objectMapper.readTree(body).get("stream").asBoolean());
+    }
+
+    @Test
+    void serialize_Streaming_SetsStreamFlag() throws Exception {
+        // When
+        JsonNode request = objectMapper.readTree(serializer.serialize("Tell me a joke", true));
+
+        // Then
+        assertTrue(request.get("stream").asBoolean());
+        assertEquals("Tell me a joke", request.get("messages").get(0).get("content").asText());
+    }
+
+    @Test
+    void serialize_MaxTokens_AddsLimitOnlyWhenPositive() throws Exception {
+        // When
+        JsonNode limited = objectMapper.readTree(serializer.serialize("Tell me a joke", 1024, false));
+        JsonNode unlimited = objectMapper.readTree(serializer.serialize("Tell me a joke", 0, false));
+
+        // Then
+        assertEquals(1024, limited.get("max_tokens").asInt());
+        assertFalse(unlimited.has("max_tokens"));
+        assertEquals(serializer.serialize("Tell me a joke", 7, true).length + 3,
+                serializer.serialize("Tell me a joke", 7000, true).length);
+    }
+
+    @Test
+    void serialize_QuotesBackslashesAndControlCharacters_RoundTripAsValidJson() throws Exception {
+        // Given
+        String message = "He said \"hi\"\nC:\\temp\tdone\r\b\f\u0001\u001f end";
+
+        // When
+        JsonNode request = objectMapper.readTree(serializer.serialize(message, false));
+
+        // Then
+        assertEquals(message, request.get("messages").get(0).get("content").asText());
+    }
+
+    @Test
+    void serialize_NonAsciiText_EncodesUtf8() throws Exception {
+        // Given
+        String message = "café – 日本語 😀";
+
+        // When
+        byte[] body = serializer.serialize(message, false);
+
+        // Then
+        assertEquals(message, objectMapper.readTree(body).get("messages").get(0).get("content").asText());
+        assertTrue(new String(body, StandardCharsets.UTF_8).contains(message));
+    }
+
+    @Test
+    void serialize_UnpairedSurrogate_IsReplacedLikeStringGetBytes() throws Exception {
+        // Given
+        String message = "a\uD83Db";
+
+        // When
+        byte[] body = serializer.serialize(message, false);
+
+        // Then
+        String expected = new String(message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertEquals(expected, objectMapper.readTree(body).get("messages").get(0).get("content").asText());
+    }
+
+    @Test
+    void serialize_BodyIsSizedExactly() {
+        // Given
+        String message = "\"quoted\" é 😀 \u0000";
+
+        // When
+        byte[] body = serializer.serialize(message, true);
+
+        // Then
+        byte[] plain = serializer.serialize("", true);
+        assertEquals(plain.length + ChatRequestSerializer.escapedLength(message), body.length);
+        assertEquals('}', body[body.length - 1]);
+    }
+}
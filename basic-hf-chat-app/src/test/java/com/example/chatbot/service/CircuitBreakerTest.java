@@ -0,0 +1,197 @@
+package com.example.chatbot.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    // Window of 10, judged after 4 calls; opens at 50% failed or 50% slower than 1s
+    private final CircuitBreaker breaker = new CircuitBreaker(meterRegistry, true, 10, 4, 50,
+            Duration.ofSeconds(1), 50, Duration.ofSeconds(30), 2, nanos::get);
+
+    private String succeed() {
+        return breaker.execute(() -> "ok");
+    }
+
+    private void fail() {
+        assertThrows(HttpServerErrorException.class, () -> breaker.execute(() -> {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+        }));
+    }
+
+    private void takeSeconds(long seconds) {
+        breaker.execute(() -> nanos.addAndGet(Duration.ofSeconds(seconds).toNanos()));
+    }
+
+    @Test
+    void execute_FailureRateReached_OpensAndFailsFast() {
+        // Given
+        succeed();
+        succeed();
+        fail();
+
+        // When
+        fail();
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(CircuitOpenException.class, () -> breaker.execute(calls::incrementAndGet));
+        assertEquals(0, calls.get());
+        assertEquals(1.0, meterRegistry.get("huggingface.circuit.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("huggingface.circuit.opened").counter().count());
+        assertEquals(1.0, meterRegistry.get("huggingface.circuit.state").gauge().value());
+    }
+
+    @Test
+    void execute_BelowMinimumCalls_StaysClosed() {
+        // When
+        fail();
+        fail();
+        fail();
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void execute_SlowCallRateReached_Opens() {
+        // When
+        succeed();
+        succeed();
+        takeSeconds(2);
+        takeSeconds(2);
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void execute_OldOutcomesLeaveTheWindow() {
+        // Given - 4 failures out of 10 keeps it closed
+        for (int i = 0; i < 6; i++) {
+            succeed();
+        }
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+
+        // When - the failures slide out, then 4 more arrive
+        for (int i = 0; i < 10; i++) {
+            succeed();
+        }
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+
+        // Then - 4 of the last 10 failed
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void execute_ClientErrors_AreNotFailures() {
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpClientErrorException.class, () -> breaker.execute(() -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }));
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void execute_AfterOpenDuration_HealthyTrialCallsClose() {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        // When
+        succeed();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        succeed();
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void execute_AfterOpenDuration_FailedTrialCallsReopen() {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        // When
+        succeed();
+        fail();
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(CircuitOpenException.class, this::succeed);
+    }
+
+    @Test
+    void execute_Disabled_NeverOpens() {
+        // Given
+        CircuitBreaker disabled = new CircuitBreaker(meterRegistry, false, 10, 1, 1,
+                Duration.ofSeconds(1), 1, Duration.ofSeconds(30), 1, nanos::get);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> disabled.execute(() -> {
+                throw new IllegalStateException("down");
+            }));
+        }
+
+        // Then
+        assertEquals("ok", disabled.execute(() -> "ok"));
+    }
+
+    @Test
+    void execute_AgainstFailingStubRouter_StopsCallingIt() throws Exception {
+        // Given
+        AtomicInteger received = new AtomicInteger();
+        HttpServer stubRouter = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubRouter.createContext("/", exchange -> {
+            received.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        stubRouter.start();
+        RestTemplate restTemplate = new RestTemplate();
+        String url = "http://127.0.0.1:" + stubRouter.getAddress().getPort() + "/v1/chat/completions";
+
+        try {
+            // When
+            for (int i = 0; i < 10; i++) {
+                assertThrows(RuntimeException.class, () -> breaker.execute(() -> restTemplate.getForObject(url, String.class)));
+            }
+
+            // Then
+            assertEquals(4, received.get());
+            assertEquals(6.0, meterRegistry.get("huggingface.circuit.rejected").counter().count());
+        } finally {
+            stubRouter.stop(0);
+        }
+    }
+}
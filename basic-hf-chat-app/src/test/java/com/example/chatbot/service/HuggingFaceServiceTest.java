@@ -1,5 +1,9 @@
 package com.example.chatbot.service;
 
+import com.example.chatbot.config.ModelRoutingProperties;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -7,13 +11,34 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -25,26 +50,38 @@ class HuggingFaceServiceTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private HuggingFaceService huggingFaceService;
 
     @Captor
-    private ArgumentCaptor<HttpEntity<String>> httpEntityCaptor;
+    private ArgumentCaptor<HttpEntity<byte[]>> httpEntityCaptor;
 
     private final String testApiKey = "test-api-key";
     private final String testApiUrl = "http://test-api-url";
     private final String testMessage = "Test message";
+    private final String testFallback = "Busy, try again";
 
     @BeforeEach
     void setUp() {
         // Initialize the service with mock dependencies
-        huggingFaceService = new HuggingFaceService(restTemplate, testApiKey, testApiUrl);
+        huggingFaceService = new HuggingFaceService(restTemplate, testApiKey, testApiUrl, meterRegistry,
+                new RequestCoalescer(meterRegistry, true, 100, Duration.ofSeconds(5)),
+                new ResponseCache(meterRegistry, true, DataSize.ofMegabytes(1), Duration.ofMinutes(1), Duration.ZERO,
+                        Ticker.systemTicker(), Runnable::run),
+                new CircuitBreaker(meterRegistry, true, 50, 10, 50, Duration.ofSeconds(10), 80,
+                        Duration.ofSeconds(30), 3, System::nanoTime),
+                new RequestHedger(meterRegistry, false, Duration.ofMillis(200), 100, 20, Runnable::run),
+                testFallback,
+                new ModelRouter(new ModelRoutingProperties(List.of(), 1024, 0.2, Duration.ofSeconds(30)), meterRegistry));
     }
 
     @Test
     void generateTextFromPrompt_Success() {
         // Arrange
-        String expectedResponse = "{\"choices\":[{\"messages\":{\"content\":\"Test response\"}}]}";
+        String expectedResponse = "{\"choices\":[{\"message\":{\"content\":\"Test response\"}}]}";
         String expectedContent = "Test response";
 
         // Mock the response
@@ -52,8 +89,8 @@ class HuggingFaceServiceTest {
                 eq(testApiUrl),
                 eq(HttpMethod.POST),
                 any(HttpEntity.class),
-                eq(String.class)
-        )).thenReturn(ResponseEntity.ok(expectedResponse));
+                eq(byte[].class)
+        )).thenReturn(ResponseEntity.ok(expectedResponse.getBytes(StandardCharsets.UTF_8)));
 
         // Act
         String result = huggingFaceService.generateTextFromPrompt(testMessage);
@@ -66,13 +103,13 @@ class HuggingFaceServiceTest {
             eq(testApiUrl),
             eq(HttpMethod.POST),
             httpEntityCaptor.capture(),
-            eq(String.class)
+            eq(byte[].class)
         );
         
-        HttpEntity<String> capturedEntity = httpEntityCaptor.getValue();
+        HttpEntity<byte[]> capturedEntity = httpEntityCaptor.getValue();
         assertNotNull(capturedEntity);
         assertEquals("Bearer " + testApiKey, capturedEntity.getHeaders().getFirst("Authorization"));
-        assertTrue(capturedEntity.getBody().contains(testMessage));
+        assertTrue(new String(capturedEntity.getBody(), StandardCharsets.UTF_8).contains(testMessage));
     }
 
     @Test
@@ -82,7 +119,7 @@ class HuggingFaceServiceTest {
                 eq(testApiUrl),
                 eq(HttpMethod.POST),
                 any(HttpEntity.class),
-                eq(String.class)
+                eq(byte[].class)
         )).thenReturn(ResponseEntity.internalServerError().build());
 
         // Act & Assert
@@ -97,11 +134,11 @@ class HuggingFaceServiceTest {
     @Test
     void parseResponse_ValidResponse() {
         // Arrange
-        String jsonResponse = "{\"choices\":[{\"messages\":{\"content\":\"Test response\"}}]}";
+        String jsonResponse = "{\"choices\":[{\"message\":{\"content\":\"Test response\"}}]}";
         String expected = "Test response";
 
         // Act
-        String result = ReflectionTestUtils.invokeMethod(huggingFaceService, "parseResponse", jsonResponse);
+        String result = ReflectionTestUtils.invokeMethod(huggingFaceService, "parseResponse", (Object) jsonResponse.getBytes(StandardCharsets.UTF_8));
 
         // Assert
         assertEquals(expected, result);
@@ -113,9 +150,157 @@ class HuggingFaceServiceTest {
         String invalidJson = "invalid json";
 
         // Act
-        String result = ReflectionTestUtils.invokeMethod(huggingFaceService, "parseResponse", invalidJson);
+        String result = ReflectionTestUtils.invokeMethod(huggingFaceService, "parseResponse", (Object) invalidJson.getBytes(StandardCharsets.UTF_8));
 
         // Assert
         assertEquals("Error parsing response", result);
     }
+
+    @Test
+    void streamTextFromPrompt_ForwardsDeltasInOrder() {
+        // Arrange
+        String sse = "data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}\n\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\"Test\"}}]}\n\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\" response\"},\"finish_reason\":\"stop\"}]}\n\n"
+                + "data: [DONE]\n\n";
+        when(restTemplate.execute(eq(testApiUrl), eq(HttpMethod.POST), any(RequestCallback.class), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> {
+                    ResponseExtractor<?> extractor = invocation.getArgument(3);
+                    ClientHttpResponse response = mock(ClientHttpResponse.class);
+                    when(response.getBody()).thenReturn(new ByteArrayInputStream(sse.getBytes(StandardCharsets.UTF_8)));
+                    return extractor.extractData(response);
+                });
+        List<String> deltas = new ArrayList<>();
+
+        // Act
+        huggingFaceService.streamTextFromPrompt(testMessage, deltas::add);
+
+        // Assert
+        assertEquals(List.of("Test", " response"), deltas);
+        assertEquals(1, meterRegistry.get("huggingface.generate.ttft").timer().count());
+    }
+
+    @Test
+    void generateTextFromPrompt_ConcurrentIdenticalPrompts_ShareOneUpstreamCall() throws Exception {
+        // Arrange
+        CountDownLatch upstreamEntered = new CountDownLatch(1);
+        CountDownLatch releaseUpstream = new CountDownLatch(1);
+        String body = "{\"choices\":[{\"message\":{\"content\":\"Shared\"}}]}";
+        when(restTemplate.exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class)))
+                .thenAnswer(invocation -> {
+                    upstreamEntered.countDown();
+                    releaseUpstream.await(5, TimeUnit.SECONDS);
+                    return ResponseEntity.ok(body.getBytes(StandardCharsets.UTF_8));
+                });
+
+        // Act
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> huggingFaceService.generateTextFromPrompt("Tell me a joke"));
+        assertTrue(upstreamEntered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> huggingFaceService.generateTextFromPrompt("  Tell   me a joke "));
+        while (meterRegistry.get("huggingface.coalescing.waiters").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+        releaseUpstream.countDown();
+
+        // Assert
+        assertEquals("Shared", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("Shared", follower.get(5, TimeUnit.SECONDS));
+        verify(restTemplate, times(1)).exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class));
+        assertEquals(1.0, meterRegistry.get("huggingface.coalescing.hits").counter().count());
+    }
+
+    @Test
+    void generateTextFromPrompt_RepeatedPrompt_ServedFromCache() {
+        // Arrange
+        String body = "{\"choices\":[{\"message\":{\"content\":\"Cached\"}}]}";
+        when(restTemplate.exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class)))
+                .thenReturn(ResponseEntity.ok(body.getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        String first = huggingFaceService.generateTextFromPrompt("Tell me a joke");
+        String second = huggingFaceService.generateTextFromPrompt("Tell me a joke ");
+
+        // Assert
+        assertEquals("Cached", first);
+        assertEquals("Cached", second);
+        verify(restTemplate, times(1)).exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class));
+        assertEquals(1.0, meterRegistry.get("huggingface.model.requests").counter().count(),
+                "Only the call that reached the model should be counted");
+    }
+
+    @Test
+    void generateTextFromPrompt_ParseError_IsNotCached() {
+        // Arrange
+        when(restTemplate.exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class)))
+                .thenReturn(ResponseEntity.ok("not json".getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        huggingFaceService.generateTextFromPrompt(testMessage);
+        huggingFaceService.generateTextFromPrompt(testMessage);
+
+        // Assert
+        verify(restTemplate, times(2)).exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class));
+    }
+
+    @Test
+    void generateTextFromPrompt_RouterKeepsFailing_OpensCircuitAndReturnsFallback() {
+        // Arrange
+        when(restTemplate.exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        for (int i = 0; i < 10; i++) {
+            assertThrows(HttpServerErrorException.class, () -> huggingFaceService.generateTextFromPrompt(testMessage));
+        }
+
+        // Act
+        String result = huggingFaceService.generateTextFromPrompt(testMessage);
+
+        // Assert
+        assertEquals(testFallback, result);
+        verify(restTemplate, times(10)).exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class));
+    }
+
+    @Test
+    void generateTextFromPrompt_HedgeWins_InterruptedFirstAttemptIsNotAnError() throws Exception {
+        // Arrange - hedge after the first sample; the slow prompt's first attempt blocks until interrupted
+        ExecutorService hedgeExecutor = Executors.newCachedThreadPool();
+        HuggingFaceService hedged = new HuggingFaceService(restTemplate, testApiKey, testApiUrl, meterRegistry,
+                new RequestCoalescer(meterRegistry, true, 100, Duration.ofSeconds(5)),
+                new ResponseCache(meterRegistry, true, DataSize.ofMegabytes(1), Duration.ofMinutes(1), Duration.ZERO,
+                        Ticker.systemTicker(), Runnable::run),
+                new CircuitBreaker(meterRegistry, true, 50, 10, 50, Duration.ofSeconds(10), 80,
+                        Duration.ofSeconds(30), 3, System::nanoTime),
+                new RequestHedger(meterRegistry, true, Duration.ofMillis(50), 20, 1, hedgeExecutor),
+                testFallback,
+                new ModelRouter(new ModelRoutingProperties(List.of(), 1024, 0.2, Duration.ofSeconds(30)), meterRegistry));
+        AtomicInteger calls = new AtomicInteger();
+        when(restTemplate.exchange(eq(testApiUrl), eq(HttpMethod.POST), any(HttpEntity.class), eq(byte[].class)))
+                .thenAnswer(invocation -> {
+                    if (calls.getAndIncrement() == 1) {
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            // What the HTTP client reports when a blocked call is interrupted
+                            throw new ResourceAccessException("I/O error", new InterruptedIOException("Request aborted"));
+                        }
+                    }
+                    return ResponseEntity.ok("{\"choices\":[{\"message\":{\"content\":\"Test response\"}}]}"
+                            .getBytes(StandardCharsets.UTF_8));
+                });
+
+        try {
+            // Act
+            hedged.generateTextFromPrompt("Warm up");
+            String result = hedged.generateTextFromPrompt(testMessage);
+
+            // Assert
+            assertEquals("Test response", result);
+            assertEquals(3, calls.get());
+            assertEquals(1.0, meterRegistry.get("huggingface.hedging.wins").counter().count());
+            assertEquals(0.0, meterRegistry.get("huggingface.model.errors").tag("model", ModelRouter.DEFAULT_MODEL)
+                    .counter().count());
+            assertFalse(Thread.interrupted());
+        } finally {
+            hedgeExecutor.shutdownNow();
+        }
+    }
 }
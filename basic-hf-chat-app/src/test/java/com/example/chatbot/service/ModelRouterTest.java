@@ -0,0 +1,226 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.ModelRoutingProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRouterTest {
+
+    private static final String SMALL = "HuggingFaceTB/SmolLM3-3B:hf-inference";
+    private static final String LARGE = "meta-llama/Llama-3.1-8B-Instruct";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    // Small: 2048-token window, skipped above 1s; large: 128k window, no latency budget
+    private final ModelRoutingProperties properties = new ModelRoutingProperties(List.of(
+            new ModelRoutingProperties.Route(SMALL, 2048, Duration.ofSeconds(1)),
+            new ModelRoutingProperties.Route(LARGE, 131072, null)),
+            512, 0.5, Duration.ofSeconds(30));
+
+    private final ModelRouter router = new ModelRouter(properties, meterRegistry, nanos::get);
+
+    private static String promptOfTokens(int tokens) {
+        return "word".repeat(tokens);
+    }
+
+    private void recordSeconds(String model, double seconds) {
+        router.recordSuccess(model, (long) (seconds * 1e9));
+    }
+
+    @Test
+    void route_ShortPrompt_GoesToFirstModel() {
+        assertEquals(SMALL, router.route("Tell me a joke", 0));
+    }
+
+    @Test
+    void recordRequest_CountsCallsNotRoutingDecisions() {
+        // When
+        router.route("Tell me a joke", 0);
+        router.recordRequest(SMALL);
+        router.recordRequest("unknown-model");
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("huggingface.model.requests").tag("model", SMALL).counter().count());
+        assertEquals(0.0, meterRegistry.get("huggingface.model.requests").tag("model", LARGE).counter().count());
+    }
+
+    @Test
+    void route_PromptPlusOutputBeyondContext_GoesToLargerModel() {
+        // 1600 prompt tokens + 512 default output > 2048
+        assertEquals(LARGE, router.route(promptOfTokens(1600), 0));
+        // The requested output counts too
+        assertEquals(LARGE, router.route("Tell me a joke", 4000));
+        assertEquals(SMALL, router.route("Tell me a joke", 100));
+    }
+
+    @Test
+    void route_FirstModelOverLatencyBudget_SpillsToNext() {
+        // When
+        recordSeconds(SMALL, 3);
+
+        // Then
+        assertEquals(LARGE, router.route("Tell me a joke", 0));
+    }
+
+    @Test
+    void route_LatencyAverageRecovers_ReturnsToFirstModel() {
+        // Given
+        recordSeconds(SMALL, 3);
+
+        // When - 3 -> 1.6 -> 0.9 seconds
+        recordSeconds(SMALL, 0.2);
+        assertEquals(LARGE, router.route("Tell me a joke", 0));
+        recordSeconds(SMALL, 0.2);
+
+        // Then
+        assertEquals(SMALL, router.route("Tell me a joke", 0));
+        assertEquals(0.9, router.averageLatency(SMALL).toNanos() / 1e9, 1e-6);
+    }
+
+    @Test
+    void route_StaleLatencyAverage_IsIgnored() {
+        // Given
+        recordSeconds(SMALL, 3);
+
+        // When
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        // Then
+        assertEquals(SMALL, router.route("Tell me a joke", 0));
+        assertNull(router.averageLatency(SMALL));
+    }
+
+    @Test
+    void route_AllCandidatesOverBudget_PicksFastest() {
+        // Given
+        ModelRouter bothBudgeted = new ModelRouter(new ModelRoutingProperties(List.of(
+                new ModelRoutingProperties.Route(SMALL, 2048, Duration.ofSeconds(1)),
+                new ModelRoutingProperties.Route(LARGE, 131072, Duration.ofSeconds(1))),
+                512, 0.5, Duration.ofSeconds(30)), meterRegistry, nanos::get);
+
+        // When
+        bothBudgeted.recordSuccess(SMALL, Duration.ofSeconds(5).toNanos());
+        bothBudgeted.recordSuccess(LARGE, Duration.ofSeconds(2).toNanos());
+
+        // Then
+        assertEquals(LARGE, bothBudgeted.route("Tell me a joke", 0));
+    }
+
+    @Test
+    void route_NothingLargeEnough_UsesLargestContext() {
+        assertEquals(LARGE, router.route(promptOfTokens(200_000), 0));
+    }
+
+    @Test
+    void route_EmptyTable_UsesDefaultModel() {
+        // Given
+        ModelRouter defaults = new ModelRouter(new ModelRoutingProperties(List.of(), 1024, 0.2, Duration.ofSeconds(30)),
+                meterRegistry, nanos::get);
+
+        // Then
+        assertEquals(List.of(ModelRouter.DEFAULT_MODEL), defaults.models());
+        assertEquals(ModelRouter.DEFAULT_MODEL, defaults.route("Tell me a joke", 0));
+    }
+
+    @Test
+    void recordFailure_CountsPerModel() {
+        // When
+        router.recordFailure(LARGE, Duration.ofSeconds(1).toNanos());
+        router.recordFailure("unknown-model", Duration.ofSeconds(1).toNanos());
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("huggingface.model.errors").tag("model", LARGE).counter().count());
+        assertEquals(0.0, meterRegistry.get("huggingface.model.errors").tag("model", SMALL).counter().count());
+    }
+
+    @Test
+    void route_FirstModelKeepsTimingOut_StopsBeingChosen() {
+        // Given - fast successes so far
+        recordSeconds(SMALL, 0.2);
+        assertEquals(SMALL, router.route("Tell me a joke", 0));
+
+        // When - calls start failing at the 0.5s client timeout, well within the 1s budget
+        router.recordFailure(SMALL, Duration.ofMillis(500).toNanos());
+        router.recordFailure(SMALL, Duration.ofMillis(500).toNanos());
+
+        // Then
+        assertEquals(LARGE, router.route("Tell me a joke", 0));
+        assertEquals(2.0, meterRegistry.get("huggingface.model.errors").tag("model", SMALL).counter().count());
+    }
+
+    @Test
+    void recordFailure_ModelWithoutBudget_CountsElapsedTime() {
+        // When
+        router.recordFailure(LARGE, Duration.ofSeconds(3).toNanos());
+
+        // Then
+        assertEquals(Duration.ofSeconds(3), router.averageLatency(LARGE));
+    }
+
+    @Test
+    void generate_AgainstStubRouter_FollowsPromptLengthAndLatency() throws Exception {
+        // Given - a stub router that answers with the requested model's name after that model's latency
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Long> latencyMillis = new ConcurrentHashMap<>(Map.of(SMALL, 0L, LARGE, 0L));
+        HttpServer stubRouter = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubRouter.createContext("/", exchange -> {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String model = request.get("model").asText();
+            try {
+                Thread.sleep(latencyMillis.get(model));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"choices\":[{\"message\":{\"content\":\"" + model + "\"}}]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubRouter.start();
+        ModelRouter liveRouter = new ModelRouter(new ModelRoutingProperties(List.of(
+                new ModelRoutingProperties.Route(SMALL, 2048, Duration.ofMillis(500)),
+                new ModelRoutingProperties.Route(LARGE, 131072, null)),
+                512, 0.5, Duration.ofSeconds(30)), meterRegistry);
+        HuggingFaceService service = new HuggingFaceService(new RestTemplate(), "stub-key",
+                "http://127.0.0.1:" + stubRouter.getAddress().getPort() + "/v1/chat/completions", meterRegistry,
+                new RequestCoalescer(meterRegistry, false, 100, Duration.ofSeconds(5)),
+                new ResponseCache(meterRegistry, false, DataSize.ofMegabytes(1), Duration.ofMinutes(1), Duration.ZERO,
+                        Ticker.systemTicker(), Runnable::run),
+                new CircuitBreaker(meterRegistry, false, 50, 10, 50, Duration.ofSeconds(10), 80,
+                        Duration.ofSeconds(30), 3, System::nanoTime),
+                new RequestHedger(meterRegistry, false, Duration.ofMillis(200), 100, 20, Runnable::run),
+                "fallback", liveRouter);
+
+        try {
+            // When / Then - short prompts go to the small model, long ones to the large one
+            assertEquals(SMALL, service.generateTextFromPrompt("Tell me a joke"));
+            assertEquals(LARGE, service.generateTextFromPrompt(promptOfTokens(1600)));
+            assertEquals(LARGE, service.generateTextFromPrompt("Tell me a joke", 4000));
+
+            // When the small model slows down past its budget, short prompts spill over
+            latencyMillis.put(SMALL, 1500L);
+            assertEquals(SMALL, service.generateTextFromPrompt("Tell me a joke"));
+            assertEquals(LARGE, service.generateTextFromPrompt("Tell me a joke"));
+            assertTrue(meterRegistry.get("huggingface.model.latency").tag("model", SMALL).timer().count() >= 2);
+        } finally {
+            stubRouter.stop(0);
+        }
+    }
+}
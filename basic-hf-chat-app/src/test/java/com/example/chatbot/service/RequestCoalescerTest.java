@@ -0,0 +1,168 @@
+package com.example.chatbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private double waiters() {
+        return meterRegistry.get("huggingface.coalescing.waiters").gauge().value();
+    }
+
+    private void awaitWaiters(int expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiters() < expected) {
+            assertTrue(System.nanoTime() < deadline, "waiters never joined");
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void execute_ConcurrentCallsForSameKey_RunOnce() throws Exception {
+        // Given
+        RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, true, 100, Duration.ofSeconds(5));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.submit(() -> coalescer.execute("joke", () -> {
+                calls.incrementAndGet();
+                awaitQuietly(release);
+                return "answer";
+            })));
+            if (i == 0) {
+                while (calls.get() == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        awaitWaiters(9);
+        release.countDown();
+
+        // Then
+        for (Future<String> result : results) {
+            assertEquals("answer", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(9.0, meterRegistry.get("huggingface.coalescing.hits").counter().count());
+        assertEquals(0.0, waiters());
+    }
+
+    @Test
+    void execute_WaiterLimitReached_ExtraCallerRunsItsOwnCall() throws Exception {
+        // Given
+        RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, true, 1, Duration.ofSeconds(5));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.execute("joke", () -> {
+            entered.countDown();
+            awaitQuietly(release);
+            return "shared";
+        }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Future<String> waiter = executor.submit(() -> coalescer.execute("joke", () -> "unexpected"));
+        awaitWaiters(1);
+
+        // When
+        String overflow = coalescer.execute("joke", () -> "own");
+        release.countDown();
+
+        // Then
+        assertEquals("own", overflow);
+        assertEquals("shared", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("shared", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("huggingface.coalescing.overflows").counter().count());
+    }
+
+    @Test
+    void execute_LeaderFails_WaitersSeeSameException() throws Exception {
+        // Given
+        RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, true, 100, Duration.ofSeconds(5));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("router down");
+        Future<String> leader = executor.submit(() -> coalescer.execute("joke", () -> {
+            entered.countDown();
+            awaitQuietly(release);
+            throw failure;
+        }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Future<String> waiter = executor.submit(() -> coalescer.execute("joke", () -> "unexpected"));
+        awaitWaiters(1);
+
+        // When
+        release.countDown();
+
+        // Then
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertSame(failure, leaderError.getCause());
+        assertSame(failure, waiterError.getCause());
+    }
+
+    @Test
+    void execute_WaiterTimesOut_ThrowsResourceAccessException() throws Exception {
+        // Given
+        RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, true, 100, Duration.ofMillis(50));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.execute("joke", () -> {
+            entered.countDown();
+            awaitQuietly(release);
+            return "late";
+        }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // When / Then
+        assertThrows(ResourceAccessException.class, () -> coalescer.execute("joke", () -> "unexpected"));
+        release.countDown();
+        assertEquals("late", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_Disabled_AlwaysRunsCall() {
+        // Given
+        RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, false, 100, Duration.ofSeconds(5));
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        coalescer.execute("joke", () -> "a" + calls.incrementAndGet());
+        coalescer.execute("joke", () -> "a" + calls.incrementAndGet());
+
+        // Then
+        assertEquals(2, calls.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
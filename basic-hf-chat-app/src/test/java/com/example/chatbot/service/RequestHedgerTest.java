@@ -0,0 +1,227 @@
+package com.example.chatbot.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    // Injected latency (ms) and status for each request the stub receives, in order; 0 ms / 200 once drained
+    private final Queue<long[]> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger received = new AtomicInteger();
+    private HttpServer stubRouter;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stubRouter = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubRouter.setExecutor(executor);
+        stubRouter.createContext("/", exchange -> {
+            long[] step = script.poll();
+            int attempt = received.incrementAndGet();
+            try {
+                Thread.sleep(step == null ? 0 : step[0]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("attempt-" + attempt).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(step == null ? 200 : (int) step[1], body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubRouter.start();
+        url = "http://127.0.0.1:" + stubRouter.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubRouter.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String callStub() {
+        return restTemplate.getForObject(url, String.class);
+    }
+
+    private RequestHedger hedger(boolean enabled, int minSamples) {
+        return new RequestHedger(meterRegistry, enabled, Duration.ofMillis(100), 20, minSamples, executor);
+    }
+
+    private void warmUp(RequestHedger hedger, int calls) {
+        for (int i = 0; i < calls; i++) {
+            hedger.execute(this::callStub);
+        }
+        received.set(0);
+    }
+
+    @Test
+    void execute_SlowPrimary_SecondAttemptWins() throws Exception {
+        // Given - fast calls put the p95 below the 100ms floor
+        RequestHedger hedger = hedger(true, 5);
+        warmUp(hedger, 5);
+        script.add(new long[]{3000, 200});
+        script.add(new long[]{0, 200});
+
+        // When - called from a virtual thread, whose socket reads an interrupt cuts short
+        long start = System.nanoTime();
+        AtomicReference<String> result = new AtomicReference<>();
+        AtomicBoolean leftInterrupted = new AtomicBoolean();
+        Thread caller = Thread.ofVirtual().start(() -> {
+            result.set(hedger.execute(this::callStub));
+            leftInterrupted.set(Thread.currentThread().isInterrupted());
+        });
+        caller.join(10_000);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertEquals("attempt-2", result.get());
+        assertTrue(elapsedMillis < 2000, "waited for the slow attempt: " + elapsedMillis + "ms");
+        assertFalse(leftInterrupted.get(), "the caller was left interrupted");
+        assertEquals(1.0, meterRegistry.get("huggingface.hedging.hedges").counter().count());
+        assertEquals(1.0, meterRegistry.get("huggingface.hedging.wins").counter().count());
+    }
+
+    @Test
+    void execute_RunsTheFirstAttemptOnTheCallerThread() {
+        // Given
+        RequestHedger hedger = hedger(true, 5);
+        warmUp(hedger, 5);
+        Thread caller = Thread.currentThread();
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        String result = hedger.execute(() -> {
+            attempts.incrementAndGet();
+            assertSame(caller, Thread.currentThread());
+            return callStub();
+        });
+
+        // Then
+        assertEquals("attempt-1", result);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void execute_PrimaryWinsAfterTheHedge_InterruptsTheSecondAttempt() throws Exception {
+        // Given
+        RequestHedger hedger = hedger(true, 5);
+        warmUp(hedger, 5);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch secondInterrupted = new CountDownLatch(1);
+
+        // When - the first attempt answers after 300ms, the second would take a minute
+        String result = hedger.execute(() -> {
+            int attempt = attempts.incrementAndGet();
+            try {
+                Thread.sleep(attempt == 1 ? 300 : 60_000);
+            } catch (InterruptedException e) {
+                secondInterrupted.countDown();
+                throw new IllegalStateException("interrupted");
+            }
+            return "attempt-" + attempt;
+        });
+
+        // Then
+        assertEquals("attempt-1", result);
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertTrue(secondInterrupted.await(5, TimeUnit.SECONDS), "the losing attempt kept running");
+        assertEquals(1.0, meterRegistry.get("huggingface.hedging.hedges").counter().count());
+        assertEquals(0.0, meterRegistry.get("huggingface.hedging.wins").counter().count());
+    }
+
+    @Test
+    void execute_FastPrimary_IsNotHedged() {
+        // Given
+        RequestHedger hedger = hedger(true, 5);
+        warmUp(hedger, 5);
+
+        // When
+        String result = hedger.execute(this::callStub);
+
+        // Then
+        assertEquals("attempt-1", result);
+        assertEquals(1, received.get());
+        assertEquals(0.0, meterRegistry.get("huggingface.hedging.hedges").counter().count());
+    }
+
+    @Test
+    void execute_NotEnoughSamples_NeverHedges() {
+        // Given
+        RequestHedger hedger = hedger(true, 5);
+        script.add(new long[]{500, 200});
+
+        // When
+        String result = hedger.execute(this::callStub);
+
+        // Then
+        assertEquals("attempt-1", result);
+        assertEquals(1, received.get());
+        assertEquals(-1, hedger.hedgeDelayNanos());
+    }
+
+    @Test
+    void execute_BothAttemptsFail_ThrowsTheFailure() {
+        // Given
+        RequestHedger hedger = hedger(true, 5);
+        warmUp(hedger, 5);
+        script.add(new long[]{500, 503});
+        script.add(new long[]{0, 503});
+
+        // When / Then
+        assertThrows(HttpServerErrorException.class, () -> hedger.execute(this::callStub));
+        assertEquals(2, received.get());
+    }
+
+    @Test
+    void execute_PrimaryFailsFast_IsNotRetried() {
+        // Given
+        RequestHedger hedger = hedger(true, 5);
+        warmUp(hedger, 5);
+        script.add(new long[]{0, 503});
+
+        // When / Then
+        assertThrows(HttpServerErrorException.class, () -> hedger.execute(this::callStub));
+        assertEquals(1, received.get());
+    }
+
+    @Test
+    void execute_Disabled_CallsOnceOnCallerThread() {
+        // Given
+        RequestHedger hedger = hedger(false, 0);
+        script.add(new long[]{300, 200});
+        Thread caller = Thread.currentThread();
+
+        // When
+        String result = hedger.execute(() -> {
+            assertSame(caller, Thread.currentThread());
+            return callStub();
+        });
+
+        // Then
+        assertEquals("attempt-1", result);
+        assertEquals(1, received.get());
+    }
+}
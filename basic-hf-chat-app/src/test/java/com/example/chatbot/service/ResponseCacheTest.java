@@ -0,0 +1,188 @@
+package com.example.chatbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private static final String MODEL = "test-model";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    private ResponseCache cache(DataSize maxSize, Duration ttl, Duration staleWhileRevalidate) {
+        return new ResponseCache(meterRegistry, true, maxSize, ttl, staleWhileRevalidate, nanos::get, refreshes::add);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private void runRefreshes() {
+        List<Runnable> pending = new ArrayList<>(refreshes);
+        refreshes.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    @Test
+    void get_RepeatedNormalisedPrompt_LoadsOnce() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        String first = cache.get(GenerationKey.of(MODEL, "Tell me a joke"), () -> "joke " + loads.incrementAndGet());
+        String second = cache.get(GenerationKey.of(MODEL, "  Tell me\n a   joke"), () -> "joke " + loads.incrementAndGet());
+
+        // Then
+        assertEquals("joke 1", first);
+        assertEquals("joke 1", second);
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void get_DifferentModel_IsSeparateEntry() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ZERO);
+
+        // When
+        cache.get(GenerationKey.of("small", "hi"), () -> "small answer");
+        String other = cache.get(GenerationKey.of("large", "hi"), () -> "large answer");
+
+        // Then
+        assertEquals("large answer", other);
+    }
+
+    @Test
+    void get_AfterTtlWithoutStaleWhileRevalidate_Reloads() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ZERO);
+        GenerationKey key = GenerationKey.of(MODEL, "hi");
+        cache.get(key, () -> "old");
+
+        // When
+        advance(Duration.ofMinutes(11));
+        String result = cache.get(key, () -> "new");
+
+        // Then
+        assertEquals("new", result);
+    }
+
+    @Test
+    void get_WithinStaleWindow_ServesStaleAndRefreshesOnce() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ofMinutes(5));
+        GenerationKey key = GenerationKey.of(MODEL, "hi");
+        AtomicInteger reloads = new AtomicInteger();
+        cache.get(key, () -> "old");
+        advance(Duration.ofMinutes(12));
+
+        // When
+        String first = cache.get(key, () -> "new " + reloads.incrementAndGet());
+        String second = cache.get(key, () -> "new " + reloads.incrementAndGet());
+        runRefreshes();
+        String refreshed = cache.get(key, () -> "unexpected");
+
+        // Then
+        assertEquals("old", first);
+        assertEquals("old", second);
+        assertEquals(1, reloads.get());
+        assertEquals("new 1", refreshed);
+        assertEquals(2.0, meterRegistry.get("huggingface.cache.stale.hits").counter().count());
+    }
+
+    @Test
+    void get_UncacheableRefresh_KeepsServingStaleAndRetries() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ofMinutes(5));
+        GenerationKey key = GenerationKey.of(MODEL, "hi");
+        cache.get(key, () -> "old");
+        advance(Duration.ofMinutes(12));
+
+        // When - the first refresh gets a failure back, the second an answer
+        String first = cache.get(key, () -> "failure", text -> !text.equals("failure"));
+        runRefreshes();
+        String second = cache.get(key, () -> "new", text -> !text.equals("failure"));
+        runRefreshes();
+        String refreshed = cache.get(key, () -> "unexpected");
+
+        // Then
+        assertEquals("old", first);
+        assertEquals("old", second);
+        assertEquals("new", refreshed);
+    }
+
+    @Test
+    void get_UncacheableResponse_IsReturnedButNotStored() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ZERO);
+        GenerationKey key = GenerationKey.of(MODEL, "hi");
+
+        // When
+        String failure = cache.get(key, () -> "failure", text -> !text.equals("failure"));
+        String answer = cache.get(key, () -> "answer");
+
+        // Then
+        assertEquals("failure", failure);
+        assertEquals("answer", answer);
+    }
+
+    @Test
+    void get_PastStaleWindow_Reloads() {
+        // Given
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ofMinutes(5));
+        GenerationKey key = GenerationKey.of(MODEL, "hi");
+        cache.get(key, () -> "old");
+
+        // When
+        advance(Duration.ofMinutes(16));
+        String result = cache.get(key, () -> "new");
+
+        // Then
+        assertEquals("new", result);
+    }
+
+    @Test
+    void put_BeyondByteBudget_EvictsEntries() {
+        // Given - each entry weighs a little over 2 KB, the budget holds about four
+        ResponseCache cache = cache(DataSize.ofKilobytes(10), Duration.ofMinutes(10), Duration.ZERO);
+        String response = "x".repeat(1000);
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            cache.get(GenerationKey.of(MODEL, "prompt " + i), () -> response);
+        }
+
+        // Then
+        assertTrue(cache.estimatedSize() <= 5, "size was " + cache.estimatedSize());
+        assertTrue(meterRegistry.get("huggingface.cache.bytes").gauge().value() <= DataSize.ofKilobytes(10).toBytes());
+        assertTrue(meterRegistry.get("cache.evictions").functionCounter().count() > 0);
+    }
+
+    @Test
+    void get_Disabled_AlwaysLoads() {
+        // Given
+        ResponseCache cache = new ResponseCache(meterRegistry, false, DataSize.ofMegabytes(1),
+                Duration.ofMinutes(10), Duration.ZERO, nanos::get, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        cache.get(GenerationKey.of(MODEL, "hi"), () -> "answer " + loads.incrementAndGet());
+        cache.get(GenerationKey.of(MODEL, "hi"), () -> "answer " + loads.incrementAndGet());
+
+        // Then
+        assertEquals(2, loads.get());
+    }
+}
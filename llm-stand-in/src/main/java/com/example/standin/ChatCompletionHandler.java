@@ -0,0 +1,308 @@
+package com.example.standin;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers {@code POST /v1/chat/completions} in the OpenAI wire format, which the
+ * Hugging Face router speaks as well.
+ * <p>
+ * Answers are canned text of the configured length. With {@code "stream": true} they
+ * are sent as {@code chat.completion.chunk} Server-Sent Events, one token per chunk,
+ * ending with {@code data: [DONE]}. When the request offers {@code tools} and carries no
+ * tool result yet, the answer is a {@code tool_calls} message instead, with arguments
+ * filled in from each tool's JSON schema; the follow-up request with the tool results
+ * gets a text answer that quotes them.
+ */
+final class ChatCompletionHandler implements HttpHandler {
+
+    private static final String[] WORDS = ("Why don't scientists trust atoms? Because they make up everything. "
+            + "The stand-in model answers every question with the same cheerful sentence, one token at a time.").split(" ");
+
+    private final StandInOptions options;
+    private final StandInStats stats;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random;
+    private final AtomicLong ids = new AtomicLong();
+
+    ChatCompletionHandler(StandInOptions options, StandInStats stats) {
+        this.options = options;
+        this.stats = stats;
+        this.random = new Random(options.seed());
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            stats.begin();
+            try {
+                JsonNode request;
+                try {
+                    request = objectMapper.readTree(exchange.getRequestBody());
+                } catch (JsonProcessingException e) {
+                    sendError(exchange, 400, "invalid_request_error", "Request body is not JSON: " + e.getOriginalMessage());
+                    return;
+                }
+                respond(exchange, request);
+            } catch (IOException e) {
+                // Client went away mid-response
+                stats.disconnects.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stats.end();
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        boolean fail;
+        boolean tail;
+        synchronized (random) {
+            fail = random.nextDouble() < options.errorRate();
+            tail = random.nextDouble() < options.tailRate();
+        }
+        if (fail) {
+            stats.injectedErrors.incrementAndGet();
+            sendError(exchange, options.errorStatus(), "server_error", "Injected failure from the LLM stand-in");
+            return;
+        }
+        Duration firstTokenDelay = options.timeToFirstToken();
+        if (tail) {
+            stats.tailDelayed.incrementAndGet();
+            firstTokenDelay = firstTokenDelay.plus(options.tailLatency());
+        }
+
+        String id = "chatcmpl-standin-" + ids.incrementAndGet();
+        String model = request.path("model").asText("stand-in");
+        int maxTokens = request.path("max_tokens").asInt(request.path("max_completion_tokens").asInt(0));
+        int tokenCount = maxTokens > 0 ? Math.min(maxTokens, options.completionTokens()) : options.completionTokens();
+        String finishReason = tokenCount < options.completionTokens() ? "length" : "stop";
+        List<ObjectNode> toolCalls = toolCallsFor(request);
+        List<String> tokens = toolCalls.isEmpty() ? tokens(toolResults(request), tokenCount) : List.of();
+        stats.completionTokens.addAndGet(tokens.size());
+        if (!toolCalls.isEmpty()) {
+            stats.toolCallResponses.incrementAndGet();
+            finishReason = "tool_calls";
+        }
+
+        if (request.path("stream").asBoolean(false)) {
+            stats.streamed.incrementAndGet();
+            boolean includeUsage = request.path("stream_options").path("include_usage").asBoolean(false);
+            stream(exchange, id, model, tokens, toolCalls, finishReason, firstTokenDelay,
+                    includeUsage ? usage(request, tokens.size()) : null);
+        } else {
+            sleep(firstTokenDelay.plus(perToken().multipliedBy(Math.max(0, tokens.size() - 1))));
+            ObjectNode message = objectMapper.createObjectNode().put("role", "assistant");
+            if (toolCalls.isEmpty()) {
+                message.put("content", String.join("", tokens));
+            } else {
+                message.putNull("content");
+                message.putArray("tool_calls").addAll(toolCalls);
+            }
+            ObjectNode response = envelope(id, model, "chat.completion");
+            response.putArray("choices").addObject()
+                    .put("index", 0)
+                    .<ObjectNode>set("message", message)
+                    .putNull("logprobs")
+                    .put("finish_reason", finishReason);
+            response.set("usage", usage(request, tokens.size()));
+            sendJson(exchange, 200, response);
+        }
+    }
+
+    private void stream(HttpExchange exchange, String id, String model, List<String> tokens, List<ObjectNode> toolCalls,
+                        String finishReason, Duration firstTokenDelay, ObjectNode usage) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        sleep(firstTokenDelay);
+
+        if (!toolCalls.isEmpty()) {
+            ArrayNode calls = objectMapper.createArrayNode();
+            for (int i = 0; i < toolCalls.size(); i++) {
+                calls.add(toolCalls.get(i).deepCopy().put("index", i));
+            }
+            ObjectNode delta = objectMapper.createObjectNode().put("role", "assistant").putNull("content");
+            delta.set("tool_calls", calls);
+            send(out, chunk(id, model, delta, null));
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                sleep(perToken());
+            }
+            ObjectNode delta = objectMapper.createObjectNode();
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            send(out, chunk(id, model, delta.put("content", tokens.get(i)), null));
+        }
+        send(out, chunk(id, model, objectMapper.createObjectNode(), finishReason));
+        if (usage != null) {
+            ObjectNode usageChunk = envelope(id, model, "chat.completion.chunk");
+            usageChunk.putArray("choices");
+            usageChunk.set("usage", usage);
+            send(out, usageChunk);
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private ObjectNode chunk(String id, String model, ObjectNode delta, String finishReason) {
+        ObjectNode chunk = envelope(id, model, "chat.completion.chunk");
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        choice.putNull("logprobs");
+        if (finishReason == null) {
+            choice.putNull("finish_reason");
+        } else {
+            choice.put("finish_reason", finishReason);
+        }
+        return chunk;
+    }
+
+    private ObjectNode envelope(String id, String model, String object) {
+        return objectMapper.createObjectNode()
+                .put("id", id)
+                .put("object", object)
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model);
+    }
+
+    private void send(OutputStream out, ObjectNode event) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendJson(HttpExchange exchange, int status, ObjectNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String message) throws IOException {
+        sendJson(exchange, status, objectMapper.createObjectNode().set("error", objectMapper.createObjectNode()
+                .put("message", message)
+                .put("type", type)
+                .putNull("code")));
+    }
+
+    private ObjectNode usage(JsonNode request, int completionTokens) {
+        int promptChars = 0;
+        for (JsonNode message : request.path("messages")) {
+            promptChars += message.path("content").asText("").length();
+        }
+        int promptTokens = (promptChars + 3) / 4;
+        return objectMapper.createObjectNode()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+
+    /**
+     * Tool calls to answer with, or none if the request offers no tools, already
+     * carries tool results, or tool calling is switched off.
+     */
+    private List<ObjectNode> toolCallsFor(JsonNode request) {
+        JsonNode tools = request.path("tools");
+        if (!tools.isArray() || tools.isEmpty() || "none".equals(options.toolCalls()) || !toolResults(request).isEmpty()) {
+            return List.of();
+        }
+        List<ObjectNode> calls = new ArrayList<>();
+        for (JsonNode tool : tools) {
+            JsonNode function = tool.path("function");
+            ObjectNode arguments = objectMapper.createObjectNode();
+            function.path("parameters").path("properties").properties()
+                    .forEach(property -> arguments.set(property.getKey(), sampleValue(property.getValue())));
+            ObjectNode call = objectMapper.createObjectNode()
+                    .put("id", "call_standin_" + ids.incrementAndGet())
+                    .put("type", "function");
+            call.putObject("function")
+                    .put("name", function.path("name").asText())
+                    .put("arguments", arguments.toString());
+            calls.add(call);
+            if (!"all".equals(options.toolCalls())) {
+                break;
+            }
+        }
+        return calls;
+    }
+
+    private JsonNode sampleValue(JsonNode schema) {
+        return switch (schema.path("type").asText("string")) {
+            case "integer" -> objectMapper.getNodeFactory().numberNode(1);
+            case "number" -> objectMapper.getNodeFactory().numberNode(1.5);
+            case "boolean" -> objectMapper.getNodeFactory().booleanNode(true);
+            case "array" -> objectMapper.createArrayNode();
+            case "object" -> objectMapper.createObjectNode();
+            default -> objectMapper.getNodeFactory().textNode("sample");
+        };
+    }
+
+    /**
+     * Contents of the tool messages after the last user message.
+     */
+    private static List<String> toolResults(JsonNode request) {
+        List<String> results = new ArrayList<>();
+        for (JsonNode message : request.path("messages")) {
+            String role = message.path("role").asText();
+            if ("user".equals(role)) {
+                results.clear();
+            } else if ("tool".equals(role)) {
+                results.add(message.path("content").asText());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Splits the answer into {@code count} tokens, each word with its leading space.
+     * Tool results are quoted first so callers can see they made it back.
+     */
+    private static List<String> tokens(List<String> toolResults, int count) {
+        List<String> words = new ArrayList<>();
+        if (!toolResults.isEmpty()) {
+            words.add("Tools");
+            words.add("said:");
+            for (String result : toolResults) {
+                words.addAll(List.of(result.trim().split("\\s+")));
+            }
+        }
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = i < words.size() ? words.get(i) : WORDS[(i - words.size()) % WORDS.length];
+            tokens.add(i == 0 ? word : " " + word);
+        }
+        return tokens;
+    }
+
+    private Duration perToken() {
+        return options.tokensPerSecond() <= 0 ? Duration.ZERO : Duration.ofNanos((long) (1e9 / options.tokensPerSecond()));
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        if (!duration.isZero()) {
+            Thread.sleep(duration);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.standin;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Behaviour of the {@link StandInServer}, parsed from {@code --name=value} arguments.
+ *
+ * @param port             port to listen on; 0 picks a free one
+ * @param timeToFirstToken delay before the first token (or the whole non-streaming response) starts
+ * @param tokensPerSecond  generation speed after the first token; 0 sends every token at once
+ * @param completionTokens tokens per answer, capped by the request's {@code max_tokens}
+ * @param errorRate        fraction of requests answered with {@code errorStatus} instead
+ * @param errorStatus      HTTP status of injected errors
+ * @param tailRate         fraction of requests whose first token is delayed by {@code tailLatency} more
+ * @param tailLatency      extra delay for tail requests
+ * @param toolCalls        when the request offers tools and has no tool result yet: {@code first}
+ *                         calls the first tool, {@code all} calls every tool, {@code none} never calls
+ * @param seed             seed for the error and tail draws, so runs are repeatable
+ */
+public record StandInOptions(
+        int port,
+        Duration timeToFirstToken,
+        double tokensPerSecond,
+        int completionTokens,
+        double errorRate,
+        int errorStatus,
+        double tailRate,
+        Duration tailLatency,
+        String toolCalls,
+        long seed) {
+
+    private static final Set<String> KNOWN = Set.of("port", "time-to-first-token", "tokens-per-second",
+            "completion-tokens", "error-rate", "error-status", "tail-rate", "tail-latency", "tool-calls", "seed");
+
+    public static StandInOptions defaults() {
+        return parse();
+    }
+
+    /**
+     * @param args {@code --name=value} pairs using the component names in kebab case,
+     *             e.g. {@code --time-to-first-token=300ms --tokens-per-second=40}
+     */
+    public static StandInOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'");
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        StandInOptions options = new StandInOptions(
+                Integer.parseInt(values.getOrDefault("port", "8099")),
+                duration(values.getOrDefault("time-to-first-token", "300ms")),
+                Double.parseDouble(values.getOrDefault("tokens-per-second", "50")),
+                Integer.parseInt(values.getOrDefault("completion-tokens", "64")),
+                Double.parseDouble(values.getOrDefault("error-rate", "0")),
+                Integer.parseInt(values.getOrDefault("error-status", "503")),
+                Double.parseDouble(values.getOrDefault("tail-rate", "0")),
+                duration(values.getOrDefault("tail-latency", "2s")),
+                values.getOrDefault("tool-calls", "first"),
+                Long.parseLong(values.getOrDefault("seed", "42")));
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        return options;
+    }
+
+    /**
+     * Parses {@code 250ms}, {@code 2s} or {@code 1m}.
+     */
+    public static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofMillis((long) (Double.parseDouble(value.substring(0, value.length() - 1)) * 1000));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofMillis(Long.parseLong(value));
+    }
+
+    /**
+     * @return a copy with a different port, handy for tests that need a free one
+     */
+    public StandInOptions withPort(int newPort) {
+        return new StandInOptions(newPort, timeToFirstToken, tokensPerSecond, completionTokens, errorRate,
+                errorStatus, tailRate, tailLatency, toolCalls, seed);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.standin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the OpenAI API and the Hugging Face router, so the chat apps can be
+ * load-tested without paying for tokens.
+ * <p>
+ * Serves {@code POST /v1/chat/completions} (and {@code /chat/completions}) through
+ * {@link ChatCompletionHandler}, and {@code GET /stand-in/stats} with the counters from
+ * {@link StandInStats}. Every request runs on its own virtual thread, so the stand-in is
+ * never the bottleneck. Start it with:
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=com.example.standin.StandInServer \
+ *     -Dexec.args="--time-to-first-token=300ms --tokens-per-second=40 --error-rate=0.01"
+ * </pre>
+ * See {@link StandInOptions} for every option.
+ */
+public final class StandInServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StandInStats stats = new StandInStats();
+
+    private StandInServer(StandInOptions options) throws IOException {
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(options.port()), 4096);
+        ChatCompletionHandler completions = new ChatCompletionHandler(options, stats);
+        server.createContext("/v1/chat/completions", completions);
+        server.createContext("/chat/completions", completions);
+        ObjectMapper objectMapper = new ObjectMapper();
+        server.createContext("/stand-in/stats", exchange -> {
+            try (exchange) {
+                byte[] body = objectMapper.writeValueAsBytes(stats.snapshot());
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        server.setExecutor(executor);
+    }
+
+    public static StandInServer start(StandInOptions options) throws IOException {
+        StandInServer standIn = new StandInServer(options);
+        standIn.server.start();
+        return standIn;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return base URL to configure the apps with, e.g. {@code spring.ai.openai.base-url}
+     */
+    public String baseUrl() {
+        return "http://localhost:" + port();
+    }
+
+    public StandInStats stats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        StandInOptions options = StandInOptions.parse(args);
+        StandInServer standIn = start(options);
+        Runtime.getRuntime().addShutdownHook(new Thread(standIn::close));
+        System.out.printf("LLM stand-in listening on %s/v1/chat/completions%n", standIn.baseUrl());
+        System.out.println(options);
+    }
+}
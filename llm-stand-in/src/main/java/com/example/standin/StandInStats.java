@@ -0,0 +1,63 @@
+package com.example.standin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters kept by the {@link StandInServer}, served as JSON from {@code /stand-in/stats}.
+ * A load run can read them before and after to see how many upstream calls the app under
+ * test really made, e.g. to check that caching or coalescing kicked in.
+ */
+public final class StandInStats {
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong streamed = new AtomicLong();
+    final AtomicLong toolCallResponses = new AtomicLong();
+    final AtomicLong injectedErrors = new AtomicLong();
+    final AtomicLong tailDelayed = new AtomicLong();
+    final AtomicLong disconnects = new AtomicLong();
+    final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    void begin() {
+        requests.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    void end() {
+        inFlight.decrementAndGet();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long toolCallResponses() {
+        return toolCallResponses.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new LinkedHashMap<>();
+        snapshot.put("requests", requests.get());
+        snapshot.put("streamed", streamed.get());
+        snapshot.put("toolCallResponses", toolCallResponses.get());
+        snapshot.put("injectedErrors", injectedErrors.get());
+        snapshot.put("tailDelayed", tailDelayed.get());
+        snapshot.put("disconnects", disconnects.get());
+        snapshot.put("completionTokens", completionTokens.get());
+        snapshot.put("inFlight", inFlight.get());
+        snapshot.put("peakInFlight", peakInFlight.get());
+        return snapshot;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.standin.load;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One endpoint to put under load.
+ *
+ * @param name     label in the report
+ * @param method   {@code GET} or {@code POST}
+ * @param url      URL with a {@code {prompt}} placeholder, replaced by the URL-encoded prompt;
+ *                 for {@code POST} the prompt is also sent as the plain-text body
+ */
+public record Endpoint(String name, String method, String url) {
+
+    /**
+     * Parses {@code name,METHOD,url}.
+     */
+    public static Endpoint parse(String spec) {
+        String[] parts = spec.split(",", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected name,METHOD,url but got '" + spec + "'");
+        }
+        return new Endpoint(parts[0], parts[1].toUpperCase(), parts[2]);
+    }
+
+    /**
+     * The endpoints of one of the chat apps in this repository.
+     *
+     * @param app     {@code basic} (basic-hf-chat-app), {@code mvc} (simple-chat-ai) or
+     *                {@code flux} (simple-flux-chat-ai)
+     * @param baseUrl where the app listens, e.g. {@code http://localhost:8080}
+     */
+    public static List<Endpoint> forApp(String app, String baseUrl) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        switch (app) {
+            case "basic" -> {
+                endpoints.add(new Endpoint("basic.generate", "GET", baseUrl + "/ai/generate?ask={prompt}"));
+                endpoints.add(new Endpoint("basic.generate-stream", "GET", baseUrl + "/ai/generate/stream?ask={prompt}"));
+            }
+            case "mvc" -> {
+                endpoints.add(new Endpoint("mvc.no-state", "GET", baseUrl + "/no-state-query?query={prompt}"));
+                endpoints.add(new Endpoint("mvc.state", "GET", baseUrl + "/state-query?query={prompt}"));
+                endpoints.add(new Endpoint("mvc.smart", "GET", baseUrl + "/smart-query?query={prompt}"));
+            }
+            case "flux" -> {
+                for (String path : List.of("no-state", "state", "smart")) {
+                    endpoints.add(new Endpoint("flux." + path + "-stream", "GET", baseUrl + "/" + path + "-query?message={prompt}"));
+                    endpoints.add(new Endpoint("flux." + path, "POST", baseUrl + "/" + path + "-query"));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown app '" + app + "'; expected basic, mvc or flux");
+        }
+        return endpoints;
+    }
+
+    URI uri(String prompt) {
+        return URI.create(url.replace("{prompt}", URLEncoder.encode(prompt, StandardCharsets.UTF_8)));
+    }
+}
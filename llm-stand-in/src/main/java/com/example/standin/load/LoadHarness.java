@@ -0,0 +1,217 @@
+package com.example.standin.load;
+
+import com.example.standin.StandInOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load generator for the chat apps.
+ * <p>
+ * For each endpoint, {@code concurrency} virtual threads send requests back to back until
+ * {@code requests} have completed (after {@code warmup} unmeasured ones). It reports
+ * throughput, p50/p90/p99 latency and time to first byte, which for the streaming
+ * endpoints is the time to the first Server-Sent Event, i.e. time to first token. With
+ * {@code --stand-in} pointing at a {@link com.example.standin.StandInServer}, it also
+ * reports how many upstream calls the endpoint made. With {@code --out}, one CSV row per
+ * endpoint is appended, tagged with {@code --label}, so runs of different builds can be
+ * compared side by side.
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=com.example.standin.load.LoadHarness \
+ *     -Dexec.args="--app=mvc --base-url=http://localhost:8080 --concurrency=64 --requests=2000 \
+ *                  --stand-in=http://localhost:8099 --label=main --out=load-results.csv"
+ * </pre>
+ */
+public final class LoadHarness {
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int concurrency;
+    private final int requests;
+    private final int warmup;
+    private final boolean uniquePrompts;
+    private final Duration timeout;
+    private final URI standInStats;
+
+    public LoadHarness(int concurrency, int requests, int warmup, boolean uniquePrompts, Duration timeout, String standInBaseUrl) {
+        this.concurrency = concurrency;
+        this.requests = requests;
+        this.warmup = warmup;
+        this.uniquePrompts = uniquePrompts;
+        this.timeout = timeout;
+        this.standInStats = standInBaseUrl == null ? null : URI.create(standInBaseUrl + "/stand-in/stats");
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public LoadReport run(Endpoint endpoint) throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        for (int i = 0; i < warmup; i++) {
+            send(endpoint, prompt(sequence.getAndIncrement()));
+        }
+
+        long upstreamBefore = upstreamCalls();
+        AtomicInteger remaining = new AtomicInteger(requests);
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[requests];
+        long[] ttfts = new long[requests];
+        AtomicInteger completed = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < concurrency; w++) {
+                running.add(workers.submit(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        long[] sample = send(endpoint, prompt(sequence.getAndIncrement()));
+                        if (sample == null) {
+                            errors.incrementAndGet();
+                        } else {
+                            int slot = completed.getAndIncrement();
+                            latencies[slot] = sample[0];
+                            ttfts[slot] = sample[1];
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        long upstreamAfter = upstreamCalls();
+        int ok = completed.get();
+        return LoadReport.of(endpoint.name(), concurrency, Arrays.copyOf(latencies, ok),
+                Arrays.copyOf(ttfts, ok), errors.get(), wallNanos,
+                upstreamBefore < 0 ? -1 : upstreamAfter - upstreamBefore);
+    }
+
+    private String prompt(int n) {
+        return uniquePrompts ? "Tell me joke number " + n : "Tell me a joke";
+    }
+
+    /**
+     * @return {@code [latencyNanos, timeToFirstByteNanos]}, or {@code null} if the request failed
+     */
+    private long[] send(Endpoint endpoint, String prompt) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(endpoint.uri(prompt)).timeout(timeout);
+        if ("POST".equals(endpoint.method())) {
+            request.header("Content-Type", "text/plain").POST(HttpRequest.BodyPublishers.ofString(prompt));
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            long firstByte = -1;
+            try (InputStream body = response.body()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    if (firstByte < 0 && read > 0) {
+                        firstByte = System.nanoTime() - start;
+                    }
+                }
+            }
+            long latency = System.nanoTime() - start;
+            return response.statusCode() / 100 == 2 ? new long[]{latency, firstByte < 0 ? latency : firstByte} : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private long upstreamCalls() {
+        if (standInStats == null) {
+            return -1;
+        }
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(standInStats).build(), HttpResponse.BodyHandlers.ofString());
+            return objectMapper.readTree(response.body()).path("requests").asLong();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * Options, as {@code --name=value}:
+     * <ul>
+     *   <li>{@code app} and {@code base-url}: load every endpoint of {@code basic}, {@code mvc} or {@code flux}</li>
+     *   <li>{@code endpoint}: {@code name,METHOD,url} instead of (or on top of) {@code app}; may repeat</li>
+     *   <li>{@code concurrency} (32), {@code requests} (500), {@code warmup} (20), {@code timeout} (60s)</li>
+     *   <li>{@code prompts}: {@code unique} (default) or {@code same}, to measure with or without cache hits</li>
+     *   <li>{@code stand-in}: base URL of the stand-in, to count upstream calls</li>
+     *   <li>{@code label} and {@code out}: append CSV rows to {@code out} tagged with {@code label}</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'");
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.equals("endpoint")) {
+                endpoints.add(Endpoint.parse(value));
+            } else {
+                options.put(name, value);
+            }
+        }
+        if (options.containsKey("app")) {
+            endpoints.addAll(0, Endpoint.forApp(options.get("app"), options.getOrDefault("base-url", "http://localhost:8080")));
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to load: pass --app=basic|mvc|flux or --endpoint=name,METHOD,url");
+        }
+
+        LoadHarness harness = new LoadHarness(
+                Integer.parseInt(options.getOrDefault("concurrency", "32")),
+                Integer.parseInt(options.getOrDefault("requests", "500")),
+                Integer.parseInt(options.getOrDefault("warmup", "20")),
+                !"same".equals(options.getOrDefault("prompts", "unique")),
+                StandInOptions.duration(options.getOrDefault("timeout", "60s")),
+                options.get("stand-in"));
+        String label = options.getOrDefault("label", "run");
+        Path out = options.containsKey("out") ? Path.of(options.get("out")) : null;
+
+        for (Endpoint endpoint : endpoints) {
+            LoadReport report = harness.run(endpoint);
+            System.out.println(report.toLine());
+            if (out != null) {
+                appendCsv(out, label, report);
+            }
+        }
+    }
+
+    static void appendCsv(Path out, String label, LoadReport report) throws IOException {
+        if (!Files.exists(out)) {
+            Files.writeString(out, LoadReport.CSV_HEADER + System.lineSeparator());
+        }
+        Files.writeString(out, report.toCsv(label) + System.lineSeparator(), StandardOpenOption.APPEND);
+    }
+}
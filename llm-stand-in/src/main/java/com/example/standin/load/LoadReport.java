@@ -0,0 +1,59 @@
+package com.example.standin.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Results of one endpoint's load run. Latencies and times to first byte are in
+ * milliseconds; {@code upstreamCalls} is -1 when no stand-in was watched.
+ */
+public record LoadReport(
+        String endpoint,
+        int concurrency,
+        int ok,
+        int errors,
+        double throughput,
+        long p50,
+        long p90,
+        long p99,
+        long ttftP50,
+        long ttftP99,
+        long upstreamCalls) {
+
+    static final String CSV_HEADER = "label,endpoint,concurrency,ok,errors,throughput_rps,p50_ms,p90_ms,p99_ms,ttft_p50_ms,ttft_p99_ms,upstream_calls";
+
+    static LoadReport of(String endpoint, int concurrency, long[] latencies, long[] ttfts, int errors,
+                         long wallNanos, long upstreamCalls) {
+        long[] sortedLatencies = latencies.clone();
+        long[] sortedTtfts = ttfts.clone();
+        Arrays.sort(sortedLatencies);
+        Arrays.sort(sortedTtfts);
+        return new LoadReport(endpoint, concurrency, latencies.length, errors,
+                latencies.length * 1e9 / Math.max(1, wallNanos),
+                percentile(sortedLatencies, 0.50), percentile(sortedLatencies, 0.90), percentile(sortedLatencies, 0.99),
+                percentile(sortedTtfts, 0.50), percentile(sortedTtfts, 0.99), upstreamCalls);
+    }
+
+    /**
+     * Nearest-rank percentile of nanosecond samples, in milliseconds; -1 if there are none.
+     */
+    static long percentile(long[] sortedNanos, double quantile) {
+        if (sortedNanos.length == 0) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(quantile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, rank))] / 1_000_000;
+    }
+
+    String toLine() {
+        return String.format(Locale.ROOT, "%-24s c=%-4d ok=%-6d err=%-5d %8.1f req/s  p50=%5dms p90=%5dms p99=%5dms  ttft p50=%5dms p99=%5dms%s",
+                endpoint, concurrency, ok, errors, throughput, p50, p90, p99, ttftP50, ttftP99,
+                upstreamCalls < 0 ? "" : "  upstream=" + upstreamCalls);
+    }
+
+    String toCsv(String label) {
+        return String.join(",", label, endpoint, Integer.toString(concurrency), Integer.toString(ok), Integer.toString(errors),
+                String.format(Locale.ROOT, "%.2f", throughput), Long.toString(p50), Long.toString(p90), Long.toString(p99),
+                Long.toString(ttftP50), Long.toString(ttftP99), Long.toString(upstreamCalls));
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StandInServerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private StandInServer standIn;
+
+    @AfterEach
+    void tearDown() {
+        if (standIn != null) {
+            standIn.close();
+        }
+    }
+
+    private void start(String... args) throws Exception {
+        standIn = StandInServer.start(StandInOptions.parse(args).withPort(0));
+    }
+
+    private HttpResponse<String> post(String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(standIn.baseUrl() + "/v1/chat/completions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<String> dataLines(String sse) {
+        List<String> lines = new ArrayList<>();
+        for (String line : sse.split("\n")) {
+            if (line.startsWith("data: ")) {
+                lines.add(line.substring("data: ".length()));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void completion_ReturnsOpenAiShapedResponse() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0", "--completion-tokens=5");
+
+        // When
+        HttpResponse<String> response = post("""
+                {"model":"gpt-4o","messages":[{"role":"user","content":"Tell me a joke"}]}""");
+
+        // Then
+        assertEquals(200, response.statusCode());
+        JsonNode completion = objectMapper.readTree(response.body());
+        assertEquals("chat.completion", completion.get("object").asText());
+        assertEquals("gpt-4o", completion.get("model").asText());
+        assertEquals("Why don't scientists trust atoms?", completion.at("/choices/0/message/content").asText());
+        assertEquals("stop", completion.at("/choices/0/finish_reason").asText());
+        assertEquals(5, completion.at("/usage/completion_tokens").asInt());
+        assertEquals(4, completion.at("/usage/prompt_tokens").asInt());
+    }
+
+    @Test
+    void completion_MaxTokensBelowAnswer_StopsForLength() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0", "--completion-tokens=20");
+
+        // When
+        JsonNode completion = objectMapper.readTree(post("""
+                {"model":"m","max_tokens":2,"messages":[{"role":"user","content":"hi"}]}""").body());
+
+        // Then
+        assertEquals("Why don't", completion.at("/choices/0/message/content").asText());
+        assertEquals("length", completion.at("/choices/0/finish_reason").asText());
+    }
+
+    @Test
+    void streaming_SendsOneChunkPerTokenThenDone() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0", "--completion-tokens=3");
+
+        // When
+        HttpResponse<String> response = post("""
+                {"model":"m","stream":true,"stream_options":{"include_usage":true},"messages":[{"role":"user","content":"hi"}]}""");
+
+        // Then
+        assertEquals("text/event-stream", response.headers().firstValue("Content-Type").orElseThrow());
+        List<String> events = dataLines(response.body());
+        assertEquals(6, events.size());
+        StringBuilder content = new StringBuilder();
+        for (String event : events.subList(0, 3)) {
+            JsonNode chunk = objectMapper.readTree(event);
+            assertEquals("chat.completion.chunk", chunk.get("object").asText());
+            content.append(chunk.at("/choices/0/delta/content").asText());
+        }
+        assertEquals("Why don't scientists", content.toString());
+        assertEquals("stop", objectMapper.readTree(events.get(3)).at("/choices/0/finish_reason").asText());
+        assertEquals(3, objectMapper.readTree(events.get(4)).at("/usage/completion_tokens").asInt());
+        assertEquals("[DONE]", events.get(5));
+    }
+
+    @Test
+    void streaming_HonoursTimeToFirstTokenAndTokenRate() throws Exception {
+        // Given - 200ms to the first token, then 4 more at 20 tokens/s
+        start("--time-to-first-token=200ms", "--tokens-per-second=20", "--completion-tokens=5");
+
+        // When
+        long start = System.nanoTime();
+        post("""
+                {"model":"m","stream":true,"messages":[{"role":"user","content":"hi"}]}""");
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertTrue(elapsedMillis >= 400, "finished after " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void tools_FirstRequestGetsToolCallWithSchemaArguments() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0");
+
+        // When
+        JsonNode completion = objectMapper.readTree(post("""
+                {"model":"m","messages":[{"role":"user","content":"How many railroad employees in Ohio?"}],
+                 "tools":[{"type":"function","function":{"name":"getRailroadEmployeeCounts",
+                   "parameters":{"type":"object","properties":{"employeeCount":{"type":"integer"},"state":{"type":"string"}}}}},
+                          {"type":"function","function":{"name":"getMyName","parameters":{"type":"object","properties":{}}}}]}""").body());
+
+        // Then
+        assertEquals("tool_calls", completion.at("/choices/0/finish_reason").asText());
+        JsonNode calls = completion.at("/choices/0/message/tool_calls");
+        assertEquals(1, calls.size());
+        assertEquals("getRailroadEmployeeCounts", calls.at("/0/function/name").asText());
+        JsonNode arguments = objectMapper.readTree(calls.at("/0/function/arguments").asText());
+        assertEquals(1, arguments.get("employeeCount").asInt());
+        assertEquals("sample", arguments.get("state").asText());
+        assertEquals(1, standIn.stats().toolCallResponses());
+    }
+
+    @Test
+    void tools_AfterToolResult_AnswersWithText() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0", "--completion-tokens=4");
+
+        // When
+        JsonNode completion = objectMapper.readTree(post("""
+                {"model":"m","messages":[{"role":"user","content":"What is my name?"},
+                  {"role":"assistant","content":null,"tool_calls":[{"id":"call_1","type":"function","function":{"name":"getMyName","arguments":"{}"}}]},
+                  {"role":"tool","tool_call_id":"call_1","content":"I am Kavitha"}],
+                 "tools":[{"type":"function","function":{"name":"getMyName","parameters":{"type":"object","properties":{}}}}]}""").body());
+
+        // Then
+        assertEquals("stop", completion.at("/choices/0/finish_reason").asText());
+        assertEquals("Tools said: I am", completion.at("/choices/0/message/content").asText());
+    }
+
+    @Test
+    void tools_StreamingCall_SendsToolCallChunk() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0", "--tool-calls=all");
+
+        // When
+        List<String> events = dataLines(post("""
+                {"model":"m","stream":true,"messages":[{"role":"user","content":"Who am I?"}],
+                 "tools":[{"type":"function","function":{"name":"getMyName","parameters":{"type":"object","properties":{}}}},
+                          {"type":"function","function":{"name":"getMyAge","parameters":{"type":"object","properties":{}}}}]}""").body());
+
+        // Then
+        JsonNode calls = objectMapper.readTree(events.get(0)).at("/choices/0/delta/tool_calls");
+        assertEquals(2, calls.size());
+        assertEquals(1, calls.at("/1/index").asInt());
+        assertEquals("getMyAge", calls.at("/1/function/name").asText());
+        assertEquals("tool_calls", objectMapper.readTree(events.get(1)).at("/choices/0/finish_reason").asText());
+        assertEquals("[DONE]", events.get(2));
+    }
+
+    @Test
+    void errorInjection_AnswersWithConfiguredStatus() throws Exception {
+        // Given
+        start("--error-rate=1", "--error-status=429");
+
+        // When
+        HttpResponse<String> response = post("""
+                {"model":"m","messages":[{"role":"user","content":"hi"}]}""");
+
+        // Then
+        assertEquals(429, response.statusCode());
+        assertEquals("server_error", objectMapper.readTree(response.body()).at("/error/type").asText());
+        assertEquals(1, standIn.stats().injectedErrors());
+    }
+
+    @Test
+    void tailLatency_DelaysTheConfiguredFraction() throws Exception {
+        // Given
+        start("--time-to-first-token=0ms", "--tokens-per-second=0", "--tail-rate=1", "--tail-latency=300ms");
+
+        // When
+        long start = System.nanoTime();
+        post("""
+                {"model":"m","messages":[{"role":"user","content":"hi"}]}""");
+
+        // Then
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 300);
+        JsonNode stats = objectMapper.readTree(client.send(HttpRequest.newBuilder(URI.create(standIn.baseUrl() + "/stand-in/stats")).build(),
+                HttpResponse.BodyHandlers.ofString()).body());
+        assertEquals(1, stats.get("tailDelayed").asInt());
+        assertEquals(1, stats.get("requests").asInt());
+    }
+
+    @Test
+    void options_ParsesDurationsAndRejectsUnknownNames() {
+        assertEquals(Duration.ofMillis(1500), StandInOptions.parse("--tail-latency=1.5s").tailLatency());
+        assertEquals(Duration.ofMillis(250), StandInOptions.parse("--time-to-first-token=250ms").timeToFirstToken());
+        assertThrows(IllegalArgumentException.class, () -> StandInOptions.parse("--ttft=1s"));
+    }
+}
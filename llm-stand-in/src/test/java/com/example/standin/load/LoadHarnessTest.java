@@ -0,0 +1,120 @@
+package com.example.standin.load;
+
+import com.example.standin.StandInOptions;
+import com.example.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadHarnessTest {
+
+    private StandInServer standIn;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        standIn = StandInServer.start(StandInOptions.parse(
+                "--port=0", "--time-to-first-token=20ms", "--tokens-per-second=0", "--completion-tokens=8"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        standIn.close();
+    }
+
+    private Endpoint statsEndpoint() {
+        // Any cheap GET will do; the stats page never touches the completion counters
+        return new Endpoint("stand-in.stats", "GET", standIn.baseUrl() + "/stand-in/stats?q={prompt}");
+    }
+
+    @Test
+    void run_CountsEveryMeasuredRequest() throws Exception {
+        // Given
+        LoadHarness harness = new LoadHarness(4, 40, 5, true, Duration.ofSeconds(5), null);
+
+        // When
+        LoadReport report = harness.run(statsEndpoint());
+
+        // Then
+        assertEquals(40, report.ok());
+        assertEquals(0, report.errors());
+        assertEquals(-1, report.upstreamCalls());
+        assertTrue(report.throughput() > 0);
+        assertTrue(report.p50() <= report.p99());
+        assertTrue(report.ttftP50() <= report.p99());
+    }
+
+    @Test
+    void run_FailedRequests_AreCountedAsErrors() throws Exception {
+        // Given - the stand-in only answers POST on the completions path
+        LoadHarness harness = new LoadHarness(2, 10, 0, true, Duration.ofSeconds(5), null);
+
+        // When
+        LoadReport report = harness.run(new Endpoint("wrong-method", "GET", standIn.baseUrl() + "/v1/chat/completions?q={prompt}"));
+
+        // Then
+        assertEquals(0, report.ok());
+        assertEquals(10, report.errors());
+        assertEquals(-1, report.p50());
+    }
+
+    @Test
+    void run_WithStandIn_ReportsUpstreamCalls() throws Exception {
+        // Given - an endpoint that makes one upstream call per request
+        LoadHarness harness = new LoadHarness(2, 6, 2, true, Duration.ofSeconds(5), standIn.baseUrl());
+        Endpoint completions = new Endpoint("completions", "POST", standIn.baseUrl() + "/v1/chat/completions?q={prompt}");
+
+        // When
+        LoadReport report = harness.run(completions);
+
+        // Then - the plain-text body is not JSON, so the stand-in counts the call but rejects it
+        assertEquals(6, report.upstreamCalls());
+        assertEquals(6, report.errors());
+    }
+
+    @Test
+    void appendCsv_WritesHeaderOnce(@TempDir Path dir) throws Exception {
+        // Given
+        Path out = dir.resolve("results.csv");
+        LoadReport report = LoadReport.of("e", 2, new long[]{1_000_000, 3_000_000}, new long[]{500_000, 700_000},
+                1, 1_000_000_000L, 2);
+
+        // When
+        LoadHarness.appendCsv(out, "main", report);
+        LoadHarness.appendCsv(out, "branch", report);
+
+        // Then
+        List<String> lines = Files.readAllLines(out);
+        assertEquals(3, lines.size());
+        assertEquals(LoadReport.CSV_HEADER, lines.get(0));
+        assertEquals("main,e,2,2,1,2.00,1,3,3,0,0,2", lines.get(1));
+        assertTrue(lines.get(2).startsWith("branch,"));
+    }
+
+    @Test
+    void percentile_UsesNearestRank() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = (i + 1) * 1_000_000L;
+        }
+        assertEquals(50, LoadReport.percentile(sorted, 0.50));
+        assertEquals(99, LoadReport.percentile(sorted, 0.99));
+        assertEquals(-1, LoadReport.percentile(new long[0], 0.50));
+    }
+
+    @Test
+    void forApp_KnowsEveryChatApp() {
+        assertEquals(2, Endpoint.forApp("basic", "http://h").size());
+        assertEquals(3, Endpoint.forApp("mvc", "http://h").size());
+        assertEquals(6, Endpoint.forApp("flux", "http://h").size());
+        assertEquals("http://h/state-query?query=a+b", Endpoint.forApp("mvc", "http://h").get(1).uri("a b").toString());
+        assertThrows(IllegalArgumentException.class, () -> Endpoint.forApp("other", "http://h"));
+    }
+}
@@ -0,0 +1,579 @@
+package com.example.chatbot.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest-neighbour index over unit vectors, by inner product, holding at most
+ * {@code capacity} entries.
+ * <p>
+ * A Hierarchical Navigable Small World graph (Malkov and Yashunin): every entry is linked
+ * to its nearest entries on level 0 and, with geometrically falling probability, on the
+ * levels above, so a search walks greedily down from a sparse top level and only widens to
+ * {@code ef} candidates on the bottom one. Vectors live back to back in one {@code float[]}
+ * and links in {@code int[]} lists, and search candidates are kept in heaps of primitive
+ * {@code long}s (similarity and slot packed together), so neither storage nor search box
+ * anything.
+ * <p>
+ * When the index is full, an entry is evicted with the CLOCK policy: entries
+ * {@link #touch touched} since the hand last passed them get a second chance, so entries
+ * that keep being hit stay while one-offs cycle out. An evicted or removed entry is
+ * unlinked from its neighbours, which are relinked among each other so the graph stays
+ * navigable, and its slot is reused.
+ * <p>
+ * Searches share a read lock and run in parallel; adds and removals take the write lock.
+ *
+ * @param <T> value kept with each vector
+ */
+final class HnswIndex<T> {
+
+    // Links per entry on the upper levels, twice that on level 0
+    private static final int M = 16;
+    private static final int M0 = 2 * M;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final int MAX_LEVEL = 16;
+    private static final int INITIAL_SLOTS = 1024;
+
+    private final int dimensions;
+    private final int capacity;
+    private final double levelMultiplier = 1 / Math.log(M);
+    private final SplittableRandom random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    // Per slot and level: [count, neighbour...]
+    private int[][] bottomLinks;
+    private int[][][] upperLinks;
+    private int[] levels;
+    private Object[] values;
+    private boolean[] live;
+    private boolean[] referenced;
+    private int[] freeSlots;
+    private int freeCount;
+    private int allocated;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int clockHand;
+    private long evictions;
+
+    HnswIndex(int dimensions, int capacity, long seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.dimensions = dimensions;
+        this.capacity = capacity;
+        this.random = new SplittableRandom(seed);
+        int slots = Math.min(capacity, INITIAL_SLOTS);
+        this.vectors = new float[slots * dimensions];
+        this.bottomLinks = new int[slots][];
+        this.upperLinks = new int[slots][][];
+        this.levels = new int[slots];
+        this.values = new Object[slots];
+        this.live = new boolean[slots];
+        this.referenced = new boolean[slots];
+        this.freeSlots = new int[slots];
+    }
+
+    /**
+     * An entry found by {@link #search}, with its similarity to the query.
+     */
+    record Match<T>(int slot, float similarity, T value) {
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long evictions() {
+        lock.readLock().lock();
+        try {
+            return evictions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an entry, evicting one first if the index is full.
+     *
+     * @param vector unit vector of {@code dimensions} floats; copied
+     */
+    void add(float[] vector, T value) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = allocateSlot();
+            int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier));
+            System.arraycopy(vector, 0, vectors, slot * dimensions, dimensions);
+            levels[slot] = level;
+            values[slot] = value;
+            referenced[slot] = false;
+            bottomLinks[slot] = new int[M0 + 1];
+            upperLinks[slot] = level == 0 ? null : new int[level][M + 1];
+            size++;
+            if (entryPoint < 0) {
+                live[slot] = true;
+                entryPoint = slot;
+                maxLevel = level;
+                return;
+            }
+
+            int offset = slot * dimensions;
+            int nearest = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                nearest = greedyClosest(vectors, offset, nearest, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                long[] candidates = searchLayer(vectors, offset, nearest, EF_CONSTRUCTION, l);
+                int[] neighbours = selectNeighbours(vectors, offset, candidates, maxLinks(l), slot);
+                setLinks(links(slot, l), neighbours);
+                for (int neighbour : neighbours) {
+                    connect(neighbour, slot, l);
+                }
+                nearest = slotOf(candidates[0]);
+            }
+            // Only now, so stale links to a reused slot do not lead searches into it half-built
+            live[slot] = true;
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param k  most matches to return
+     * @param ef candidates kept while searching the bottom level; higher is more accurate
+     * @return up to {@code k} entries, most similar first
+     */
+    List<Match<T>> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int nearest = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                nearest = greedyClosest(query, 0, nearest, l);
+            }
+            long[] found = searchLayer(query, 0, nearest, Math.max(ef, k), 0);
+            List<Match<T>> matches = new ArrayList<>(Math.min(k, found.length));
+            for (int i = 0; i < found.length && i < k; i++) {
+                int slot = slotOf(found[i]);
+                @SuppressWarnings("unchecked")
+                T value = (T) values[slot];
+                matches.add(new Match<>(slot, similarityOf(found[i]), value));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks an entry as used, so eviction passes it over once.
+     */
+    void touch(int slot) {
+        lock.readLock().lock();
+        try {
+            referenced[slot] = true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the value of an entry, if it still holds {@code expected}.
+     */
+    boolean replace(int slot, T expected, T value) {
+        lock.writeLock().lock();
+        try {
+            if (!live[slot] || values[slot] != expected) {
+                return false;
+            }
+            values[slot] = value;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry, if it still holds {@code expected}.
+     */
+    boolean remove(int slot, T expected) {
+        lock.writeLock().lock();
+        try {
+            if (!live[slot] || values[slot] != expected) {
+                return false;
+            }
+            unlink(slot);
+            freeSlots[freeCount++] = slot;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (allocated < capacity) {
+            if (allocated == levels.length) {
+                grow(Math.min(capacity, allocated * 2));
+            }
+            return allocated++;
+        }
+        // CLOCK: pass over entries touched since the last sweep, clearing their mark
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) % allocated;
+            if (referenced[slot]) {
+                referenced[slot] = false;
+            } else {
+                unlink(slot);
+                evictions++;
+                return slot;
+            }
+        }
+    }
+
+    private void grow(int slots) {
+        vectors = Arrays.copyOf(vectors, slots * dimensions);
+        bottomLinks = Arrays.copyOf(bottomLinks, slots);
+        upperLinks = Arrays.copyOf(upperLinks, slots);
+        levels = Arrays.copyOf(levels, slots);
+        values = Arrays.copyOf(values, slots);
+        live = Arrays.copyOf(live, slots);
+        referenced = Arrays.copyOf(referenced, slots);
+        freeSlots = Arrays.copyOf(freeSlots, slots);
+    }
+
+    /**
+     * Takes an entry out of the graph. Each neighbour that linked back to it is relinked to
+     * the best of its remaining neighbours and the removed entry's neighbours.
+     */
+    private void unlink(int slot) {
+        live[slot] = false;
+        values[slot] = null;
+        size--;
+        for (int l = 0; l <= levels[slot]; l++) {
+            int[] removedLinks = links(slot, l);
+            for (int i = 1; i <= removedLinks[0]; i++) {
+                int neighbour = removedLinks[i];
+                if (!isLinkable(neighbour, l)) {
+                    continue;
+                }
+                int[] links = links(neighbour, l);
+                if (!removeLink(links, slot)) {
+                    continue;
+                }
+                int offset = neighbour * dimensions;
+                long[] candidates = new long[links[0] + removedLinks[0]];
+                int count = 0;
+                for (int j = 1; j <= links[0]; j++) {
+                    candidates[count++] = key(dot(vectors, offset, links[j]), links[j]);
+                }
+                for (int j = 1; j <= removedLinks[0]; j++) {
+                    int candidate = removedLinks[j];
+                    if (candidate != neighbour && isLinkable(candidate, l) && !contains(links, candidate)) {
+                        candidates[count++] = key(dot(vectors, offset, candidate), candidate);
+                    }
+                }
+                setLinks(links, selectNeighbours(vectors, offset, sortDescending(candidates, count),
+                        maxLinks(l), neighbour));
+            }
+        }
+        if (slot == entryPoint) {
+            entryPoint = -1;
+            maxLevel = -1;
+            for (int s = 0; s < allocated; s++) {
+                if (live[s] && levels[s] > maxLevel) {
+                    entryPoint = s;
+                    maxLevel = levels[s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a link from {@code from} to {@code to}; a full link list keeps the best
+     * {@code maxLinks} of its links and the new one.
+     */
+    private void connect(int from, int to, int level) {
+        int[] links = links(from, level);
+        if (contains(links, to)) {
+            return;
+        }
+        int max = maxLinks(level);
+        if (links[0] < max) {
+            links[++links[0]] = to;
+            return;
+        }
+        int offset = from * dimensions;
+        long[] candidates = new long[links[0] + 1];
+        for (int i = 1; i <= links[0]; i++) {
+            candidates[i - 1] = key(dot(vectors, offset, links[i]), links[i]);
+        }
+        candidates[links[0]] = key(dot(vectors, offset, to), to);
+        setLinks(links, selectNeighbours(vectors, offset, sortDescending(candidates, candidates.length), max, from));
+    }
+
+    /**
+     * HNSW's neighbour selection heuristic: a candidate is kept only if it is closer to the
+     * base than to every candidate already kept, which spreads links in all directions;
+     * remaining room is then filled with the closest candidates left.
+     *
+     * @param candidates keys sorted by descending similarity to the base
+     */
+    private int[] selectNeighbours(float[] base, int baseOffset, long[] candidates, int max, int self) {
+        int[] selected = new int[Math.min(max, candidates.length)];
+        boolean[] taken = new boolean[candidates.length];
+        int count = 0;
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            int candidate = slotOf(candidates[i]);
+            if (candidate == self) {
+                taken[i] = true;
+                continue;
+            }
+            float similarity = similarityOf(candidates[i]);
+            boolean diverse = true;
+            for (int j = 0; j < count && diverse; j++) {
+                diverse = dot(vectors, candidate * dimensions, selected[j]) <= similarity;
+            }
+            if (diverse) {
+                selected[count++] = candidate;
+                taken[i] = true;
+            }
+        }
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            if (!taken[i]) {
+                selected[count++] = slotOf(candidates[i]);
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private int greedyClosest(float[] query, int offset, int start, int level) {
+        int closest = start;
+        float best = dot(query, offset, start);
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            int[] links = links(closest, level);
+            for (int i = 1; i <= links[0]; i++) {
+                int neighbour = links[i];
+                if (isLinkable(neighbour, level)) {
+                    float similarity = dot(query, offset, neighbour);
+                    if (similarity > best) {
+                        best = similarity;
+                        closest = neighbour;
+                        moved = true;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Best-first search of one level from {@code start}, keeping the {@code ef} most similar
+     * entries seen.
+     *
+     * @return keys sorted by descending similarity
+     */
+    private long[] searchLayer(float[] query, int offset, int start, int ef, int level) {
+        BitSet visited = new BitSet(allocated);
+        // Candidates to expand, best first (keys negated in a min-heap), and results so far,
+        // worst first
+        LongHeap candidates = new LongHeap();
+        LongHeap results = new LongHeap();
+        visited.set(start);
+        long startKey = key(dot(query, offset, start), start);
+        candidates.push(-startKey);
+        results.push(startKey);
+        while (candidates.size() > 0) {
+            long current = -candidates.pop();
+            if (results.size() >= ef && current < results.peek()) {
+                break;
+            }
+            int[] links = links(slotOf(current), level);
+            for (int i = 1; i <= links[0]; i++) {
+                int neighbour = links[i];
+                if (visited.get(neighbour) || !isLinkable(neighbour, level)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                long key = key(dot(query, offset, neighbour), neighbour);
+                if (results.size() < ef || key > results.peek()) {
+                    candidates.push(-key);
+                    results.push(key);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        long[] sorted = new long[results.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = results.pop();
+        }
+        return sorted;
+    }
+
+    private boolean isLinkable(int slot, int level) {
+        // A slot reused since a stale link to it was made may now sit on fewer levels
+        return live[slot] && levels[slot] >= level;
+    }
+
+    private int[] links(int slot, int level) {
+        return level == 0 ? bottomLinks[slot] : upperLinks[slot][level - 1];
+    }
+
+    private static int maxLinks(int level) {
+        return level == 0 ? M0 : M;
+    }
+
+    private static void setLinks(int[] links, int[] neighbours) {
+        System.arraycopy(neighbours, 0, links, 1, neighbours.length);
+        links[0] = neighbours.length;
+    }
+
+    private static boolean contains(int[] links, int slot) {
+        for (int i = 1; i <= links[0]; i++) {
+            if (links[i] == slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean removeLink(int[] links, int slot) {
+        for (int i = 1; i <= links[0]; i++) {
+            if (links[i] == slot) {
+                links[i] = links[links[0]--];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] sortDescending(long[] keys, int count) {
+        long[] sorted = Arrays.copyOf(keys, count);
+        Arrays.sort(sorted);
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            long swap = sorted[i];
+            sorted[i] = sorted[j];
+            sorted[j] = swap;
+        }
+        return sorted;
+    }
+
+    private float dot(float[] query, int offset, int slot) {
+        float[] stored = vectors;
+        int base = slot * dimensions;
+        // Four accumulators, so the sum is not one long dependency chain
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < dimensions; i += 4) {
+            s0 += query[offset + i] * stored[base + i];
+            s1 += query[offset + i + 1] * stored[base + i + 1];
+            s2 += query[offset + i + 2] * stored[base + i + 2];
+            s3 += query[offset + i + 3] * stored[base + i + 3];
+        }
+        for (; i < dimensions; i++) {
+            s0 += query[offset + i] * stored[base + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Packs a similarity and a slot into a {@code long} that sorts by similarity: the float's
+     * bits, flipped for negative values so they compare as signed ints, then the slot.
+     */
+    private static long key(float similarity, int slot) {
+        int bits = Float.floatToIntBits(similarity);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (slot & 0xffffffffL);
+    }
+
+    private static float similarityOf(long key) {
+        int bits = (int) (key >> 32);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static int slotOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Binary min-heap of {@code long}s.
+     */
+    private static final class LongHeap {
+
+        private long[] heap = new long[32];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
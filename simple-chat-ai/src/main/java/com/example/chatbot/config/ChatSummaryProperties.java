@@ -0,0 +1,30 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Background summarization of long conversations, {@code app.chat-memory.summary.*}, read
+ * by {@link com.example.chatbot.memory.ConversationSummarizer} when
+ * {@code app.chat-memory.compaction=summarize}.
+ *
+ * @param model            cheaper chat model that writes the summaries
+ * @param triggerRatio     share of the token budget a history may fill before its older turns
+ *                         are summarized
+ * @param keepRatio        share of the token budget of the most recent turns kept word for word
+ * @param maxSummaryTokens longest summary to ask for
+ * @param maxPerSecond     summarization calls started per second, across all conversations
+ * @param concurrency      summarization calls in flight at once
+ * @param queueCapacity    summarizations waiting to start; when full, a history is summarized
+ *                         on a later turn instead
+ */
+@ConfigurationProperties("app.chat-memory.summary")
+public record ChatSummaryProperties(
+        @DefaultValue("gpt-4o-mini") String model,
+        @DefaultValue("0.75") double triggerRatio,
+        @DefaultValue("0.4") double keepRatio,
+        @DefaultValue("256") int maxSummaryTokens,
+        @DefaultValue("2") double maxPerSecond,
+        @DefaultValue("4") int concurrency,
+        @DefaultValue("256") int queueCapacity) {
+}
@@ -0,0 +1,24 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Prompt-token budgets for conversation history, {@code app.chat-memory.token-budget.*},
+ * read by {@link com.example.chatbot.memory.TokenCounter}.
+ *
+ * @param defaultTokens history tokens kept for a model without its own budget
+ * @param models        budget per model name; names with dots need brackets, e.g.
+ *                      {@code models[gpt-4.1]=4000}
+ */
+@ConfigurationProperties("app.chat-memory.token-budget")
+public record TokenBudgetProperties(
+        @DefaultValue("1000") int defaultTokens,
+        @DefaultValue Map<String, Integer> models) {
+
+    public int forModel(String model) {
+        return models.getOrDefault(model, defaultTokens);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Cache of tool results, {@code app.tool-cache.*}, read by
+ * {@link com.example.chatbot.tools.ToolResultCache}.
+ *
+ * @param enabled    whether to reuse the results of {@link com.example.chatbot.tools.Memoized} tools at all
+ * @param maxEntries results kept across all tools; beyond that the least used go first
+ * @param defaultTtl how long a result is reused when its tool declares neither a ttl nor purity
+ */
+@ConfigurationProperties("app.tool-cache")
+public record ToolCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10000") int maxEntries,
+        @DefaultValue("10m") Duration defaultTtl) {
+}
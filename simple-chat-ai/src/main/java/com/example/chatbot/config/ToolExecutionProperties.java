@@ -0,0 +1,26 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * How the tool calls of one model turn are run, {@code app.tool-execution.*}, read by
+ * {@link com.example.chatbot.tools.ParallelToolCallingManager}.
+ *
+ * @param parallelism tool calls of one turn run at the same time; 1 runs them one after another
+ * @param timeout     how long a tool call may run before it is cancelled
+ * @param timeouts    per-tool overrides of {@code timeout}, by tool name
+ */
+@ConfigurationProperties("app.tool-execution")
+public record ToolExecutionProperties(
+        @DefaultValue("4") int parallelism,
+        @DefaultValue("30s") Duration timeout,
+        @DefaultValue Map<String, Duration> timeouts) {
+
+    public Duration timeoutFor(String toolName) {
+        return timeouts.getOrDefault(toolName, timeout);
+    }
+}
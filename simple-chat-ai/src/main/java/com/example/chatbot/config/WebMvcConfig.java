@@ -0,0 +1,20 @@
+package com.example.chatbot.config;
+
+import com.example.chatbot.memory.ConversationIdArgumentResolver;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets controllers take a {@link com.example.chatbot.memory.ConversationId} argument.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new ConversationIdArgumentResolver());
+    }
+}
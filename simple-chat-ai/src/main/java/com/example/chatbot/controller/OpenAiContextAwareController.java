@@ -1,9 +1,14 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.StripedChatMemory;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.memory.TokenWindowChatMemory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -11,28 +16,33 @@ import org.springframework.web.bind.annotation.RestController;
 /**
  * REST Controller for handling context-aware chat interactions with OpenAI.
  * This controller maintains conversation history to provide context-aware responses.
- * It uses MessageWindowChatMemory to keep track of the last 2 messages in the conversation.
+ * It uses TokenWindowChatMemory to keep as many recent messages of each conversation as fit the model's token budget,
+ * where the conversation is picked per caller through {@link ConversationId}.
  * 
  * @author Your Name
  * @version 1.0
  */
 @RestController
 public class OpenAiContextAwareController {
+
+    // Keeps this endpoint's history apart from the other stateful endpoint's in the shared repository
+    private static final String MEMORY_SCOPE = "state";
     
     private final ChatClient chatClient;
-    //we can use a user id for conversation id, to remember per user conversation
-    private static final String CONVERSATION_ID = "12345";
 
     /**
      * Constructs a new OpenAiContextAwareController with the specified ChatClient builder.
-     * Initializes a chat memory that retains the last 2 messages in the conversation.
+     * Initializes a chat memory that retains the most recent messages of each conversation within the token budget.
      *
      * @param builder The ChatClient builder for creating chat client instances
+     * @param chatMemoryRepository Where the conversation histories are kept, shared with the other stateful endpoints
+     * @param tokenCounter Token counts and history budget of the configured model
+     * @param historyCompactor Shrinks long histories before the token budget trims them, e.g. by summarizing older turns
      */
-    public OpenAiContextAwareController(ChatClient.Builder builder) {
-        ChatMemory chatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(2)  // Keep the last 2 messages for context
-                .build();
+    public OpenAiContextAwareController(ChatClient.Builder builder, ChatMemoryRepository chatMemoryRepository,
+                                        TokenCounter tokenCounter, HistoryCompactor historyCompactor) {
+        ChatMemory chatMemory = new StripedChatMemory(new TokenWindowChatMemory(chatMemoryRepository, tokenCounter,
+                historyCompactor));
                 
         this.chatClient = builder
                 .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
@@ -44,12 +54,13 @@ public class OpenAiContextAwareController {
      * Maintains the conversation state using the configured chat memory.
      *
      * @param query The user's message/query
+     * @param conversationId The caller's conversation, from the X-Conversation-Id header or the session
      * @return The AI's response as a String
      */
     @GetMapping(value = "/state-query")
-    public String chat(@RequestParam String query) {
+    public String chat(@RequestParam String query, ConversationId conversationId) {
         return chatClient.prompt(query)
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, CONVERSATION_ID))
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId.scoped(MEMORY_SCOPE)))
                 .call()
                 .content();
     }
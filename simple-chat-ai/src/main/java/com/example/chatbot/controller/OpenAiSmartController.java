@@ -1,10 +1,17 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.StripedChatMemory;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.memory.TokenWindowChatMemory;
 import com.example.chatbot.tools.InformationDesk;
+import com.example.chatbot.tools.StaticToolFolder;
+import com.example.chatbot.tools.ToolResultCache;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -19,29 +26,46 @@ import org.springframework.web.bind.annotation.RestController;
  */
 @RestController
 public class OpenAiSmartController {
+
+    // Keeps this endpoint's history apart from the other stateful endpoint's in the shared repository
+    private static final String MEMORY_SCOPE = "smart";
     
-    private static final String CONVERSATION_ID = "12345";
     private static final String SYSTEM_PROMPT = 
             "Use all tools available when you can't figure out answer and provide approximate answer if you don't know the answer";
     
     private final ChatClient chatClient;
 
+    // SYSTEM_PROMPT after the answers of the tools folded into it; the same on every request
+    private final String systemPrompt;
+
     /**
      * Constructs a new OpenAiSmartController with the specified ChatClient builder.
      * Initializes the chat client with conversation memory and custom tools.
      *
      * @param builder The ChatClient builder for creating chat client instances
+     * @param chatMemoryRepository Where the conversation histories are kept, shared with the other stateful endpoints
+     * @param tokenCounter Token counts and history budget of the configured model
+     * @param historyCompactor Shrinks long histories before the token budget trims them, e.g. by summarizing older turns
+     * @param toolResultCache Reuses the results of memoized tools across calls and conversations
+     * @param informationDesk The tools the model can use
+     * @param staticToolFolder Moves the answers of argument-free tools into the system prompt
      */
-    public OpenAiSmartController(ChatClient.Builder builder) {
-        // Initialize chat memory to keep track of the last 2 messages
-        ChatMemory chatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(2)
-                .build();
+    public OpenAiSmartController(ChatClient.Builder builder, ChatMemoryRepository chatMemoryRepository,
+                                 TokenCounter tokenCounter, HistoryCompactor historyCompactor,
+                                 ToolResultCache toolResultCache, InformationDesk informationDesk,
+                                 StaticToolFolder staticToolFolder) {
+        // Initialize chat memory to keep the most recent messages of each conversation within the token budget
+        ChatMemory chatMemory = new StripedChatMemory(new TokenWindowChatMemory(chatMemoryRepository, tokenCounter,
+                historyCompactor));
+
+        // Answer the tools that always give the same answer up front, saving the model a round-trip
+        StaticToolFolder.Folded tools = staticToolFolder.fold(toolResultCache.memoize(informationDesk), informationDesk);
+        this.systemPrompt = tools.systemPrompt(SYSTEM_PROMPT);
                 
         // Build the chat client with memory advisor and custom tools
         this.chatClient = builder
                 .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
-                .defaultTools(new InformationDesk())
+                .defaultToolCallbacks(tools.toolCallbacks())
                 .build();
     }
 
@@ -50,13 +74,14 @@ public class OpenAiSmartController {
      * Maintains conversation context and can utilize additional tools when needed.
      *
      * @param query The user's message/query
+     * @param conversationId The caller's conversation, from the X-Conversation-Id header or the session
      * @return The AI's response as a String, potentially enhanced with tool usage
      */
     @GetMapping(value = "/smart-query")
-    public String chat(@RequestParam String query) {
+    public String chat(@RequestParam String query, ConversationId conversationId) {
         return chatClient.prompt(query)
-                .system(SYSTEM_PROMPT)
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, CONVERSATION_ID))
+                .system(systemPrompt)
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId.scoped(MEMORY_SCOPE)))
                 .call()
                 .content();
     }
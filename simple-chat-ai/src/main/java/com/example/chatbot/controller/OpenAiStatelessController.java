@@ -1,5 +1,6 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.cache.SemanticCache;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
  * REST Controller for handling stateless chat interactions with OpenAI.
  * This controller treats each request independently without maintaining any conversation history.
  * It's ideal for simple question-answer scenarios where context from previous interactions is not required.
+ * Answers are kept in a {@link SemanticCache}, so a query that rephrases an earlier one is answered without calling the model.
  * 
  * @author Your Name
  * @version 1.0
@@ -17,15 +19,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class OpenAiStatelessController {
     
     private final ChatClient chatClient;
+    private final SemanticCache semanticCache;
 
     /**
      * Constructs a new OpenAiStatelessController with the specified ChatClient builder.
      * Initializes a stateless chat client without any conversation memory.
      *
      * @param builder The ChatClient builder for creating chat client instances
+     * @param semanticCache Answers to earlier queries, matched by meaning
      */
-    public OpenAiStatelessController(ChatClient.Builder builder) {
+    public OpenAiStatelessController(ChatClient.Builder builder, SemanticCache semanticCache) {
         this.chatClient = builder.build();
+        this.semanticCache = semanticCache;
     }
 
     /**
@@ -37,8 +42,14 @@ public class OpenAiStatelessController {
      */
     @GetMapping(value = "/no-state-query")
     public String chat(@RequestParam String query) {
-        return chatClient.prompt(query)
+        String cached = semanticCache.get(query);
+        if (cached != null) {
+            return cached;
+        }
+        String answer = chatClient.prompt(query)
                 .call()
                 .content();
+        semanticCache.put(query, answer);
+        return answer;
     }
 }
@@ -0,0 +1,304 @@
+package com.example.chatbot.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ChatMemoryRepository} with a bounded heap footprint, shared by the stateful
+ * controllers.
+ * <p>
+ * Histories live in a Caffeine cache weighed by their approximate heap size and capped at
+ * {@code app.chat-memory.max-size} bytes in total. A conversation nobody touched for
+ * {@code app.chat-memory.idle-ttl} expires, and when the budget is full the least
+ * valuable conversation goes first (Caffeine's W-TinyLFU, which favours recently and
+ * frequently used entries over plain LRU).
+ * <p>
+ * If {@code app.chat-memory.spill-directory} is set, evicted or expired histories are
+ * written there instead of being dropped, and read back when their user returns. Resident
+ * histories are spilled too when the application shuts down. Spilled files untouched for
+ * {@code app.chat-memory.spill-retention} are deleted at startup.
+ * <p>
+ * When a meter registry is available, publishes {@code chat.memory.conversations} and
+ * {@code chat.memory.bytes} gauges and {@code chat.memory.evictions},
+ * {@code chat.memory.spills} and {@code chat.memory.restores} counters.
+ * <p>
+ * This is the default store; {@code app.chat-memory.store=journal} swaps in
+ * {@link JournalChatMemoryRepository} instead.
+ */
+@Component
+@ConditionalOnProperty(name = "app.chat-memory.store", havingValue = "memory", matchIfMissing = true)
+public class BoundedChatMemoryRepository implements ChatMemoryRepository, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedChatMemoryRepository.class);
+
+    // Cache node, key string and list bookkeeping per conversation
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final String SPILL_SUFFIX = ".history";
+
+    private final Cache<String, List<Message>> cache;
+    private final Path spillDirectory;
+    private final Duration spillRetention;
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder spills = new LongAdder();
+    private final LongAdder restores = new LongAdder();
+
+    @Autowired
+    public BoundedChatMemoryRepository(
+            @Value("${app.chat-memory.max-size:64MB}") DataSize maxSize,
+            @Value("${app.chat-memory.idle-ttl:30m}") Duration idleTtl,
+            @Value("${app.chat-memory.spill-directory:}") String spillDirectory,
+            @Value("${app.chat-memory.spill-retention:7d}") Duration spillRetention,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this(maxSize, idleTtl, spillDirectory.isBlank() ? null : Path.of(spillDirectory), spillRetention,
+                meterRegistry.getIfAvailable(), Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    BoundedChatMemoryRepository(DataSize maxSize, Duration idleTtl, Path spillDirectory, Duration spillRetention,
+                                MeterRegistry meterRegistry, Ticker ticker, Executor executor) {
+        this.spillDirectory = spillDirectory;
+        this.spillRetention = spillRetention;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher(BoundedChatMemoryRepository::weigh)
+                .expireAfterAccess(idleTtl)
+                // Expire idle conversations on time rather than on the next write
+                .scheduler(Scheduler.systemScheduler())
+                .ticker(ticker)
+                .executor(executor)
+                // Runs atomically with the removal, so a returning user finds either the
+                // resident history or the spilled file, never neither
+                .evictionListener(this::onEviction)
+                .build();
+        if (spillDirectory != null) {
+            try {
+                Files.createDirectories(spillDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create chat memory spill directory " + spillDirectory, e);
+            }
+            deleteExpiredSpills();
+        }
+        if (meterRegistry != null) {
+            registerMetrics(meterRegistry);
+        }
+    }
+
+    private static int weigh(String conversationId, List<Message> messages) {
+        int bytes = ENTRY_OVERHEAD_BYTES + 2 * conversationId.length();
+        for (Message message : messages) {
+            bytes += MessageCodec.estimatedBytes(message);
+        }
+        return bytes;
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return List.copyOf(cache.asMap().keySet());
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Message> messages = spillDirectory == null
+                ? cache.getIfPresent(conversationId)
+                : cache.get(conversationId, this::restore);
+        return messages == null ? List.of() : messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        cache.put(conversationId, List.copyOf(messages));
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        cache.invalidate(conversationId);
+        if (spillDirectory != null) {
+            try {
+                Files.deleteIfExists(spillFile(conversationId));
+            } catch (IOException e) {
+                log.warn("Could not delete spilled history of conversation {}: {}", conversationId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Spills every resident history, so conversations survive a restart when a spill
+     * directory is configured.
+     */
+    @Override
+    public void close() {
+        if (spillDirectory == null) {
+            return;
+        }
+        cache.asMap().forEach(this::spill);
+        log.info("Spilled {} chat histories to {}", cache.estimatedSize(), spillDirectory);
+    }
+
+    private void onEviction(String conversationId, List<Message> messages, RemovalCause cause) {
+        if (cause == RemovalCause.EXPIRED) {
+            expirations.increment();
+        } else {
+            sizeEvictions.increment();
+        }
+        if (spillDirectory != null && conversationId != null && messages != null) {
+            spill(conversationId, messages);
+        }
+    }
+
+    private void spill(String conversationId, List<Message> messages) {
+        Path file = spillFile(conversationId);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeUTF(conversationId);
+            MessageCodec.writeAll(out, messages);
+        } catch (IOException e) {
+            log.warn("Could not spill history of conversation {}, dropping it: {}", conversationId, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spills.increment();
+        } catch (IOException e) {
+            log.warn("Could not spill history of conversation {}, dropping it: {}", conversationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a spilled history back into the cache; the file is removed as the resident
+     * copy is now the authoritative one.
+     */
+    private List<Message> restore(String conversationId) {
+        Path file = spillFile(conversationId);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!conversationId.equals(in.readUTF())) {
+                // SHA-256 collision, or a file from elsewhere
+                return null;
+            }
+            List<Message> messages = List.copyOf(MessageCodec.readAll(in));
+            Files.delete(file);
+            restores.increment();
+            return messages;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not restore spilled history of conversation {}: {}", conversationId, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path spillFile(String conversationId) {
+        // Conversation IDs come from a header, so never use them as file names directly
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(conversationId.getBytes(StandardCharsets.UTF_8));
+            return spillDirectory.resolve(HexFormat.of().formatHex(digest) + SPILL_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteExpiredSpills() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(spillRetention));
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean up chat memory spill directory {}: {}", spillDirectory, e.getMessage());
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} spilled chat histories older than {}", deleted, spillRetention);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("chat.memory.conversations", cache, Cache::estimatedSize)
+                .description("Conversations whose history is resident on the heap")
+                .register(registry);
+        Gauge.builder("chat.memory.bytes", this, BoundedChatMemoryRepository::residentBytes)
+                .description("Approximate heap bytes held by resident chat histories")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.evictions", sizeEvictions, LongAdder::sum)
+                .description("Histories evicted to stay within the byte budget")
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.evictions", expirations, LongAdder::sum)
+                .description("Histories evicted after being idle for the TTL")
+                .tag("cause", "expired")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.spills", spills, LongAdder::sum)
+                .description("Histories written to the spill directory")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.restores", restores, LongAdder::sum)
+                .description("Histories read back from the spill directory")
+                .register(registry);
+    }
+
+    long residentBytes() {
+        return cache.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    long residentConversations() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    long evictions() {
+        return sizeEvictions.sum() + expirations.sum();
+    }
+
+    long spills() {
+        return spills.sum();
+    }
+
+    long restores() {
+        return restores.sum();
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.chatbot.memory;
+
+/**
+ * Identifies whose chat history a request reads and extends.
+ * <p>
+ * Controllers take it as a handler argument; {@link ConversationIdArgumentResolver} fills
+ * it from the {@value #HEADER} header, or from the HTTP session when the header is absent.
+ * The header is trusted as is, so it is meant to be set by a gateway that has already
+ * authenticated the user, not by browsers.
+ *
+ * @param value the conversation ID passed to the chat memory advisor
+ */
+public record ConversationId(String value) {
+
+    public static final String HEADER = "X-Conversation-Id";
+
+    /**
+     * Longer header values are rejected, so a client cannot make the memory keep
+     * arbitrarily large keys.
+     */
+    public static final int MAX_LENGTH = 128;
+
+    /**
+     * Key of this conversation in a chat memory shared by several endpoints, so each
+     * endpoint keeps its own history for the same caller.
+     *
+     * @param scope the endpoint's name, e.g. {@code "smart"}
+     */
+    public String scoped(String scope) {
+        return scope + ":" + value;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chatbot.memory;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Resolves {@link ConversationId} handler arguments: the {@value ConversationId#HEADER}
+ * header when present, otherwise the ID of the caller's HTTP session, which is created on
+ * first use so a browser keeps its conversation through the session cookie.
+ */
+public class ConversationIdArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return ConversationId.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public ConversationId resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                          NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        String header = webRequest.getHeader(ConversationId.HEADER);
+        if (StringUtils.hasText(header)) {
+            String id = header.trim();
+            if (id.length() > ConversationId.MAX_LENGTH) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        ConversationId.HEADER + " must be at most " + ConversationId.MAX_LENGTH + " characters");
+            }
+            return new ConversationId(id);
+        }
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        return new ConversationId(request.getSession(true).getId());
+    }
+}
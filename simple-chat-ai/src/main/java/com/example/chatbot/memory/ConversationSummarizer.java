@@ -0,0 +1,330 @@
+package com.example.chatbot.memory;
+
+import com.example.chatbot.config.ChatSummaryProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link HistoryCompactor} that keeps long conversations within their token budget by
+ * folding older turns into a rolling summary, instead of letting the budget cut them off.
+ * <p>
+ * Once a history fills {@code trigger-ratio} of the {@link TokenCounter#budget()}, everything
+ * but the most recent {@code keep-ratio} of it, including any earlier summary, is handed to
+ * the cheaper {@code model} on a background pool. Requests never wait for it: the history is
+ * stored as it is (and trimmed as usual if it outgrows the budget meanwhile), and the
+ * conversation's first update after the summary is ready swaps the summarized messages for a
+ * single system message holding it. Calls are rate limited to {@code max-per-second} and at
+ * most one summarization runs per conversation; a failed or rejected one is simply retried
+ * on a later turn.
+ * <p>
+ * When a meter registry is available, publishes {@code chat.memory.summaries},
+ * {@code chat.memory.summary.failures}, {@code chat.memory.summary.rejected} and
+ * {@code chat.memory.summary.pending}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.chat-memory.compaction", havingValue = "summarize")
+public class ConversationSummarizer implements HistoryCompactor, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationSummarizer.class);
+
+    static final String SUMMARY_PREFIX = "Summary of the conversation so far: ";
+    private static final String INSTRUCTIONS = """
+            Summarize the conversation below for the assistant that continues it. Keep every \
+            fact, name, number, preference and open question it will need, fold in the earlier \
+            summary if there is one, and leave out greetings and filler. Answer with the summary \
+            only, in a few short sentences.""";
+    // Bounds the summaries waiting for their conversation's next turn
+    private static final int MAX_TRACKED_CONVERSATIONS = 100_000;
+    private static final Duration UNCLAIMED_SUMMARY_TTL = Duration.ofHours(1);
+    private static final int MIN_SUMMARY_TOKENS = 32;
+
+    private final ChatModel chatModel;
+    private final TokenCounter tokenCounter;
+    private final ChatOptions options;
+    private final int triggerTokens;
+    private final int keepTokens;
+    private final long callIntervalNanos;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, Job> jobs = Caffeine.newBuilder()
+            .maximumSize(MAX_TRACKED_CONVERSATIONS)
+            .expireAfterAccess(UNCLAIMED_SUMMARY_TTL)
+            .build();
+    private final ReentrantLock rateLock = new ReentrantLock();
+    private long nextCallNanos = System.nanoTime();
+    private final LongAdder summaries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired
+    public ConversationSummarizer(ChatModel chatModel, TokenCounter tokenCounter, ChatSummaryProperties properties,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        this(chatModel, tokenCounter, properties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * @param meterRegistry where to publish metrics, or {@code null}
+     */
+    public ConversationSummarizer(ChatModel chatModel, TokenCounter tokenCounter, ChatSummaryProperties properties,
+                                  MeterRegistry meterRegistry) {
+        if (properties.keepRatio() < 0 || properties.keepRatio() >= properties.triggerRatio()) {
+            throw new IllegalArgumentException("keep-ratio must be at least 0 and below trigger-ratio");
+        }
+        if (properties.maxPerSecond() <= 0) {
+            throw new IllegalArgumentException("max-per-second must be positive");
+        }
+        this.chatModel = chatModel;
+        this.tokenCounter = tokenCounter;
+        this.triggerTokens = (int) (tokenCounter.budget() * properties.triggerRatio());
+        this.keepTokens = (int) (tokenCounter.budget() * properties.keepRatio());
+        // The summary and the kept turns together must stay under the trigger, or every turn
+        // would summarize again
+        int summaryTokens = Math.min(properties.maxSummaryTokens(), triggerTokens - keepTokens);
+        this.options = ChatOptions.builder()
+                .model(properties.model())
+                .maxTokens(Math.max(MIN_SUMMARY_TOKENS, summaryTokens))
+                .temperature(0.0)
+                .build();
+        this.callIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / properties.maxPerSecond());
+        this.executor = new ThreadPoolExecutor(properties.concurrency(), properties.concurrency(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.queueCapacity()),
+                Thread.ofPlatform().name("chat-summarizer-", 0).daemon().factory());
+        if (meterRegistry != null) {
+            registerMetrics(meterRegistry);
+        }
+    }
+
+    @Override
+    public List<Message> compact(String conversationId, List<Message> history) {
+        Job job = jobs.getIfPresent(conversationId);
+        if (job != null) {
+            if (job.summary == null) {
+                // Still running
+                return history;
+            }
+            jobs.asMap().remove(conversationId, job);
+            history = replace(history, job);
+        }
+
+        int tokens = 0;
+        for (Message message : history) {
+            tokens += tokenCounter.count(message);
+        }
+        if (tokens <= triggerTokens) {
+            return history;
+        }
+        int split = history.size();
+        for (int kept = 0; split > 0 && kept + tokenCounter.count(history.get(split - 1)) <= keepTokens; split--) {
+            kept += tokenCounter.count(history.get(split - 1));
+        }
+        if (split == 0 || split == 1 && history.get(0) instanceof SystemMessage) {
+            // Nothing older than the kept turns but the summary itself
+            return history;
+        }
+        Job next = new Job(List.copyOf(history.subList(0, split)));
+        if (jobs.asMap().putIfAbsent(conversationId, next) == null) {
+            try {
+                executor.execute(() -> summarize(conversationId, next));
+            } catch (RejectedExecutionException e) {
+                jobs.asMap().remove(conversationId, next);
+                rejected.increment();
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public void forget(String conversationId) {
+        jobs.invalidate(conversationId);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    long summaries() {
+        return summaries.sum();
+    }
+
+    long failures() {
+        return failures.sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Whether no summarization is queued or running.
+     */
+    boolean idle() {
+        return jobs.asMap().values().stream().allMatch(job -> job.summary != null);
+    }
+
+    private void summarize(String conversationId, Job job) {
+        try {
+            awaitRate();
+            Prompt prompt = new Prompt(List.of(new SystemMessage(INSTRUCTIONS), new UserMessage(transcript(job.covered))),
+                    options);
+            String summary = chatModel.call(prompt).getResult().getOutput().getText();
+            if (summary == null || summary.isBlank()) {
+                throw new IllegalStateException("the model returned an empty summary");
+            }
+            job.summary = summary.strip();
+            summaries.increment();
+        } catch (InterruptedException e) {
+            jobs.asMap().remove(conversationId, job);
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            jobs.asMap().remove(conversationId, job);
+            failures.increment();
+            log.warn("Could not summarize conversation {}: {}", conversationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for this call's slot, spacing calls {@code 1 / max-per-second} apart.
+     */
+    private void awaitRate() throws InterruptedException {
+        long wait;
+        rateLock.lock();
+        try {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextCallNanos);
+            nextCallNanos = slot + callIntervalNanos;
+            wait = slot - now;
+        } finally {
+            rateLock.unlock();
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static String transcript(List<Message> messages) {
+        StringBuilder transcript = new StringBuilder();
+        for (Message message : messages) {
+            String speaker = switch (message.getMessageType()) {
+                case USER -> "User: ";
+                case ASSISTANT -> "Assistant: ";
+                case SYSTEM -> "Earlier summary: ";
+                case TOOL -> "Tool: ";
+            };
+            String text = message.getText() == null ? "" : message.getText();
+            transcript.append(speaker).append(text.startsWith(SUMMARY_PREFIX) ? text.substring(SUMMARY_PREFIX.length()) : text)
+                    .append('\n');
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Puts the summary in place of the messages it covers. Those were the start of the history
+     * when the job began, so only that many leading messages are replaced: an equal message
+     * further on, such as a repeated "yes", is a later turn and stays.
+     */
+    private static List<Message> replace(List<Message> history, Job job) {
+        int end = coveredEnd(history, job.covered);
+        List<Message> compacted = new ArrayList<>(history.size() - end + 1);
+        compacted.add(new SystemMessage(SUMMARY_PREFIX + job.summary));
+        compacted.addAll(history.subList(end, history.size()));
+        return compacted;
+    }
+
+    /**
+     * Finds where the covered messages end in the current history. Since the job began, the
+     * token budget may have dropped the oldest of them (system messages last) and a new
+     * system message may have replaced a stored one, so the covered messages are lined up
+     * with the start of the history dropping as few of them as it takes.
+     */
+    private static int coveredEnd(List<Message> history, List<Message> covered) {
+        for (int dropped = 0; dropped <= covered.size(); dropped++) {
+            int end = coveredEnd(history, covered, dropped);
+            if (end >= 0) {
+                return end;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the end of the covered messages less their first {@code dropped} non-system
+     * ones at the start of the history, or -1 if they are not there
+     */
+    private static int coveredEnd(List<Message> history, List<Message> covered, int dropped) {
+        int end = 0;
+        int skipped = 0;
+        for (Message message : covered) {
+            boolean system = message instanceof SystemMessage;
+            if (!system && skipped < dropped) {
+                skipped++;
+            } else if (end < history.size() && sameMessage(history.get(end), message)) {
+                end++;
+            } else if (!system) {
+                return -1;
+            }
+        }
+        return skipped == dropped ? end : -1;
+    }
+
+    /**
+     * Matched by role and text, as a repository may hand back copies without the originals'
+     * metadata.
+     */
+    private static boolean sameMessage(Message a, Message b) {
+        return a.getMessageType() == b.getMessageType() && Objects.equals(a.getText(), b.getText());
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("chat.memory.summaries", summaries, LongAdder::sum)
+                .description("Conversation summaries written")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.memory.summary.failures", failures, LongAdder::sum)
+                .description("Conversation summarizations that failed")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.memory.summary.rejected", rejected, LongAdder::sum)
+                .description("Conversation summarizations put off because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.summary.pending", executor, e -> e.getQueue().size() + e.getActiveCount())
+                .description("Conversation summarizations queued or running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * One summarization of a conversation's older messages; {@code summary} is set when done.
+     */
+    private static final class Job {
+
+        final List<Message> covered;
+        volatile String summary;
+
+        Job(List<Message> covered) {
+            this.covered = covered;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.chatbot.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ChatMemory} that makes each conversation's updates atomic without making
+ * conversations wait for each other.
+ * <p>
+ * {@code MessageWindowChatMemory.add} reads the history, trims it and writes it back, so
+ * two turns of the same conversation racing each other can lose a message. Writes are
+ * therefore serialized per conversation, on one of a fixed number of lock stripes picked
+ * by the conversation ID's hash: two conversations only ever wait for each other when they
+ * land on the same stripe. Reads take no lock, as the repository hands out copies.
+ * <p>
+ * The stripes are {@link ReentrantLock}s rather than {@code synchronized} monitors so a
+ * virtual thread waiting for one does not pin its carrier.
+ */
+public final class StripedChatMemory implements ChatMemory {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final ChatMemory delegate;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedChatMemory(ChatMemory delegate) {
+        this(delegate, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    public StripedChatMemory(ChatMemory delegate, int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be at least 1");
+        }
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.delegate = delegate;
+        this.stripes = new ReentrantLock[Math.max(1, size)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = this.stripes.length - 1;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        ReentrantLock lock = stripeFor(conversationId);
+        lock.lock();
+        try {
+            delegate.add(conversationId, messages);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return delegate.get(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        ReentrantLock lock = stripeFor(conversationId);
+        lock.lock();
+        try {
+            delegate.clear(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    ReentrantLock stripeFor(String conversationId) {
+        // IDs such as user-1, user-2... differ only in their last characters, so mix every
+        // bit of the hash into the low ones (MurmurHash3's finalizer) before masking
+        int h = conversationId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return stripes[h & mask];
+    }
+}
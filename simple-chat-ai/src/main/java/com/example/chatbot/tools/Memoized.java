@@ -0,0 +1,35 @@
+package com.example.chatbot.tools;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link org.springframework.ai.tool.annotation.Tool @Tool} method whose results
+ * {@link ToolResultCache} may reuse: a call with the same arguments as an earlier one is
+ * answered with that call's result instead of running the tool again.
+ * <p>
+ * Without attributes a result is reused for {@code app.tool-cache.default-ttl}. A tool whose
+ * result only depends on its arguments is declared {@code pure} and kept until evicted; a
+ * tool reading data that changes sets its own {@code ttl}, e.g. {@code "30s"} or {@code "1h"}.
+ * Tools taking a {@link org.springframework.ai.chat.model.ToolContext} cannot be memoized,
+ * as their result may depend on the caller.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Memoized {
+
+    /**
+     * How long a result is reused, in the format of duration properties ({@code "10m"},
+     * {@code "PT10M"}); empty for {@code app.tool-cache.default-ttl}.
+     */
+    String ttl() default "";
+
+    /**
+     * Whether the result only depends on the arguments, so it never goes stale.
+     */
+    boolean pure() default false;
+}
@@ -0,0 +1,126 @@
+package com.example.chatbot.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Answers argument-free tools once at startup and hands their results to the model in the
+ * system prompt, instead of offering them as tools.
+ * <p>
+ * A tool taking no arguments whose result never goes stale ({@link Memoized @Memoized(pure = true)})
+ * always answers the same, yet asking the model to call it costs a whole extra round-trip: a
+ * completion asking for the tool call, then another one with its result. Such a tool is called
+ * once here and its result written into a system prompt prefix, in tool name order so the prefix
+ * is the same on every request and the provider's prompt cache can reuse it. Tools with
+ * arguments, with a ttl or returning their result directly to the caller stay tools, as do
+ * tools failing at startup.
+ * <p>
+ * Switched off with {@code app.tool-folding.enabled=false}, every tool stays a tool.
+ */
+@Component
+public class StaticToolFolder {
+
+    private static final Logger log = LoggerFactory.getLogger(StaticToolFolder.class);
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    static final String PREFIX_HEADER =
+            "Answers of the tools that take no arguments, already looked up so you do not need to call them:\n";
+
+    private final boolean enabled;
+
+    /**
+     * The tools left to offer the model, and the answers of the others.
+     *
+     * @param systemPromptPrefix text to put before the system prompt, empty if no tool was folded
+     * @param toolCallbacks      the tools that were not folded, in their original order
+     */
+    public record Folded(String systemPromptPrefix, List<ToolCallback> toolCallbacks) {
+
+        public String systemPrompt(String instructions) {
+            return systemPromptPrefix + instructions;
+        }
+    }
+
+    public StaticToolFolder(@Value("${app.tool-folding.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param toolCallbacks the callbacks of the tool objects, e.g. from {@link ToolResultCache#memoize}
+     * @param toolObjects   the objects with the {@link Tool @Tool} methods behind the callbacks
+     * @return the callbacks still to offer as tools and the prompt prefix with the others' answers
+     */
+    public Folded fold(List<ToolCallback> toolCallbacks, Object... toolObjects) {
+        if (!enabled) {
+            return new Folded("", List.copyOf(toolCallbacks));
+        }
+        Map<String, Method> methods = new HashMap<>();
+        for (Object toolObject : toolObjects) {
+            methods.putAll(ToolResultCache.toolMethods(toolObject));
+        }
+
+        Map<String, String> answers = new TreeMap<>();
+        List<ToolCallback> remaining = new ArrayList<>();
+        for (ToolCallback callback : toolCallbacks) {
+            String name = callback.getToolDefinition().name();
+            String answer = isStatic(callback, methods.get(name)) ? answer(callback) : null;
+            if (answer != null) {
+                answers.put(name, "- " + name + " (" + callback.getToolDefinition().description() + "): " + answer + "\n");
+            } else {
+                remaining.add(callback);
+            }
+        }
+        if (answers.isEmpty()) {
+            return new Folded("", List.copyOf(remaining));
+        }
+        log.info("Folded the answers of tools {} into the system prompt", answers.keySet());
+        return new Folded(PREFIX_HEADER + String.join("", answers.values()) + "\n", List.copyOf(remaining));
+    }
+
+    private static boolean isStatic(ToolCallback callback, Method method) {
+        if (method == null || method.getParameterCount() > 0 || callback.getToolMetadata().returnDirect()) {
+            return false;
+        }
+        Memoized memoized = AnnotationUtils.findAnnotation(method, Memoized.class);
+        return memoized != null && memoized.pure();
+    }
+
+    /**
+     * @return the tool's result as text, or {@code null} if it failed or had none
+     */
+    private static String answer(ToolCallback callback) {
+        String result;
+        try {
+            result = callback.call("{}");
+        } catch (RuntimeException e) {
+            log.warn("Tool {} failed at startup, so it stays a tool", callback.getToolDefinition().name(), e);
+            return null;
+        }
+        if (result == null || result.isBlank()) {
+            return null;
+        }
+        try {
+            // Tool results are JSON; a string reads better without its quotes and escapes
+            JsonNode node = JSON.readTree(result);
+            return node.isTextual() ? node.textValue().strip() : result;
+        } catch (JsonProcessingException e) {
+            return result;
+        }
+    }
+}
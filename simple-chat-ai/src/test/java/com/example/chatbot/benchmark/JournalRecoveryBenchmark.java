@@ -0,0 +1,105 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.memory.JournalChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long {@link JournalChatMemoryRepository} takes to rebuild its index at
+ * startup, after {@code messages} chat messages were journaled across {@code conversations}
+ * conversations through a sliding window of {@code window} messages, as the chat memory
+ * advisor does.
+ * <p>
+ * Run it with enough heap for the index, e.g.:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-Xmx2g -Dmessages=10000000 -classpath %classpath \
+ *     com.example.chatbot.benchmark.JournalRecoveryBenchmark"
+ * </pre>
+ * System properties: {@code messages} (default 10,000,000), {@code conversations}
+ * (default 100,000), {@code window} (default 20), {@code directory} (default a new
+ * temporary directory, deleted afterwards).
+ */
+public final class JournalRecoveryBenchmark {
+
+    private JournalRecoveryBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long messages = Long.getLong("messages", 10_000_000);
+        int conversations = Integer.getInteger("conversations", 100_000);
+        int window = Integer.getInteger("window", 20);
+        String configured = System.getProperty("directory");
+        Path directory = configured != null ? Path.of(configured) : Files.createTempDirectory("chat-journal");
+
+        try {
+            // Writes go through saveAll as in production, with compaction off so recovery
+            // scans every message ever written
+            long start = System.nanoTime();
+            JournalChatMemoryRepository journal = open(directory);
+            List<List<Message>> histories = new ArrayList<>(conversations);
+            for (int c = 0; c < conversations; c++) {
+                histories.add(new ArrayList<>());
+            }
+            for (long written = 0; written < messages; written += 2) {
+                int c = (int) ((written / 2) % conversations);
+                List<Message> history = histories.get(c);
+                history.add(new UserMessage("Tell me something about railroads, question " + written));
+                history.add(new AssistantMessage("Railroads employ many people; this is answer " + written
+                        + " to your question about them."));
+                while (history.size() > window) {
+                    history.remove(0);
+                }
+                journal.saveAll("user-" + c, history);
+            }
+            journal.close();
+            long writeMillis = (System.nanoTime() - start) / 1_000_000;
+
+            System.gc();
+            start = System.nanoTime();
+            JournalChatMemoryRepository recovered = open(directory);
+            long recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+            int checked = recovered.findByConversationId("user-0").size();
+            recovered.close();
+
+            System.out.printf("messages=%d conversations=%d window=%d journalBytes=%dMB%n",
+                    messages, conversations, window, sizeOf(directory) >> 20);
+            System.out.printf("write=%dms (%.0f messages/s) recovery=%dms (%.0f messages/s) user-0 history=%d%n",
+                    writeMillis, messages * 1000.0 / writeMillis, recoveryMillis, messages * 1000.0 / recoveryMillis, checked);
+        } finally {
+            if (configured == null) {
+                delete(directory);
+            }
+        }
+    }
+
+    private static JournalChatMemoryRepository open(Path directory) {
+        return new JournalChatMemoryRepository(directory, DataSize.ofMegabytes(64), Duration.ofMillis(50),
+                Duration.ZERO, 0.5, null);
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
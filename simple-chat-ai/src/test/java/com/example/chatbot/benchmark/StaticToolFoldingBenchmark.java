@@ -0,0 +1,205 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.SimpleOpenAiChatApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the {@code /smart-query} endpoint with and without {@code app.tool-folding.enabled}:
+ * model round-trips, prompt bytes sent and latency per query, against a local stub of the
+ * OpenAI chat-completions API that answers after a fixed delay.
+ * <p>
+ * The stub plays a model that calls a tool whenever it needs one it is offered: asked for the
+ * name, age or hobbies it calls {@code getMyName}, {@code getMyAge} or {@code getMyHobbies} if
+ * they are still tools, and answers from the system prompt once they are folded into it; asked
+ * about railroad employees it always calls {@code getRailroadEmployeeCounts}. The queries cycle
+ * through three profile questions and one railroad question, each in a new conversation.
+ * <p>
+ * Run it with:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-classpath %classpath com.example.chatbot.benchmark.StaticToolFoldingBenchmark"
+ * </pre>
+ * System properties: {@code queries} (default 200), {@code upstreamLatencyMs} (default 300).
+ */
+public final class StaticToolFoldingBenchmark {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final List<String> QUERIES = List.of(
+            "What is your name?",
+            "How old are you?",
+            "What are your hobbies?",
+            "How many railroad employees did Texas have in March 2022?");
+
+    private static final Map<String, String> PROFILE_TOOLS = Map.of(
+            "name", "getMyName",
+            "old", "getMyAge",
+            "hobbies", "getMyHobbies");
+
+    private StaticToolFoldingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int queries = Integer.getInteger("queries", 200);
+        long upstreamLatencyMs = Long.getLong("upstreamLatencyMs", 300);
+
+        AtomicLong requests = new AtomicLong();
+        AtomicLong requestBytes = new AtomicLong();
+        HttpServer stubOpenAi = startStubOpenAi(upstreamLatencyMs, requests, requestBytes);
+        try {
+            System.out.printf("queries=%d upstreamLatency=%dms%n", queries, upstreamLatencyMs);
+            for (boolean folding : new boolean[]{false, true}) {
+                run(folding, queries, stubOpenAi.getAddress().getPort(), requests, requestBytes);
+            }
+        } finally {
+            stubOpenAi.stop(0);
+        }
+    }
+
+    private static void run(boolean folding, int queries, int stubPort, AtomicLong requests, AtomicLong requestBytes)
+            throws Exception {
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(SimpleOpenAiChatApplication.class).run(
+                "--server.port=0",
+                "--app.tool-folding.enabled=" + folding,
+                "--spring.ai.openai.api-key=benchmark",
+                "--spring.ai.openai.base-url=http://127.0.0.1:" + stubPort,
+                "--logging.level.root=WARN");
+        int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            // Warm up class loading and the JIT on a round of queries first
+            for (int i = 0; i < QUERIES.size(); i++) {
+                ask(client, port, i, "warm-up-" + i);
+            }
+            requests.set(0);
+            requestBytes.set(0);
+
+            List<Long> latenciesMicros = new ArrayList<>(queries);
+            for (int i = 0; i < queries; i++) {
+                long sent = System.nanoTime();
+                ask(client, port, i, "conversation-" + i);
+                latenciesMicros.add((System.nanoTime() - sent) / 1_000);
+            }
+
+            Collections.sort(latenciesMicros);
+            double mean = latenciesMicros.stream().mapToLong(Long::longValue).average().orElse(0);
+            System.out.printf("folding=%-5s roundTrips/query=%.2f promptBytes/query=%d latency mean=%.1fms p50=%.1fms p99=%.1fms%n",
+                    folding, (double) requests.get() / queries, requestBytes.get() / queries, mean / 1000,
+                    percentile(latenciesMicros, 0.50) / 1000.0, percentile(latenciesMicros, 0.99) / 1000.0);
+        } finally {
+            app.close();
+        }
+    }
+
+    private static void ask(HttpClient client, int port, int query, String conversation) throws Exception {
+        String text = URLEncoder.encode(QUERIES.get(query % QUERIES.size()), StandardCharsets.UTF_8);
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/smart-query?query=" + text))
+                        .header("X-Conversation-Id", conversation)
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Query " + query + " failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private static HttpServer startStubOpenAi(long latencyMs, AtomicLong requests, AtomicLong requestBytes) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                requests.incrementAndGet();
+                requestBytes.addAndGet(body.length);
+                Thread.sleep(latencyMs);
+                respond(exchange, completion(JSON.readTree(body)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * A tool call if the question needs a tool that is offered and has not answered yet,
+     * otherwise a final answer.
+     */
+    private static ObjectNode completion(JsonNode request) {
+        JsonNode messages = request.path("messages");
+        JsonNode last = messages.get(messages.size() - 1);
+        String tool = "tool".equals(last.path("role").asText()) ? null : toolFor(last.path("content").asText(), request);
+
+        ObjectNode completion = JSON.createObjectNode()
+                .put("id", "chatcmpl-bench")
+                .put("object", "chat.completion")
+                .put("created", 1700000000)
+                .put("model", "gpt-4o");
+        ObjectNode choice = completion.putArray("choices").addObject().put("index", 0);
+        ObjectNode message = choice.putObject("message").put("role", "assistant");
+        if (tool == null) {
+            message.put("content", "Here is what I know.");
+            choice.put("finish_reason", "stop");
+        } else {
+            message.putNull("content");
+            ObjectNode call = message.putArray("tool_calls").addObject().put("id", "call-1").put("type", "function");
+            call.putObject("function").put("name", tool)
+                    .put("arguments", tool.startsWith("getMy") ? "{}" : "{\"state\":\"TX\",\"month\":\"March\",\"year\":2022}");
+            choice.put("finish_reason", "tool_calls");
+        }
+        completion.putObject("usage").put("prompt_tokens", 100).put("completion_tokens", 10).put("total_tokens", 110);
+        return completion;
+    }
+
+    private static String toolFor(String question, JsonNode request) {
+        String lower = question.toLowerCase(Locale.ROOT);
+        String tool = lower.contains("railroad") ? "getRailroadEmployeeCounts" : PROFILE_TOOLS.entrySet().stream()
+                .filter(entry -> lower.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst().orElse(null);
+        for (JsonNode offered : request.path("tools")) {
+            if (offered.path("function").path("name").asText().equals(tool)) {
+                return tool;
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, ObjectNode completion) throws IOException {
+        byte[] body = JSON.writeValueAsBytes(completion);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(quantile * sorted.size()) - 1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chatbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryEmbedderTest {
+
+    private final QueryEmbedder embedder = new QueryEmbedder(256);
+
+    private float similarity(String a, String b) {
+        float[] x = embedder.embed(a);
+        float[] y = embedder.embed(b);
+        float dot = 0;
+        for (int i = 0; i < x.length; i++) {
+            dot += x[i] * y[i];
+        }
+        return dot;
+    }
+
+    @Test
+    void words_FoldCaseContractionsPluralsAndFillerWords() {
+        assertEquals(List.of("what", "capital", "france"), QueryEmbedder.words("Please tell me: what's the capital of France?"));
+        assertEquals(List.of("railroad", "employee", "company"), QueryEmbedder.words("Railroads’ employees and companies"));
+    }
+
+    @Test
+    void embed_ReturnsAUnitVector() {
+        // When
+        float[] vector = embedder.embed("How many people work for the railroad?");
+
+        // Then
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        assertEquals(256, vector.length);
+        assertEquals(1.0, norm, 1e-4);
+    }
+
+    @Test
+    void rephrasings_EmbedAboveTheDefaultThreshold() {
+        assertEquals(1.0f, similarity("What is the capital of France?", "what's the capital of france"), 1e-4);
+        assertTrue(similarity("How many employees does the railroad have?",
+                "How many employees do the railroads have") > 0.9f);
+        assertTrue(similarity("List the largest railroad companies in the US",
+                "Please list the largest railroad companies in the US.") > 0.9f);
+    }
+
+    @Test
+    void differentQuestions_EmbedBelowTheDefaultThreshold() {
+        assertTrue(similarity("What is the capital of France?", "What is the capital of Spain?") < 0.8f);
+        assertTrue(similarity("How many employees does the railroad have?", "Write a poem about the sea") < 0.2f);
+    }
+
+    @Test
+    void queryWithoutWords_EmbedsToZeros() {
+        for (float value : embedder.embed("Please?")) {
+            assertEquals(0f, value);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.chatbot.cache;
+
+import com.example.chatbot.config.SemanticCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SemanticCache cache(boolean enabled, int maxEntries) {
+        return new SemanticCache(new SemanticCacheProperties(enabled, maxEntries, 0.9, Duration.ofMinutes(10), 256, 64),
+                meterRegistry, nanos::get);
+    }
+
+    @Test
+    void rephrasedQuery_IsAnsweredFromTheCache() {
+        // Given
+        SemanticCache cache = cache(true, 100);
+        cache.put("What is the capital of France?", "Paris");
+
+        // When
+        String answer = cache.get("what's the capital of france");
+
+        // Then
+        assertEquals("Paris", answer);
+        assertEquals(1, meterRegistry.get("semantic.cache.hits").functionCounter().count());
+        assertEquals(1, meterRegistry.get("semantic.cache.lookup").timer().count());
+    }
+
+    @Test
+    void differentQuestion_IsAMiss() {
+        // Given
+        SemanticCache cache = cache(true, 100);
+        cache.put("What is the capital of France?", "Paris");
+
+        // When
+        String answer = cache.get("What is the capital of Spain?");
+
+        // Then
+        assertNull(answer);
+        assertEquals(1, meterRegistry.get("semantic.cache.misses").functionCounter().count());
+    }
+
+    @Test
+    void sameQuestionAboutOtherNumbers_IsAMiss() {
+        // Given
+        SemanticCache cache = cache(true, 100);
+        cache.put("How many railroad employees were there in 2020?", "About 150,000");
+
+        // When
+        String otherYear = cache.get("How many railroad employees were there in 2021?");
+        String sameYear = cache.get("how many railroad employees were there in 2020");
+
+        // Then
+        assertNull(otherYear);
+        assertEquals("About 150,000", sameYear);
+        assertEquals("3,2020", SemanticCache.numbers("top 3 in 2020?"));
+    }
+
+    @Test
+    void expiredAnswer_IsAMissAndIsRemoved() {
+        // Given
+        SemanticCache cache = cache(true, 100);
+        cache.put("What is the capital of France?", "Paris");
+
+        // When
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        String answer = cache.get("What is the capital of France?");
+
+        // Then
+        assertNull(answer);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void putForACachedRephrasing_ReplacesItsAnswer() {
+        // Given
+        SemanticCache cache = cache(true, 100);
+        cache.put("What is the capital of France?", "Paris");
+
+        // When
+        cache.put("what's the capital of France", "Paris, France");
+
+        // Then
+        assertEquals(1, cache.size());
+        assertEquals("Paris, France", cache.get("What is the capital of France?"));
+    }
+
+    @Test
+    void fullCache_EvictsAndStaysWithinItsSize() {
+        // Given
+        SemanticCache cache = cache(true, 10);
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            cache.put("How many employees did railroad " + i + " have?", "Answer " + i);
+        }
+
+        // Then
+        assertEquals(10, cache.size());
+        assertEquals(40, meterRegistry.get("semantic.cache.evictions").functionCounter().count());
+        assertEquals(10, meterRegistry.get("semantic.cache.size").gauge().value());
+        assertEquals("Answer 49", cache.get("How many employees did railroad 49 have?"));
+    }
+
+    @Test
+    void disabledCache_NeverAnswers() {
+        // Given
+        SemanticCache cache = cache(false, 100);
+        cache.put("What is the capital of France?", "Paris");
+
+        // When
+        String answer = cache.get("What is the capital of France?");
+
+        // Then
+        assertNull(answer);
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chatbot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private VirtualThreadPinningMonitor monitor;
+
+    @AfterEach
+    void tearDown() {
+        monitor.destroy();
+    }
+
+    @Test
+    void blockingInsideSynchronized_IsReportedAsPinned() throws Exception {
+        // Given
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("meterRegistry", meterRegistry);
+        monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(10), beans.getBeanProvider(MeterRegistry.class));
+        monitor.afterPropertiesSet();
+        Object lock = new Object();
+
+        // When - sleeping while holding a monitor pins the virtual thread to its carrier
+        Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        // Then - JFR delivers events asynchronously, roughly once a second
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (monitor.pinnedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue(monitor.pinnedCount() > 0, "no pinning event was reported");
+        assertTrue(meterRegistry.get("jvm.threads.virtual.pinned").counter().count() > 0);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.config.ToolCacheProperties;
+import com.example.chatbot.memory.BoundedChatMemoryRepository;
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.tools.InformationDesk;
+import com.example.chatbot.tools.RailroadEmployeeDataset;
+import com.example.chatbot.tools.StaticToolFolder;
+import com.example.chatbot.tools.ToolResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs thousands of conversations through the stateful controllers at once, with a real
+ * {@link ChatClient} and memory advisor over a model that checks every prompt it gets:
+ * each must carry exactly the last turns of its own conversation that fit the memory's
+ * token budget, never another conversation's messages and never a stale or lost turn. The
+ * context-aware controller runs on a memory budget far smaller than all conversations
+ * together, so histories are constantly spilled to disk and restored mid-conversation.
+ */
+class ConversationStressTest {
+
+    private static final int CONVERSATIONS = 2_000;
+    private static final int TURNS = 5;
+    // Three to four of these short turns' messages
+    private static final TokenCounter TOKEN_COUNTER = new TokenCounter("gpt-4o", 40);
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void contextAwareController_KeepsThousandsOfParallelConversationsApart() throws Exception {
+        HistoryCheckingModel model = new HistoryCheckingModel(TOKEN_COUNTER);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MeterRegistry> meterRegistryProvider = mock(ObjectProvider.class);
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(DataSize.ofKilobytes(64),
+                Duration.ofMinutes(5), spillDirectory.toString(), Duration.ofDays(1), meterRegistryProvider);
+        OpenAiContextAwareController controller = new OpenAiContextAwareController(ChatClient.builder(model), repository, TOKEN_COUNTER,
+                HistoryCompactor.NONE);
+
+        runConversations(controller::chat);
+        // Caffeine spills evicted histories on the common pool; let it finish before the
+        // spill directory is deleted
+        ForkJoinPool.commonPool().awaitQuiescence(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(), List.copyOf(model.violations));
+        assertEquals(CONVERSATIONS * TURNS, model.calls());
+        assertTrue(meterRegistry.get("chat.memory.restores").functionCounter().count() > 0);
+    }
+
+    @Test
+    void smartController_KeepsThousandsOfParallelConversationsApart() throws Exception {
+        HistoryCheckingModel model = new HistoryCheckingModel(TOKEN_COUNTER);
+        OpenAiSmartController controller = new OpenAiSmartController(ChatClient.builder(model), new InMemoryChatMemoryRepository(),
+                TOKEN_COUNTER, HistoryCompactor.NONE,
+                new ToolResultCache(new ToolCacheProperties(true, 100, Duration.ofMinutes(10)), (MeterRegistry) null),
+                new InformationDesk(new RailroadEmployeeDataset(new ClassPathResource("data/railroad-employees.csv"))),
+                new StaticToolFolder(true));
+
+        runConversations(controller::chat);
+
+        assertEquals(List.of(), List.copyOf(model.violations));
+        assertEquals(CONVERSATIONS * TURNS, model.calls());
+    }
+
+    private static void runConversations(BiFunction<String, ConversationId, String> chat) throws Exception {
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int c = 0; c < CONVERSATIONS; c++) {
+                ConversationId conversationId = new ConversationId("user-" + c);
+                running.add(users.submit(() -> {
+                    for (int turn = 1; turn <= TURNS; turn++) {
+                        String question = conversationId.value() + " turn " + turn;
+                        assertEquals("ack " + question, chat.apply(question, conversationId));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> conversation : running) {
+                conversation.get();
+            }
+        }
+    }
+
+    /**
+     * Answers {@code "<id> turn <n>"} with {@code "ack <id> turn <n>"} and records any prompt
+     * whose history is not exactly the longest tail of turns 1 to {@code n-1} that fits the
+     * token budget
+     * of the same conversation.
+     */
+    private static final class HistoryCheckingModel implements ChatModel {
+
+        final Queue<String> violations = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final TokenCounter tokenCounter;
+
+        HistoryCheckingModel(TokenCounter tokenCounter) {
+            this.tokenCounter = tokenCounter;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            List<String> history = new ArrayList<>();
+            for (Message message : prompt.getInstructions()) {
+                if (message.getMessageType() != MessageType.SYSTEM) {
+                    history.add(message.getText());
+                }
+            }
+            String question = history.remove(history.size() - 1);
+            String conversation = question.substring(0, question.indexOf(" turn "));
+            int turn = Integer.parseInt(question.substring(question.indexOf(" turn ") + 6));
+            List<Message> transcript = new ArrayList<>();
+            for (int earlier = 1; earlier < turn; earlier++) {
+                transcript.add(new UserMessage(conversation + " turn " + earlier));
+                transcript.add(new AssistantMessage("ack " + conversation + " turn " + earlier));
+            }
+            int from = transcript.size();
+            int tokens = 0;
+            while (from > 0 && tokens + tokenCounter.count(transcript.get(from - 1)) <= tokenCounter.budget()) {
+                tokens += tokenCounter.count(transcript.get(--from));
+            }
+            List<String> expected = transcript.subList(from, transcript.size()).stream().map(Message::getText).toList();
+            if (!expected.equals(history)) {
+                violations.add(question + " saw " + history);
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("ack " + question))));
+        }
+
+        int calls() {
+            return calls.get();
+        }
+    }
+}
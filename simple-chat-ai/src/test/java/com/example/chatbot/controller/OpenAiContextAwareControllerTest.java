@@ -1,5 +1,8 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.TokenCounter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -8,6 +11,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -58,7 +62,8 @@ class OpenAiContextAwareControllerTest {
         when(promptRequest.call()).thenReturn(response);
         when(response.content()).thenReturn("Context-aware response");
         
-        controller = new OpenAiContextAwareController(chatClientBuilder);
+        controller = new OpenAiContextAwareController(chatClientBuilder, new InMemoryChatMemoryRepository(),
+                new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE);
     }
 
     @Test
@@ -68,13 +73,14 @@ class OpenAiContextAwareControllerTest {
         String expectedResponse = "Context-aware response";
 
         // When
-        String actualResponse = controller.chat(testQuery);
+        String actualResponse = controller.chat(testQuery, new ConversationId("user-1"));
 
         // Then
         assertEquals(expectedResponse, actualResponse);
         verify(chatClient).prompt(testQuery);
         verify(promptRequest).call();
         verify(response).content();
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "state:user-1");
     }
 
     @Test
@@ -85,10 +91,21 @@ class OpenAiContextAwareControllerTest {
         when(response.content()).thenReturn("");
 
         // When
-        String actualResponse = controller.chat(testQuery);
+        String actualResponse = controller.chat(testQuery, new ConversationId("user-1"));
 
         // Then
         assertEquals(expectedResponse, actualResponse);
         verify(chatClient).prompt(testQuery);
     }
+
+    @Test
+    void testChat_EachCallerUsesOwnConversation() {
+        // When
+        controller.chat("Hi, I am Alice", new ConversationId("alice"));
+        controller.chat("Hi, I am Bob", new ConversationId("bob"));
+
+        // Then
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "state:alice");
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "state:bob");
+    }
 }
@@ -1,18 +1,33 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.config.ToolCacheProperties;
 import com.example.chatbot.tools.InformationDesk;
+import com.example.chatbot.tools.RailroadEmployeeDataset;
+import com.example.chatbot.tools.StaticToolFolder;
+import com.example.chatbot.tools.ToolResultCache;
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.TokenCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.core.io.ClassPathResource;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -30,7 +45,6 @@ class OpenAiSmartControllerTest {
     @Mock
     private ChatClient.CallResponseSpec response;
 
-    @Mock
     private InformationDesk informationDesk;
 
     @Mock
@@ -44,10 +58,11 @@ class OpenAiSmartControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        informationDesk = new InformationDesk(new RailroadEmployeeDataset(new ClassPathResource("data/railroad-employees.csv")));
         
         when(chatClientBuilder.defaultAdvisors(any(MessageChatMemoryAdvisor.class)))
                 .thenReturn(chatClientBuilder);
-        when(chatClientBuilder.defaultTools(any(InformationDesk.class)))
+        when(chatClientBuilder.defaultToolCallbacks(anyList()))
                 .thenReturn(chatClientBuilder);
         when(chatClientBuilder.build())
                 .thenReturn(chatClient);
@@ -68,7 +83,10 @@ class OpenAiSmartControllerTest {
         when(response.content())
                 .thenReturn("Smart response with tools");
         
-        controller = new OpenAiSmartController(chatClientBuilder);
+        controller = new OpenAiSmartController(chatClientBuilder, new InMemoryChatMemoryRepository(),
+                new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE,
+                new ToolResultCache(new ToolCacheProperties(true, 100, Duration.ofMinutes(10)), (MeterRegistry) null),
+                informationDesk, new StaticToolFolder(true));
     }
 
     @Test
@@ -78,7 +96,7 @@ class OpenAiSmartControllerTest {
         String expectedResponse = "Smart response with tools";
 
         // When
-        String actualResponse = controller.chat(testQuery);
+        String actualResponse = controller.chat(testQuery, new ConversationId("user-1"));
 
         // Then
         assertEquals(expectedResponse, actualResponse);
@@ -86,6 +104,7 @@ class OpenAiSmartControllerTest {
         verify(promptRequest).system(anyString());
         verify(promptRequest).call();
         verify(response).content();
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "smart:user-1");
     }
 
     @Test
@@ -96,10 +115,71 @@ class OpenAiSmartControllerTest {
         when(response.content()).thenReturn("");
 
         // When
-        String actualResponse = controller.chat(testQuery);
+        String actualResponse = controller.chat(testQuery, new ConversationId("user-1"));
 
         // Then
         assertEquals(expectedResponse, actualResponse);
         verify(chatClient).prompt(testQuery);
     }
+
+    @Test
+    void testChat_EachCallerUsesOwnConversation() {
+        // When
+        controller.chat("Hi, I am Alice", new ConversationId("alice"));
+        controller.chat("Hi, I am Bob", new ConversationId("bob"));
+
+        // Then
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "smart:alice");
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "smart:bob");
+    }
+
+    @Test
+    void testConstructor_FoldsArgumentFreeToolsIntoTheSystemPrompt() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ToolCallback>> callbacks = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<String> systemPrompt = ArgumentCaptor.forClass(String.class);
+
+        // When
+        controller.chat("What is your name?", new ConversationId("user-1"));
+
+        // Then - only the tools needing arguments are left for the model to call
+        verify(chatClientBuilder).defaultToolCallbacks(callbacks.capture());
+        assertEquals(List.of("getRailroadEmployeeCounts", "getRailroadEmployeeRanking"), toolNames(callbacks.getValue()));
+        verify(promptRequest).system(systemPrompt.capture());
+        assertTrue(systemPrompt.getValue().contains("- getMyName (This tool will give you my name): I am Kavitha\n"),
+                systemPrompt.getValue());
+        assertTrue(systemPrompt.getValue().endsWith("provide approximate answer if you don't know the answer"),
+                systemPrompt.getValue());
+    }
+
+    @Test
+    void testConstructor_WithoutFolding_RegistersInformationDeskToolsAsMemoizingCallbacks() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ToolCallback>> callbacks = ArgumentCaptor.forClass(List.class);
+        clearInvocations(chatClientBuilder);
+
+        // When
+        new OpenAiSmartController(chatClientBuilder, new InMemoryChatMemoryRepository(),
+                new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE,
+                new ToolResultCache(new ToolCacheProperties(true, 100, Duration.ofMinutes(10)), (MeterRegistry) null),
+                informationDesk, new StaticToolFolder(false));
+
+        // Then
+        verify(chatClientBuilder).defaultToolCallbacks(callbacks.capture());
+        assertEquals(List.of("getMyAge", "getMyHobbies", "getMyName", "getRailroadEmployeeCounts",
+                "getRailroadEmployeeRanking"), toolNames(callbacks.getValue()));
+        assertEquals("\"I am Kavitha\"", callbacks.getValue().stream()
+                .filter(callback -> callback.getToolDefinition().name().equals("getMyName"))
+                .findFirst().orElseThrow()
+                .call("{}"));
+    }
+
+    private static List<String> toolNames(List<ToolCallback> callbacks) {
+        return callbacks.stream()
+                .map(callback -> callback.getToolDefinition().name())
+                .sorted()
+                .toList();
+    }
 }
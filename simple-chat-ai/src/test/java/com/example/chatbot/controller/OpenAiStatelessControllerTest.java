@@ -1,11 +1,16 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.cache.SemanticCache;
+import com.example.chatbot.config.SemanticCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.client.ChatClient;
 
+import java.time.Duration;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -34,7 +39,8 @@ class OpenAiStatelessControllerTest {
         when(promptRequest.call()).thenReturn(response);
         when(response.content()).thenReturn("Test response");
         
-        controller = new OpenAiStatelessController(chatClientBuilder);
+        controller = new OpenAiStatelessController(chatClientBuilder, new SemanticCache(new SemanticCacheProperties(true, 100, 0.9, Duration.ofHours(1), 256, 64),
+                (MeterRegistry) null));
     }
 
     @Test
@@ -67,4 +73,29 @@ class OpenAiStatelessControllerTest {
         assertEquals(expectedResponse, actualResponse);
         verify(chatClient).prompt(testQuery);
     }
+
+    @Test
+    void testChat_WithRephrasedQuery_AnswersFromTheSemanticCache() {
+        // Given
+        controller.chat("What is the capital of France?");
+
+        // When
+        String actualResponse = controller.chat("what's the capital of france");
+
+        // Then
+        assertEquals("Test response", actualResponse);
+        verify(chatClient, times(1)).prompt(anyString());
+    }
+
+    @Test
+    void testChat_WithDifferentQuestion_CallsTheModel() {
+        // Given
+        controller.chat("What is the capital of France?");
+
+        // When
+        controller.chat("What is the capital of Spain?");
+
+        // Then
+        verify(chatClient).prompt("What is the capital of Spain?");
+    }
 }
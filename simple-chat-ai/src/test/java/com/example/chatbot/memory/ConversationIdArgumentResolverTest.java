@@ -0,0 +1,52 @@
+package com.example.chatbot.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationIdArgumentResolverTest {
+
+    private final ConversationIdArgumentResolver resolver = new ConversationIdArgumentResolver();
+
+    @Test
+    void resolve_WithHeader_UsesHeader() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ConversationId.HEADER, " user-42 ");
+
+        // When
+        ConversationId id = resolver.resolveArgument(null, null, new ServletWebRequest(request), null);
+
+        // Then
+        assertEquals("user-42", id.value());
+        assertNull(request.getSession(false));
+    }
+
+    @Test
+    void resolve_WithoutHeader_UsesSession() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        // When
+        ConversationId first = resolver.resolveArgument(null, null, new ServletWebRequest(request), null);
+        ConversationId second = resolver.resolveArgument(null, null, new ServletWebRequest(request), null);
+
+        // Then
+        assertEquals(request.getSession().getId(), first.value());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void resolve_WithOverlongHeader_IsRejected() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ConversationId.HEADER, "x".repeat(ConversationId.MAX_LENGTH + 1));
+
+        // When & Then
+        assertThrows(ResponseStatusException.class,
+                () -> resolver.resolveArgument(null, null, new ServletWebRequest(request), null));
+    }
+}
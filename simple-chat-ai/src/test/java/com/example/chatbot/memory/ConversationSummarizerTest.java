@@ -0,0 +1,258 @@
+package com.example.chatbot.memory;
+
+import com.example.chatbot.config.ChatSummaryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationSummarizerTest {
+
+    // Summarizes above 150 tokens, keeping the last 80 or so word for word
+    private final TokenCounter tokenCounter = new TokenCounter("gpt-4o", 200);
+    private final SummaryModel model = new SummaryModel();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ConversationSummarizer> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        model.gate.countDown();
+        opened.forEach(ConversationSummarizer::close);
+    }
+
+    private ConversationSummarizer summarizer(double maxPerSecond) {
+        ConversationSummarizer summarizer = new ConversationSummarizer(model, tokenCounter,
+                new ChatSummaryProperties("gpt-4o-mini", 0.75, 0.4, 256, maxPerSecond, 2, 16), meterRegistry);
+        opened.add(summarizer);
+        return summarizer;
+    }
+
+    private TokenWindowChatMemory memory(ConversationSummarizer summarizer) {
+        return new TokenWindowChatMemory(new InMemoryChatMemoryRepository(), tokenCounter, summarizer);
+    }
+
+    private static void addTurn(TokenWindowChatMemory memory, String conversationId, int turn) {
+        memory.add(conversationId, List.of(new UserMessage("Question " + turn + " about the railroad"),
+                new AssistantMessage("Answer " + turn + " about the railroad")));
+    }
+
+    private int tokens(List<Message> messages) {
+        return messages.stream().mapToInt(tokenCounter::count).sum();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void longHistory_IsSummarizedInTheBackgroundAndSwappedInOnTheNextTurn() throws Exception {
+        // Given - the model holds on to the summary until released
+        ConversationSummarizer summarizer = summarizer(100);
+        TokenWindowChatMemory memory = memory(summarizer);
+        model.gate = new CountDownLatch(1);
+
+        // When - turns keep being stored while the summary is on its way
+        int turn = 0;
+        while (summarizer.idle()) {
+            addTurn(memory, "alice", turn++);
+        }
+        addTurn(memory, "alice", turn++);
+        List<Message> whileSummarizing = memory.get("alice");
+        model.gate.countDown();
+        await(() -> summarizer.summaries() == 1);
+        addTurn(memory, "alice", turn);
+
+        // Then
+        assertFalse(whileSummarizing.get(0) instanceof SystemMessage);
+        List<Message> history = memory.get("alice");
+        assertEquals(new SystemMessage(ConversationSummarizer.SUMMARY_PREFIX + "Summary 1"), history.get(0));
+        assertEquals("Answer " + turn + " about the railroad", history.get(history.size() - 1).getText());
+        assertTrue(tokens(history) < tokens(whileSummarizing));
+        assertEquals(1, model.prompts.size());
+        String transcript = model.prompts.get(0).getUserMessage().getText();
+        assertTrue(transcript.startsWith("User: Question 0 about the railroad\nAssistant: Answer 0 about the railroad\n"));
+        assertEquals("gpt-4o-mini", model.prompts.get(0).getOptions().getModel());
+        assertEquals(1, meterRegistry.get("chat.memory.summaries").functionCounter().count());
+    }
+
+    @Test
+    void repeatedShortMessages_AfterTheSummarizedOnes_AreKept() throws Exception {
+        // Given - "yes" and "ok" are among the messages being summarized
+        ConversationSummarizer summarizer = summarizer(100);
+        TokenWindowChatMemory memory = memory(summarizer);
+        memory.add("alice", List.of(new UserMessage("yes"), new AssistantMessage("ok")));
+        int turn = 0;
+        while (summarizer.idle()) {
+            addTurn(memory, "alice", turn++);
+        }
+        await(() -> summarizer.summaries() == 1);
+
+        // When - the turn that swaps the summary in repeats them
+        memory.add("alice", List.of(new UserMessage("yes"), new AssistantMessage("ok")));
+
+        // Then
+        List<Message> history = memory.get("alice");
+        assertEquals(new SystemMessage(ConversationSummarizer.SUMMARY_PREFIX + "Summary 1"), history.get(0));
+        assertEquals(List.of(new UserMessage("yes"), new AssistantMessage("ok")),
+                history.subList(history.size() - 2, history.size()));
+        assertEquals(1, history.stream().filter(message -> "yes".equals(message.getText())).count());
+        assertEquals("Answer " + (turn - 1) + " about the railroad", history.get(history.size() - 3).getText());
+    }
+
+    @Test
+    void laterSummaries_FoldInTheEarlierOne() throws Exception {
+        // Given
+        ConversationSummarizer summarizer = summarizer(100);
+        TokenWindowChatMemory memory = memory(summarizer);
+
+        // When - a long conversation, one summarization at a time
+        for (int turn = 0; turn < 40; turn++) {
+            addTurn(memory, "alice", turn);
+            await(summarizer::idle);
+        }
+
+        // Then - the history never outgrows the budget and the summary keeps rolling
+        assertTrue(model.prompts.size() >= 2);
+        String transcript = model.prompts.get(model.prompts.size() - 1).getUserMessage().getText();
+        assertTrue(transcript.startsWith("Earlier summary: Summary "), transcript);
+        List<Message> history = memory.get("alice");
+        assertTrue(history.get(0).getText().startsWith(ConversationSummarizer.SUMMARY_PREFIX));
+        assertTrue(tokens(history) <= tokenCounter.budget());
+    }
+
+    @Test
+    void conversation_IsSummarizedOnceAtATime() throws Exception {
+        // Given
+        ConversationSummarizer summarizer = summarizer(100);
+        TokenWindowChatMemory memory = memory(summarizer);
+        model.gate = new CountDownLatch(1);
+
+        // When - the history keeps growing while the first summary is being written
+        for (int turn = 0; turn < 30; turn++) {
+            addTurn(memory, "alice", turn);
+        }
+
+        await(() -> model.prompts.size() == 1);
+
+        // Then - the token budget trims it meanwhile
+        assertFalse(summarizer.idle());
+        assertEquals(1, model.prompts.size());
+        assertTrue(tokens(memory.get("alice")) <= tokenCounter.budget());
+    }
+
+    @Test
+    void failedSummary_LeavesTheHistoryAndIsRetriedOnALaterTurn() throws Exception {
+        // Given
+        ConversationSummarizer summarizer = summarizer(100);
+        TokenWindowChatMemory memory = memory(summarizer);
+        model.failure = new IllegalStateException("model unavailable");
+        int turn = 0;
+        while (summarizer.idle()) {
+            addTurn(memory, "alice", turn++);
+        }
+        await(() -> summarizer.failures() == 1);
+
+        // When
+        model.failure = null;
+        addTurn(memory, "alice", turn);
+        await(() -> summarizer.summaries() == 1);
+
+        // Then
+        assertEquals(2, model.prompts.size());
+        assertFalse(memory.get("alice").get(0) instanceof SystemMessage);
+    }
+
+    @Test
+    void clear_DropsASummaryNotYetSwappedIn() throws Exception {
+        // Given
+        ConversationSummarizer summarizer = summarizer(100);
+        TokenWindowChatMemory memory = memory(summarizer);
+        int turn = 0;
+        while (summarizer.idle()) {
+            addTurn(memory, "alice", turn++);
+        }
+        await(() -> summarizer.summaries() == 1);
+
+        // When
+        memory.clear("alice");
+        addTurn(memory, "alice", 0);
+
+        // Then
+        assertEquals(List.of(new UserMessage("Question 0 about the railroad"),
+                new AssistantMessage("Answer 0 about the railroad")), memory.get("alice"));
+    }
+
+    @Test
+    void summaries_AreRateLimitedAcrossConversations() throws Exception {
+        // Given - at most 5 calls a second
+        ConversationSummarizer summarizer = summarizer(5);
+        TokenWindowChatMemory memory = memory(summarizer);
+
+        // When
+        for (String conversationId : List.of("alice", "bob", "carol")) {
+            for (int turn = 0; turn < 10; turn++) {
+                addTurn(memory, conversationId, turn);
+            }
+        }
+        await(() -> summarizer.summaries() == 3);
+
+        // Then - the first call goes straight away, the next two 200 ms apart each
+        long spread = model.callNanos.stream().mapToLong(Long::longValue).max().orElseThrow()
+                - model.callNanos.stream().mapToLong(Long::longValue).min().orElseThrow();
+        assertTrue(spread >= TimeUnit.MILLISECONDS.toNanos(350), () -> "calls spread over " + spread + " ns");
+    }
+
+    @Test
+    void keepRatioAtOrAboveTheTrigger_IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConversationSummarizer(model, tokenCounter,
+                new ChatSummaryProperties("gpt-4o-mini", 0.5, 0.5, 256, 1, 1, 1), meterRegistry));
+    }
+
+    /**
+     * Answers each summarization with "Summary n", once {@code gate} opens.
+     */
+    private static final class SummaryModel implements ChatModel {
+
+        final List<Prompt> prompts = new CopyOnWriteArrayList<>();
+        final List<Long> callNanos = new CopyOnWriteArrayList<>();
+        volatile CountDownLatch gate = new CountDownLatch(0);
+        volatile RuntimeException failure;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            try {
+                callNanos.add(System.nanoTime());
+                prompts.add(prompt);
+                gate.await();
+                if (failure != null) {
+                    throw failure;
+                }
+                return new ChatResponse(List.of(new Generation(new AssistantMessage("Summary " + prompts.size()))));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chatbot.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCodecTest {
+
+    @Test
+    void writeAll_ThenReadAll_KeepsTypesTextAndToolData() throws Exception {
+        // Given
+        List<Message> messages = List.of(
+                new SystemMessage("Use all tools"),
+                new UserMessage("Wie viele Eisenbahner gibt es? 🚂"),
+                new AssistantMessage(null, Map.of(), List.of(new AssistantMessage.ToolCall("call_1", "function",
+                        "getRailroadEmployeeCounts", "{\"employeeCount\":1}"))),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call_1", "getRailroadEmployeeCounts", "42"))),
+                new AssistantMessage("About 42"));
+
+        // When
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessageCodec.writeAll(new DataOutputStream(bytes), messages);
+        List<Message> read = MessageCodec.readAll(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then
+        assertEquals(messages.size(), read.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(messages.get(i).getMessageType(), read.get(i).getMessageType());
+            assertEquals(messages.get(i).getText(), read.get(i).getText());
+        }
+        assertEquals(((AssistantMessage) messages.get(2)).getToolCalls(), ((AssistantMessage) read.get(2)).getToolCalls());
+        assertEquals(((ToolResponseMessage) messages.get(3)).getResponses(), ((ToolResponseMessage) read.get(3)).getResponses());
+    }
+
+    @Test
+    void estimatedBytes_GrowsWithText() {
+        assertTrue(MessageCodec.estimatedBytes(new UserMessage("x".repeat(1000)))
+                > MessageCodec.estimatedBytes(new UserMessage("x")));
+        assertTrue(MessageCodec.estimatedBytes(new UserMessage("x".repeat(1000))) >= 2000);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.chatbot.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedChatMemoryTest {
+
+    @Test
+    void concurrentAdds_ToOneConversation_AreNotLost() throws Exception {
+        // Given
+        StripedChatMemory memory = new StripedChatMemory(MessageWindowChatMemory.builder().maxMessages(10_000).build());
+
+        // When - 50 writers append 100 messages each to the same conversation
+        try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < 50; w++) {
+                int writer = w;
+                running.add(writers.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        memory.add("shared", new UserMessage(writer + "-" + i));
+                    }
+                }));
+            }
+            for (Future<?> writer : running) {
+                writer.get();
+            }
+        }
+
+        // Then
+        assertEquals(5_000, memory.get("shared").size());
+    }
+
+    @Test
+    void conversations_AreKeptApart() {
+        // Given
+        StripedChatMemory memory = new StripedChatMemory(MessageWindowChatMemory.builder().maxMessages(2).build());
+
+        // When
+        memory.add("alice", new UserMessage("I am Alice"));
+        memory.add("bob", new UserMessage("I am Bob"));
+        memory.clear("bob");
+
+        // Then
+        assertEquals("I am Alice", memory.get("alice").get(0).getText());
+        assertTrue(memory.get("bob").isEmpty());
+    }
+
+    @Test
+    void stripeCount_IsRoundedUpToPowerOfTwo() {
+        MessageWindowChatMemory delegate = MessageWindowChatMemory.builder().build();
+
+        assertEquals(64, new StripedChatMemory(delegate).stripeCount());
+        assertEquals(1, new StripedChatMemory(delegate, 1).stripeCount());
+        assertEquals(128, new StripedChatMemory(delegate, 100).stripeCount());
+        assertThrows(IllegalArgumentException.class, () -> new StripedChatMemory(delegate, 0));
+    }
+
+    @Test
+    void conversations_SpreadOverStripes() {
+        // Given
+        StripedChatMemory memory = new StripedChatMemory(MessageWindowChatMemory.builder().build());
+
+        // When
+        long used = IntStream.range(0, 1_000)
+                .mapToObj(i -> memory.stripeFor("user-" + i))
+                .distinct()
+                .count();
+
+        // Then
+        assertEquals(memory.stripeCount(), used);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.chatbot.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCounterTest {
+
+    private final TokenCounter tokenCounter = new TokenCounter("gpt-4o", 1000);
+
+    @Test
+    void count_AddsTheTextTokensToThePerMessageOverhead() {
+        // Given
+        Message hello = new UserMessage("Hello");
+        Message longer = new UserMessage("How many people does the railroad employ in each state this year?");
+
+        // When
+        int helloTokens = tokenCounter.count(hello);
+        int longerTokens = tokenCounter.count(longer);
+
+        // Then - "Hello" is a single o200k token
+        assertEquals(TokenCounter.TOKENS_PER_MESSAGE + 1, helloTokens);
+        assertTrue(longerTokens > helloTokens + 10);
+        assertEquals(TokenCounter.TOKENS_PER_MESSAGE, tokenCounter.count(new AssistantMessage("")));
+    }
+
+    @Test
+    void count_IncludesToolCalls() {
+        // Given
+        Message toolCall = new AssistantMessage("", Map.of(), List.of(new AssistantMessage.ToolCall("call_1",
+                "function", "getRailroadEmployeeCounts", "{\"employeeCount\":3}")));
+
+        // When
+        int tokens = tokenCounter.count(toolCall);
+
+        // Then
+        assertTrue(tokens > TokenCounter.TOKENS_PER_MESSAGE + 5);
+    }
+
+    @Test
+    void count_GivesTheSameCountForEqualContentAndSeparatesRoles() {
+        // Given
+        String text = "You are a helpful assistant for railroad questions.";
+
+        // When
+        int first = tokenCounter.count(new UserMessage(text));
+        int again = tokenCounter.count(new UserMessage(text));
+        int asSystem = tokenCounter.count(new SystemMessage(text));
+        int other = tokenCounter.count(new UserMessage(text + " Be brief."));
+
+        // Then
+        assertEquals(first, again);
+        assertEquals(first, asSystem);
+        assertTrue(other > first);
+    }
+
+    @Test
+    void unknownModel_FallsBackToTheGpt4oEncoding() {
+        // Given
+        TokenCounter unknown = new TokenCounter("some-future-model", 500);
+        Message message = new UserMessage("How many people does the railroad employ?");
+
+        // When
+        int tokens = unknown.count(message);
+
+        // Then
+        assertEquals(tokenCounter.count(message), tokens);
+        assertEquals(500, unknown.budget());
+    }
+}
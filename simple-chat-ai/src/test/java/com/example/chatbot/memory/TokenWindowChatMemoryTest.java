@@ -0,0 +1,113 @@
+package com.example.chatbot.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenWindowChatMemoryTest {
+
+    private final TokenCounter tokenCounter = new TokenCounter("gpt-4o", 60);
+    private final TokenWindowChatMemory chatMemory =
+            new TokenWindowChatMemory(new InMemoryChatMemoryRepository(), tokenCounter);
+
+    private int tokens(List<Message> messages) {
+        return messages.stream().mapToInt(tokenCounter::count).sum();
+    }
+
+    @Test
+    void withinBudget_KeepsEveryMessage() {
+        // Given
+        List<Message> turn = List.of(new UserMessage("Hi"), new AssistantMessage("Hello"));
+
+        // When
+        chatMemory.add("alice", turn);
+
+        // Then
+        assertEquals(turn, chatMemory.get("alice"));
+    }
+
+    @Test
+    void shortTurns_KeepMoreHistoryThanLongOnes() {
+        // Given
+        String longText = "Railroads employ conductors, engineers, dispatchers and track crews across every state";
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            chatMemory.add("short", List.of(new UserMessage("Hi " + i)));
+            chatMemory.add("long", List.of(new UserMessage(longText + " " + i)));
+        }
+
+        // Then - both fit the budget, the oldest dropped first
+        List<Message> shortHistory = chatMemory.get("short");
+        List<Message> longHistory = chatMemory.get("long");
+        assertTrue(shortHistory.size() > longHistory.size());
+        assertTrue(tokens(shortHistory) <= tokenCounter.budget());
+        assertTrue(tokens(longHistory) <= tokenCounter.budget());
+        assertEquals("Hi 19", shortHistory.get(shortHistory.size() - 1).getText());
+        assertEquals(longText + " 19", longHistory.get(longHistory.size() - 1).getText());
+    }
+
+    @Test
+    void messageBiggerThanTheBudget_IsNotKept() {
+        // Given
+        chatMemory.add("alice", List.of(new UserMessage("Hi")));
+
+        // When
+        chatMemory.add("alice", List.of(new AssistantMessage("railroad ".repeat(100))));
+
+        // Then
+        assertEquals(List.of(), chatMemory.get("alice"));
+    }
+
+    @Test
+    void newSystemMessage_ReplacesTheStoredOne() {
+        // Given
+        chatMemory.add("alice", List.of(new SystemMessage("Be brief."), new UserMessage("Hi")));
+
+        // When
+        chatMemory.add("alice", List.of(new SystemMessage("Be detailed."), new UserMessage("Hi")));
+
+        // Then
+        assertEquals(List.of(new UserMessage("Hi"), new SystemMessage("Be detailed."), new UserMessage("Hi")),
+                chatMemory.get("alice"));
+    }
+
+    @Test
+    void repeatedTurn_IsKeptEachTime() {
+        // Given
+        chatMemory.add("alice", List.of(new UserMessage("Is Texas the largest?"), new AssistantMessage("Yes. Shall I rank the rest?")));
+        chatMemory.add("alice", List.of(new UserMessage("yes"), new AssistantMessage("Illinois comes next. More?")));
+
+        // When
+        chatMemory.add("alice", List.of(new UserMessage("yes"), new AssistantMessage("Then Nebraska.")));
+
+        // Then
+        List<String> history = chatMemory.get("alice").stream().map(Message::getText).toList();
+        assertEquals(List.of("Is Texas the largest?", "Yes. Shall I rank the rest?", "yes", "Illinois comes next. More?",
+                "yes", "Then Nebraska."), history);
+    }
+
+    @Test
+    void overBudget_DropsOlderTurnsBeforeTheSystemMessage() {
+        // Given
+        chatMemory.add("alice", List.of(new SystemMessage("Answer railroad questions.")));
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            chatMemory.add("alice", List.of(new UserMessage("Question " + i), new AssistantMessage("Answer " + i)));
+        }
+
+        // Then
+        List<Message> history = chatMemory.get("alice");
+        assertEquals(new SystemMessage("Answer railroad questions."), history.get(0));
+        assertEquals("Answer 19", history.get(history.size() - 1).getText());
+        assertTrue(tokens(history) <= tokenCounter.budget());
+    }
+}
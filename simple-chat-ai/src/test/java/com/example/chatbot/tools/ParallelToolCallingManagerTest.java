@@ -0,0 +1,191 @@
+package com.example.chatbot.tools;
+
+import com.example.chatbot.config.ToolExecutionProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelToolCallingManagerTest {
+
+    private ParallelToolCallingManager manager;
+
+    static class DeskTools {
+        final CyclicBarrier barrier = new CyclicBarrier(3);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Tool(description = "Name")
+        String name() throws Exception {
+            barrier.await(5, TimeUnit.SECONDS);
+            return "Kavitha";
+        }
+
+        @Tool(description = "Age")
+        String age() throws Exception {
+            barrier.await(5, TimeUnit.SECONDS);
+            return "thirty";
+        }
+
+        @Tool(description = "Hobbies")
+        String hobbies() throws Exception {
+            barrier.await(5, TimeUnit.SECONDS);
+            return "sketching";
+        }
+
+        @Tool(description = "Counts")
+        String count(Integer n) throws Exception {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return "n=" + n;
+        }
+
+        @Tool(description = "Slow")
+        String slow() {
+            try {
+                Thread.sleep(10_000);
+                return "late";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return "interrupted";
+            }
+        }
+
+        @Tool(description = "Broken")
+        String broken() {
+            throw new IllegalStateException("database down");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.close();
+    }
+
+    private ParallelToolCallingManager manager(int parallelism, Map<String, Duration> timeouts) {
+        manager = new ParallelToolCallingManager(ToolCallingManager.builder().build(),
+                new ToolExecutionProperties(parallelism, Duration.ofSeconds(5), timeouts));
+        return manager;
+    }
+
+    private static Prompt prompt(DeskTools tools) {
+        return new Prompt(List.of(new UserMessage("Tell me about yourself")),
+                ToolCallingChatOptions.builder().toolCallbacks(ToolCallbacks.from(tools)).build());
+    }
+
+    private static ChatResponse toolCalls(String... calls) {
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (int i = 0; i < calls.length; i++) {
+            String[] nameAndArguments = calls[i].split(" ", 2);
+            toolCalls.add(new AssistantMessage.ToolCall("call-" + i, "function", nameAndArguments[0],
+                    nameAndArguments.length > 1 ? nameAndArguments[1] : "{}"));
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), toolCalls))));
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        List<Message> history = result.conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+    }
+
+    @Test
+    void independentToolCalls_RunConcurrentlyAndAnswerInOrder() {
+        // Given - each tool waits until all three are running
+        DeskTools tools = new DeskTools();
+        ChatResponse response = toolCalls("hobbies", "name", "age");
+
+        // When
+        ToolExecutionResult result = manager(4, Map.of()).executeToolCalls(prompt(tools), response);
+
+        // Then
+        List<Message> history = result.conversationHistory();
+        assertEquals(3, history.size());
+        assertInstanceOf(UserMessage.class, history.get(0));
+        assertEquals(response.getResult().getOutput(), history.get(1));
+        assertEquals(List.of("call-0", "call-1", "call-2"), responses(result).stream().map(ToolResponseMessage.ToolResponse::id).toList());
+        assertEquals(List.of("\"sketching\"", "\"Kavitha\"", "\"thirty\""),
+                responses(result).stream().map(ToolResponseMessage.ToolResponse::responseData).toList());
+        assertFalse(result.returnDirect());
+    }
+
+    @Test
+    void parallelism_BoundsTheToolCallsRunningAtOnce() {
+        // Given
+        DeskTools tools = new DeskTools();
+        ChatResponse response = toolCalls("count {\"n\":1}", "count {\"n\":2}", "count {\"n\":3}",
+                "count {\"n\":4}", "count {\"n\":5}", "count {\"n\":6}");
+
+        // When
+        ToolExecutionResult result = manager(2, Map.of()).executeToolCalls(prompt(tools), response);
+
+        // Then
+        assertEquals(List.of("\"n=1\"", "\"n=2\"", "\"n=3\"", "\"n=4\"", "\"n=5\"", "\"n=6\""),
+                responses(result).stream().map(ToolResponseMessage.ToolResponse::responseData).toList());
+        assertTrue(tools.maxRunning.get() <= 2, () -> tools.maxRunning.get() + " tool calls ran at once");
+    }
+
+    @Test
+    void slowTool_IsCancelledAfterItsTimeout() throws Exception {
+        // Given
+        DeskTools tools = new DeskTools();
+        ChatResponse response = toolCalls("slow", "count {\"n\":1}");
+        long start = System.nanoTime();
+
+        // When
+        ToolExecutionResult result = manager(4, Map.of("slow", Duration.ofMillis(100)))
+                .executeToolCalls(prompt(tools), response);
+
+        // Then
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals("The tool did not answer within 100 ms", responses(result).get(0).responseData());
+        assertEquals("\"n=1\"", responses(result).get(1).responseData());
+        assertTrue(tools.interrupted.await(5, TimeUnit.SECONDS), "the slow tool was not interrupted");
+    }
+
+    @Test
+    void failingTool_IsReportedToTheModelWithoutFailingTheOthers() {
+        // Given
+        DeskTools tools = new DeskTools();
+        ChatResponse response = toolCalls("broken", "count {\"n\":1}");
+
+        // When
+        ToolExecutionResult result = manager(4, Map.of()).executeToolCalls(prompt(tools), response);
+
+        // Then
+        assertEquals("database down", responses(result).get(0).responseData());
+        assertEquals("\"n=1\"", responses(result).get(1).responseData());
+    }
+
+    @Test
+    void unknownTool_FailsTheTurn() {
+        // Given
+        DeskTools tools = new DeskTools();
+        ChatResponse response = toolCalls("count {\"n\":1}", "weather");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> manager(4, Map.of()).executeToolCalls(prompt(tools), response));
+    }
+}
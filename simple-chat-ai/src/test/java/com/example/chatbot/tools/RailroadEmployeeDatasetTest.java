@@ -0,0 +1,149 @@
+package com.example.chatbot.tools;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RailroadEmployeeDatasetTest {
+
+    private static final String CSV = """
+            # A comment before the header
+            state_code,state_name,year,month,employees
+            NE,Nebraska,2021,12,8000
+            NE,Nebraska,2022,1,7900
+            NE,Nebraska,2022,2,7950
+
+            IL,Illinois,2022,1,12000
+            IL,Illinois,2022,2,12100
+            WY,Wyoming,2022,2,1200
+            """;
+
+    private static RailroadEmployeeDataset dataset(String csv) {
+        return new RailroadEmployeeDataset(new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void employees_LooksUpAStateByCodeOrNameInAnyCase() {
+        // Given
+        RailroadEmployeeDataset dataset = dataset(CSV);
+
+        // Then
+        assertEquals(7900L, dataset.employees("NE", 2022, 1));
+        assertEquals(7900L, dataset.employees(" nebraska ", 2022, 1));
+        assertEquals(8000L, dataset.employees("Nebraska", 2021, 12));
+        assertNull(dataset.employees("Wyoming", 2022, 1));
+        assertNull(dataset.employees("Ohio", 2022, 1));
+        assertNull(dataset.employees("NE", 2020, 1));
+        assertNull(dataset.employees("NE", 2022, 13));
+        assertEquals(2021, dataset.firstYear());
+        assertEquals(2022, dataset.lastYear());
+    }
+
+    @Test
+    void aggregates_SumStatesAndAverageMonths() {
+        // Given
+        RailroadEmployeeDataset dataset = dataset(CSV);
+
+        // Then
+        assertEquals(19900L, dataset.total(2022, 1));
+        assertEquals(21250L, dataset.total(2022, 2));
+        assertNull(dataset.total(2021, 1));
+        assertEquals(7925L, dataset.yearlyAverage("NE", 2022));
+        assertEquals(20575L, dataset.yearlyAverage(null, 2022));
+        assertNull(dataset.yearlyAverage("IL", 2021));
+    }
+
+    @Test
+    void ranking_ListsTheLargestStatesFirst() {
+        // Given
+        RailroadEmployeeDataset dataset = dataset(CSV);
+
+        // When
+        List<RailroadEmployeeDataset.StateCount> ranking = dataset.ranking(2022, 2);
+
+        // Then
+        assertEquals(List.of(new RailroadEmployeeDataset.StateCount("Illinois", 12050),
+                new RailroadEmployeeDataset.StateCount("Nebraska", 7925)), ranking);
+        assertEquals(3, dataset.ranking(2022, 10).size());
+        assertEquals(List.of(), dataset.ranking(2022, -1));
+    }
+
+    @Test
+    void month_AcceptsNamesAbbreviationsAndNumbers() {
+        assertEquals(1, RailroadEmployeeDataset.month("January"));
+        assertEquals(9, RailroadEmployeeDataset.month(" sep "));
+        assertEquals(12, RailroadEmployeeDataset.month("12"));
+        assertNull(RailroadEmployeeDataset.month("13"));
+        assertNull(RailroadEmployeeDataset.month("Smarch"));
+        assertNull(RailroadEmployeeDataset.month(""));
+    }
+
+    @Test
+    void malformedLine_FailsWithItsLineNumber() {
+        // Given
+        String csv = """
+                state_code,state_name,year,month,employees
+                NE,Nebraska,2022,1,7900
+                NE,Nebraska,2022,January,7950
+                """;
+
+        // When
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> dataset(csv));
+
+        // Then
+        assertTrue(e.getMessage().contains("line 3"), e.getMessage());
+    }
+
+    @Test
+    void sampleDataset_CoversEveryStateForEachMonth() {
+        // Given
+        RailroadEmployeeDataset dataset = new RailroadEmployeeDataset(new ClassPathResource("data/railroad-employees.csv"));
+
+        // Then
+        assertEquals(51, dataset.ranking(dataset.lastYear(), 100).size());
+        for (int year = dataset.firstYear(); year <= dataset.lastYear(); year++) {
+            for (int month = 1; month <= 12; month++) {
+                assertNotNull(dataset.employees("TX", year, month), year + "-" + month);
+            }
+        }
+    }
+
+    @Test
+    void emptyDataset_HasNoFigures() {
+        // Given
+        RailroadEmployeeDataset dataset = dataset("state_code,state_name,year,month,employees\n");
+
+        // Then
+        assertNull(dataset.employees("NE", 2022, 1));
+        assertNull(dataset.total(2022, 1));
+        assertEquals(List.of(), dataset.ranking(2022, 5));
+    }
+
+    @Test
+    void unconfiguredLocation_LeavesTheDatasetEmpty() {
+        // Given - no export configured, and no sample to fall back on
+        RailroadEmployeeDataset dataset = new RailroadEmployeeDataset("", new DefaultResourceLoader());
+
+        // Then
+        assertNull(dataset.employees("TX", 2022, 3));
+        assertNull(dataset.total(2022, 3));
+        assertNull(dataset.yearlyAverage("TX", 2022));
+        assertEquals(List.of(), dataset.ranking(2022, 5));
+    }
+
+    @Test
+    void configuredLocation_IsLoaded() {
+        // Given
+        RailroadEmployeeDataset dataset = new RailroadEmployeeDataset("classpath:data/railroad-employees.csv",
+                new DefaultResourceLoader());
+
+        // Then
+        assertNotNull(dataset.employees("TX", dataset.lastYear(), 1));
+    }
+}
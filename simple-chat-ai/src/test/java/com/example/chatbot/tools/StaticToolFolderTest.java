@@ -0,0 +1,126 @@
+package com.example.chatbot.tools;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticToolFolderTest {
+
+    static class Desk {
+        final AtomicInteger nameCalls = new AtomicInteger();
+
+        @Memoized(pure = true)
+        @Tool(description = "My name")
+        String name() {
+            nameCalls.incrementAndGet();
+            return "Kavitha";
+        }
+
+        @Memoized(pure = true)
+        @Tool(description = "My age")
+        Integer age() {
+            return 30;
+        }
+
+        @Tool(description = "The time")
+        String time() {
+            return String.valueOf(System.nanoTime());
+        }
+
+        @Memoized(ttl = "1m")
+        @Tool(description = "The weather")
+        String weather() {
+            return "sunny";
+        }
+
+        @Memoized(pure = true)
+        @Tool(description = "A square")
+        Integer square(Integer n) {
+            return n * n;
+        }
+
+        @Memoized(pure = true)
+        @Tool(description = "A quote", returnDirect = true)
+        String quote() {
+            return "Stay curious";
+        }
+
+        @Memoized(pure = true)
+        @Tool(description = "Broken")
+        String broken() {
+            throw new IllegalStateException("not configured");
+        }
+    }
+
+    private static List<String> toolNames(List<ToolCallback> callbacks) {
+        return callbacks.stream().map(callback -> callback.getToolDefinition().name()).sorted().toList();
+    }
+
+    @Test
+    void fold_AnswersPureArgumentFreeToolsInTheSystemPrompt() {
+        // Given
+        Desk desk = new Desk();
+
+        // When
+        StaticToolFolder.Folded folded = new StaticToolFolder(true).fold(List.of(ToolCallbacks.from(desk)), desk);
+
+        // Then
+        assertEquals(StaticToolFolder.PREFIX_HEADER + "- age (My age): 30\n- name (My name): Kavitha\n\n",
+                folded.systemPromptPrefix());
+        assertEquals(List.of("broken", "quote", "square", "time", "weather"), toolNames(folded.toolCallbacks()));
+        assertEquals(folded.systemPromptPrefix() + "Be brief", folded.systemPrompt("Be brief"));
+        assertEquals(1, desk.nameCalls.get());
+    }
+
+    @Test
+    void fold_GivesTheSamePrefixWhateverTheToolOrder() {
+        // Given
+        Desk desk = new Desk();
+        List<ToolCallback> callbacks = List.of(ToolCallbacks.from(desk));
+
+        // When
+        String prefix = new StaticToolFolder(true).fold(callbacks, desk).systemPromptPrefix();
+        String reversed = new StaticToolFolder(true).fold(callbacks.reversed(), desk).systemPromptPrefix();
+
+        // Then
+        assertEquals(prefix, reversed);
+    }
+
+    @Test
+    void fold_WhenDisabled_KeepsEveryTool() {
+        // Given
+        Desk desk = new Desk();
+
+        // When
+        StaticToolFolder.Folded folded = new StaticToolFolder(false).fold(List.of(ToolCallbacks.from(desk)), desk);
+
+        // Then
+        assertEquals("", folded.systemPromptPrefix());
+        assertEquals(7, folded.toolCallbacks().size());
+        assertEquals(0, desk.nameCalls.get());
+    }
+
+    @Test
+    void fold_WithoutStaticTools_LeavesThePromptAlone() {
+        // Given
+        Object tools = new Object() {
+            @Tool(description = "The time")
+            String time() {
+                return "noon";
+            }
+        };
+
+        // When
+        StaticToolFolder.Folded folded = new StaticToolFolder(true).fold(List.of(ToolCallbacks.from(tools)), tools);
+
+        // Then
+        assertEquals("", folded.systemPromptPrefix());
+        assertEquals(List.of("time"), toolNames(folded.toolCallbacks()));
+    }
+}
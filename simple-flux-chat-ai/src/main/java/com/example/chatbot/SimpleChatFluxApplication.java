@@ -2,6 +2,7 @@ package com.example.chatbot;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 /**
  * Main application class for the Simple Chat with Flux application.
@@ -14,6 +15,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * The application exposes REST endpoints for both streaming (SSE) and non-streaming chat interactions.
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class SimpleChatFluxApplication {
 
     /**
@@ -0,0 +1,126 @@
+package com.example.chatbot.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns a query into a unit vector on the CPU, with no model download or network call.
+ * <p>
+ * Uses feature hashing: each normalized word, each pair of adjacent words and each character
+ * trigram of a word is hashed to one of {@code dimensions} coordinates with a hashed sign,
+ * and the sum is scaled to unit length. Queries that only differ in case, punctuation, word
+ * order, plurals, contractions or filler words ("please", "tell me") land close together,
+ * while a different subject word moves the vector well away. It does not know synonyms;
+ * it is meant to catch the common rephrasings of one question, not to understand it.
+ */
+public final class QueryEmbedder {
+
+    // Dropped before hashing: they rarely change what is being asked
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "a", "an", "the", "and", "is", "are", "was", "be", "do", "does", "did", "of", "to", "me", "i", "you",
+            "please", "pls", "kindly", "tell", "can", "could", "would", "will", "just", "hey", "hi");
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float PAIR_WEIGHT = 0.5f;
+    private static final float TRIGRAM_WEIGHT = 0.25f;
+
+    private final int dimensions;
+
+    public QueryEmbedder(int dimensions) {
+        if (dimensions < 16) {
+            throw new IllegalArgumentException("dimensions must be at least 16");
+        }
+        this.dimensions = dimensions;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return a vector of length {@link #dimensions()} with unit norm, or all zeros for a
+     * query without any words
+     */
+    public float[] embed(String query) {
+        float[] vector = new float[dimensions];
+        List<String> words = words(query);
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            add(vector, 'w', word, WORD_WEIGHT);
+            if (i > 0) {
+                add(vector, 'p', words.get(i - 1) + ' ' + word, PAIR_WEIGHT);
+            }
+            String padded = '^' + word + '$';
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                add(vector, 't', padded.substring(j, j + 3), TRIGRAM_WEIGHT);
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Lower-cased words of the query, with contractions and plurals folded and filler words
+     * dropped.
+     */
+    static List<String> words(String query) {
+        List<String> words = new ArrayList<>();
+        String text = query.toLowerCase(Locale.ROOT).replace('’', '\'');
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '\'');
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = normalize(text.substring(start, i));
+                if (word != null) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the word with contractions and plurals folded, or {@code null} for a filler word
+     */
+    private static String normalize(String word) {
+        int apostrophe = word.indexOf('\'');
+        if (apostrophe >= 0) {
+            // what's -> what, don't -> don, railroads' -> railroads
+            word = word.substring(0, apostrophe);
+        }
+        if (word.isEmpty() || FILLER_WORDS.contains(word)) {
+            return null;
+        }
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + 'y';
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private void add(float[] vector, char kind, String feature, float weight) {
+        // 64-bit FNV-1a; the low bits pick the coordinate, the top bit the sign
+        long hash = (0xcbf29ce484222325L ^ kind) * 0x100000001b3L;
+        for (int i = 0; i < feature.length(); i++) {
+            hash = (hash ^ feature.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 29;
+        int index = (int) Long.remainderUnsigned(hash, dimensions);
+        vector[index] += hash < 0 ? -weight : weight;
+    }
+}
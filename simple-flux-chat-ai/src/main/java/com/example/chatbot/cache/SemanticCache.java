@@ -0,0 +1,185 @@
+package com.example.chatbot.cache;
+
+import com.example.chatbot.config.SemanticCacheProperties;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of stateless answers that also serves rephrasings of a cached question.
+ * <p>
+ * Each query is embedded on the CPU by {@link QueryEmbedder} and looked up in an in-memory
+ * {@link HnswIndex}; the answer of the most similar cached query is served if its cosine
+ * similarity reaches {@code app.semantic-cache.similarity-threshold}, it is younger than
+ * {@code ttl}, and both queries mention the same numbers, since "employees in 2020" and
+ * "employees in 2021" embed almost alike but are different questions. The index holds at
+ * most {@code max-entries} answers and evicts the least recently hit first.
+ * <p>
+ * When a meter registry is available, publishes {@code semantic.cache.hits},
+ * {@code semantic.cache.misses}, {@code semantic.cache.evictions},
+ * {@code semantic.cache.size} and the {@code semantic.cache.lookup} latency.
+ */
+@Component
+public class SemanticCache {
+
+    // Near neighbours checked per lookup, in case the nearest one is stale or about other numbers
+    private static final int CANDIDATES = 4;
+    private static final long INDEX_SEED = 42;
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final long ttlNanos;
+    private final int efSearch;
+    private final Ticker ticker;
+    private final QueryEmbedder embedder;
+    private final HnswIndex<Entry> index;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Timer lookups;
+
+    @Autowired
+    public SemanticCache(SemanticCacheProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(properties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * @param meterRegistry where to publish metrics, or {@code null}
+     */
+    public SemanticCache(SemanticCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    SemanticCache(SemanticCacheProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.enabled = properties.enabled();
+        this.similarityThreshold = properties.similarityThreshold();
+        this.ttlNanos = properties.ttl().toNanos();
+        this.efSearch = properties.efSearch();
+        this.ticker = ticker;
+        this.embedder = new QueryEmbedder(properties.dimensions());
+        this.index = new HnswIndex<>(properties.dimensions(), properties.maxEntries(), INDEX_SEED);
+        this.lookups = meterRegistry == null ? null : registerMetrics(meterRegistry);
+    }
+
+    /**
+     * @return the cached answer to this query or a rephrasing of it, or {@code null}
+     */
+    public String get(String query) {
+        if (!enabled) {
+            return null;
+        }
+        long start = ticker.read();
+        String answer = lookup(query);
+        if (lookups != null) {
+            lookups.record(ticker.read() - start, TimeUnit.NANOSECONDS);
+        }
+        (answer != null ? hits : misses).increment();
+        return answer;
+    }
+
+    /**
+     * Caches an answer, replacing the one of a cached rephrasing of the query.
+     */
+    public void put(String query, String answer) {
+        if (!enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+        float[] vector = embedder.embed(query);
+        if (isZero(vector)) {
+            return;
+        }
+        String numbers = numbers(query);
+        Entry entry = new Entry(numbers, answer, ticker.read() + ttlNanos);
+        for (HnswIndex.Match<Entry> match : index.search(vector, CANDIDATES, efSearch)) {
+            if (match.similarity() >= similarityThreshold && match.value().numbers().equals(numbers)
+                    && index.replace(match.slot(), match.value(), entry)) {
+                return;
+            }
+        }
+        index.add(vector, entry);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    private String lookup(String query) {
+        float[] vector = embedder.embed(query);
+        if (isZero(vector)) {
+            return null;
+        }
+        String numbers = numbers(query);
+        long now = ticker.read();
+        for (HnswIndex.Match<Entry> match : index.search(vector, CANDIDATES, efSearch)) {
+            if (match.similarity() < similarityThreshold) {
+                break;
+            }
+            Entry entry = match.value();
+            if (entry.expiresAt() - now <= 0) {
+                index.remove(match.slot(), entry);
+            } else if (entry.numbers().equals(numbers)) {
+                index.touch(match.slot());
+                return entry.answer();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The digit runs of a query, in order, e.g. "2020,3" for "top 3 in 2020".
+     */
+    static String numbers(String query) {
+        StringBuilder numbers = new StringBuilder();
+        boolean inNumber = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (Character.isDigit(c)) {
+                if (!inNumber && !numbers.isEmpty()) {
+                    numbers.append(',');
+                }
+                numbers.append(c);
+                inNumber = true;
+            } else {
+                inNumber = false;
+            }
+        }
+        return numbers.toString();
+    }
+
+    private static boolean isZero(float[] vector) {
+        for (float value : vector) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Timer registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("semantic.cache.hits", hits, LongAdder::sum)
+                .description("Stateless queries answered from the semantic cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("semantic.cache.misses", misses, LongAdder::sum)
+                .description("Stateless queries the semantic cache had no answer for")
+                .register(meterRegistry);
+        FunctionCounter.builder("semantic.cache.evictions", index, HnswIndex::evictions)
+                .description("Answers evicted from the full semantic cache")
+                .register(meterRegistry);
+        Gauge.builder("semantic.cache.size", index, HnswIndex::size)
+                .description("Answers in the semantic cache")
+                .register(meterRegistry);
+        return Timer.builder("semantic.cache.lookup")
+                .description("Time to embed a query and search the semantic cache")
+                .register(meterRegistry);
+    }
+
+    private record Entry(String numbers, String answer, long expiresAt) {
+    }
+}
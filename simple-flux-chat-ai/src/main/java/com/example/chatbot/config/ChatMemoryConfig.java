@@ -0,0 +1,21 @@
+package com.example.chatbot.config;
+
+import com.example.chatbot.memory.HistoryCompactor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks how conversation histories over their token budget are compacted:
+ * {@code app.chat-memory.compaction=trim} (the default) drops the oldest messages, while
+ * {@code summarize} enables {@link com.example.chatbot.memory.ConversationSummarizer}.
+ */
+@Configuration
+public class ChatMemoryConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.chat-memory.compaction", havingValue = "trim", matchIfMissing = true)
+    public HistoryCompactor trimOnlyHistoryCompactor() {
+        return HistoryCompactor.NONE;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Semantic cache of stateless answers, {@code app.semantic-cache.*}, read by
+ * {@link com.example.chatbot.cache.SemanticCache}.
+ *
+ * @param enabled             whether to look up and store answers at all
+ * @param maxEntries          answers kept; beyond that the least recently hit go first
+ * @param similarityThreshold cosine similarity from which two queries count as the same question
+ * @param ttl                 how long an answer is served
+ * @param dimensions          length of the query vectors
+ * @param efSearch            candidates the index keeps while searching; higher is more accurate
+ */
+@ConfigurationProperties("app.semantic-cache")
+public record SemanticCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10000") int maxEntries,
+        @DefaultValue("0.9") double similarityThreshold,
+        @DefaultValue("1h") Duration ttl,
+        @DefaultValue("256") int dimensions,
+        @DefaultValue("64") int efSearch) {
+}
@@ -0,0 +1,21 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Framing of the streamed answers, {@code app.sse.*}, read by
+ * {@link com.example.chatbot.sse.TokenCoalescer}.
+ *
+ * @param window       longest a token waits for the next ones to share its event; {@code 0}
+ *                     sends every token as an event of its own
+ * @param maxFrameSize data from which an event is sent without waiting for its window to end
+ */
+@ConfigurationProperties("app.sse")
+public record SseProperties(
+        @DefaultValue("20ms") Duration window,
+        @DefaultValue("1KB") DataSize maxFrameSize) {
+}
@@ -0,0 +1,32 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Resuming dropped streams, {@code app.sse.resume.*}, read by
+ * {@link com.example.chatbot.sse.ResumableStreams}.
+ *
+ * @param enabled          whether a reconnect with {@code Last-Event-ID} picks up the running answer
+ * @param maxFrames        most recent events kept per stream to resume from
+ * @param maxSize          data of the events kept per stream; the oldest go first beyond it
+ * @param gracePeriod      how long the events of a finished answer are kept for a late reconnect
+ * @param reconnectTimeout how long an answer nobody reads any more keeps being generated for
+ *                         its client to reconnect before the model is stopped; {@code 0} stops
+ *                         it as soon as the last client leaves
+ * @param multicast        whether a request for an answer still being generated, the same
+ *                         question in the same conversation, shares it rather than asking the
+ *                         model again, getting the events so far first
+ */
+@ConfigurationProperties("app.sse.resume")
+public record SseResumeProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1024") int maxFrames,
+        @DefaultValue("256KB") DataSize maxSize,
+        @DefaultValue("1m") Duration gracePeriod,
+        @DefaultValue("5s") Duration reconnectTimeout,
+        @DefaultValue("false") boolean multicast) {
+}
@@ -0,0 +1,32 @@
+package com.example.chatbot.config;
+
+import com.example.chatbot.tools.ParallelToolCallingManager;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Replaces Spring AI's tool calling manager, which runs the tool calls of a turn one after
+ * another, with {@link ParallelToolCallingManager}. The chat model uses it for every tool
+ * call, which today come from the smart endpoint's {@link com.example.chatbot.tools.InformationDesk}.
+ */
+@Configuration
+public class ToolExecutionConfig {
+
+    @Bean
+    public ParallelToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                                         ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                                         ObjectProvider<ObservationRegistry> observationRegistry,
+                                                         ToolExecutionProperties properties) {
+        ToolCallingManager sequential = ToolCallingManager.builder()
+                .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+                .build();
+        return new ParallelToolCallingManager(sequential, properties);
+    }
+}
@@ -1,13 +1,34 @@
 package com.example.chatbot.config;
 
+import com.example.chatbot.memory.ConversationIdArgumentResolver;
+import com.example.chatbot.sse.TokenFrameWriter;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.web.reactive.config.CorsRegistry;
 import org.springframework.web.reactive.config.EnableWebFlux;
 import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
 
 @Configuration
 //@EnableWebFlux
-public class WebFluxConfig /*implements WebFluxConfigurer*/ {
+public class WebFluxConfig implements WebFluxConfigurer {
+
+    /**
+     * Lets controllers take a {@link com.example.chatbot.memory.ConversationId} argument.
+     */
+    @Override
+    public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+        configurer.addCustomResolver(new ConversationIdArgumentResolver());
+    }
+
+    /**
+     * Writes the {@link com.example.chatbot.sse.TokenFrame frames} of the streaming endpoints as
+     * Server-Sent Events.
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new TokenFrameWriter());
+    }
 
     /*@Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -1,43 +1,74 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.StripedChatMemory;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.memory.TokenWindowChatMemory;
+import com.example.chatbot.memory.TurnMemoryAdvisor;
+import com.example.chatbot.sse.CancelledStreams;
+import com.example.chatbot.sse.ResumableStreams;
+import com.example.chatbot.sse.TokenCoalescer;
+import com.example.chatbot.sse.TokenFrame;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.stream.Collectors;
+
 /**
  * Controller for handling context-aware chat interactions with OpenAI.
  * Maintains conversation state to provide contextual responses.
  */
 @RestController
 public class OpenAiContextAwareController {
+
+    // Keeps this endpoint's history apart from the other stateful endpoint's in the shared repository
+    private static final String MEMORY_SCOPE = "state";
     
     // ChatClient instance for interacting with the AI model
     private final ChatClient chatClient;
-    
-    // Conversation ID used to maintain chat context
-    private static final String CONVERSATION_ID = "12345";
+
+    // Groups the streamed tokens into events
+    private final TokenCoalescer tokenCoalescer;
+
+    // Keeps answers going for clients that reconnect
+    private final ResumableStreams resumableStreams;
+
+    // Counts the answers cancelled as their client left
+    private final CancelledStreams cancelledStreams;
 
     /**
      * Constructs a new controller with the specified ChatClient builder.
      * Initializes chat memory to maintain conversation context.
      * 
      * @param builder The ChatClient builder for creating chat client instances
+     * @param chatMemoryRepository Where the conversation histories are kept, shared with the other stateful endpoints
+     * @param tokenCounter Token counts and history budget of the configured model
+     * @param historyCompactor Shrinks long histories before the token budget trims them, e.g. by summarizing older turns
+     * @param tokenCoalescer Groups the streamed tokens into Server-Sent Events
+     * @param resumableStreams Keeps streamed answers going for clients that reconnect with Last-Event-ID
+     * @param cancelledStreams Counts the streamed answers cancelled as their client left
      */
-    public OpenAiContextAwareController(ChatClient.Builder builder) {
-        // Initialize chat memory to maintain the last 4 messages for context
-        ChatMemory chatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(4)
-                .build();
+    public OpenAiContextAwareController(ChatClient.Builder builder, ChatMemoryRepository chatMemoryRepository,
+                                        TokenCounter tokenCounter, HistoryCompactor historyCompactor,
+                                        TokenCoalescer tokenCoalescer, ResumableStreams resumableStreams,
+                                        CancelledStreams cancelledStreams) {
+        // Initialize chat memory to maintain the most recent messages of each conversation within the token budget
+        ChatMemory chatMemory = new StripedChatMemory(new TokenWindowChatMemory(chatMemoryRepository, tokenCounter,
+                historyCompactor));
                 
         // Configure the chat client with memory advisor to maintain conversation state
         this.chatClient = builder
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
+                .defaultAdvisors(new TurnMemoryAdvisor(chatMemory))
                 .build();
+        this.tokenCoalescer = tokenCoalescer;
+        this.resumableStreams = resumableStreams;
+        this.cancelledStreams = cancelledStreams;
     }
 
     /**
@@ -45,35 +76,41 @@ public class OpenAiContextAwareController {
      * Returns a stream of responses for real-time updates.
      * 
      * @param message The user's message to process
-     * @return A Flux of strings containing SSE-formatted responses
+     * @param conversationId The caller's conversation, from the X-Conversation-Id header or the session
+     * @param lastEventId The id of the last event a reconnecting client got, to resume the same answer after it
+     * @return A Flux of frames, each one Server-Sent Event of the tokens streamed together
      */
     @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE, value = "/state-query")
-    public Flux<String> streamChat(@RequestParam String message) {
-        return chatClient.prompt(message)
-                // Associate the request with a conversation for context
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, CONVERSATION_ID))
-                .stream()
-                .content()
-                // Format the response as Server-Sent Events
-                .map(content -> "data: " + content + "\n\n");
+    public Flux<TokenFrame> streamChat(@RequestParam String message, ConversationId conversationId,
+                                       @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        // A reconnect asks the same question in the same conversation
+        String stream = conversationId.scoped(MEMORY_SCOPE) + "\n" + message;
+        return resumableStreams.stream(stream, lastEventId, () -> tokenCoalescer.coalesce(cancelledStreams.track(
+                chatClient.prompt(message)
+                        // Associate the request with a conversation for context
+                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId.scoped(MEMORY_SCOPE)))
+                        .stream()
+                        .content())));
     }
 
     /**
      * Handles non-streaming chat requests.
-     * Returns a single response for the given message.
+     * Returns a single response for the given message, the streamed response put together
+     * so no thread waits for the model.
      * 
      * @param message The user's message to process
+     * @param conversationId The caller's conversation, from the X-Conversation-Id header or the session
      * @return A Mono containing the AI's response
      */
     @PostMapping(value = "/state-query")
-    public Mono<String> chat(@RequestBody String message) {
-        return Mono.fromCallable(() ->
-                chatClient.prompt(message)
-                        // Associate the request with a conversation for context
-                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, CONVERSATION_ID))
-                        .call()
-                        .content()
-        );
+    public Mono<String> chat(@RequestBody String message, ConversationId conversationId) {
+        return chatClient.prompt(message)
+                // Associate the request with a conversation for context
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId.scoped(MEMORY_SCOPE)))
+                .stream()
+                .content()
+                // Join the streamed response into one answer
+                .collect(Collectors.joining());
     }
 }
 
@@ -1,49 +1,93 @@
 package com.example.chatbot.controller;
 
 import com.example.chatbot.tools.InformationDesk;
+import com.example.chatbot.tools.StaticToolFolder;
+import com.example.chatbot.tools.ToolResultCache;
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.StripedChatMemory;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.memory.TokenWindowChatMemory;
+import com.example.chatbot.memory.TurnMemoryAdvisor;
+import com.example.chatbot.sse.CancelledStreams;
+import com.example.chatbot.sse.ResumableStreams;
+import com.example.chatbot.sse.TokenCoalescer;
+import com.example.chatbot.sse.TokenFrame;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.stream.Collectors;
+
 /**
  * Controller for handling smart chat interactions with OpenAI.
  * Extends the context-aware controller with additional tools and capabilities.
  */
 @RestController
 public class OpenAiSmartController {
+
+    // Keeps this endpoint's history apart from the other stateful endpoint's in the shared repository
+    private static final String MEMORY_SCOPE = "smart";
     
     // ChatClient instance for interacting with the AI model
     private final ChatClient chatClient;
-    
-    // Conversation ID used to maintain chat context
-    private static final String CONVERSATION_ID = "12345";
+
+    // Groups the streamed tokens into events
+    private final TokenCoalescer tokenCoalescer;
+
+    // Keeps answers going for clients that reconnect
+    private final ResumableStreams resumableStreams;
+
+    // Counts the answers cancelled as their client left
+    private final CancelledStreams cancelledStreams;
     
     // System message to guide AI behavior
     private static final String SYSTEM_MESSAGE = 
             "Use all tools available when you can't figure out answer and provide approximate answer if you don't know the answer";
 
+    // SYSTEM_MESSAGE after the answers of the tools folded into it; the same on every request
+    private final String systemMessage;
+
     /**
      * Constructs a new smart controller with the specified ChatClient builder.
      * Initializes chat memory and configures available tools.
      * 
      * @param builder The ChatClient builder for creating chat client instances
+     * @param chatMemoryRepository Where the conversation histories are kept, shared with the other stateful endpoints
+     * @param tokenCounter Token counts and history budget of the configured model
+     * @param historyCompactor Shrinks long histories before the token budget trims them, e.g. by summarizing older turns
+     * @param toolResultCache Reuses the results of memoized tools across calls and conversations
+     * @param informationDesk The tools the model can use
+     * @param staticToolFolder Moves the answers of argument-free tools into the system message
+     * @param tokenCoalescer Groups the streamed tokens into Server-Sent Events
+     * @param resumableStreams Keeps streamed answers going for clients that reconnect with Last-Event-ID
+     * @param cancelledStreams Counts the streamed answers cancelled as their client left
      */
-    public OpenAiSmartController(ChatClient.Builder builder) {
-        // Initialize chat memory to maintain the last 2 messages for context
-        ChatMemory chatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(2)
-                .build();
+    public OpenAiSmartController(ChatClient.Builder builder, ChatMemoryRepository chatMemoryRepository,
+                                 TokenCounter tokenCounter, HistoryCompactor historyCompactor,
+                                 ToolResultCache toolResultCache, InformationDesk informationDesk,
+                                 StaticToolFolder staticToolFolder, TokenCoalescer tokenCoalescer,
+                                 ResumableStreams resumableStreams, CancelledStreams cancelledStreams) {
+        // Initialize chat memory to maintain the most recent messages of each conversation within the token budget
+        ChatMemory chatMemory = new StripedChatMemory(new TokenWindowChatMemory(chatMemoryRepository, tokenCounter,
+                historyCompactor));
+
+        // Answer the tools that always give the same answer up front, saving the model a round-trip
+        StaticToolFolder.Folded tools = staticToolFolder.fold(toolResultCache.memoize(informationDesk), informationDesk);
+        this.systemMessage = tools.systemPrompt(SYSTEM_MESSAGE);
                 
         // Configure the chat client with memory advisor and tools
         this.chatClient = builder
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
-                .defaultTools(new InformationDesk())
+                .defaultAdvisors(new TurnMemoryAdvisor(chatMemory))
+                .defaultToolCallbacks(tools.toolCallbacks())
                 .build();
+        this.tokenCoalescer = tokenCoalescer;
+        this.resumableStreams = resumableStreams;
+        this.cancelledStreams = cancelledStreams;
     }
 
     /**
@@ -51,40 +95,46 @@ public class OpenAiSmartController {
      * Uses tools and maintains conversation context for smarter responses.
      * 
      * @param message The user's message to process
-     * @return A Flux of strings containing SSE-formatted responses
+     * @param conversationId The caller's conversation, from the X-Conversation-Id header or the session
+     * @param lastEventId The id of the last event a reconnecting client got, to resume the same answer after it
+     * @return A Flux of frames, each one Server-Sent Event of the tokens streamed together
      */
     @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE, value = "/smart-query")
-    public Flux<String> streamChat(@RequestParam String message) {
-        return chatClient.prompt(message)
-                // Associate the request with a conversation for context
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, CONVERSATION_ID))
-                // Set system message to guide AI behavior
-                .system(SYSTEM_MESSAGE)
-                // Stream the response
-                .stream()
-                .content()
-                // Format the response as Server-Sent Events
-                .map(content -> "data: " + content + "\n\n");
+    public Flux<TokenFrame> streamChat(@RequestParam String message, ConversationId conversationId,
+                                       @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        // A reconnect asks the same question in the same conversation
+        String stream = conversationId.scoped(MEMORY_SCOPE) + "\n" + message;
+        return resumableStreams.stream(stream, lastEventId, () -> tokenCoalescer.coalesce(cancelledStreams.track(
+                chatClient.prompt(message)
+                        // Associate the request with a conversation for context
+                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId.scoped(MEMORY_SCOPE)))
+                        // Set system message to guide AI behavior
+                        .system(systemMessage)
+                        // Stream the response
+                        .stream()
+                        .content())));
     }
 
     /**
      * Handles non-streaming chat requests.
-     * Uses tools and maintains conversation context for smarter responses.
+     * Uses tools and maintains conversation context for smarter responses. The answer is the
+     * streamed response put together, so no thread waits for the model; tool calls run off the
+     * event loop, as they do when streaming.
      * 
      * @param message The user's message to process
+     * @param conversationId The caller's conversation, from the X-Conversation-Id header or the session
      * @return A Mono containing the AI's response
      */
     @PostMapping(value = "/smart-query")
-    public Mono<String> chat(@RequestBody String message) {
-        return Mono.fromCallable(() ->
-                chatClient.prompt(message)
-                        // Associate the request with a conversation for context
-                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, CONVERSATION_ID))
-                        // Set system message to guide AI behavior
-                        .system(SYSTEM_MESSAGE)
-                        // Get the response
-                        .call()
-                        .content()
-        );
+    public Mono<String> chat(@RequestBody String message, ConversationId conversationId) {
+        return chatClient.prompt(message)
+                // Associate the request with a conversation for context
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId.scoped(MEMORY_SCOPE)))
+                // Set system message to guide AI behavior
+                .system(systemMessage)
+                // Stream the response and join it into one answer
+                .stream()
+                .content()
+                .collect(Collectors.joining());
     }
 }
\ No newline at end of file
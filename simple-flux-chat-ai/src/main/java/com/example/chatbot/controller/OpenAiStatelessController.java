@@ -1,5 +1,9 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.cache.SemanticCache;
+import com.example.chatbot.sse.CancelledStreams;
+import com.example.chatbot.sse.TokenCoalescer;
+import com.example.chatbot.sse.TokenFrame;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.core.io.ClassPathResource;
@@ -13,10 +17,12 @@ import reactor.core.publisher.Mono;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Controller for handling stateless chat interactions with OpenAI.
  * Each request is treated independently without maintaining conversation context.
+ * Answers are kept in a {@link SemanticCache}, so a query that rephrases an earlier one is answered without calling the model.
  */
 @RestController
 public class OpenAiStatelessController {
@@ -24,48 +30,79 @@ public class OpenAiStatelessController {
     // ChatClient instance for interacting with the AI model
     private final ChatClient chatClient;
 
+    // Answers to earlier queries, matched by meaning
+    private final SemanticCache semanticCache;
+
+    // Groups the streamed tokens into events
+    private final TokenCoalescer tokenCoalescer;
+
+    // Counts the answers cancelled as their client left
+    private final CancelledStreams cancelledStreams;
+
     /**
      * Constructs a new controller with the specified ChatClient builder.
      * 
      * @param builder The ChatClient builder for creating chat client instances
+     * @param semanticCache Answers to earlier queries, matched by meaning
+     * @param tokenCoalescer Groups the streamed tokens into Server-Sent Events
+     * @param cancelledStreams Counts the streamed answers cancelled as their client left
      */
-    public OpenAiStatelessController(ChatClient.Builder builder) {
+    public OpenAiStatelessController(ChatClient.Builder builder, SemanticCache semanticCache,
+                                     TokenCoalescer tokenCoalescer, CancelledStreams cancelledStreams) {
         // Initialize the chat client without any additional configuration
         this.chatClient = builder.build();
+        this.semanticCache = semanticCache;
+        this.tokenCoalescer = tokenCoalescer;
+        this.cancelledStreams = cancelledStreams;
     }
 
     /**
      * Handles streaming chat requests with Server-Sent Events (SSE).
      * Each request is processed independently without maintaining conversation state.
+     * The stream from the model is closed as soon as the client disconnects.
      * 
      * @param message The user's message to process
-     * @return A Flux of strings containing SSE-formatted responses
+     * @return A Flux of frames, each one Server-Sent Event of the tokens streamed together
      */
     @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE, value = "/no-state-query")
-    public Flux<String> streamChat(@RequestParam String message) {
-        // Process the message and stream the response as Server-Sent Events
-        return chatClient.prompt(message)
-                .stream()
-                .content()
-                // Format the response as Server-Sent Events
-                .map(content -> "data: " + content + "\n\n");
+    public Flux<TokenFrame> streamChat(@RequestParam String message) {
+        return tokenCoalescer.coalesce(Flux.defer(() -> {
+            // A cached answer goes out as a single event
+            String cached = semanticCache.get(message);
+            if (cached != null) {
+                return Flux.just(cached);
+            }
+            // Process the message and stream the response, caching it once complete
+            StringBuilder answer = new StringBuilder();
+            return cancelledStreams.track(chatClient.prompt(message)
+                            .stream()
+                            .content())
+                    .doOnNext(answer::append)
+                    .doOnComplete(() -> semanticCache.put(message, answer.toString()));
+        }));
     }
 
     /**
      * Handles non-streaming chat requests.
      * Each request is processed independently without maintaining conversation state.
+     * The answer is the streamed response put together, so no thread waits for the model.
      * 
      * @param message The user's message to process
      * @return A Mono containing the AI's response
      */
     @PostMapping(value = "/no-state-query")
     public Mono<String> chat(@RequestBody String message) {
-        // Process the message and return a single response
-        return Mono.fromCallable(() ->
-                chatClient.prompt(message)
-                        .call()
-                        .content()
-        );
+        return Mono.defer(() -> {
+            String cached = semanticCache.get(message);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            // Process the message and join the streamed response, caching it once complete
+            return chatClient.prompt(message)
+                    .stream()
+                    .content()
+                    .collect(Collectors.joining())
+                    .doOnNext(answer -> semanticCache.put(message, answer));
+        });
     }
 }
-
@@ -0,0 +1,41 @@
+package com.example.chatbot.memory;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves {@link ConversationId} handler arguments: the {@value ConversationId#HEADER}
+ * header when present, otherwise the ID of the caller's web session, which is started on
+ * first use so a browser keeps its conversation through the session cookie.
+ */
+public class ConversationIdArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return ConversationId.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Mono<Object> resolveArgument(MethodParameter parameter, BindingContext bindingContext,
+                                        ServerWebExchange exchange) {
+        String header = exchange.getRequest().getHeaders().getFirst(ConversationId.HEADER);
+        if (StringUtils.hasText(header)) {
+            String id = header.trim();
+            if (id.length() > ConversationId.MAX_LENGTH) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        ConversationId.HEADER + " must be at most " + ConversationId.MAX_LENGTH + " characters"));
+            }
+            return Mono.just(new ConversationId(id));
+        }
+        return exchange.getSession().map(session -> {
+            session.start();
+            return new ConversationId(session.getId());
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.chatbot.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * Step {@link TokenWindowChatMemory} runs on a conversation's history after merging in the
+ * new messages and before trimming it to the token budget, e.g. to fold older turns into a
+ * summary. It runs under the conversation's lock on the request path, so it must not block.
+ */
+public interface HistoryCompactor {
+
+    /**
+     * Keeps histories as they are, so only the token budget trims them.
+     */
+    HistoryCompactor NONE = (conversationId, history) -> history;
+
+    /**
+     * @param conversationId the conversation being updated
+     * @param history        its stored messages followed by the new ones, oldest first
+     * @return the history to trim and store; may be {@code history} itself
+     */
+    List<Message> compact(String conversationId, List<Message> history);
+
+    /**
+     * Drops anything held for a conversation that was cleared.
+     */
+    default void forget(String conversationId) {
+    }
+}
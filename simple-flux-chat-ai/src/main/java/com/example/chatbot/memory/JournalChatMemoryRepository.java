@@ -0,0 +1,1020 @@
+package com.example.chatbot.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * {@link ChatMemoryRepository} that keeps histories in an append-only journal on disk, so
+ * conversations survive a restart. Enabled with {@code app.chat-memory.store=journal}.
+ * <p>
+ * Each message is written once, as its own record, to the segment files in
+ * {@code app.chat-memory.journal.directory}. Messages carry a sequence number, and trimming
+ * or deleting a history writes a small floor record ("drop this conversation's messages
+ * below sequence n") instead of rewriting it. Replaying the records in any order gives the
+ * same histories, which keeps recovery and compaction simple.
+ * <p>
+ * {@link #saveAll} only encodes the new messages and queues them; a single writer thread
+ * appends whatever is queued in one write (group commit) and fsyncs at most every
+ * {@code app.chat-memory.journal.fsync-interval}, so a request never waits for the disk.
+ * Queued messages are served from memory until they are written. A power loss can lose the
+ * last fsync interval of messages, a process crash cannot.
+ * <p>
+ * On the heap there is only an index from conversation ID to the position of each message;
+ * reads go to the segment files (and so to the page cache). At startup the segments are
+ * memory-mapped and scanned to rebuild the index, and a torn record at the end of a segment
+ * is cut off. Segments roll over at {@code app.chat-memory.journal.segment-size}. Every
+ * {@code app.chat-memory.journal.compaction-interval}, while less than
+ * {@code app.chat-memory.journal.compaction-threshold} of the journal is live, the oldest
+ * segment has its live messages copied to the end of the journal and is deleted. Its floor
+ * records can go with it: what they drop was written before them, so in that segment too.
+ * <p>
+ * When a meter registry is available, publishes {@code chat.memory.conversations},
+ * {@code chat.memory.journal.pending} and {@code chat.memory.journal.bytes} gauges and
+ * {@code chat.memory.journal.records}, {@code chat.memory.journal.fsyncs} and
+ * {@code chat.memory.journal.compactions} counters.
+ */
+@Component
+@ConditionalOnProperty(name = "app.chat-memory.store", havingValue = "journal")
+public class JournalChatMemoryRepository implements ChatMemoryRepository, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalChatMemoryRepository.class);
+
+    // Record: int payload length, int CRC32C of the payload, payload
+    private static final int HEADER_BYTES = 8;
+    // Payload: type, unsigned short ID length, UTF-8 ID, long sequence number, then for
+    // messages a long fingerprint and the MessageCodec bytes
+    private static final byte MESSAGE = 'M';
+    private static final byte FLOOR = 'F';
+    private static final int MIN_PAYLOAD_BYTES = 1 + 2 + 8;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int MAX_BATCH = 4096;
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final long PENDING = -1;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long fsyncIntervalNanos;
+    private final double compactionThreshold;
+    private final Map<String, Conversation> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final Thread writer;
+    private final ScheduledExecutorService compactor;
+    private volatile Segment active;
+    private volatile boolean closed;
+    // Writer thread only
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private final CRC32C crc = new CRC32C();
+
+    @Autowired
+    public JournalChatMemoryRepository(
+            @Value("${app.chat-memory.journal.directory:data/chat-memory}") String directory,
+            @Value("${app.chat-memory.journal.segment-size:64MB}") DataSize segmentSize,
+            @Value("${app.chat-memory.journal.fsync-interval:50ms}") Duration fsyncInterval,
+            @Value("${app.chat-memory.journal.compaction-interval:1m}") Duration compactionInterval,
+            @Value("${app.chat-memory.journal.compaction-threshold:0.5}") double compactionThreshold,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this(Path.of(directory), segmentSize, fsyncInterval, compactionInterval, compactionThreshold,
+                meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * Opens, or creates, the journal in {@code directory} and rebuilds the index from it.
+     *
+     * @param compactionInterval how often to look for segments to compact; zero disables
+     *                           background compaction
+     * @param meterRegistry      where to publish metrics, or {@code null}
+     */
+    public JournalChatMemoryRepository(Path directory, DataSize segmentSize, Duration fsyncInterval,
+                                       Duration compactionInterval, double compactionThreshold,
+                                       MeterRegistry meterRegistry) {
+        if (segmentSize.toBytes() <= 0 || segmentSize.toBytes() > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Journal segment size must be between 1B and 1GB, got " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentSize.toBytes();
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.compactionThreshold = compactionThreshold;
+        try {
+            Files.createDirectories(directory);
+            recover();
+            active = openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open chat memory journal in " + directory, e);
+        }
+        writer = Thread.ofPlatform().name("chat-journal-writer").daemon().start(this::runWriter);
+        if (compactionInterval.isZero()) {
+            compactor = null;
+        } else {
+            compactor = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("chat-journal-compactor").daemon().factory());
+            compactor.scheduleWithFixedDelay(this::compactQuietly, compactionInterval.toMillis(),
+                    compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (meterRegistry != null) {
+            registerMetrics(meterRegistry);
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return List.copyOf(index.keySet());
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Conversation conversation = index.get(conversationId);
+        if (conversation == null) {
+            return List.of();
+        }
+        // A read can race with compaction moving a message and deleting its old segment;
+        // the second snapshot then points at the new copy
+        while (true) {
+            long[] locations;
+            int[] lengths;
+            Message[] pending;
+            synchronized (conversation) {
+                locations = Arrays.copyOf(conversation.locations, conversation.size);
+                lengths = Arrays.copyOf(conversation.lengths, conversation.size);
+                pending = Arrays.copyOf(conversation.pending, conversation.size);
+            }
+            List<Message> messages = new ArrayList<>(locations.length);
+            for (int i = 0; i < locations.length; i++) {
+                Message message = pending[i] != null ? pending[i] : read(locations[i], lengths[i]);
+                if (message == null) {
+                    break;
+                }
+                messages.add(message);
+            }
+            if (messages.size() == locations.length) {
+                return messages;
+            }
+        }
+    }
+
+    /**
+     * Journals only what changed since the stored history: a window that dropped its oldest
+     * messages and gained new ones writes a floor record and the new messages.
+     */
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        byte[] id = conversationId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > 0xFFFF) {
+            throw new IllegalArgumentException("Conversation ID is too long to journal");
+        }
+        byte[][] encoded = new byte[messages.size()][];
+        long[] fingerprints = new long[messages.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = MessageCodec.toBytes(messages.get(i));
+            fingerprints[i] = fingerprint(encoded[i]);
+        }
+        List<Record> writes = new ArrayList<>();
+        while (true) {
+            Conversation conversation = index.computeIfAbsent(conversationId, Conversation::new);
+            synchronized (conversation) {
+                if (conversation.removed) {
+                    continue;
+                }
+                int dropped = conversation.unchangedFrom(fingerprints);
+                int kept = conversation.size - dropped;
+                if (dropped > 0) {
+                    long floor = kept > 0 ? conversation.sequences[dropped] : nextSequence.get();
+                    dropFirst(conversation, dropped);
+                    writes.add(new Record(floorPayload(id, floor), null, 0, PENDING));
+                }
+                for (int i = kept; i < encoded.length; i++) {
+                    long sequence = nextSequence.getAndIncrement();
+                    byte[] payload = messagePayload(id, sequence, fingerprints[i], encoded[i]);
+                    conversation.add(sequence, PENDING, HEADER_BYTES + payload.length, fingerprints[i], messages.get(i));
+                    writes.add(new Record(payload, conversation, sequence, PENDING));
+                }
+                if (conversation.size == 0) {
+                    conversation.removed = true;
+                    index.remove(conversationId, conversation);
+                }
+            }
+            break;
+        }
+        enqueue(writes);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Conversation conversation = index.get(conversationId);
+        if (conversation == null) {
+            return;
+        }
+        long floor;
+        synchronized (conversation) {
+            if (conversation.removed) {
+                return;
+            }
+            // Taken while the conversation is still indexed, so a save starting its next
+            // history once it is removed gets a later sequence and is not dropped on recovery
+            floor = nextSequence.getAndIncrement();
+            dropFirst(conversation, conversation.size);
+            conversation.removed = true;
+            index.remove(conversationId, conversation);
+        }
+        enqueue(List.of(new Record(floorPayload(conversationId.getBytes(StandardCharsets.UTF_8), floor),
+                null, 0, PENDING)));
+    }
+
+    /**
+     * Writes and fsyncs everything queued so far, then stops the writer and compactor.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (compactor != null) {
+            compactor.shutdownNow();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Record last = Record.barrier(true);
+        putUninterruptibly(last);
+        last.done.join();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private void dropFirst(Conversation conversation, int count) {
+        for (int i = 0; i < count; i++) {
+            if (conversation.locations[i] != PENDING) {
+                Segment segment = segments.get(segmentOf(conversation.locations[i]));
+                if (segment != null) {
+                    segment.liveBytes.addAndGet(-conversation.lengths[i]);
+                }
+            }
+        }
+        conversation.dropFirst(count);
+    }
+
+    private void enqueue(List<Record> writes) {
+        if (closed) {
+            throw new IllegalStateException("Chat memory journal is closed");
+        }
+        for (Record write : writes) {
+            // Blocks only when the writer is a whole queue behind the disk
+            putUninterruptibly(write);
+        }
+    }
+
+    private void putUninterruptibly(Record record) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(record);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Message read(long location, int length) {
+        Segment segment = segments.get(segmentOf(location));
+        if (segment == null) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        try {
+            if (!segment.read(record, offsetOf(location))) {
+                return null;
+            }
+            byte[] bytes = record.array();
+            int idLength = Short.toUnsignedInt(record.getShort(HEADER_BYTES + 1));
+            int messageOffset = HEADER_BYTES + 1 + 2 + idLength + 8 + 8;
+            return MessageCodec.fromBytes(bytes, messageOffset, length - messageOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read chat memory journal segment " + segment.path, e);
+        }
+    }
+
+    // ------------------------------------------------------------------ writer
+
+    private void runWriter() {
+        List<Record> batch = new ArrayList<>();
+        long lastFsync = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            Record first = null;
+            try {
+                if (!dirty) {
+                    first = queue.take();
+                } else if (fsyncIntervalNanos > 0) {
+                    first = queue.poll(fsyncIntervalNanos - (System.nanoTime() - lastFsync), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, and it does so through the queue
+            }
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            }
+            boolean barrier = false;
+            boolean last = false;
+            for (Record record : batch) {
+                barrier |= record.done != null;
+                last |= record.last;
+            }
+            try {
+                dirty |= write(batch) > 0;
+                if (dirty && (barrier || fsyncIntervalNanos == 0 || System.nanoTime() - lastFsync >= fsyncIntervalNanos)) {
+                    active.writer.force(false);
+                    fsyncs.increment();
+                    lastFsync = System.nanoTime();
+                    dirty = false;
+                }
+                for (Record record : batch) {
+                    if (record.done != null) {
+                        record.done.complete(null);
+                    }
+                }
+            } catch (IOException e) {
+                // The messages stay readable from memory, but will not survive a restart
+                log.error("Could not write {} chat memory journal records: {}", batch.size(), e.getMessage());
+                for (Record record : batch) {
+                    if (record.done != null) {
+                        record.done.completeExceptionally(e);
+                    }
+                }
+            }
+            batch.clear();
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends a batch with as few writes as possible, rolling segments on the way, and
+     * points the index at the written records.
+     *
+     * @return the number of records written
+     */
+    private int write(List<Record> batch) throws IOException {
+        List<Record> unplaced = new ArrayList<>();
+        int written = 0;
+        for (Record record : batch) {
+            if (record.payload == null || !stillWanted(record)) {
+                continue;
+            }
+            int length = HEADER_BYTES + record.payload.length;
+            if (active.size + buffer.position() + length > segmentBytes && active.size + buffer.position() > 0) {
+                // Index the records first: once sealed, the segment is fair game for compaction
+                flushBuffer();
+                place(unplaced);
+                roll();
+            }
+            if (buffer.remaining() < length) {
+                flushBuffer();
+                if (buffer.capacity() < length) {
+                    buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(length) << 1);
+                }
+            }
+            record.location = locationOf(active.id, active.size + buffer.position());
+            crc.reset();
+            crc.update(record.payload);
+            buffer.putInt(record.payload.length).putInt((int) crc.getValue()).put(record.payload);
+            unplaced.add(record);
+            written++;
+        }
+        flushBuffer();
+        place(unplaced);
+        records.add(written);
+        return written;
+    }
+
+    private void place(List<Record> written) {
+        for (Record record : written) {
+            if (record.conversation != null) {
+                place(record);
+            }
+        }
+        written.clear();
+    }
+
+    /**
+     * A message trimmed or deleted while queued is not written at all, so its floor record
+     * always comes later in the journal than the message it drops.
+     */
+    private boolean stillWanted(Record record) {
+        if (record.conversation == null) {
+            return true;
+        }
+        synchronized (record.conversation) {
+            int i = record.conversation.indexOf(record.sequence);
+            return i >= 0 && record.conversation.locations[i] == record.from;
+        }
+    }
+
+    private void place(Record record) {
+        Conversation conversation = record.conversation;
+        int length = HEADER_BYTES + record.payload.length;
+        synchronized (conversation) {
+            int i = conversation.indexOf(record.sequence);
+            if (i < 0 || conversation.locations[i] != record.from) {
+                return;
+            }
+            if (record.from != PENDING) {
+                Segment old = segments.get(segmentOf(record.from));
+                if (old != null) {
+                    old.liveBytes.addAndGet(-length);
+                }
+            }
+            conversation.locations[i] = record.location;
+            conversation.pending[i] = null;
+            segments.get(segmentOf(record.location)).liveBytes.addAndGet(length);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            active.size += active.writer.write(buffer, active.size);
+        }
+        buffer.clear();
+    }
+
+    private void roll() throws IOException {
+        Segment sealed = active;
+        sealed.writer.force(false);
+        fsyncs.increment();
+        sealed.writer.close();
+        sealed.writer = null;
+        active = openSegment(sealed.id + 1);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("%010d%s", id, SEGMENT_SUFFIX));
+        Segment segment = new Segment(id, path);
+        segment.writer = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment.reader = FileChannel.open(path, StandardOpenOption.READ);
+        segments.put(id, segment);
+        fsyncDirectory();
+        return segment;
+    }
+
+    // Makes a new or deleted segment file itself survive a power loss
+    private void fsyncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform
+        }
+    }
+
+    // ---------------------------------------------------------------- recovery
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        Map<String, Conversation> recovered = new HashMap<>();
+        long maxSequence = -1;
+        long recordCount = 0;
+        long bytes = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Segment segment = new Segment(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            segment.reader = FileChannel.open(file, StandardOpenOption.READ);
+            segments.put(segment.id, segment);
+            Scan scan = scan(segment, recovered);
+            maxSequence = Math.max(maxSequence, scan.maxSequence);
+            recordCount += scan.records;
+            bytes += segment.size;
+        }
+        long messages = 0;
+        for (Conversation conversation : recovered.values()) {
+            conversation.settle();
+            for (int i = 0; i < conversation.size; i++) {
+                segments.get(segmentOf(conversation.locations[i])).liveBytes.addAndGet(conversation.lengths[i]);
+            }
+            if (conversation.size > 0) {
+                index.put(conversation.id, conversation);
+                messages += conversation.size;
+            }
+        }
+        nextSequence.set(maxSequence + 1);
+        if (!files.isEmpty()) {
+            log.info("Recovered {} messages of {} conversations from {} records in {} journal segments ({} bytes) in {} ms",
+                    messages, index.size(), recordCount, files.size(), bytes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    private record Scan(long records, long maxSequence) {
+    }
+
+    /**
+     * Replays one segment through a read-only mapping, stopping at the first record that is
+     * cut short or fails its checksum, and truncating the segment there.
+     */
+    private Scan scan(Segment segment, Map<String, Conversation> recovered) throws IOException {
+        long fileSize = segment.reader.size();
+        MappedByteBuffer map = segment.reader.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        CRC32C crc = new CRC32C();
+        byte[] id = new byte[256];
+        long records = 0;
+        long maxSequence = -1;
+        int position = 0;
+        while (position + HEADER_BYTES <= fileSize) {
+            int length = map.getInt(position);
+            if (length < MIN_PAYLOAD_BYTES || length > fileSize - position - HEADER_BYTES) {
+                break;
+            }
+            crc.reset();
+            crc.update(map.slice(position + HEADER_BYTES, length));
+            if ((int) crc.getValue() != map.getInt(position + 4)) {
+                break;
+            }
+            int payload = position + HEADER_BYTES;
+            int idLength = Short.toUnsignedInt(map.getShort(payload + 1));
+            if (id.length < idLength) {
+                id = new byte[idLength];
+            }
+            map.get(payload + 3, id, 0, idLength);
+            String conversationId = new String(id, 0, idLength, StandardCharsets.UTF_8);
+            long sequence = map.getLong(payload + 3 + idLength);
+            Conversation conversation = recovered.computeIfAbsent(conversationId, Conversation::new);
+            if (map.get(payload) == MESSAGE) {
+                long fingerprint = map.getLong(payload + 3 + idLength + 8);
+                conversation.add(sequence, locationOf(segment.id, position), HEADER_BYTES + length, fingerprint, null);
+            } else {
+                conversation.floor = Math.max(conversation.floor, sequence);
+            }
+            maxSequence = Math.max(maxSequence, sequence);
+            records++;
+            position += HEADER_BYTES + length;
+        }
+        segment.size = position;
+        if (position < fileSize) {
+            log.warn("Truncating chat memory journal segment {} from {} to {} bytes after a torn or corrupt record",
+                    segment.path, fileSize, position);
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+        return new Scan(records, maxSequence);
+    }
+
+    // -------------------------------------------------------------- compaction
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("Chat memory journal compaction failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compacts the oldest sealed segments until the live share of the journal reaches the
+     * threshold, or until it reaches the segments written since it started.
+     */
+    void compact() {
+        int end = active.id;
+        while (!closed && liveBytes() < diskBytes() * compactionThreshold) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.id >= end) {
+                return;
+            }
+            try {
+                compact(oldest);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot compact chat memory journal segment " + oldest.path, e);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        MappedByteBuffer map = segment.reader.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        List<Record> copies = new ArrayList<>();
+        long copied = 0;
+        int position = 0;
+        while (position < segment.size) {
+            int length = map.getInt(position);
+            int payload = position + HEADER_BYTES;
+            byte type = map.get(payload);
+            int idLength = Short.toUnsignedInt(map.getShort(payload + 1));
+            long sequence = map.getLong(payload + 3 + idLength);
+            Record copy = null;
+            // Floor records are dropped: the oldest segment is the only one holding what they drop
+            if (type == MESSAGE) {
+                byte[] id = new byte[idLength];
+                map.get(payload + 3, id);
+                Conversation conversation = index.get(new String(id, StandardCharsets.UTF_8));
+                long location = locationOf(segment.id, position);
+                if (conversation != null && isAt(conversation, sequence, location)) {
+                    copy = new Record(new byte[length], conversation, sequence, location);
+                }
+            }
+            if (copy != null) {
+                map.get(payload, copy.payload);
+                copies.add(copy);
+                copied += HEADER_BYTES + length;
+            }
+            position += HEADER_BYTES + length;
+        }
+        Record barrier = Record.barrier(false);
+        copies.add(barrier);
+        enqueue(copies);
+        barrier.done.join();
+        segments.remove(segment.id);
+        segment.delete();
+        fsyncDirectory();
+        compactions.increment();
+        log.debug("Compacted chat memory journal segment {}: copied {} of {} bytes",
+                segment.path, copied, segment.size);
+    }
+
+    private static boolean isAt(Conversation conversation, long sequence, long location) {
+        synchronized (conversation) {
+            int i = conversation.indexOf(sequence);
+            return i >= 0 && conversation.locations[i] == location;
+        }
+    }
+
+    // ------------------------------------------------------------------ format
+
+    private static byte[] messagePayload(byte[] id, long sequence, long fingerprint, byte[] message) {
+        return ByteBuffer.allocate(1 + 2 + id.length + 8 + 8 + message.length)
+                .put(MESSAGE).putShort((short) id.length).put(id).putLong(sequence).putLong(fingerprint).put(message)
+                .array();
+    }
+
+    private static byte[] floorPayload(byte[] id, long floor) {
+        return ByteBuffer.allocate(1 + 2 + id.length + 8)
+                .put(FLOOR).putShort((short) id.length).put(id).putLong(floor)
+                .array();
+    }
+
+    // FNV-1a; identifies a message when diffing a saved window against the stored one
+    private static long fingerprint(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long locationOf(int segment, long offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static long offsetOf(long location) {
+        return location & 0xFFFFFFFFL;
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("chat.memory.conversations", index, Map::size)
+                .description("Conversations with a stored history")
+                .register(registry);
+        Gauge.builder("chat.memory.journal.pending", queue, BlockingQueue::size)
+                .description("Journal records waiting for the writer")
+                .register(registry);
+        Gauge.builder("chat.memory.journal.bytes", this, JournalChatMemoryRepository::diskBytes)
+                .description("Size of the journal segments on disk")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.journal.records", records, LongAdder::sum)
+                .description("Records appended to the journal")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.journal.fsyncs", fsyncs, LongAdder::sum)
+                .description("Journal fsyncs; records per fsync is the group commit size")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.journal.compactions", compactions, LongAdder::sum)
+                .description("Journal segments compacted away")
+                .register(registry);
+    }
+
+    /**
+     * Waits until everything queued so far is written and fsynced.
+     */
+    void flush() {
+        Record barrier = Record.barrier(false);
+        enqueue(List.of(barrier));
+        barrier.done.join();
+    }
+
+    long liveBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.liveBytes.get();
+        }
+        return bytes;
+    }
+
+    long diskBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.size;
+        }
+        return bytes;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    long records() {
+        return records.sum();
+    }
+
+    long fsyncs() {
+        return fsyncs.sum();
+    }
+
+    long compactions() {
+        return compactions.sum();
+    }
+
+    /**
+     * A queued journal write, or a barrier the writer completes once everything before it
+     * is written and fsynced.
+     */
+    private static final class Record {
+
+        final byte[] payload;
+        // Set for message records, whose index entry is pointed at the record once written
+        final Conversation conversation;
+        final long sequence;
+        // Where the index entry must still point for the record to be worth writing:
+        // PENDING for a new message, the old location for a compaction copy
+        final long from;
+        final CompletableFuture<Void> done;
+        final boolean last;
+        long location;
+
+        Record(byte[] payload, Conversation conversation, long sequence, long from) {
+            this(payload, conversation, sequence, from, null, false);
+        }
+
+        private Record(byte[] payload, Conversation conversation, long sequence, long from,
+                       CompletableFuture<Void> done, boolean last) {
+            this.payload = payload;
+            this.conversation = conversation;
+            this.sequence = sequence;
+            this.from = from;
+            this.done = done;
+            this.last = last;
+        }
+
+        static Record barrier(boolean last) {
+            return new Record(null, null, 0, PENDING, new CompletableFuture<>(), last);
+        }
+    }
+
+    /**
+     * Index entry of one conversation: its live messages ordered by sequence number, as
+     * parallel arrays. Guarded by its own monitor.
+     */
+    private static final class Conversation {
+
+        final String id;
+        boolean removed;
+        // Recovery only: messages below this sequence number were trimmed or deleted
+        long floor = -1;
+        int size;
+        long[] sequences = new long[4];
+        long[] locations = new long[4];
+        int[] lengths = new int[4];
+        long[] fingerprints = new long[4];
+        // Messages not yet written, served from here until they are
+        Message[] pending = new Message[4];
+
+        Conversation(String id) {
+            this.id = id;
+        }
+
+        int indexOf(long sequence) {
+            return Arrays.binarySearch(sequences, 0, size, sequence);
+        }
+
+        void add(long sequence, long location, int length, long fingerprint, Message message) {
+            if (size == sequences.length) {
+                int capacity = size * 2;
+                sequences = Arrays.copyOf(sequences, capacity);
+                locations = Arrays.copyOf(locations, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                fingerprints = Arrays.copyOf(fingerprints, capacity);
+                pending = Arrays.copyOf(pending, capacity);
+            }
+            sequences[size] = sequence;
+            locations[size] = location;
+            lengths[size] = length;
+            fingerprints[size] = fingerprint;
+            pending[size] = message;
+            size++;
+        }
+
+        void dropFirst(int count) {
+            int kept = size - count;
+            System.arraycopy(sequences, count, sequences, 0, kept);
+            System.arraycopy(locations, count, locations, 0, kept);
+            System.arraycopy(lengths, count, lengths, 0, kept);
+            System.arraycopy(fingerprints, count, fingerprints, 0, kept);
+            System.arraycopy(pending, count, pending, 0, kept);
+            Arrays.fill(pending, kept, size, null);
+            size = kept;
+        }
+
+        /**
+         * How many of the oldest stored messages a new window leaves out, assuming it keeps
+         * the rest in order and appends after them; all of them if the window is not of
+         * that shape.
+         */
+        int unchangedFrom(long[] window) {
+            for (int dropped = Math.max(0, size - window.length); dropped < size; dropped++) {
+                int i = dropped;
+                while (i < size && fingerprints[i] == window[i - dropped]) {
+                    i++;
+                }
+                if (i == size) {
+                    return dropped;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * After recovery: sorts the replayed messages, drops those below the floor and
+         * keeps the latest copy of any message compaction had copied.
+         */
+        void settle() {
+            for (int i = 1; i < size; i++) {
+                // Almost sorted already, so insertion sort is linear in practice
+                for (int j = i; j > 0 && sequences[j - 1] > sequences[j]; j--) {
+                    swap(j - 1, j);
+                }
+            }
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (sequences[i] < floor) {
+                    continue;
+                }
+                if (kept > 0 && sequences[kept - 1] == sequences[i]) {
+                    kept--;
+                }
+                sequences[kept] = sequences[i];
+                locations[kept] = locations[i];
+                lengths[kept] = lengths[i];
+                fingerprints[kept] = fingerprints[i];
+                kept++;
+            }
+            size = kept;
+        }
+
+        private void swap(int a, int b) {
+            long sequence = sequences[a];
+            sequences[a] = sequences[b];
+            sequences[b] = sequence;
+            long location = locations[a];
+            locations[a] = locations[b];
+            locations[b] = location;
+            int length = lengths[a];
+            lengths[a] = lengths[b];
+            lengths[b] = length;
+            long fingerprint = fingerprints[a];
+            fingerprints[a] = fingerprints[b];
+            fingerprints[b] = fingerprint;
+        }
+    }
+
+    private static final class Segment {
+
+        final int id;
+        final Path path;
+        final AtomicLong liveBytes = new AtomicLong();
+        volatile FileChannel reader;
+        // Only touched by the writer thread; null once the segment is sealed
+        FileChannel writer;
+        volatile long size;
+        volatile boolean deleted;
+
+        Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        /**
+         * Reads {@code buffer.remaining()} bytes at {@code position}; false if the segment
+         * has been compacted away meanwhile.
+         */
+        boolean read(ByteBuffer buffer, long position) throws IOException {
+            // An interrupt during a FileChannel read closes the channel for every reader,
+            // so hold it back until the read is done
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (true) {
+                    FileChannel channel = reader;
+                    try {
+                        while (buffer.hasRemaining()) {
+                            if (channel.read(buffer, position + buffer.position()) < 0) {
+                                throw new EOFException("Record past the end of " + path);
+                            }
+                        }
+                        return true;
+                    } catch (ClosedChannelException e) {
+                        interrupted |= Thread.interrupted();
+                        synchronized (this) {
+                            if (deleted) {
+                                return false;
+                            }
+                            if (reader == channel) {
+                                reader = FileChannel.open(path, StandardOpenOption.READ);
+                            }
+                        }
+                        buffer.clear();
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        synchronized void delete() throws IOException {
+            deleted = true;
+            reader.close();
+            Files.deleteIfExists(path);
+        }
+
+        synchronized void close() {
+            try {
+                reader.close();
+                if (writer != null) {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                log.warn("Could not close chat memory journal segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
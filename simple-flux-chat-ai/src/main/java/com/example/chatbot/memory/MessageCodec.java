@@ -0,0 +1,169 @@
+package com.example.chatbot.memory;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of chat messages, for memory that leaves the heap.
+ * <p>
+ * Keeps what the chat memory advisor stores and the model needs back: the message type,
+ * its text, an assistant message's tool calls and a tool message's responses. Metadata
+ * and media are dropped.
+ */
+final class MessageCodec {
+
+    private static final byte USER = 'U';
+    private static final byte ASSISTANT = 'A';
+    private static final byte SYSTEM = 'S';
+    private static final byte TOOL = 'T';
+
+    private MessageCodec() {
+    }
+
+    static void writeAll(DataOutput out, List<Message> messages) throws IOException {
+        out.writeInt(messages.size());
+        for (Message message : messages) {
+            write(out, message);
+        }
+    }
+
+    static List<Message> readAll(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(read(in));
+        }
+        return messages;
+    }
+
+    static void write(DataOutput out, Message message) throws IOException {
+        switch (message) {
+            case UserMessage user -> {
+                out.writeByte(USER);
+                writeString(out, user.getText());
+            }
+            case SystemMessage system -> {
+                out.writeByte(SYSTEM);
+                writeString(out, system.getText());
+            }
+            case AssistantMessage assistant -> {
+                out.writeByte(ASSISTANT);
+                writeString(out, assistant.getText());
+                out.writeInt(assistant.getToolCalls().size());
+                for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                    writeString(out, call.id());
+                    writeString(out, call.type());
+                    writeString(out, call.name());
+                    writeString(out, call.arguments());
+                }
+            }
+            case ToolResponseMessage tool -> {
+                out.writeByte(TOOL);
+                out.writeInt(tool.getResponses().size());
+                for (ToolResponseMessage.ToolResponse response : tool.getResponses()) {
+                    writeString(out, response.id());
+                    writeString(out, response.name());
+                    writeString(out, response.responseData());
+                }
+            }
+            default -> throw new IllegalArgumentException("Cannot store " + message.getMessageType() + " messages");
+        }
+    }
+
+    static Message read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case USER -> new UserMessage(readString(in));
+            case SYSTEM -> new SystemMessage(readString(in));
+            case ASSISTANT -> {
+                String text = readString(in);
+                int calls = in.readInt();
+                List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>(calls);
+                for (int i = 0; i < calls; i++) {
+                    toolCalls.add(new AssistantMessage.ToolCall(readString(in), readString(in), readString(in), readString(in)));
+                }
+                yield new AssistantMessage(text, Map.of(), toolCalls);
+            }
+            case TOOL -> {
+                int count = in.readInt();
+                List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    responses.add(new ToolResponseMessage.ToolResponse(readString(in), readString(in), readString(in)));
+                }
+                yield new ToolResponseMessage(responses);
+            }
+            default -> throw new IOException("Unknown message type " + type);
+        };
+    }
+
+    static byte[] toBytes(Message message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            write(new DataOutputStream(bytes), message);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Message fromBytes(byte[] bytes, int offset, int length) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes, offset, length)));
+    }
+
+    /**
+     * Rough heap footprint of a message: object headers plus two bytes per character.
+     */
+    static int estimatedBytes(Message message) {
+        int bytes = 64 + 2 * length(message.getText());
+        if (message instanceof AssistantMessage assistant) {
+            for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                bytes += 64 + 2 * (length(call.name()) + length(call.arguments()));
+            }
+        } else if (message instanceof ToolResponseMessage tool) {
+            for (ToolResponseMessage.ToolResponse response : tool.getResponses()) {
+                bytes += 64 + 2 * (length(response.name()) + length(response.responseData()));
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
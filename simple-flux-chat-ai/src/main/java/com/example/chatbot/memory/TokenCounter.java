@@ -0,0 +1,118 @@
+package com.example.chatbot.memory;
+
+import com.example.chatbot.config.TokenBudgetProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the prompt tokens a chat message costs with the configured chat model, and holds
+ * that model's history budget from {@link TokenBudgetProperties}.
+ * <p>
+ * Tokenizes locally with the model's BPE encoding ({@code o200k_base} for the GPT-4o
+ * family, and for models jtokkit does not know). Counts are cached by message content, so
+ * a history is tokenized once per message rather than once per turn, whichever chat memory
+ * store returned it.
+ */
+@Component
+public class TokenCounter {
+
+    // Role and delimiters OpenAI adds around every message in the prompt
+    static final int TOKENS_PER_MESSAGE = 3;
+    private static final int CACHE_SIZE = 100_000;
+
+    private final Encoding encoding;
+    private final int budget;
+    private final Cache<Long, Integer> counts = Caffeine.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    @Autowired
+    public TokenCounter(@Value("${spring.ai.openai.chat.options.model:${spring.ai.openai.chat.model:gpt-4o-mini}}") String model,
+                        TokenBudgetProperties budgets) {
+        this(model, budgets.forModel(model));
+    }
+
+    /**
+     * @param model  chat model whose tokenizer to use
+     * @param budget history tokens to keep in each prompt
+     */
+    public TokenCounter(String model, int budget) {
+        this.encoding = Encodings.newLazyEncodingRegistry().getEncodingForModel(model)
+                .orElseGet(() -> Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.O200K_BASE));
+        this.budget = budget;
+    }
+
+    /**
+     * History tokens to keep in each prompt for the configured model.
+     */
+    public int budget() {
+        return budget;
+    }
+
+    /**
+     * Prompt tokens of a message: its text, tool calls or tool responses, plus the
+     * per-message overhead.
+     */
+    public int count(Message message) {
+        return counts.get(contentKey(message), key -> TOKENS_PER_MESSAGE + tokenize(message));
+    }
+
+    private int tokenize(Message message) {
+        int tokens = tokens(message.getText());
+        if (message instanceof AssistantMessage assistant) {
+            for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                tokens += tokens(call.name()) + tokens(call.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage tool) {
+            for (ToolResponseMessage.ToolResponse response : tool.getResponses()) {
+                tokens += tokens(response.name()) + tokens(response.responseData());
+            }
+        }
+        return tokens;
+    }
+
+    private int tokens(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * 64-bit FNV-1a over the message type and everything {@link #tokenize} counts; hashing
+     * is far cheaper than BPE, and a collision only skews one estimate.
+     */
+    private static long contentKey(Message message) {
+        long hash = mix(0xcbf29ce484222325L, message.getMessageType().ordinal());
+        hash = mix(hash, message.getText());
+        if (message instanceof AssistantMessage assistant) {
+            for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                hash = mix(mix(hash, call.name()), call.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage tool) {
+            for (ToolResponseMessage.ToolResponse response : tool.getResponses()) {
+                hash = mix(mix(hash, response.name()), response.responseData());
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String s) {
+        if (s == null) {
+            return mix(hash, -1);
+        }
+        for (int i = 0; i < s.length(); i++) {
+            hash = mix(hash, s.charAt(i));
+        }
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        return mix(hash, -2);
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+}
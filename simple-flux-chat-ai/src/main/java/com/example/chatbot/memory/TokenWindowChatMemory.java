@@ -0,0 +1,109 @@
+package com.example.chatbot.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chat memory window bounded by prompt tokens rather than by message count.
+ * <p>
+ * Works like Spring AI's {@code MessageWindowChatMemory}: a new system message replaces
+ * the stored ones, and the oldest other messages are dropped first. It drops them until the
+ * history fits the {@link TokenCounter#budget()} of the configured model, so short turns
+ * keep more context and one long message cannot blow up every following prompt; a message
+ * bigger than the whole budget is not kept at all. Token counts come from the
+ * {@link TokenCounter} cache, so trimming does not tokenize the history again.
+ * <p>
+ * A {@link HistoryCompactor} can shrink the merged history before it is trimmed, such as
+ * {@link ConversationSummarizer} folding older turns into a summary.
+ */
+public final class TokenWindowChatMemory implements ChatMemory {
+
+    private final ChatMemoryRepository chatMemoryRepository;
+    private final TokenCounter tokenCounter;
+    private final HistoryCompactor historyCompactor;
+
+    public TokenWindowChatMemory(ChatMemoryRepository chatMemoryRepository, TokenCounter tokenCounter) {
+        this(chatMemoryRepository, tokenCounter, HistoryCompactor.NONE);
+    }
+
+    public TokenWindowChatMemory(ChatMemoryRepository chatMemoryRepository, TokenCounter tokenCounter,
+                                 HistoryCompactor historyCompactor) {
+        this.chatMemoryRepository = chatMemoryRepository;
+        this.tokenCounter = tokenCounter;
+        this.historyCompactor = historyCompactor;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<Message> history = chatMemoryRepository.findByConversationId(conversationId);
+        List<Message> merged = historyCompactor.compact(conversationId, merge(history, messages));
+        chatMemoryRepository.saveAll(conversationId, trim(merged));
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return chatMemoryRepository.findByConversationId(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        chatMemoryRepository.deleteByConversationId(conversationId);
+        historyCompactor.forget(conversationId);
+    }
+
+    private static List<Message> merge(List<Message> history, List<Message> newMessages) {
+        // A system message not stored yet replaces the stored ones; every new message is kept,
+        // even one equal to an earlier message, such as a user answering "yes" twice
+        Set<Message> stored = new HashSet<>(history);
+        boolean newSystemMessage = false;
+        for (Message message : newMessages) {
+            newSystemMessage |= message instanceof SystemMessage && !stored.contains(message);
+        }
+        List<Message> merged = new ArrayList<>(history.size() + newMessages.size());
+        for (Message message : history) {
+            if (!(newSystemMessage && message instanceof SystemMessage)) {
+                merged.add(message);
+            }
+        }
+        merged.addAll(newMessages);
+        return merged;
+    }
+
+    private List<Message> trim(List<Message> merged) {
+        int[] tokens = new int[merged.size()];
+        int total = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokenCounter.count(merged.get(i));
+            total += tokens[i];
+        }
+        int budget = tokenCounter.budget();
+        if (total <= budget) {
+            return merged;
+        }
+        // Drop the oldest non-system messages first, then system messages if still over
+        boolean[] dropped = new boolean[tokens.length];
+        for (int pass = 0; pass < 2 && total > budget; pass++) {
+            boolean dropSystem = pass == 1;
+            for (int i = 0; i < tokens.length && total > budget; i++) {
+                if (!dropped[i] && (dropSystem || !(merged.get(i) instanceof SystemMessage))) {
+                    dropped[i] = true;
+                    total -= tokens[i];
+                }
+            }
+        }
+        List<Message> kept = new ArrayList<>(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            if (!dropped[i]) {
+                kept.add(merged.get(i));
+            }
+        }
+        return kept;
+    }
+}
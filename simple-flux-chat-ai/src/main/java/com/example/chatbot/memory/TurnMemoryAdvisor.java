@@ -0,0 +1,101 @@
+package com.example.chatbot.memory;
+
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chat memory advisor that remembers a turn only once its answer is complete.
+ * <p>
+ * Like Spring AI's {@code MessageChatMemoryAdvisor}, it puts the conversation's history
+ * before the prompt and adds the question and the answer to the {@link ChatMemory}. That one
+ * adds the question before the model is even asked, though, so a stream cancelled by its
+ * client, or failing, leaves a question without an answer in the history for every later
+ * turn to carry. Here the question and the answer are added together when the answer has
+ * been streamed to its end, and a turn that never got there leaves no trace.
+ * <p>
+ * The conversation is the {@link ChatMemory#CONVERSATION_ID} advisor parameter, as for the
+ * Spring AI advisor.
+ */
+public class TurnMemoryAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ChatMemory chatMemory;
+
+    public TurnMemoryAdvisor(ChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @Override
+    public String getName() {
+        return TurnMemoryAdvisor.class.getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        ChatClientRequest withHistory = withHistory(request);
+        ChatClientResponse response = chain.nextCall(withHistory);
+        remember(withHistory, response);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        return Mono.just(request)
+                // The history may be read from disk, so keep it off the event loop
+                .publishOn(Schedulers.boundedElastic())
+                .map(this::withHistory)
+                .flatMapMany(withHistory -> {
+                    AtomicReference<ChatClientResponse> answer = new AtomicReference<>();
+                    return new ChatClientMessageAggregator()
+                            .aggregateChatClientResponse(chain.nextStream(withHistory), answer::set)
+                            // The answer completes on the event loop, and remembering it may wait
+                            // on a lock stripe or the journal, so it is written from there too
+                            .concatWith(Mono.<ChatClientResponse>fromRunnable(() -> remember(withHistory, answer.get()))
+                                    .subscribeOn(Schedulers.boundedElastic()));
+                });
+    }
+
+    private ChatClientRequest withHistory(ChatClientRequest request) {
+        List<Message> messages = new ArrayList<>(chatMemory.get(conversationId(request)));
+        messages.addAll(request.prompt().getInstructions());
+        return request.mutate()
+                .prompt(request.prompt().mutate().messages(messages).build())
+                .build();
+    }
+
+    private void remember(ChatClientRequest request, ChatClientResponse response) {
+        List<Message> turn = new ArrayList<>();
+        turn.add(request.prompt().getUserMessage());
+        if (response.chatResponse() != null) {
+            for (Generation generation : response.chatResponse().getResults()) {
+                turn.add(generation.getOutput());
+            }
+        }
+        chatMemory.add(conversationId(request), turn);
+    }
+
+    private static String conversationId(ChatClientRequest request) {
+        Object conversationId = request.context().get(ChatMemory.CONVERSATION_ID);
+        return conversationId != null ? conversationId.toString() : ChatMemory.DEFAULT_CONVERSATION_ID;
+    }
+}
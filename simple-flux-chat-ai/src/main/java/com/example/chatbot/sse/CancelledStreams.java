@@ -0,0 +1,93 @@
+package com.example.chatbot.sse;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the answers streamed from the model that were cancelled before their end, as their
+ * client went away, and estimates the tokens the model was spared by closing their stream.
+ * <p>
+ * Each chunk the model streams counts as one token, which is how the OpenAI API streams
+ * them. A cancelled answer is taken to have had as many tokens to go as it takes to reach the
+ * mean length of the answers that ran to their end, none if it was already longer.
+ * <p>
+ * When a meter registry is available, publishes {@code chat.stream.cancelled} and
+ * {@code chat.stream.tokens.saved}.
+ */
+@Component
+public class CancelledStreams {
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder completedTokens = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder tokensSaved = new LongAdder();
+
+    @Autowired
+    public CancelledStreams(ObjectProvider<MeterRegistry> meterRegistry) {
+        this(meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * @param meterRegistry where to publish metrics, or {@code null}
+     */
+    public CancelledStreams(MeterRegistry meterRegistry) {
+        if (meterRegistry != null) {
+            registerMetrics(meterRegistry);
+        }
+    }
+
+    /**
+     * @param tokens an answer streamed from the model
+     * @return the same answer, counted when it is cancelled before its end
+     */
+    public Flux<String> track(Flux<String> tokens) {
+        return Flux.defer(() -> {
+            AtomicLong streamed = new AtomicLong();
+            return tokens
+                    .doOnNext(token -> streamed.incrementAndGet())
+                    .doOnComplete(() -> {
+                        completed.increment();
+                        completedTokens.add(streamed.get());
+                    })
+                    .doOnCancel(() -> {
+                        cancelled.increment();
+                        tokensSaved.add(Math.max(0, meanAnswerTokens() - streamed.get()));
+                    });
+        });
+    }
+
+    /**
+     * @return the answers cancelled so far
+     */
+    public long cancelled() {
+        return cancelled.sum();
+    }
+
+    /**
+     * @return the tokens the cancelled answers are estimated to have had to go
+     */
+    public long tokensSaved() {
+        return tokensSaved.sum();
+    }
+
+    private long meanAnswerTokens() {
+        long answers = completed.sum();
+        return answers == 0 ? 0 : completedTokens.sum() / answers;
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("chat.stream.cancelled", cancelled, LongAdder::sum)
+                .description("Answers whose stream from the model was closed before their end, as their client left")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.stream.tokens.saved", tokensSaved, LongAdder::sum)
+                .description("Estimated tokens the model did not generate for the cancelled answers")
+                .register(meterRegistry);
+    }
+}
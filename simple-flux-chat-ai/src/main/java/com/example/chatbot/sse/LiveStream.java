@@ -0,0 +1,230 @@
+package com.example.chatbot.sse;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One answer being generated, independently of the clients reading it: its most recent frames
+ * in a ring bounded in frames and bytes, and the readers, each following the frames at its own
+ * pace from where it started.
+ * <p>
+ * The generation runs on while nobody reads it, for a client to reconnect, until it is
+ * {@linkplain #cancelIfUnread() cancelled}. A reader more than the ring behind the generation
+ * fails rather than holding it back.
+ */
+final class LiveStream {
+
+    private final TokenFrame[] ring;
+    private final int[] sizes;
+    private final long maxBytes;
+    private final List<Reader> readers = new CopyOnWriteArrayList<>();
+    private final Disposable.Swap generation = Disposables.swap();
+    private volatile Runnable onUnread = () -> {
+    };
+
+    // Guarded by this: the ids of the oldest frame kept and of the next frame, and the bytes kept
+    private long first = 1;
+    private long next = 1;
+    private long bytes;
+    private boolean done;
+    private boolean cancelled;
+    private Throwable error;
+
+    LiveStream(int maxFrames, long maxBytes) {
+        this.ring = new TokenFrame[maxFrames];
+        this.sizes = new int[maxFrames];
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Starts generating, once.
+     *
+     * @param onTerminate called when the generation ends, successfully, failing or cancelled
+     * @param onUnread    called whenever the last reader leaves while the generation still runs
+     */
+    void start(Flux<TokenFrame> frames, Runnable onTerminate, Runnable onUnread) {
+        this.onUnread = onUnread;
+        generation.update(frames.doFinally(signal -> onTerminate.run())
+                .subscribe(this::append, this::fail, this::complete));
+    }
+
+    /**
+     * @param lastEventId the id of the last frame the client got, {@code 0} for none
+     * @return whether every frame after it is still kept or yet to come
+     */
+    synchronized boolean canResumeAfter(long lastEventId) {
+        return !cancelled && lastEventId >= first - 1 && lastEventId < next;
+    }
+
+    /**
+     * @return whether the generation still runs and every frame of it is still kept, so a new
+     * reader can get all of it
+     */
+    synchronized boolean canJoin() {
+        return !done && first == 1;
+    }
+
+    /**
+     * Stops the generation, closing its stream from the model, if it still runs and nobody
+     * reads it.
+     *
+     * @return whether it was cancelled
+     */
+    boolean cancelIfUnread() {
+        synchronized (this) {
+            if (done || !readers.isEmpty()) {
+                return false;
+            }
+            done = true;
+            cancelled = true;
+            // For a reader attaching right now
+            error = new IllegalStateException("The stream was cancelled as nobody read it");
+        }
+        generation.dispose();
+        return true;
+    }
+
+    /**
+     * @param lastEventId the id of the last frame the client got, {@code 0} for none
+     * @return the frames after it, those kept first and then the new ones as they come
+     */
+    Flux<TokenFrame> readAfter(long lastEventId) {
+        return Flux.create(sink -> {
+            Reader reader = new Reader(sink, lastEventId + 1);
+            readers.add(reader);
+            sink.onDispose(() -> leave(reader));
+            sink.onRequest(n -> reader.drain());
+            // A finished stream completes a reader with nothing left to read without any demand
+            reader.drain();
+        });
+    }
+
+    private void leave(Reader reader) {
+        if (readers.remove(reader) && readers.isEmpty() && !isDone()) {
+            onUnread.run();
+        }
+    }
+
+    private synchronized boolean isDone() {
+        return done;
+    }
+
+    private void append(TokenFrame frame) {
+        synchronized (this) {
+            if (next - first == ring.length) {
+                evictOldest();
+            }
+            int slot = slot(frame.id());
+            ring[slot] = frame;
+            sizes[slot] = frame.dataLength();
+            bytes += sizes[slot];
+            next = frame.id() + 1;
+            // The newest frame is kept even if it alone is larger than the limit
+            while (bytes > maxBytes && first < frame.id()) {
+                evictOldest();
+            }
+        }
+        readers.forEach(Reader::drain);
+    }
+
+    private void fail(Throwable failure) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            error = failure;
+        }
+        readers.forEach(Reader::drain);
+    }
+
+    private void complete() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+        }
+        readers.forEach(Reader::drain);
+    }
+
+    private void evictOldest() {
+        int slot = slot(first);
+        bytes -= sizes[slot];
+        ring[slot] = null;
+        first++;
+    }
+
+    private int slot(long id) {
+        return (int) (id % ring.length);
+    }
+
+    /**
+     * A client reading the frames. Drains run one at a time, on whichever thread brought a new
+     * frame or more demand, and emit only what the client asked for.
+     */
+    private final class Reader {
+
+        private final FluxSink<TokenFrame> sink;
+        private final AtomicInteger wip = new AtomicInteger();
+        private long nextId;
+        private boolean terminated;
+
+        Reader(FluxSink<TokenFrame> sink, long nextId) {
+            this.sink = sink;
+            this.nextId = nextId;
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!terminated && !sink.isCancelled()) {
+                    TokenFrame frame = null;
+                    boolean lagged = false;
+                    boolean finished = false;
+                    Throwable failure = null;
+                    synchronized (LiveStream.this) {
+                        if (nextId < first) {
+                            lagged = true;
+                        } else if (nextId < next) {
+                            frame = ring[slot(nextId)];
+                        } else if (done) {
+                            finished = true;
+                            failure = error;
+                        }
+                    }
+                    if (lagged) {
+                        terminate(new IllegalStateException("Reader of the stream fell more than its buffer behind"));
+                    } else if (finished) {
+                        terminate(failure);
+                    } else if (frame != null && sink.requestedFromDownstream() > 0) {
+                        nextId++;
+                        sink.next(frame);
+                    } else {
+                        break;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate(Throwable failure) {
+            // Leaves the readers as its sink is disposed
+            terminated = true;
+            if (failure != null) {
+                sink.error(failure);
+            } else {
+                sink.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.chatbot.sse;
+
+import com.example.chatbot.config.SseResumeProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps streamed answers going when their client drops, so a reconnect carrying the
+ * {@code Last-Event-ID} of the last event it got picks up the same answer rather than asking
+ * the model again.
+ * <p>
+ * Each answer is generated once, independently of the connection that asked for it, and its
+ * most recent frames are kept in a ring of at most {@code app.sse.resume.max-frames} frames and
+ * {@code app.sse.resume.max-size} of data. A stream is found again by its key, e.g. the
+ * conversation and the question, for {@code app.sse.resume.grace-period} after the answer ended;
+ * a reconnect to an unknown stream, or one whose next frames were already dropped from the
+ * ring, starts a new answer whose events count from 1 again.
+ * <p>
+ * An answer nobody reads any more is generated on for {@code app.sse.resume.reconnect-timeout}
+ * and then cancelled, closing its stream from the model; it can no longer be resumed.
+ * <p>
+ * With {@code app.sse.resume.multicast=true}, a first request for a stream whose answer is still
+ * being generated, e.g. from another tab or a shared screen on the same conversation, joins it:
+ * it gets the events so far and then the new ones, at its own pace, from the one stream from
+ * the model. An answer whose first events were already dropped from the ring is not joined
+ * but started anew.
+ * <p>
+ * Switched off with {@code app.sse.resume.enabled=false}, every request starts its own answer.
+ */
+@Component
+public class ResumableStreams {
+
+    private final boolean enabled;
+    private final boolean multicast;
+    private final int maxFrames;
+    private final long maxBytes;
+    private final long gracePeriodNanos;
+    private final long reconnectTimeoutNanos;
+    private final Scheduler scheduler;
+    private final Map<String, LiveStream> streams = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ResumableStreams(SseResumeProperties properties) {
+        this(properties, Schedulers.parallel());
+    }
+
+    /**
+     * @param scheduler where finished streams are released once their grace period is over, and
+     *                  unread ones cancelled once their reconnect timeout is
+     */
+    ResumableStreams(SseResumeProperties properties, Scheduler scheduler) {
+        this.enabled = properties.enabled();
+        this.multicast = properties.multicast();
+        this.maxFrames = properties.maxFrames();
+        this.maxBytes = properties.maxSize().toBytes();
+        this.gracePeriodNanos = properties.gracePeriod().toNanos();
+        this.reconnectTimeoutNanos = properties.reconnectTimeout().toNanos();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param key         the stream, the same when the client reconnects and unique among those
+     *                    running, e.g. the conversation and the question
+     * @param lastEventId the client's {@code Last-Event-ID} header, {@code null} on a first request
+     * @param generation  starts a new answer, called only when none is resumed
+     * @return the frames after {@code lastEventId} of the stream if it can be resumed, all those
+     * of its running answer if it can be joined, otherwise those of a new answer
+     */
+    public Flux<TokenFrame> stream(String key, String lastEventId, Supplier<Flux<TokenFrame>> generation) {
+        if (!enabled) {
+            return Flux.defer(generation);
+        }
+        return Flux.defer(() -> {
+            Long resumeAfter = parseEventId(lastEventId);
+            LiveStream live = streams.get(key);
+            if (live != null && resumeAfter != null && live.canResumeAfter(resumeAfter)) {
+                return live.readAfter(resumeAfter);
+            }
+            if (live != null && lastEventId == null && multicast && live.canJoin()) {
+                return live.readAfter(0);
+            }
+            LiveStream started = new LiveStream(maxFrames, maxBytes);
+            // A stream replaced by a newer one under its key runs on for its readers, but can
+            // no longer be resumed
+            streams.put(key, started);
+            started.start(generation.get(), () -> release(key, started), () -> unread(key, started));
+            return started.readAfter(0);
+        });
+    }
+
+    /**
+     * @return the number of streams that can be resumed, running or in their grace period
+     */
+    public int size() {
+        return streams.size();
+    }
+
+    private void release(String key, LiveStream stream) {
+        try {
+            scheduler.schedule(() -> streams.remove(key, stream), gracePeriodNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            streams.remove(key, stream);
+        }
+    }
+
+    private void unread(String key, LiveStream stream) {
+        if (reconnectTimeoutNanos > 0) {
+            try {
+                scheduler.schedule(() -> cancelIfUnread(key, stream), reconnectTimeoutNanos, TimeUnit.NANOSECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down: nobody is going to reconnect
+            }
+        }
+        cancelIfUnread(key, stream);
+    }
+
+    private void cancelIfUnread(String key, LiveStream stream) {
+        if (stream.cancelIfUnread()) {
+            streams.remove(key, stream);
+        }
+    }
+
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null) {
+            return null;
+        }
+        try {
+            long id = Long.parseLong(lastEventId.strip());
+            return id >= 0 ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.chatbot.sse;
+
+import com.example.chatbot.config.SseProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups the tokens of a streamed answer into {@link TokenFrame frames}, so a client gets one
+ * Server-Sent Event, and the server makes one network write, per group of tokens rather than
+ * per token.
+ * <p>
+ * A frame is sent {@code app.sse.window} after its first token, or as soon as its tokens reach
+ * {@code app.sse.max-frame-size}, whichever comes first, and when the answer ends. Frames are
+ * numbered from 1 within each stream. Cancelling the frames cancels the tokens.
+ */
+@Component
+public class TokenCoalescer {
+
+    private final long windowNanos;
+    private final long maxFrameBytes;
+    private final Scheduler scheduler;
+
+    @Autowired
+    public TokenCoalescer(SseProperties properties) {
+        this(properties, Schedulers.parallel());
+    }
+
+    /**
+     * @param scheduler where a frame is sent once its window ends
+     */
+    TokenCoalescer(SseProperties properties, Scheduler scheduler) {
+        this.windowNanos = properties.window().toNanos();
+        this.maxFrameBytes = properties.maxFrameSize().toBytes();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param tokens the tokens of an answer, as the model streams them
+     * @return the same tokens in frames
+     */
+    public Flux<TokenFrame> coalesce(Flux<String> tokens) {
+        return Flux.create(sink -> {
+            Frames frames = new Frames(sink);
+            Disposable.Composite resources = Disposables.composite(frames.timer);
+            sink.onDispose(resources);
+            resources.add(tokens.subscribe(frames::add, frames::error, frames::complete));
+        });
+    }
+
+    /**
+     * The frame being filled for one stream. Tokens and window ends arrive on different
+     * threads, so every method holds the lock, which also keeps the frames in id order.
+     */
+    private final class Frames {
+
+        final Disposable.Swap timer = Disposables.swap();
+
+        private final FluxSink<TokenFrame> sink;
+        private List<String> pending = new ArrayList<>();
+        private long pendingBytes;
+        private long nextId = 1;
+
+        Frames(FluxSink<TokenFrame> sink) {
+            this.sink = sink;
+        }
+
+        synchronized void add(String token) {
+            pending.add(token);
+            pendingBytes += TokenFrame.utf8Length(token);
+            if (windowNanos <= 0 || pendingBytes >= maxFrameBytes) {
+                send();
+            } else if (pending.size() == 1) {
+                // The window of a frame starts with its first token
+                long id = nextId;
+                try {
+                    timer.update(scheduler.schedule(() -> windowEnded(id), windowNanos, TimeUnit.NANOSECONDS));
+                } catch (RejectedExecutionException e) {
+                    send();
+                }
+            }
+        }
+
+        synchronized void windowEnded(long id) {
+            // The frame may have filled up and gone before its window ended
+            if (id == nextId && !pending.isEmpty()) {
+                send();
+            }
+        }
+
+        synchronized void complete() {
+            timer.dispose();
+            if (!pending.isEmpty()) {
+                send();
+            }
+            sink.complete();
+        }
+
+        synchronized void error(Throwable error) {
+            timer.dispose();
+            if (!pending.isEmpty()) {
+                send();
+            }
+            sink.error(error);
+        }
+
+        private void send() {
+            TokenFrame frame = new TokenFrame(nextId++, pending);
+            pending = new ArrayList<>();
+            pendingBytes = 0;
+            sink.next(frame);
+        }
+    }
+}
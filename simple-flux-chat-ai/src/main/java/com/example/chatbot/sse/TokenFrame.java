@@ -0,0 +1,59 @@
+package com.example.chatbot.sse;
+
+import java.util.List;
+
+/**
+ * The tokens of a streamed answer sent together as one Server-Sent Event.
+ *
+ * @param id     the event id, counting from 1 within the stream
+ * @param tokens the tokens in the order the model streamed them
+ */
+public record TokenFrame(long id, List<String> tokens) {
+
+    public TokenFrame {
+        tokens = List.copyOf(tokens);
+    }
+
+    /**
+     * @return the tokens joined together, as a client reads the event's data
+     */
+    public String text() {
+        return String.join("", tokens);
+    }
+
+    /**
+     * @return the UTF-8 length of the tokens together
+     */
+    public int dataLength() {
+        int length = 0;
+        for (String token : tokens) {
+            length += utf8Length(token);
+        }
+        return length;
+    }
+
+    /**
+     * Counts without encoding; an unpaired surrogate counts as the single {@code ?} it is
+     * encoded as.
+     */
+    static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
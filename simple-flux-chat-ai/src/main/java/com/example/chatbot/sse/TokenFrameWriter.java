@@ -0,0 +1,109 @@
+package com.example.chatbot.sse;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.HttpMessageWriter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link TokenFrame frames} as Server-Sent Events, one event and one flush per frame:
+ * <pre>
+ * id: 7
+ * data: the tokens of the frame
+ *
+ * </pre>
+ * Each event is encoded straight into a buffer of the server's buffer factory (pooled on
+ * Netty), sized up front, without building its text first. A line break in the tokens starts
+ * another {@code data:} line, which clients join back with a newline.
+ */
+public class TokenFrameWriter implements HttpMessageWriter<TokenFrame> {
+
+    private static final MediaType CONTENT_TYPE = new MediaType(MediaType.TEXT_EVENT_STREAM, StandardCharsets.UTF_8);
+
+    private static final byte[] ID = "id: ".getBytes(StandardCharsets.US_ASCII);
+    // The space is always written, as clients drop the first one of the data
+    private static final byte[] DATA = "\ndata: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    // The fields, the longest id and a few line breaks, beyond the data itself
+    private static final int OVERHEAD = 64;
+
+    @Override
+    public List<MediaType> getWritableMediaTypes() {
+        return List.of(MediaType.TEXT_EVENT_STREAM);
+    }
+
+    @Override
+    public boolean canWrite(ResolvableType elementType, MediaType mediaType) {
+        return TokenFrame.class.isAssignableFrom(elementType.toClass())
+                && (mediaType == null || MediaType.TEXT_EVENT_STREAM.includes(mediaType));
+    }
+
+    @Override
+    public Mono<Void> write(Publisher<? extends TokenFrame> frames, ResolvableType elementType, MediaType mediaType,
+                            ReactiveHttpOutputMessage message, Map<String, Object> hints) {
+        message.getHeaders().setContentType(CONTENT_TYPE);
+        DataBufferFactory bufferFactory = message.bufferFactory();
+        return message.writeAndFlushWith(Flux.from(frames).map(frame ->
+                Mono.fromCallable(() -> encode(frame, bufferFactory))
+                        // A frame encoded after the client left is never written
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)));
+    }
+
+    static DataBuffer encode(TokenFrame frame, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(frame.dataLength() + OVERHEAD);
+        try {
+            buffer.write(ID);
+            writeDecimal(buffer, frame.id());
+            buffer.write(DATA);
+            boolean afterCarriageReturn = false;
+            for (String token : frame.tokens()) {
+                int start = 0;
+                for (int i = 0; i < token.length(); i++) {
+                    char c = token.charAt(i);
+                    if (c == '\n' && afterCarriageReturn) {
+                        // The second half of a \r\n, already written as one line break
+                        start = i + 1;
+                    } else if (c == '\n' || c == '\r') {
+                        writeText(buffer, token, start, i);
+                        buffer.write(DATA);
+                        start = i + 1;
+                    }
+                    afterCarriageReturn = c == '\r';
+                }
+                writeText(buffer, token, start, token.length());
+            }
+            buffer.write(END);
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static void writeText(DataBuffer buffer, String token, int start, int end) {
+        if (start == 0 && end == token.length()) {
+            buffer.write(token, StandardCharsets.UTF_8);
+        } else if (start < end) {
+            buffer.write(CharBuffer.wrap(token, start, end), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void writeDecimal(DataBuffer buffer, long value) {
+        if (value >= 10) {
+            writeDecimal(buffer, value / 10);
+        }
+        buffer.write((byte) ('0' + value % 10));
+    }
+}
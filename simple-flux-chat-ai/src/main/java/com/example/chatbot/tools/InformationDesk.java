@@ -1,25 +1,77 @@
 package com.example.chatbot.tools;
 
 import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@Component
 public class InformationDesk {
+
+    // State arguments asking for the whole country rather than one state
+    private static final Set<String> ALL_STATES = Set.of("all", "us", "usa", "united states");
+    private static final int DEFAULT_RANKING_SIZE = 5;
+
+    private final RailroadEmployeeDataset railroadEmployees;
+
+    public InformationDesk(RailroadEmployeeDataset railroadEmployees) {
+        this.railroadEmployees = railroadEmployees;
+    }
+
+    @Memoized(pure = true)
     @Tool(description = "This tool will give you my name")
     String getMyName(){
         return "I am Kavitha";
     }
 
+    @Memoized(pure = true)
     @Tool(description = "This tool will give you my age")
     String getMyAge(){
         return "I am 30 years old ";
     }
 
+    @Memoized(pure = true)
     @Tool(description = "This tool will give you how I spend my time")
     String getMyHobbies(){
         return "I like sketching and reading books. I enjoy playing with young kids and teaching them about the world.";
     }
 
-    @Tool(description = "This tool will give you information about railroad employees counts in a given month, year, state. Use rrb.gov website to get the information about railroad employee counts. This has information only up to 2023")
-    Long getRailroadEmployeeCounts(Long employeeCount, String state, String month, String year){
-        return employeeCount;
+    @Memoized(pure = true)
+    @Tool(description = "This tool will give you the number of railroad employees in a US state in a given month and year, "
+            + "from the railroad employee dataset. Without a state it counts all states together; without a month "
+            + "it gives the average over the year. Returns null when the dataset has no figure for it, in which case "
+            + "say that the figure is not available rather than estimating it")
+    Long getRailroadEmployeeCounts(
+            @ToolParam(description = "US state name or two-letter code; empty for all states", required = false) String state,
+            @ToolParam(description = "Month name or number; empty for the yearly average", required = false) String month,
+            @ToolParam(description = "Four-digit year") Integer year){
+        if (year == null) {
+            return null;
+        }
+        boolean allStates = state == null || state.isBlank() || ALL_STATES.contains(state.trim().toLowerCase(Locale.ROOT));
+        if (month == null || month.isBlank()) {
+            return railroadEmployees.yearlyAverage(allStates ? null : state, year);
+        }
+        Integer monthNumber = RailroadEmployeeDataset.month(month);
+        if (monthNumber == null) {
+            return null;
+        }
+        return allStates ? railroadEmployees.total(year, monthNumber) : railroadEmployees.employees(state, year, monthNumber);
+    }
+
+    @Memoized(pure = true)
+    @Tool(description = "This tool will give you the US states with the most railroad employees in a given year, "
+            + "by yearly average, largest first. Returns an empty list when the dataset has no figures for the year, "
+            + "in which case say that the figures are not available rather than estimating them")
+    List<RailroadEmployeeDataset.StateCount> getRailroadEmployeeRanking(
+            @ToolParam(description = "Four-digit year") Integer year,
+            @ToolParam(description = "How many states to list; 5 if empty", required = false) Integer limit){
+        if (year == null) {
+            return List.of();
+        }
+        return railroadEmployees.ranking(year, limit == null ? DEFAULT_RANKING_SIZE : limit);
     }
 }
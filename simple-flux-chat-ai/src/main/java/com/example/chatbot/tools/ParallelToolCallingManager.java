@@ -0,0 +1,119 @@
+package com.example.chatbot.tools;
+
+import com.example.chatbot.config.ToolExecutionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the tool calls of one model turn concurrently instead of one after another.
+ * <p>
+ * When the model asks for several tools in one assistant message, each call is handed to the
+ * {@code delegate} on {@link Schedulers#boundedElastic()}, never on the Netty event loop, at
+ * most {@code app.tool-execution.parallelism} at a time, and the results are sent back in the
+ * order the model asked for them. A call still running after its tool's timeout is cancelled
+ * (its worker is interrupted) and the model is told the tool did not answer, so one slow tool
+ * cannot hold up the turn. The {@code delegate} still resolves the tools, observes each call
+ * and turns tool exceptions into messages for the model; an error it does not handle fails
+ * the turn and cancels the other calls.
+ */
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelToolCallingManager.class);
+
+    private final ToolCallingManager delegate;
+    private final ToolExecutionProperties properties;
+
+    public ParallelToolCallingManager(ToolCallingManager delegate, ToolExecutionProperties properties) {
+        if (properties.parallelism() < 1) {
+            throw new IllegalArgumentException("app.tool-execution.parallelism must be at least 1");
+        }
+        this.delegate = delegate;
+        this.properties = properties;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElse(null);
+        if (assistantMessage == null) {
+            // Let the delegate report the missing tool calls
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+        List<ToolExecutionResult> results = runAll(prompt, assistantMessage);
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        boolean returnDirect = true;
+        for (ToolExecutionResult result : results) {
+            List<Message> history = result.conversationHistory();
+            responses.addAll(((ToolResponseMessage) history.get(history.size() - 1)).getResponses());
+            returnDirect &= result.returnDirect();
+        }
+        List<Message> conversationHistory = new ArrayList<>(prompt.getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(new ToolResponseMessage(responses, Map.of()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    /**
+     * @return the result of each tool call, in the order of the calls
+     */
+    private List<ToolExecutionResult> runAll(Prompt prompt, AssistantMessage assistantMessage) {
+        return Flux.fromIterable(assistantMessage.getToolCalls())
+                .flatMapSequential(toolCall -> Mono.fromCallable(
+                                        () -> delegate.executeToolCalls(prompt, singleCall(assistantMessage, toolCall)))
+                                // Tools may block, so keep them off the event loop
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .timeout(properties.timeoutFor(toolCall.name()), Mono.fromSupplier(() -> timedOut(toolCall))),
+                        properties.parallelism())
+                .collectList()
+                .block();
+    }
+
+    /**
+     * A response of the model asking for just this one of its tool calls.
+     */
+    private static ChatResponse singleCall(AssistantMessage assistantMessage, AssistantMessage.ToolCall toolCall) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(assistantMessage.getText(),
+                assistantMessage.getMetadata(), List.of(toolCall)))));
+    }
+
+    private ToolExecutionResult timedOut(AssistantMessage.ToolCall toolCall) {
+        Duration timeout = properties.timeoutFor(toolCall.name());
+        log.warn("Cancelled tool call {} ({}) after {} ms", toolCall.name(), toolCall.id(), timeout.toMillis());
+        ToolResponseMessage.ToolResponse response = new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                "The tool did not answer within " + timeout.toMillis() + " ms");
+        return ToolExecutionResult.builder()
+                .conversationHistory(List.of(new ToolResponseMessage(List.of(response), Map.of())))
+                .returnDirect(false)
+                .build();
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.chatbot.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Railroad employee counts by state, year and month, loaded once from a CSV file with the
+ * columns {@code state_code,state_name,year,month,employees} (lines starting with {@code #}
+ * are comments).
+ * <p>
+ * The counts are kept in one {@code int} column addressed by a composite key computed from the
+ * state, year and month, so a point lookup is an array read and the whole dataset of 51 states
+ * over a few decades takes well under a megabyte. Monthly totals over all states are summed
+ * at load time; yearly averages and state rankings are computed from at most twelve months
+ * per state.
+ * <p>
+ * The figures come from the export at {@code app.railroad-data.location}. Nothing is bundled:
+ * without a location the dataset is empty and has no figure for anything, so the tools never
+ * answer with numbers that were not published.
+ */
+@Component
+public class RailroadEmployeeDataset {
+
+    private static final Logger log = LoggerFactory.getLogger(RailroadEmployeeDataset.class);
+
+    private static final int MONTHS = 12;
+    private static final int MISSING = -1;
+
+    private final List<String> stateNames;
+    // Lower-cased state codes and names to their index
+    private final Map<String, Integer> states;
+    private final int firstYear;
+    private final int years;
+    // Employees at (state * years + year - firstYear) * MONTHS + month - 1, or MISSING
+    private final int[] employees;
+    // Employees of all states with a figure at (year - firstYear) * MONTHS + month - 1, or MISSING
+    private final long[] totals;
+
+    /**
+     * A state and its employee count.
+     */
+    public record StateCount(String state, long employees) {
+    }
+
+    @Autowired
+    public RailroadEmployeeDataset(@Value("${app.railroad-data.location:}") String location,
+                                   ResourceLoader resourceLoader) {
+        this(location.isBlank() ? null : resourceLoader.getResource(location.trim()));
+    }
+
+    /**
+     * @param location the CSV file, or {@code null} for an empty dataset
+     */
+    public RailroadEmployeeDataset(Resource location) {
+        long start = System.nanoTime();
+        List<String> codes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> stateIndex = new HashMap<>();
+        List<int[]> rows = new ArrayList<>();
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        if (location == null) {
+            log.warn("No railroad employee data configured (app.railroad-data.location); the railroad tools will have no figures");
+        }
+        try (BufferedReader reader = location == null ? new BufferedReader(Reader.nullReader())
+                : new BufferedReader(new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8))) {
+            boolean header = true;
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != 5) {
+                    throw new IllegalStateException(location.getDescription() + " line " + lineNumber
+                            + ": expected state_code,state_name,year,month,employees");
+                }
+                String code = fields[0].trim();
+                Integer state = stateIndex.get(code.toLowerCase(Locale.ROOT));
+                if (state == null) {
+                    state = codes.size();
+                    codes.add(code);
+                    names.add(fields[1].trim());
+                    stateIndex.put(code.toLowerCase(Locale.ROOT), state);
+                    stateIndex.put(fields[1].trim().toLowerCase(Locale.ROOT), state);
+                }
+                try {
+                    int year = Integer.parseInt(fields[2].trim());
+                    int month = Integer.parseInt(fields[3].trim());
+                    int count = Integer.parseInt(fields[4].trim());
+                    if (month < 1 || month > MONTHS || count < 0) {
+                        throw new NumberFormatException("month " + month + ", employees " + count);
+                    }
+                    rows.add(new int[]{state, year, month, count});
+                    minYear = Math.min(minYear, year);
+                    maxYear = Math.max(maxYear, year);
+                } catch (NumberFormatException e) {
+                    throw new IllegalStateException(location.getDescription() + " line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + location.getDescription(), e);
+        }
+
+        this.stateNames = List.copyOf(names);
+        this.states = Map.copyOf(stateIndex);
+        this.firstYear = rows.isEmpty() ? 0 : minYear;
+        this.years = rows.isEmpty() ? 0 : maxYear - minYear + 1;
+        this.employees = new int[codes.size() * years * MONTHS];
+        this.totals = new long[years * MONTHS];
+        Arrays.fill(employees, MISSING);
+        Arrays.fill(totals, MISSING);
+        for (int[] row : rows) {
+            int period = (row[1] - firstYear) * MONTHS + row[2] - 1;
+            employees[row[0] * years * MONTHS + period] = row[3];
+        }
+        for (int state = 0; state < codes.size(); state++) {
+            for (int period = 0; period < totals.length; period++) {
+                int count = employees[state * years * MONTHS + period];
+                if (count != MISSING) {
+                    totals[period] = (totals[period] == MISSING ? 0 : totals[period]) + count;
+                }
+            }
+        }
+        if (location != null) {
+            log.info("Loaded {} railroad employee counts of {} states for {} to {} from {} in {} ms", rows.size(),
+                    codes.size(), firstYear, lastYear(), location.getDescription(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public int firstYear() {
+        return firstYear;
+    }
+
+    public int lastYear() {
+        return firstYear + years - 1;
+    }
+
+    /**
+     * @param state a state code or name, in any case
+     * @param month 1 for January to 12 for December
+     * @return the state's employees in that month, or {@code null} if the dataset has no figure
+     */
+    public Long employees(String state, int year, int month) {
+        Integer index = state == null ? null : states.get(state.trim().toLowerCase(Locale.ROOT));
+        if (index == null || !covers(year, month)) {
+            return null;
+        }
+        int count = employees[index * years * MONTHS + (year - firstYear) * MONTHS + month - 1];
+        return count == MISSING ? null : (long) count;
+    }
+
+    /**
+     * @return the employees of all states in that month, or {@code null} if no state has a figure
+     */
+    public Long total(int year, int month) {
+        if (!covers(year, month)) {
+            return null;
+        }
+        long total = totals[(year - firstYear) * MONTHS + month - 1];
+        return total == MISSING ? null : total;
+    }
+
+    /**
+     * @param state a state code or name, or {@code null} for all states together
+     * @return the average over the months of the year with a figure, or {@code null} if there are none
+     */
+    public Long yearlyAverage(String state, int year) {
+        if (state == null) {
+            return average(month -> total(year, month));
+        }
+        return average(month -> employees(state, year, month));
+    }
+
+    /**
+     * @return the states with the most employees in the year by yearly average, largest first
+     */
+    public List<StateCount> ranking(int year, int limit) {
+        List<StateCount> ranking = new ArrayList<>();
+        for (String state : stateNames) {
+            Long average = yearlyAverage(state, year);
+            if (average != null) {
+                ranking.add(new StateCount(state, average));
+            }
+        }
+        ranking.sort(Comparator.comparingLong(StateCount::employees).reversed());
+        return List.copyOf(ranking.subList(0, Math.min(Math.max(limit, 0), ranking.size())));
+    }
+
+    /**
+     * @return 1 to 12 for a month name, its first three letters or its number, otherwise {@code null}
+     */
+    static Integer month(String month) {
+        if (month == null || month.isBlank()) {
+            return null;
+        }
+        String text = month.trim().toLowerCase(Locale.ROOT);
+        for (Month candidate : Month.values()) {
+            String name = candidate.getDisplayName(TextStyle.FULL, Locale.ENGLISH).toLowerCase(Locale.ROOT);
+            if (text.equals(name) || text.equals(name.substring(0, 3))) {
+                return candidate.getValue();
+            }
+        }
+        try {
+            int number = Integer.parseInt(text);
+            return number >= 1 && number <= MONTHS ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean covers(int year, int month) {
+        return year >= firstYear && year - firstYear < years && month >= 1 && month <= MONTHS;
+    }
+
+    private static Long average(IntFunction<Long> counts) {
+        long sum = 0;
+        int months = 0;
+        for (int month = 1; month <= MONTHS; month++) {
+            Long count = counts.apply(month);
+            if (count != null) {
+                sum += count;
+                months++;
+            }
+        }
+        return months == 0 ? null : Math.round((double) sum / months);
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.chatbot.tools;
+
+import com.example.chatbot.config.ToolCacheProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.tool.support.ToolUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns {@link Tool @Tool} objects into tool callbacks that reuse the results of
+ * {@link Memoized} methods.
+ * <p>
+ * A result is keyed on the tool name and its arguments in canonical form (object keys sorted,
+ * null members dropped, numbers without trailing zeros), so {@code {"year":"2023","state":"CA"}}
+ * and {@code {"state": "CA", "year": "2023"}} are the same call. Concurrent calls with the same
+ * key run the tool once and share its result; a failed call is not cached. Results expire
+ * after their tool's ttl, and at most {@code app.tool-cache.max-entries} are kept across all
+ * tools. Tools without {@link Memoized} run on every call.
+ * <p>
+ * When a meter registry is available, publishes {@code tool.cache.requests} per tool and
+ * result ({@code hit} or {@code miss}), the {@code tool.cache.size} and a
+ * {@code tool.execution} histogram per tool and outcome of the calls that did run.
+ */
+@Component
+public class ToolResultCache {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final boolean enabled;
+    private final long defaultTtlNanos;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Long> ttlNanos = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final AsyncCache<Key, String> results;
+
+    @Autowired
+    public ToolResultCache(ToolCacheProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(properties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * @param meterRegistry where to publish metrics, or {@code null}
+     */
+    public ToolResultCache(ToolCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    ToolResultCache(ToolCacheProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.enabled = properties.enabled();
+        this.defaultTtlNanos = properties.defaultTtl().toNanos();
+        this.meterRegistry = meterRegistry;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(properties.maxEntries())
+                .expireAfter(new PerToolExpiry())
+                .ticker(ticker)
+                .buildAsync();
+        if (meterRegistry != null) {
+            Gauge.builder("tool.cache.size", results, r -> r.synchronous().estimatedSize())
+                    .description("Tool results cached across all tools")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @param toolObjects objects with {@link Tool @Tool} methods, as passed to
+     *                    {@link org.springframework.ai.chat.client.ChatClient.Builder#defaultTools}
+     * @return a callback per tool, reusing the results of the {@link Memoized} ones
+     * @throws IllegalArgumentException if a {@link Memoized} declaration is invalid
+     */
+    public List<ToolCallback> memoize(Object... toolObjects) {
+        List<ToolCallback> callbacks = new ArrayList<>();
+        for (Object toolObject : toolObjects) {
+            Map<String, Method> methods = toolMethods(toolObject);
+            for (ToolCallback callback : ToolCallbacks.from(toolObject)) {
+                String name = callback.getToolDefinition().name();
+                Long ttl = ttlNanos(methods.get(name));
+                if (ttl != null) {
+                    ttlNanos.put(name, ttl);
+                }
+                callbacks.add(new MemoizingToolCallback(callback, enabled && ttl != null,
+                        stats.computeIfAbsent(name, tool -> newStats(tool, ttl != null))));
+            }
+        }
+        return callbacks;
+    }
+
+    /**
+     * @return the {@link Tool @Tool} methods of the object by tool name
+     */
+    static Map<String, Method> toolMethods(Object toolObject) {
+        Map<String, Method> methods = new HashMap<>();
+        for (Method method : ReflectionUtils.getDeclaredMethods(ClassUtils.getUserClass(toolObject))) {
+            if (AnnotationUtils.findAnnotation(method, Tool.class) != null) {
+                methods.put(ToolUtils.getToolName(method), method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * @return how long the method's results are reused, or {@code null} if it is not memoized
+     */
+    private Long ttlNanos(Method method) {
+        Memoized memoized = method == null ? null : AnnotationUtils.findAnnotation(method, Memoized.class);
+        if (memoized == null) {
+            return null;
+        }
+        if (Arrays.asList(method.getParameterTypes()).contains(ToolContext.class)) {
+            throw new IllegalArgumentException(method + " takes a ToolContext and cannot be @Memoized");
+        }
+        if (memoized.pure()) {
+            if (!memoized.ttl().isEmpty()) {
+                throw new IllegalArgumentException(method + " is @Memoized as pure, so it cannot have a ttl");
+            }
+            return Long.MAX_VALUE;
+        }
+        if (memoized.ttl().isEmpty()) {
+            return defaultTtlNanos;
+        }
+        long ttl = DurationStyle.detectAndParse(memoized.ttl()).toNanos();
+        if (ttl <= 0) {
+            throw new IllegalArgumentException(method + " is @Memoized with a ttl that is not positive");
+        }
+        return ttl;
+    }
+
+    /**
+     * The tool arguments with object keys sorted, null members dropped and numbers without
+     * trailing zeros, or the input as is if it is not JSON.
+     */
+    static String canonicalArguments(String toolInput) {
+        if (toolInput == null || toolInput.isBlank()) {
+            return "{}";
+        }
+        try {
+            return canonical(JSON.readTree(toolInput)).toString();
+        } catch (JsonProcessingException e) {
+            return toolInput;
+        }
+    }
+
+    private static JsonNode canonical(JsonNode node) {
+        if (node.isObject()) {
+            Map<String, JsonNode> members = new TreeMap<>();
+            node.properties().forEach(member -> {
+                if (!member.getValue().isNull()) {
+                    members.put(member.getKey(), canonical(member.getValue()));
+                }
+            });
+            ObjectNode sorted = JSON.createObjectNode();
+            members.forEach(sorted::set);
+            return sorted;
+        }
+        if (node.isArray()) {
+            ArrayNode elements = JSON.createArrayNode();
+            node.forEach(element -> elements.add(canonical(element)));
+            return elements;
+        }
+        if (node.isNumber()) {
+            return JSON.getNodeFactory().numberNode(node.decimalValue().stripTrailingZeros());
+        }
+        return node;
+    }
+
+    private Stats newStats(String tool, boolean memoized) {
+        Stats toolStats = new Stats(new LongAdder(), new LongAdder(), timer(tool, "success"), timer(tool, "error"));
+        if (meterRegistry != null && memoized) {
+            FunctionCounter.builder("tool.cache.requests", toolStats.hits(), LongAdder::sum)
+                    .description("Memoized tool calls answered without running the tool")
+                    .tags("tool", tool, "result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("tool.cache.requests", toolStats.misses(), LongAdder::sum)
+                    .description("Memoized tool calls that ran the tool")
+                    .tags("tool", tool, "result", "miss")
+                    .register(meterRegistry);
+        }
+        return toolStats;
+    }
+
+    private Timer timer(String tool, String outcome) {
+        if (meterRegistry == null) {
+            return null;
+        }
+        return Timer.builder("tool.execution")
+                .description("Time spent running a tool")
+                .tags("tool", tool, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private record Key(String tool, String arguments) {
+    }
+
+    private record Stats(LongAdder hits, LongAdder misses, Timer succeeded, Timer failed) {
+    }
+
+    private final class PerToolExpiry implements Expiry<Key, String> {
+
+        @Override
+        public long expireAfterCreate(Key key, String result, long currentTime) {
+            return ttlNanos.getOrDefault(key.tool(), defaultTtlNanos);
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, String result, long currentTime, long currentDuration) {
+            // A pending call's entry is updated with its result; its ttl starts from there
+            return expireAfterCreate(key, result, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, String result, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private final class MemoizingToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+        private final boolean memoized;
+        private final Stats stats;
+
+        MemoizingToolCallback(ToolCallback delegate, boolean memoized, Stats stats) {
+            this.delegate = delegate;
+            this.memoized = memoized;
+            this.stats = stats;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            if (!memoized) {
+                return execute(toolInput, toolContext);
+            }
+            Key key = new Key(delegate.getToolDefinition().name(), canonicalArguments(toolInput));
+            CompletableFuture<String> pending = new CompletableFuture<>();
+            CompletableFuture<String> cached = results.asMap().putIfAbsent(key, pending);
+            if (cached != null) {
+                stats.hits().increment();
+                return await(cached);
+            }
+            stats.misses().increment();
+            try {
+                String result = execute(toolInput, toolContext);
+                pending.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                // Also fails the calls waiting for this one; the cache drops the failed entry
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        private String execute(String toolInput, ToolContext toolContext) {
+            long start = System.nanoTime();
+            try {
+                String result = toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+                record(stats.succeeded(), start);
+                return result;
+            } catch (RuntimeException | Error e) {
+                record(stats.failed(), start);
+                throw e;
+            }
+        }
+
+        private static void record(Timer timer, long start) {
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private static String await(CompletableFuture<String> result) {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
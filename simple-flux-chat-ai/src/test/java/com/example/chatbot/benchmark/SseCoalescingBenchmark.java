@@ -0,0 +1,255 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.SimpleChatFluxApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Compares the {@code /no-state-query} stream with every token sent as an event of its own
+ * ({@code app.sse.window=0ms}, as before tokens were coalesced) and with the default window:
+ * Server-Sent Events, write syscalls and CPU of the server's event loops per 1,000 streamed
+ * tokens, against a local stub of the OpenAI chat-completions API that streams its tokens at a
+ * fixed pace.
+ * <p>
+ * Write syscalls are read from {@code /proc/self/task/<tid>/io} of the {@code reactor-http}
+ * threads, so they are only reported on Linux; the same event loops also read the stub's
+ * stream, which costs the same in both runs. CPU is the time of the {@code reactor-http} and
+ * {@code parallel} threads, the latter sending frames once their window ends.
+ * <p>
+ * Run it with:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-classpath %classpath com.example.chatbot.benchmark.SseCoalescingBenchmark"
+ * </pre>
+ * System properties: {@code streams} (default 50), {@code tokens} per stream (default 1000),
+ * {@code tokenIntervalMicros} between the stub's tokens (default 500), {@code concurrency}
+ * (default 10), {@code window} of the coalesced run (default 20ms).
+ */
+public final class SseCoalescingBenchmark {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final String DONE = "data: [DONE]\n\n";
+
+    private SseCoalescingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int streams = Integer.getInteger("streams", 50);
+        int tokens = Integer.getInteger("tokens", 1000);
+        long tokenIntervalMicros = Long.getLong("tokenIntervalMicros", 500);
+        int concurrency = Integer.getInteger("concurrency", 10);
+        String window = System.getProperty("window", "20ms");
+        // DevTools would restart each run's application in another thread
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        HttpServer stubOpenAi = startStubOpenAi(tokens, tokenIntervalMicros);
+        try {
+            System.out.printf("streams=%d tokens=%d tokenInterval=%dus concurrency=%d%n",
+                    streams, tokens, tokenIntervalMicros, concurrency);
+            for (String run : new String[]{"0ms", window}) {
+                run(run, streams, tokens, concurrency, stubOpenAi.getAddress().getPort());
+            }
+        } finally {
+            stubOpenAi.stop(0);
+        }
+    }
+
+    private static void run(String window, int streams, int tokens, int concurrency, int stubPort) throws Exception {
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(SimpleChatFluxApplication.class).run(
+                "--server.port=0",
+                "--app.sse.window=" + window,
+                // Every stream must reach the stub, not the cached answer of the first one
+                "--app.semantic-cache.enabled=false",
+                "--spring.ai.openai.api-key=benchmark",
+                "--spring.ai.openai.base-url=http://127.0.0.1:" + stubPort,
+                "--logging.level.root=WARN");
+        int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            // Warm up class loading and the JIT first
+            stream(client, port, "warm-up", 2 * concurrency, concurrency, tokens);
+
+            long syscallsBefore = eventLoopWriteSyscalls();
+            long cpuBefore = eventLoopCpuNanos();
+            long started = System.nanoTime();
+            long events = stream(client, port, "query", streams, concurrency, tokens);
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            long syscalls = eventLoopWriteSyscalls() - syscallsBefore;
+            long cpuNanos = eventLoopCpuNanos() - cpuBefore;
+
+            double perThousandTokens = 1000.0 / ((long) streams * tokens);
+            System.out.printf("window=%-5s events/1k tokens=%.1f writeSyscalls/1k tokens=%s eventLoopCpu/1k tokens=%.2fms elapsed=%dms%n",
+                    window, events * perThousandTokens,
+                    syscallsBefore < 0 ? "n/a" : String.format("%.1f", syscalls * perThousandTokens),
+                    cpuNanos * perThousandTokens / 1_000_000, elapsedMillis);
+        } finally {
+            app.close();
+        }
+    }
+
+    /**
+     * @return the events received over all streams
+     */
+    private static long stream(HttpClient client, int port, String query, int streams, int concurrency, int tokens)
+            throws Exception {
+        AtomicLong events = new AtomicLong();
+        Semaphore running = new Semaphore(concurrency);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> all = new ArrayList<>();
+            for (int s = 0; s < streams; s++) {
+                String message = query + "-" + s;
+                all.add(clients.submit(() -> {
+                    running.acquire();
+                    try {
+                        events.addAndGet(readStream(client, port, message, tokens));
+                    } finally {
+                        running.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> stream : all) {
+                stream.get();
+            }
+        }
+        return events.get();
+    }
+
+    private static long readStream(HttpClient client, int port, String message, int tokens) throws Exception {
+        HttpResponse<Stream<String>> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/no-state-query?message=" + message))
+                        .header("Accept", "text/event-stream")
+                        .build(),
+                HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Stream " + message + " failed with " + response.statusCode());
+        }
+        long events = 0;
+        long received = 0;
+        try (Stream<String> lines = response.body()) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (line.startsWith("id:")) {
+                    events++;
+                } else if (line.startsWith("data: ")) {
+                    received += line.substring("data: ".length()).chars().filter(c -> c == 't').count();
+                }
+            }
+        }
+        if (received != tokens) {
+            throw new IllegalStateException("Stream " + message + " got " + received + " of " + tokens + " tokens");
+        }
+        return events;
+    }
+
+    /**
+     * Streams {@code tokens} chunks of {@code " t"}, one every {@code intervalMicros}, to any request.
+     */
+    private static HttpServer startStubOpenAi(int tokens, long intervalMicros) throws IOException {
+        byte[] chunk = chunk(JSON.createObjectNode().put("content", " t"), null);
+        byte[] last = chunk(JSON.createObjectNode(), "stop");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                long next = System.nanoTime();
+                for (int i = 0; i < tokens; i++) {
+                    next += TimeUnit.MICROSECONDS.toNanos(intervalMicros);
+                    LockSupport.parkNanos(next - System.nanoTime());
+                    body.write(chunk);
+                    body.flush();
+                }
+                body.write(last);
+                body.write(DONE.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static byte[] chunk(ObjectNode delta, String finishReason) throws IOException {
+        ObjectNode chunk = JSON.createObjectNode()
+                .put("id", "chatcmpl-bench")
+                .put("object", "chat.completion.chunk")
+                .put("created", 1700000000)
+                .put("model", "gpt-4o");
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return ("data: " + JSON.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the write syscalls made so far by the event loop threads, or -1 off Linux
+     */
+    private static long eventLoopWriteSyscalls() {
+        Path tasks = Path.of("/proc/self/task");
+        if (!Files.isDirectory(tasks)) {
+            return -1;
+        }
+        long syscalls = 0;
+        try (Stream<Path> threads = Files.list(tasks)) {
+            for (Path thread : (Iterable<Path>) threads::iterator) {
+                try {
+                    // The kernel keeps the first 15 characters of a thread's name
+                    if (!Files.readString(thread.resolve("comm")).startsWith("reactor-http")) {
+                        continue;
+                    }
+                    for (String line : Files.readAllLines(thread.resolve("io"))) {
+                        if (line.startsWith("syscw:")) {
+                            syscalls += Long.parseLong(line.substring("syscw:".length()).trim());
+                        }
+                    }
+                } catch (IOException e) {
+                    // The thread ended while being read
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return syscalls;
+    }
+
+    private static long eventLoopCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long nanos = 0;
+        for (ThreadInfo thread : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (thread != null && (thread.getThreadName().startsWith("reactor-http")
+                    || thread.getThreadName().startsWith("parallel-"))) {
+                nanos += Math.max(0, threads.getThreadCpuTime(thread.getThreadId()));
+            }
+        }
+        return nanos;
+    }
+}
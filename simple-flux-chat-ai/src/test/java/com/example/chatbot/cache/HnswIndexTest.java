@@ -0,0 +1,200 @@
+package com.example.chatbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static int bruteForceNearest(List<float[]> vectors, float[] query) {
+        int best = -1;
+        float bestSimilarity = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.size(); i++) {
+            if (vectors.get(i) == null) {
+                continue;
+            }
+            float similarity = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                similarity += vectors.get(i)[d] * query[d];
+            }
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void search_FindsTheTrueNearestNeighbourAlmostAlways() {
+        // Given
+        Random random = new Random(7);
+        HnswIndex<Integer> index = new HnswIndex<>(DIMENSIONS, 5_000, 1);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            vectors.add(randomUnitVector(random));
+            index.add(vectors.get(i), i);
+        }
+
+        // When
+        int found = 0;
+        int queries = 200;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random);
+            List<HnswIndex.Match<Integer>> matches = index.search(query, 1, 64);
+            if (!matches.isEmpty() && matches.get(0).value() == bruteForceNearest(vectors, query)) {
+                found++;
+            }
+        }
+
+        // Then
+        int recalled = found;
+        assertTrue(recalled >= queries * 0.95, () -> "recall@1 was " + recalled + "/" + queries);
+    }
+
+    @Test
+    void search_ReturnsMatchesMostSimilarFirst() {
+        // Given
+        Random random = new Random(3);
+        HnswIndex<Integer> index = new HnswIndex<>(DIMENSIONS, 100, 1);
+        float[] stored = randomUnitVector(random);
+        index.add(stored, 0);
+        for (int i = 1; i < 100; i++) {
+            index.add(randomUnitVector(random), i);
+        }
+
+        // When
+        List<HnswIndex.Match<Integer>> matches = index.search(stored, 5, 32);
+
+        // Then
+        assertEquals(5, matches.size());
+        assertEquals(0, matches.get(0).value());
+        assertEquals(1.0f, matches.get(0).similarity(), 1e-5);
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i - 1).similarity() >= matches.get(i).similarity());
+        }
+    }
+
+    @Test
+    void fullIndex_EvictsEntriesNotTouchedSinceTheLastSweep() {
+        // Given
+        Random random = new Random(5);
+        HnswIndex<Integer> index = new HnswIndex<>(DIMENSIONS, 100, 1);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            vectors.add(randomUnitVector(random));
+            index.add(vectors.get(i), i);
+        }
+        int hot = index.search(vectors.get(0), 1, 32).get(0).slot();
+        index.touch(hot);
+
+        // When
+        for (int i = 100; i < 150; i++) {
+            index.add(randomUnitVector(random), i);
+        }
+
+        // Then - the touched entry survived; the oldest untouched ones did not
+        assertEquals(100, index.size());
+        assertEquals(50, index.evictions());
+        assertEquals(0, index.search(vectors.get(0), 1, 32).get(0).value());
+        assertNotEquals(1, index.search(vectors.get(1), 1, 32).get(0).value());
+    }
+
+    @Test
+    void evictionChurn_KeepsTheGraphSearchable() {
+        // Given - ten times the capacity goes through the index
+        Random random = new Random(11);
+        HnswIndex<Integer> index = new HnswIndex<>(DIMENSIONS, 500, 1);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            vectors.add(randomUnitVector(random));
+            index.add(vectors.get(i), i);
+        }
+
+        // When - every entry still in the index is searched for by its own vector
+        int found = 0;
+        for (int i = 4_500; i < 5_000; i++) {
+            List<HnswIndex.Match<Integer>> matches = index.search(vectors.get(i), 1, 64);
+            if (!matches.isEmpty() && matches.get(0).value() == i) {
+                found++;
+            }
+        }
+
+        // Then
+        int recalled = found;
+        assertEquals(500, index.size());
+        assertTrue(recalled >= 490, () -> "found " + recalled + " of 500");
+    }
+
+    @Test
+    void remove_TakesOnlyTheExpectedValueOut() {
+        // Given
+        Random random = new Random(13);
+        HnswIndex<String> index = new HnswIndex<>(DIMENSIONS, 10, 1);
+        float[] vector = randomUnitVector(random);
+        index.add(vector, "first");
+        index.add(randomUnitVector(random), "second");
+        int slot = index.search(vector, 1, 8).get(0).slot();
+
+        // When
+        boolean removedOther = index.remove(slot, "second");
+        boolean removed = index.remove(slot, "first");
+
+        // Then
+        assertFalse(removedOther);
+        assertTrue(removed);
+        assertEquals(1, index.size());
+        assertEquals("second", index.search(vector, 1, 8).get(0).value());
+    }
+
+    @Test
+    void concurrentSearchesAndAdds_DoNotInterfere() throws Exception {
+        // Given
+        HnswIndex<Integer> index = new HnswIndex<>(DIMENSIONS, 1_000, 1);
+
+        // When
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                tasks.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 1_000; i++) {
+                        float[] vector = randomUnitVector(random);
+                        index.add(vector, i);
+                        assertFalse(index.search(vector, 1, 32).isEmpty());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+
+        // Then
+        assertEquals(1_000, index.size());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.JournalChatMemoryRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.FluxExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every chat endpoint on a real Netty server with BlockHound installed, against a stub of
+ * the OpenAI chat-completions API, and fails if any of them blocks an event loop or another
+ * non-blocking thread. The smart endpoint's stub model asks for a tool first, so tool calls are
+ * covered too.
+ * <p>
+ * BlockHound stays installed for the rest of the JVM, so surefire runs this class in its own
+ * execution (see the {@code blockhound} execution in the pom).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.ai.openai.api-key=blockhound", "logging.level.root=WARN"})
+class ChatEndpointsBlockHoundTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // Blocking calls BlockHound caught, with the thread they were made on
+    private static final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+
+    private static HttpServer stubOpenAi;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeAll
+    static void installBlockHound() {
+        // The integrations mark Reactor's and Netty's non-blocking threads, event loops included.
+        // The journal waits on its writer only once its queue is full, so it is marked as
+        // blocking to be caught on every call rather than only under load
+        BlockHound.builder()
+                .loadIntegrations()
+                .markAsBlocking(JournalChatMemoryRepository.class, "saveAll", "(Ljava/lang/String;Ljava/util/List;)V")
+                .markAsBlocking(JournalChatMemoryRepository.class, "findByConversationId", "(Ljava/lang/String;)Ljava/util/List;")
+                .blockingMethodCallback(method -> {
+                    blockingCalls.add(method + " on " + Thread.currentThread().getName());
+                    throw new BlockingOperationError(method);
+                })
+                .install();
+    }
+
+    @DynamicPropertySource
+    static void stubOpenAi(DynamicPropertyRegistry registry) throws IOException {
+        stubOpenAi = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        stubOpenAi.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stubOpenAi.createContext("/", ChatEndpointsBlockHoundTest::complete);
+        stubOpenAi.start();
+        registry.add("spring.ai.openai.base-url", () -> "http://127.0.0.1:" + stubOpenAi.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopStubOpenAi() {
+        stubOpenAi.stop(0);
+    }
+
+    @BeforeEach
+    void setUp() {
+        blockingCalls.clear();
+        webTestClient = webTestClient.mutate().responseTimeout(Duration.ofSeconds(30)).build();
+    }
+
+    @Test
+    void blockHound_CatchesBlockingOnANonBlockingThread() {
+        // When
+        Mono<Integer> sleeping = Mono.fromCallable(() -> {
+            Thread.sleep(1);
+            return 1;
+        }).subscribeOn(Schedulers.parallel());
+
+        // Then
+        RuntimeException error = assertThrows(RuntimeException.class, () -> sleeping.block(Duration.ofSeconds(10)));
+        assertInstanceOf(BlockingOperationError.class, Exceptions.unwrap(error));
+        assertEquals(1, blockingCalls.size(), blockingCalls::toString);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/no-state-query", "/state-query", "/smart-query"})
+    void post_AnswersWithoutBlocking(String endpoint) {
+        // When
+        EntityExchangeResult<String> result = webTestClient.post()
+                .uri(endpoint)
+                .header(ConversationId.HEADER, "blockhound-post")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("How many railroad employees did Texas have in March 2022?")
+                .exchange()
+                .expectBody(String.class)
+                .returnResult();
+
+        // Then - checked before the status, which a blocking call turns into a 500
+        assertEquals(List.of(), blockingCalls);
+        assertEquals(HttpStatus.OK, result.getStatus());
+        assertEquals("Hello there", result.getResponseBody());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/no-state-query", "/state-query", "/smart-query"})
+    void get_StreamsWithoutBlocking(String endpoint) {
+        // When
+        FluxExchangeResult<String> result = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(endpoint).queryParam("message", "How are you?").build())
+                .header(ConversationId.HEADER, "blockhound-get")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .returnResult(String.class);
+        List<String> events = result.getResponseBody().collectList().block(Duration.ofSeconds(30));
+
+        // Then
+        assertEquals(List.of(), blockingCalls);
+        assertEquals(HttpStatus.OK, result.getStatus());
+        assertNotNull(events);
+        assertEquals("Hello there", String.join("", events));
+    }
+
+    /**
+     * Streams a tool call if the request offers tools and has no tool result yet, otherwise
+     * the answer "Hello there" in two chunks.
+     */
+    private static void complete(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = JSON.readTree(exchange.getRequestBody());
+            JsonNode messages = request.path("messages");
+            boolean toolAnswered = "tool".equals(messages.get(messages.size() - 1).path("role").asText());
+            if (!request.path("stream").asBoolean()) {
+                // The chat endpoints only stream, so a blocking call() would show up here
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE);
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            if (request.path("tools").size() > 0 && !toolAnswered) {
+                ObjectNode delta = JSON.createObjectNode().put("role", "assistant");
+                ObjectNode call = delta.putArray("tool_calls").addObject()
+                        .put("index", 0).put("id", "call-1").put("type", "function");
+                call.putObject("function").put("name", "getRailroadEmployeeCounts")
+                        .put("arguments", "{\"state\":\"TX\",\"month\":\"March\",\"year\":2022}");
+                send(body, chunk(delta, null));
+                send(body, chunk(JSON.createObjectNode(), "tool_calls"));
+            } else {
+                send(body, chunk(JSON.createObjectNode().put("role", "assistant").put("content", "Hello"), null));
+                send(body, chunk(JSON.createObjectNode().put("content", " there"), null));
+                send(body, chunk(JSON.createObjectNode(), "stop"));
+            }
+            body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static ObjectNode chunk(ObjectNode delta, String finishReason) {
+        ObjectNode chunk = JSON.createObjectNode()
+                .put("id", "chatcmpl-blockhound")
+                .put("object", "chat.completion.chunk")
+                .put("created", 1700000000)
+                .put("model", "gpt-4o");
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return chunk;
+    }
+
+    private static void send(OutputStream body, ObjectNode chunk) throws IOException {
+        body.write(("data: " + JSON.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+}
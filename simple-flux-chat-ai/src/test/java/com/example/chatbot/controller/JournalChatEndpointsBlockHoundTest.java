@@ -0,0 +1,26 @@
+package com.example.chatbot.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the {@link ChatEndpointsBlockHoundTest} cases with the conversations kept in the
+ * on-disk journal, whose reads and writes wait on files and on its writer thread, so none of
+ * them may happen on an event loop.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.ai.openai.api-key=blockhound", "logging.level.root=WARN",
+                "app.chat-memory.store=journal"})
+class JournalChatEndpointsBlockHoundTest extends ChatEndpointsBlockHoundTest {
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+        Path directory = Files.createTempDirectory("chat-memory-journal");
+        registry.add("app.chat-memory.journal.directory", directory::toString);
+    }
+}
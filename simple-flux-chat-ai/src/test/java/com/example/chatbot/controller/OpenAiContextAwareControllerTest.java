@@ -1,18 +1,34 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.config.SseProperties;
+import com.example.chatbot.config.SseResumeProperties;
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.memory.ConversationIdArgumentResolver;
+import com.example.chatbot.memory.TurnMemoryAdvisor;
+import com.example.chatbot.sse.CancelledStreams;
+import com.example.chatbot.sse.ResumableStreams;
+import com.example.chatbot.sse.TokenCoalescer;
+import com.example.chatbot.sse.TokenFrame;
+import com.example.chatbot.sse.TokenFrameWriter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -32,14 +48,11 @@ class OpenAiContextAwareControllerTest {
     @Mock
     private ChatClient.ChatClientRequestSpec promptRequest;
 
-    @Mock
-    private ChatClient.CallResponseSpec response;
-
     @Mock
     private ChatMemory chatMemory;
 
     @Mock
-    private MessageChatMemoryAdvisor advisor;
+    private TurnMemoryAdvisor advisor;
     
     @Mock
     private ChatClient.AdvisorSpec advisorSpec;
@@ -55,7 +68,7 @@ class OpenAiContextAwareControllerTest {
         MockitoAnnotations.openMocks(this);
         
         // Mock setup for non-streaming
-        when(chatClientBuilder.defaultAdvisors(any(MessageChatMemoryAdvisor.class))).thenReturn(chatClientBuilder);
+        when(chatClientBuilder.defaultAdvisors(any(TurnMemoryAdvisor.class))).thenReturn(chatClientBuilder);
         when(chatClientBuilder.build()).thenReturn(chatClient);
         when(chatClient.prompt(anyString())).thenReturn(promptRequest);
         
@@ -72,12 +85,49 @@ class OpenAiContextAwareControllerTest {
         when(promptRequest.stream()).thenReturn(streamResponse);
         when(streamResponse.content()).thenReturn(Flux.just("Hello", " ", "World!"));
         
-        // Mock non-streaming response
-        when(promptRequest.call()).thenReturn(response);
-        when(response.content()).thenReturn("Hello World!");
+        // The non-streaming endpoint joins the streamed response
         
-        controller = new OpenAiContextAwareController(chatClientBuilder);
-        webTestClient = WebTestClient.bindToController(controller).build();
+        controller = new OpenAiContextAwareController(chatClientBuilder, new InMemoryChatMemoryRepository(),
+                new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE, new TokenCoalescer(new SseProperties(Duration.ofMillis(20), DataSize.ofKilobytes(1))),
+                new ResumableStreams(new SseResumeProperties(true, 1024, DataSize.ofKilobytes(256), Duration.ofMinutes(1),
+                        Duration.ofSeconds(5), false)), new CancelledStreams((MeterRegistry) null));
+        webTestClient = WebTestClient.bindToController(controller)
+                .argumentResolvers(resolvers -> resolvers.addCustomResolver(new ConversationIdArgumentResolver()))
+                .httpMessageCodecs(codecs -> codecs.customCodecs().register(new TokenFrameWriter()))
+                .build();
+    }
+
+    @Test
+    void testStreamChat_Multicast_SecondSubscriberSharesTheRunningAnswer() {
+        // Given - a second tab on the conversation asks while the answer is being generated
+        OpenAiContextAwareController multicastController = new OpenAiContextAwareController(chatClientBuilder,
+                new InMemoryChatMemoryRepository(), new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE,
+                new TokenCoalescer(new SseProperties(Duration.ofMillis(20), DataSize.ofKilobytes(1))),
+                new ResumableStreams(new SseResumeProperties(true, 1024, DataSize.ofKilobytes(256), Duration.ofMinutes(1),
+                        Duration.ofSeconds(5), true)), new CancelledStreams((MeterRegistry) null));
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        when(streamResponse.content()).thenReturn(tokens.asFlux());
+        ConversationId conversationId = new ConversationId("user-1");
+        Flux<TokenFrame> firstTab = multicastController.streamChat("Tell me a story", conversationId, null).cache();
+        firstTab.subscribe();
+        tokens.tryEmitNext("Once");
+
+        // When
+        Flux<TokenFrame> secondTab = multicastController.streamChat("Tell me a story", conversationId, null);
+
+        // Then - both get the whole answer from one prompt
+        StepVerifier.create(secondTab)
+                .expectNext(new TokenFrame(1, List.of("Once")))
+                .then(() -> {
+                    tokens.tryEmitNext(" upon a time");
+                    tokens.tryEmitComplete();
+                })
+                .expectNext(new TokenFrame(2, List.of(" upon a time")))
+                .verifyComplete();
+        StepVerifier.create(firstTab)
+                .expectNext(new TokenFrame(1, List.of("Once")), new TokenFrame(2, List.of(" upon a time")))
+                .verifyComplete();
+        verify(chatClient, times(1)).prompt(anyString());
     }
 
     @Test
@@ -87,24 +137,25 @@ class OpenAiContextAwareControllerTest {
         String expectedResponse = "Hello World!";
 
         // When & Then
-        StepVerifier.create(controller.chat(testMessage))
+        StepVerifier.create(controller.chat(testMessage, new ConversationId("user-1")))
                 .expectNext(expectedResponse)
                 .verifyComplete();
 
         verify(chatClient).prompt(testMessage);
         verify(promptRequest).advisors(any(Consumer.class));
-        verify(promptRequest).call();
-        verify(response).content();
+        verify(promptRequest).stream();
+        verify(streamResponse).content();
+        verify(promptRequest, never()).call();
     }
 
     @Test
     void testChat_WithEmptyMessage_ReturnsEmptyMono() {
         // Given
         String testMessage = "";
-        when(response.content()).thenReturn("");
+        when(streamResponse.content()).thenReturn(Flux.empty());
 
         // When & Then
-        StepVerifier.create(controller.chat(testMessage))
+        StepVerifier.create(controller.chat(testMessage, new ConversationId("user-1")))
                 .expectNext("")
                 .verifyComplete();
 
@@ -117,13 +168,11 @@ class OpenAiContextAwareControllerTest {
         String testMessage = "Hello";
         
         // When
-        Flux<String> result = controller.streamChat(testMessage);
+        Flux<TokenFrame> result = controller.streamChat(testMessage, new ConversationId("user-1"), null);
 
-        // Then
+        // Then - tokens streamed within one window go out as one event
         StepVerifier.create(result)
-                .expectNext("data: Hello\n\n")
-                .expectNext("data:  \n\n")
-                .expectNext("data: World!\n\n")
+                .expectNext(new TokenFrame(1, List.of("Hello", " ", "World!")))
                 .verifyComplete();
 
         verify(chatClient).prompt(testMessage);
@@ -139,7 +188,7 @@ class OpenAiContextAwareControllerTest {
         when(streamResponse.content()).thenReturn(Flux.empty());
 
         // When
-        Flux<String> result = controller.streamChat(testMessage);
+        Flux<TokenFrame> result = controller.streamChat(testMessage, new ConversationId("user-1"), null);
 
         // Then
         StepVerifier.create(result)
@@ -178,9 +227,8 @@ class OpenAiContextAwareControllerTest {
                     assertTrue(combinedResponse.contains("Hello"), "Response should contain 'Hello'");
                     assertTrue(combinedResponse.contains("World!"), "Response should contain 'World!'");
                     
-                    // Verify SSE format is correct
-                    //assertTrue(combinedResponse.matches("(?s).*data: .*Hello.*\\n\\n.*"), "Response should be in SSE format");
-                    //assertTrue(combinedResponse.matches("(?s).*data: .*World!.*\\n\\n.*"), "Response should be in SSE format");
+                    // Verify the tokens arrived as one event, its data not wrapped twice
+                    assertEquals(List.of("Hello World!"), responseList);
                 });
     }
 
@@ -200,4 +248,44 @@ class OpenAiContextAwareControllerTest {
                 .expectBody(String.class)
                 .isEqualTo(expectedResponse);
     }
+
+    @Test
+    void testChat_WithConversationHeader_UsesCallersConversation() {
+        // When
+        webTestClient.post()
+                .uri("/state-query")
+                .header(ConversationId.HEADER, "alice")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("Hi, I am Alice")
+                .exchange()
+                .expectStatus().isOk();
+
+        // Then
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "state:alice");
+    }
+
+    @Test
+    void testChat_WithoutConversationHeader_StartsSession() {
+        // When & Then
+        webTestClient.post()
+                .uri("/state-query")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("Hi")
+                .exchange()
+                .expectStatus().isOk()
+                .expectCookie().exists("SESSION");
+        verify(advisorSpec).param(eq(ChatMemory.CONVERSATION_ID), anyString());
+    }
+
+    @Test
+    void testChat_WithOverlongConversationHeader_IsRejected() {
+        webTestClient.post()
+                .uri("/state-query")
+                .header(ConversationId.HEADER, "x".repeat(ConversationId.MAX_LENGTH + 1))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("Hi")
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(chatClient, never()).prompt(anyString());
+    }
 }
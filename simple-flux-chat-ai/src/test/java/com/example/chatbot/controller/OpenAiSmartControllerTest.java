@@ -1,23 +1,47 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.config.SseProperties;
+import com.example.chatbot.config.SseResumeProperties;
+import com.example.chatbot.config.ToolCacheProperties;
 import com.example.chatbot.tools.InformationDesk;
+import com.example.chatbot.tools.RailroadEmployeeDataset;
+import com.example.chatbot.tools.StaticToolFolder;
+import com.example.chatbot.tools.ToolResultCache;
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.memory.HistoryCompactor;
+import com.example.chatbot.memory.TokenCounter;
+import com.example.chatbot.memory.ConversationIdArgumentResolver;
+import com.example.chatbot.memory.TurnMemoryAdvisor;
+import com.example.chatbot.sse.CancelledStreams;
+import com.example.chatbot.sse.ResumableStreams;
+import com.example.chatbot.sse.TokenCoalescer;
+import com.example.chatbot.sse.TokenFrame;
+import com.example.chatbot.sse.TokenFrameWriter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -32,10 +56,6 @@ class OpenAiSmartControllerTest {
     @Mock
     private ChatClient.ChatClientRequestSpec promptRequest;
 
-    @Mock
-    private ChatClient.CallResponseSpec response;
-
-    @Mock
     private InformationDesk informationDesk;
 
     @Mock
@@ -54,10 +74,11 @@ class OpenAiSmartControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        informationDesk = new InformationDesk(new RailroadEmployeeDataset(new ClassPathResource("data/railroad-employees.csv")));
         
-        when(chatClientBuilder.defaultAdvisors(any(MessageChatMemoryAdvisor.class)))
+        when(chatClientBuilder.defaultAdvisors(any(TurnMemoryAdvisor.class)))
                 .thenReturn(chatClientBuilder);
-        when(chatClientBuilder.defaultTools(any(InformationDesk.class)))
+        when(chatClientBuilder.defaultToolCallbacks(anyList()))
                 .thenReturn(chatClientBuilder);
         when(chatClientBuilder.build())
                 .thenReturn(chatClient);
@@ -78,12 +99,18 @@ class OpenAiSmartControllerTest {
         when(promptRequest.stream()).thenReturn(streamResponse);
         when(streamResponse.content()).thenReturn(Flux.just("Smart", " ", "response"));
         
-        // Mock non-streaming response
-        when(promptRequest.call()).thenReturn(response);
-        when(response.content()).thenReturn("Smart response with tools");
+        // The non-streaming endpoint joins the streamed response
         
-        controller = new OpenAiSmartController(chatClientBuilder);
-        webTestClient = WebTestClient.bindToController(controller).build();
+        controller = new OpenAiSmartController(chatClientBuilder, new InMemoryChatMemoryRepository(),
+                new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE,
+                new ToolResultCache(new ToolCacheProperties(true, 100, Duration.ofMinutes(10)), (MeterRegistry) null),
+                informationDesk, new StaticToolFolder(true), new TokenCoalescer(new SseProperties(Duration.ofMillis(20), DataSize.ofKilobytes(1))),
+                new ResumableStreams(new SseResumeProperties(true, 1024, DataSize.ofKilobytes(256), Duration.ofMinutes(1),
+                        Duration.ofSeconds(5), false)), new CancelledStreams((MeterRegistry) null));
+        webTestClient = WebTestClient.bindToController(controller)
+                .argumentResolvers(resolvers -> resolvers.addCustomResolver(new ConversationIdArgumentResolver()))
+                .httpMessageCodecs(codecs -> codecs.customCodecs().register(new TokenFrameWriter()))
+                .build();
     }
     
     @Test
@@ -92,13 +119,11 @@ class OpenAiSmartControllerTest {
         String testMessage = "What's the weather like?";
         
         // When
-        Flux<String> result = controller.streamChat(testMessage);
+        Flux<TokenFrame> result = controller.streamChat(testMessage, new ConversationId("user-1"), null);
 
-        // Then
+        // Then - tokens streamed within one window go out as one event
         StepVerifier.create(result)
-                .expectNext("data: Smart\n\n")
-                .expectNext("data:  \n\n")
-                .expectNext("data: response\n\n")
+                .expectNext(new TokenFrame(1, List.of("Smart", " ", "response")))
                 .verifyComplete();
 
         verify(chatClient).prompt(testMessage);
@@ -107,6 +132,31 @@ class OpenAiSmartControllerTest {
         verify(streamResponse).content();
     }
     
+    @Test
+    void testStreamChat_ReconnectWithLastEventId_ResumesTheSameAnswer() {
+        // Given - the client drops after the first event of an answer still being generated
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        when(streamResponse.content()).thenReturn(tokens.asFlux());
+        ConversationId conversationId = new ConversationId("user-1");
+        StepVerifier.create(controller.streamChat("Tell me a story", conversationId, null))
+                .then(() -> tokens.tryEmitNext("Once"))
+                .expectNext(new TokenFrame(1, List.of("Once")))
+                .thenCancel()
+                .verify();
+        tokens.tryEmitNext(" upon");
+        tokens.tryEmitNext(" a time");
+        tokens.tryEmitComplete();
+
+        // When
+        Flux<TokenFrame> resumed = controller.streamChat("Tell me a story", conversationId, "1");
+
+        // Then - the rest of the same answer, without asking the model again
+        StepVerifier.create(resumed)
+                .expectNext(new TokenFrame(2, List.of(" upon", " a time")))
+                .verifyComplete();
+        verify(chatClient, times(1)).prompt(anyString());
+    }
+
     @Test
     void testStreamChat_WithWebTestClient_ReturnsServerSentEvents() {
         // Given
@@ -127,10 +177,7 @@ class OpenAiSmartControllerTest {
                     List<String> responseList = response.getResponseBody()
                             .collectList()
                             .block();
-                    assertNotNull(responseList);
-                    //assertTrue(responseList.contains("data: Smart\n\n"));
-                    //assertTrue(responseList.contains("data:  \n\n"));
-                    //assertTrue(responseList.contains("data: response\n\n"));
+                    assertEquals(List.of("Smart response"), responseList);
                 });
     }
     
@@ -138,7 +185,7 @@ class OpenAiSmartControllerTest {
     void testChat_WithWebTestClient_ReturnsJsonResponse() {
         // Given
         String testMessage = "What's the weather like?";
-        String expectedResponse = "Smart response with tools";
+        String expectedResponse = "Smart response";
 
         // When & Then
         webTestClient.post()
@@ -150,4 +197,96 @@ class OpenAiSmartControllerTest {
                 .expectBody(String.class)
                 .isEqualTo(expectedResponse);
     }
+
+    @Test
+    void testChat_WithConversationHeader_UsesCallersConversation() {
+        // When
+        webTestClient.post()
+                .uri("/smart-query")
+                .header(ConversationId.HEADER, "alice")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("Hi, I am Alice")
+                .exchange()
+                .expectStatus().isOk();
+
+        // Then
+        verify(advisorSpec).param(ChatMemory.CONVERSATION_ID, "smart:alice");
+    }
+
+    @Test
+    void testChat_WithoutConversationHeader_StartsSession() {
+        // When & Then
+        webTestClient.post()
+                .uri("/smart-query")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("Hi")
+                .exchange()
+                .expectStatus().isOk()
+                .expectCookie().exists("SESSION");
+        verify(advisorSpec).param(eq(ChatMemory.CONVERSATION_ID), anyString());
+    }
+
+    @Test
+    void testChat_WithOverlongConversationHeader_IsRejected() {
+        webTestClient.post()
+                .uri("/smart-query")
+                .header(ConversationId.HEADER, "x".repeat(ConversationId.MAX_LENGTH + 1))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("Hi")
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(chatClient, never()).prompt(anyString());
+    }
+
+    @Test
+    void testConstructor_FoldsArgumentFreeToolsIntoTheSystemPrompt() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ToolCallback>> callbacks = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<String> systemPrompt = ArgumentCaptor.forClass(String.class);
+
+        // When
+        controller.chat("What is your name?", new ConversationId("user-1")).block();
+
+        // Then - only the tools needing arguments are left for the model to call
+        verify(chatClientBuilder).defaultToolCallbacks(callbacks.capture());
+        assertEquals(List.of("getRailroadEmployeeCounts", "getRailroadEmployeeRanking"), toolNames(callbacks.getValue()));
+        verify(promptRequest).system(systemPrompt.capture());
+        assertTrue(systemPrompt.getValue().contains("- getMyName (This tool will give you my name): I am Kavitha\n"),
+                systemPrompt.getValue());
+        assertTrue(systemPrompt.getValue().endsWith("provide approximate answer if you don't know the answer"),
+                systemPrompt.getValue());
+    }
+
+    @Test
+    void testConstructor_WithoutFolding_RegistersInformationDeskToolsAsMemoizingCallbacks() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ToolCallback>> callbacks = ArgumentCaptor.forClass(List.class);
+        clearInvocations(chatClientBuilder);
+
+        // When
+        new OpenAiSmartController(chatClientBuilder, new InMemoryChatMemoryRepository(),
+                new TokenCounter("gpt-4o", 1000), HistoryCompactor.NONE,
+                new ToolResultCache(new ToolCacheProperties(true, 100, Duration.ofMinutes(10)), (MeterRegistry) null),
+                informationDesk, new StaticToolFolder(false), new TokenCoalescer(new SseProperties(Duration.ofMillis(20), DataSize.ofKilobytes(1))),
+                new ResumableStreams(new SseResumeProperties(true, 1024, DataSize.ofKilobytes(256), Duration.ofMinutes(1),
+                        Duration.ofSeconds(5), false)), new CancelledStreams((MeterRegistry) null));
+
+        // Then
+        verify(chatClientBuilder).defaultToolCallbacks(callbacks.capture());
+        assertEquals(List.of("getMyAge", "getMyHobbies", "getMyName", "getRailroadEmployeeCounts",
+                "getRailroadEmployeeRanking"), toolNames(callbacks.getValue()));
+        assertEquals("\"I am Kavitha\"", callbacks.getValue().stream()
+                .filter(callback -> callback.getToolDefinition().name().equals("getMyName"))
+                .findFirst().orElseThrow()
+                .call("{}"));
+    }
+
+    private static List<String> toolNames(List<ToolCallback> callbacks) {
+        return callbacks.stream()
+                .map(callback -> callback.getToolDefinition().name())
+                .sorted()
+                .toList();
+    }
 }
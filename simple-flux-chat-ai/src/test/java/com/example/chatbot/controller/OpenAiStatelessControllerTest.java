@@ -1,5 +1,13 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.cache.SemanticCache;
+import com.example.chatbot.config.SemanticCacheProperties;
+import com.example.chatbot.config.SseProperties;
+import com.example.chatbot.sse.CancelledStreams;
+import com.example.chatbot.sse.TokenCoalescer;
+import com.example.chatbot.sse.TokenFrame;
+import com.example.chatbot.sse.TokenFrameWriter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -7,9 +15,11 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,9 +37,6 @@ class OpenAiStatelessControllerTest {
     @Mock
     private ChatClient.ChatClientRequestSpec promptRequest;
 
-    @Mock
-    private ChatClient.CallResponseSpec response;
-
     @Mock
     private ChatClient.StreamResponseSpec streamResponse;
 
@@ -46,12 +53,14 @@ class OpenAiStatelessControllerTest {
         when(promptRequest.stream()).thenReturn(streamResponse);
         when(streamResponse.content()).thenReturn(Flux.just("Test", " ", "response"));
         
-        // Mock non-streaming response
-        when(promptRequest.call()).thenReturn(response);
-        when(response.content()).thenReturn("Test response");
+        // The non-streaming endpoint joins the streamed response
         
-        controller = new OpenAiStatelessController(chatClientBuilder);
-        webTestClient = WebTestClient.bindToController(controller).build();
+        controller = new OpenAiStatelessController(chatClientBuilder, new SemanticCache(new SemanticCacheProperties(true, 100, 0.9, Duration.ofHours(1), 256, 64),
+                (MeterRegistry) null), new TokenCoalescer(new SseProperties(Duration.ofMillis(20), DataSize.ofKilobytes(1))),
+                new CancelledStreams((MeterRegistry) null));
+        webTestClient = WebTestClient.bindToController(controller)
+                .httpMessageCodecs(codecs -> codecs.customCodecs().register(new TokenFrameWriter()))
+                .build();
     }
 
 
@@ -61,13 +70,11 @@ class OpenAiStatelessControllerTest {
         String testMessage = "Hello, world!";
         
         // When
-        Flux<String> result = controller.streamChat(testMessage);
+        Flux<TokenFrame> result = controller.streamChat(testMessage);
 
-        // Then
+        // Then - tokens streamed within one window go out as one event
         StepVerifier.create(result)
-                .expectNext("data: Test\n\n")
-                .expectNext("data:  \n\n")
-                .expectNext("data: response\n\n")
+                .expectNext(new TokenFrame(1, List.of("Test", " ", "response")))
                 .verifyComplete();
 
         verify(chatClient).prompt(testMessage);
@@ -95,10 +102,7 @@ class OpenAiStatelessControllerTest {
                     List<String> responseList = response.getResponseBody()
                             .collectList()
                             .block();
-                    assertNotNull(responseList);
-                    //assertTrue(responseList.contains("data: Test\n\n"));
-                    //assertTrue(responseList.contains("data:  \n\n"));
-                    //assertTrue(responseList.contains("data: response\n\n"));
+                    assertEquals(List.of("Test response"), responseList);
                 });
     }
     
@@ -118,4 +122,51 @@ class OpenAiStatelessControllerTest {
                 .expectBody(String.class)
                 .isEqualTo(expectedResponse);
     }
+
+    @Test
+    void testStreamChat_WithRephrasedQuery_StreamsTheCachedAnswerAsOneEvent() {
+        // Given - a streamed answer is cached once complete
+        StepVerifier.create(controller.streamChat("What is the capital of France?"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // When
+        Flux<TokenFrame> result = controller.streamChat("what's the capital of france");
+
+        // Then
+        StepVerifier.create(result)
+                .expectNext(new TokenFrame(1, List.of("Test response")))
+                .verifyComplete();
+        verify(chatClient, times(1)).prompt(anyString());
+    }
+
+    @Test
+    void testChat_WithRephrasedQuery_AnswersFromTheSemanticCache() {
+        // Given
+        controller.chat("What is the capital of France?").block();
+
+        // When
+        String actualResponse = controller.chat("Please, what is the capital of france").block();
+
+        // Then
+        assertEquals("Test response", actualResponse);
+        verify(chatClient, times(1)).prompt(anyString());
+    }
+
+    @Test
+    void testStreamChat_CancelledBeforeTheEnd_IsNotCached() {
+        // Given - an answer still streaming when the client leaves
+        when(streamResponse.content()).thenReturn(Flux.just("Test").concatWith(Flux.never()));
+        StepVerifier.create(controller.streamChat("What is the capital of France?"), 1)
+                .expectNext(new TokenFrame(1, List.of("Test")))
+                .thenCancel()
+                .verify();
+        when(streamResponse.content()).thenReturn(Flux.just("Test", " ", "response"));
+
+        // When
+        controller.chat("What is the capital of France?").block();
+
+        // Then
+        verify(chatClient, times(2)).prompt(anyString());
+    }
 }
@@ -0,0 +1,173 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.memory.ConversationId;
+import com.example.chatbot.sse.CancelledStreams;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams from every SSE chat endpoint on a real Netty server, against a stub of the OpenAI
+ * chat-completions API whose answers would take a minute, and checks that a client leaving
+ * after the first event closes the app's connection to the stub within a bounded time, is
+ * counted, and leaves nothing in the conversation's memory. The smart endpoint's stub model
+ * asks for a tool first, so the stream cancelled is the one after the tool call.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.ai.openai.api-key=cancellation", "logging.level.root=WARN",
+                "app.semantic-cache.enabled=false", "app.sse.resume.reconnect-timeout=100ms"})
+class UpstreamCancellationTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // A minute of tokens, unless the app closes the stream
+    private static final int TOKENS = 6_000;
+    private static final long TOKEN_INTERVAL_MILLIS = 10;
+
+    // Bounds the time from the client leaving to the stub seeing its stream closed
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(3);
+
+    // Nanotimes at which the stub failed to write to a closed stream, one per stream
+    private static final BlockingQueue<Long> closedStreams = new LinkedBlockingQueue<>();
+
+    private static HttpServer stubOpenAi;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CancelledStreams cancelledStreams;
+
+    @Autowired
+    private ChatMemoryRepository chatMemoryRepository;
+
+    @DynamicPropertySource
+    static void stubOpenAi(DynamicPropertyRegistry registry) throws IOException {
+        stubOpenAi = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        stubOpenAi.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stubOpenAi.createContext("/", UpstreamCancellationTest::complete);
+        stubOpenAi.start();
+        registry.add("spring.ai.openai.base-url", () -> "http://127.0.0.1:" + stubOpenAi.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopStubOpenAi() {
+        stubOpenAi.stop(0);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"/no-state-query,", "/state-query,state", "/smart-query,smart"})
+    void clientLeaving_ClosesTheStreamFromTheModel(String endpoint, String memoryScope) throws Exception {
+        // Given
+        closedStreams.clear();
+        long cancelledBefore = cancelledStreams.cancelled();
+        String conversation = "cancel" + endpoint.replace('/', '-');
+
+        // When - the client leaves after the first event
+        List<String> events = webTestClient.mutate().responseTimeout(Duration.ofSeconds(30)).build().get()
+                .uri(uriBuilder -> uriBuilder.path(endpoint).queryParam("message", "Tell me a long story").build())
+                .header(ConversationId.HEADER, conversation)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .returnResult(String.class)
+                .getResponseBody()
+                .take(1)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        long left = System.nanoTime();
+
+        // Then
+        assertNotNull(events);
+        assertTrue(events.get(0).startsWith(" t"), events::toString);
+        Long closed = closedStreams.poll(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        assertNotNull(closed, "the stream from the model was still open " + CLOSE_TIMEOUT.toMillis() + " ms after the client left");
+        assertTrue(closed - left < CLOSE_TIMEOUT.toNanos());
+        assertEquals(cancelledBefore + 1, cancelledStreams.cancelled());
+        if (memoryScope != null) {
+            assertEquals(List.of(), chatMemoryRepository.findByConversationId(
+                    new ConversationId(conversation).scoped(memoryScope)));
+        }
+    }
+
+    /**
+     * Streams a tool call if the request offers tools and has no tool result yet, otherwise
+     * {@value #TOKENS} tokens, one every {@value #TOKEN_INTERVAL_MILLIS} ms, until the stream is
+     * found closed.
+     */
+    private static void complete(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = JSON.readTree(exchange.getRequestBody());
+            JsonNode messages = request.path("messages");
+            boolean toolAnswered = "tool".equals(messages.get(messages.size() - 1).path("role").asText());
+            exchange.getResponseHeaders().set("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE);
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            if (request.path("tools").size() > 0 && !toolAnswered) {
+                ObjectNode delta = JSON.createObjectNode().put("role", "assistant");
+                ObjectNode call = delta.putArray("tool_calls").addObject()
+                        .put("index", 0).put("id", "call-1").put("type", "function");
+                call.putObject("function").put("name", "getRailroadEmployeeCounts")
+                        .put("arguments", "{\"state\":\"TX\",\"month\":\"March\",\"year\":2022}");
+                send(body, chunk(delta, null));
+                send(body, chunk(JSON.createObjectNode(), "tool_calls"));
+                body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            try {
+                for (int i = 0; i < TOKENS; i++) {
+                    send(body, chunk(JSON.createObjectNode().put("content", " t" + i), null));
+                    Thread.sleep(TOKEN_INTERVAL_MILLIS);
+                }
+                send(body, chunk(JSON.createObjectNode(), "stop"));
+                body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // The app closed the connection
+                closedStreams.add(System.nanoTime());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ObjectNode chunk(ObjectNode delta, String finishReason) {
+        ObjectNode chunk = JSON.createObjectNode()
+                .put("id", "chatcmpl-cancellation")
+                .put("object", "chat.completion.chunk")
+                .put("created", 1700000000)
+                .put("model", "gpt-4o");
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return chunk;
+    }
+
+    private static void send(OutputStream body, ObjectNode chunk) throws IOException {
+        body.write(("data: " + JSON.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.chatbot.memory;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedChatMemoryRepositoryTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BoundedChatMemoryRepository repository(DataSize maxSize, Path spill) {
+        return new BoundedChatMemoryRepository(maxSize, Duration.ofMinutes(30), spill, Duration.ofDays(7),
+                meterRegistry, ticker, Runnable::run);
+    }
+
+    private static List<Message> turn(String question, String answer) {
+        return List.of(new UserMessage(question), new AssistantMessage(answer));
+    }
+
+    @Test
+    void saveAndFind_RoundTrips() {
+        // Given
+        BoundedChatMemoryRepository repository = repository(DataSize.ofMegabytes(1), null);
+
+        // When
+        repository.saveAll("alice", turn("Hi", "Hello Alice"));
+
+        // Then
+        assertEquals(turn("Hi", "Hello Alice"), repository.findByConversationId("alice"));
+        assertEquals(List.of(), repository.findByConversationId("bob"));
+        assertEquals(List.of("alice"), repository.findConversationIds());
+        assertEquals(1, meterRegistry.get("chat.memory.conversations").gauge().value());
+        assertTrue(meterRegistry.get("chat.memory.bytes").gauge().value() > 0);
+    }
+
+    @Test
+    void overBudget_EvictsConversationsAndKeepsWithinBudget() {
+        // Given - room for a handful of ~1KB conversations
+        BoundedChatMemoryRepository repository = repository(DataSize.ofKilobytes(8), null);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            repository.saveAll("user-" + i, turn("q".repeat(200), "a".repeat(200)));
+        }
+        repository.cleanUp();
+
+        // Then
+        assertTrue(repository.residentBytes() <= DataSize.ofKilobytes(8).toBytes());
+        assertTrue(repository.residentConversations() < 100);
+        assertEquals(100 - repository.residentConversations(), repository.evictions());
+        assertEquals(repository.evictions(), meterRegistry.get("chat.memory.evictions").tag("cause", "size")
+                .functionCounter().count());
+    }
+
+    @Test
+    void idleConversation_Expires() {
+        // Given
+        BoundedChatMemoryRepository repository = repository(DataSize.ofMegabytes(1), null);
+        repository.saveAll("alice", turn("Hi", "Hello"));
+        repository.saveAll("bob", turn("Hi", "Hello"));
+
+        // When - only Alice keeps talking
+        nanos.addAndGet(Duration.ofMinutes(20).toNanos());
+        repository.findByConversationId("alice");
+        nanos.addAndGet(Duration.ofMinutes(20).toNanos());
+        repository.cleanUp();
+
+        // Then
+        assertEquals(List.of("alice"), repository.findConversationIds());
+        assertEquals(1, meterRegistry.get("chat.memory.evictions").tag("cause", "expired").functionCounter().count());
+    }
+
+    @Test
+    void withSpillDirectory_EvictedHistoryIsRestored() {
+        // Given
+        BoundedChatMemoryRepository repository = repository(DataSize.ofMegabytes(1), spillDirectory);
+        List<Message> history = List.of(new UserMessage("What's my name?"),
+                new AssistantMessage("", Map.of(), List.of(new AssistantMessage.ToolCall("call_1", "function", "getMyName", "{}"))),
+                new AssistantMessage("You are Kavitha"));
+        repository.saveAll("alice", history);
+
+        // When
+        nanos.addAndGet(Duration.ofHours(1).toNanos());
+        repository.cleanUp();
+
+        // Then
+        assertEquals(0, repository.residentConversations());
+        assertEquals(1, repository.spills());
+        assertEquals(history, repository.findByConversationId("alice"));
+        assertEquals(1, repository.restores());
+        assertEquals(1, repository.residentConversations());
+    }
+
+    @Test
+    void close_SpillsResidentHistoriesForTheNextStart() {
+        // Given
+        BoundedChatMemoryRepository before = repository(DataSize.ofMegabytes(1), spillDirectory);
+        before.saveAll("alice", turn("Hi", "Hello Alice"));
+
+        // When
+        before.close();
+        BoundedChatMemoryRepository after = repository(DataSize.ofMegabytes(1), spillDirectory);
+
+        // Then
+        assertEquals(turn("Hi", "Hello Alice"), after.findByConversationId("alice"));
+    }
+
+    @Test
+    void delete_RemovesResidentAndSpilledHistory() throws Exception {
+        // Given
+        BoundedChatMemoryRepository repository = repository(DataSize.ofMegabytes(1), spillDirectory);
+        repository.saveAll("alice", turn("Hi", "Hello"));
+        repository.close();
+
+        // When
+        repository.deleteByConversationId("alice");
+
+        // Then
+        assertEquals(List.of(), repository.findByConversationId("alice"));
+        try (var files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void startup_DeletesSpillsOlderThanRetention() throws Exception {
+        // Given
+        BoundedChatMemoryRepository first = repository(DataSize.ofMegabytes(1), spillDirectory);
+        first.saveAll("alice", turn("Hi", "Hello"));
+        first.close();
+        try (var files = Files.list(spillDirectory)) {
+            Path spilled = files.findFirst().orElseThrow();
+            Files.setLastModifiedTime(spilled, FileTime.from(Instant.now().minus(Duration.ofDays(8))));
+        }
+
+        // When
+        BoundedChatMemoryRepository restarted = repository(DataSize.ofMegabytes(1), spillDirectory);
+
+        // Then
+        assertEquals(List.of(), restarted.findByConversationId("alice"));
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.chatbot.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalChatMemoryRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<JournalChatMemoryRepository> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(JournalChatMemoryRepository::close);
+    }
+
+    private JournalChatMemoryRepository open(DataSize segmentSize) {
+        JournalChatMemoryRepository repository = new JournalChatMemoryRepository(directory, segmentSize,
+                Duration.ofMillis(5), Duration.ZERO, 0.5, meterRegistry);
+        opened.add(repository);
+        return repository;
+    }
+
+    private JournalChatMemoryRepository reopen(JournalChatMemoryRepository repository) {
+        repository.close();
+        return open(DataSize.ofMegabytes(1));
+    }
+
+    private static List<Message> turns(int from, int to) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add(new UserMessage("Question " + i));
+            messages.add(new AssistantMessage("Answer " + i));
+        }
+        return messages;
+    }
+
+    private static void assertSameHistory(List<Message> expected, List<Message> actual) {
+        assertEquals(expected.size(), actual.size(), () -> "history was " + actual);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getMessageType(), actual.get(i).getMessageType());
+            assertEquals(expected.get(i).getText(), actual.get(i).getText());
+        }
+    }
+
+    @Test
+    void saveAndFind_ServesHistoryBeforeAndAfterItIsWritten() {
+        // Given
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+        List<Message> history = List.of(new UserMessage("How many railroad employees?"),
+                new AssistantMessage("", Map.of(), List.of(new AssistantMessage.ToolCall("call_1", "function",
+                        "getRailroadEmployeeCounts", "{\"employeeCount\":3}"))),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call_1", "getRailroadEmployeeCounts", "3"))),
+                new AssistantMessage("There are 3"));
+
+        // When
+        repository.saveAll("alice", history);
+        List<Message> queued = repository.findByConversationId("alice");
+        repository.flush();
+        List<Message> written = repository.findByConversationId("alice");
+
+        // Then
+        assertSameHistory(history, queued);
+        assertSameHistory(history, written);
+        assertEquals(((AssistantMessage) history.get(1)).getToolCalls(), ((AssistantMessage) written.get(1)).getToolCalls());
+        assertEquals(((ToolResponseMessage) history.get(2)).getResponses(), ((ToolResponseMessage) written.get(2)).getResponses());
+        assertEquals(List.of(), repository.findByConversationId("bob"));
+        assertEquals(List.of("alice"), repository.findConversationIds());
+    }
+
+    @Test
+    void slidingWindow_JournalsOnlyNewMessagesAndAFloor() {
+        // Given
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+
+        // When - a window of 4 messages over three turns
+        repository.saveAll("alice", turns(0, 1));
+        repository.flush();
+        repository.saveAll("alice", turns(0, 2));
+        repository.flush();
+        repository.saveAll("alice", turns(1, 3));
+        repository.flush();
+
+        // Then - 2 + 2 messages, then a floor and 2 messages
+        assertEquals(7, repository.records());
+        assertSameHistory(turns(1, 3), repository.findByConversationId("alice"));
+        assertEquals(7, meterRegistry.get("chat.memory.journal.records").functionCounter().count());
+    }
+
+    @Test
+    void messageDroppedWhileQueued_IsNeverWritten() {
+        // Given
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+
+        // When - the window moves on before the writer gets to the first turn
+        repository.saveAll("alice", turns(0, 1));
+        repository.saveAll("alice", turns(1, 2));
+        repository.flush();
+
+        // Then - at most the first turn, the floor and the second turn
+        assertTrue(repository.records() <= 5);
+        assertSameHistory(turns(1, 2), repository.findByConversationId("alice"));
+    }
+
+    @Test
+    void restart_RecoversHistoriesAndDeletions() {
+        // Given
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+        repository.saveAll("alice", turns(0, 2));
+        repository.saveAll("alice", turns(1, 3));
+        repository.saveAll("bob", turns(0, 1));
+        repository.saveAll("carol", turns(0, 1));
+        repository.deleteByConversationId("carol");
+
+        // When
+        JournalChatMemoryRepository restarted = reopen(repository);
+        restarted.saveAll("bob", turns(0, 2));
+        restarted = reopen(restarted);
+
+        // Then
+        assertSameHistory(turns(1, 3), restarted.findByConversationId("alice"));
+        assertSameHistory(turns(0, 2), restarted.findByConversationId("bob"));
+        assertEquals(List.of(), restarted.findByConversationId("carol"));
+        assertEquals(2, restarted.findConversationIds().size());
+    }
+
+    @Test
+    void tornRecordAtTheEnd_IsCutOffOnRecovery() throws Exception {
+        // Given - a crash in the middle of appending a record
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+        repository.saveAll("alice", turns(0, 1));
+        repository.close();
+        Path last = lastSegment();
+        long intact = Files.size(last);
+        Files.write(last, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // When
+        JournalChatMemoryRepository restarted = open(DataSize.ofMegabytes(1));
+        restarted.saveAll("alice", turns(0, 2));
+        restarted = reopen(restarted);
+
+        // Then
+        assertEquals(intact, Files.size(last));
+        assertSameHistory(turns(0, 2), restarted.findByConversationId("alice"));
+    }
+
+    @Test
+    void corruptRecord_IsDroppedWithEverythingAfterIt() throws Exception {
+        // Given - the last byte of the last record flipped
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+        repository.saveAll("alice", turns(0, 1));
+        repository.close();
+        Path last = lastSegment();
+        byte[] bytes = Files.readAllBytes(last);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(last, bytes);
+
+        // When
+        JournalChatMemoryRepository restarted = open(DataSize.ofMegabytes(1));
+
+        // Then
+        assertSameHistory(List.of(new UserMessage("Question 0")), restarted.findByConversationId("alice"));
+    }
+
+    @Test
+    void compact_CopiesLiveMessagesAndDeletesMostlyDeadSegments() {
+        // Given - small segments, mostly holding messages the window already dropped
+        JournalChatMemoryRepository repository = open(DataSize.ofKilobytes(1));
+        for (int turn = 0; turn < 100; turn++) {
+            repository.saveAll("alice", turns(Math.max(0, turn - 1), turn + 1));
+            repository.saveAll("bob", turns(0, 1));
+        }
+        repository.deleteByConversationId("bob");
+        repository.flush();
+        int segmentsBefore = repository.segmentCount();
+        long bytesBefore = repository.diskBytes();
+
+        // When
+        repository.compact();
+
+        // Then
+        assertTrue(repository.compactions() > 0);
+        assertTrue(repository.segmentCount() < segmentsBefore);
+        assertTrue(repository.diskBytes() < bytesBefore);
+        assertSameHistory(turns(98, 100), repository.findByConversationId("alice"));
+        JournalChatMemoryRepository restarted = reopen(repository);
+        assertSameHistory(turns(98, 100), restarted.findByConversationId("alice"));
+        assertEquals(List.of(), restarted.findByConversationId("bob"));
+    }
+
+    @Test
+    void concurrentConversations_WithCompactionRunning_KeepTheirHistories() throws Exception {
+        // Given
+        JournalChatMemoryRepository repository = open(DataSize.ofKilobytes(4));
+        int conversations = 64;
+        int turnsPerConversation = 50;
+        AtomicBoolean done = new AtomicBoolean();
+        Thread compactor = Thread.ofPlatform().start(() -> {
+            while (!done.get()) {
+                repository.compact();
+            }
+        });
+
+        // When - each caller keeps a window of the last two turns
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int c = 0; c < conversations; c++) {
+                String id = "user-" + c;
+                calls.add(callers.submit(() -> {
+                    for (int turn = 0; turn < turnsPerConversation; turn++) {
+                        assertSameHistory(turns(Math.max(0, turn - 2), turn), repository.findByConversationId(id));
+                        repository.saveAll(id, turns(Math.max(0, turn - 1), turn + 1));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> call : calls) {
+                call.get();
+            }
+        } finally {
+            done.set(true);
+            compactor.join();
+        }
+        JournalChatMemoryRepository restarted = reopen(repository);
+
+        // Then
+        assertTrue(repository.compactions() > 0);
+        for (int c = 0; c < conversations; c++) {
+            assertSameHistory(turns(turnsPerConversation - 2, turnsPerConversation),
+                    restarted.findByConversationId("user-" + c));
+        }
+    }
+
+    @Test
+    void deleteRacingWithASave_KeepsTheSavedMessagesAcrossARestart() throws Exception {
+        // Given
+        JournalChatMemoryRepository repository = open(DataSize.ofMegabytes(1));
+        int rounds = 500;
+        for (int r = 0; r < rounds; r++) {
+            repository.saveAll("user-" + r, turns(0, 1));
+        }
+
+        // When - each history is deleted while its caller starts a new one
+        CyclicBarrier start = new CyclicBarrier(2);
+        Thread deleter = Thread.ofPlatform().start(() -> {
+            for (int r = 0; r < rounds; r++) {
+                await(start);
+                repository.deleteByConversationId("user-" + r);
+            }
+        });
+        for (int r = 0; r < rounds; r++) {
+            await(start);
+            repository.saveAll("user-" + r, turns(1, 2));
+        }
+        deleter.join();
+        List<List<Message>> before = new ArrayList<>();
+        for (int r = 0; r < rounds; r++) {
+            before.add(repository.findByConversationId("user-" + r));
+        }
+        JournalChatMemoryRepository restarted = reopen(repository);
+
+        // Then - whichever came last, the restart finds what was there before it
+        for (int r = 0; r < rounds; r++) {
+            assertSameHistory(before.get(r), restarted.findByConversationId("user-" + r));
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path lastSegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                try {
+                    return Files.size(file) > 0;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).max(Path::compareTo).orElseThrow();
+        }
+    }
+}
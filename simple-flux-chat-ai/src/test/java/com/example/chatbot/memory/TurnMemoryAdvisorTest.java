@@ -0,0 +1,142 @@
+package com.example.chatbot.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnMemoryAdvisorTest {
+
+    private final ChatMemory chatMemory = MessageWindowChatMemory.builder()
+            .chatMemoryRepository(new InMemoryChatMemoryRepository())
+            .build();
+
+    /**
+     * Answers {@code "ack <question>"}, streamed in two chunks, or fails if asked to, and keeps
+     * the prompts it got.
+     */
+    private static final class AckModel implements ChatModel {
+
+        final Queue<Prompt> prompts = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            prompts.add(prompt);
+            String question = prompt.getUserMessage().getText();
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("ack " + question))));
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            prompts.add(prompt);
+            String question = prompt.getUserMessage().getText();
+            if (question.equals("fail")) {
+                return Flux.error(new IllegalStateException("model down"));
+            }
+            return Flux.just("ack ", question)
+                    .map(text -> new ChatResponse(List.of(new Generation(new AssistantMessage(text)))));
+        }
+    }
+
+    private final AckModel model = new AckModel();
+    private final ChatClient chatClient = ChatClient.builder(model)
+            .defaultAdvisors(new TurnMemoryAdvisor(chatMemory))
+            .build();
+
+    private Flux<String> ask(String conversationId, String question) {
+        return chatClient.prompt(question)
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
+                .stream()
+                .content();
+    }
+
+    private List<String> history(String conversationId) {
+        return chatMemory.get(conversationId).stream().map(Message::getText).toList();
+    }
+
+    @Test
+    void completedTurn_IsRememberedAndSentWithTheNextOne() {
+        // Given
+        ask("alice", "Hi").blockLast();
+
+        // When
+        ask("alice", "How are you?").blockLast();
+
+        // Then
+        assertEquals(List.of("Hi", "ack Hi", "How are you?", "ack How are you?"), history("alice"));
+        List<Message> lastPrompt = List.copyOf(model.prompts).get(1).getInstructions();
+        assertEquals(List.of("Hi", "ack Hi", "How are you?"), lastPrompt.stream().map(Message::getText).toList());
+        assertInstanceOf(UserMessage.class, lastPrompt.get(0));
+        assertInstanceOf(AssistantMessage.class, lastPrompt.get(1));
+    }
+
+    @Test
+    void cancelledTurn_LeavesNoTrace() {
+        // Given
+        ask("alice", "Hi").blockLast();
+
+        // When - the client leaves after the first chunk
+        StepVerifier.create(ask("alice", "Tell me a story"), 1)
+                .expectNext("ack ")
+                .thenCancel()
+                .verify();
+
+        // Then
+        assertEquals(List.of("Hi", "ack Hi"), history("alice"));
+    }
+
+    @Test
+    void failedTurn_LeavesNoTrace() {
+        // When
+        StepVerifier.create(ask("alice", "fail"))
+                .expectErrorMessage("model down")
+                .verify();
+
+        // Then
+        assertEquals(List.of(), history("alice"));
+    }
+
+    @Test
+    void calledTurn_IsRememberedLikeAStreamedOne() {
+        // Given
+        ask("alice", "Hi").blockLast();
+
+        // When
+        String answer = chatClient.prompt("How are you?")
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, "alice"))
+                .call()
+                .content();
+
+        // Then
+        assertEquals("ack How are you?", answer);
+        assertEquals(List.of("Hi", "ack Hi", "How are you?", "ack How are you?"), history("alice"));
+        assertEquals(3, List.copyOf(model.prompts).get(1).getInstructions().size());
+    }
+
+    @Test
+    void conversations_AreRememberedApart() {
+        // When
+        ask("alice", "Hi").blockLast();
+        ask("bob", "Hello").blockLast();
+
+        // Then
+        assertEquals(List.of("Hi", "ack Hi"), history("alice"));
+        assertEquals(List.of("Hello", "ack Hello"), history("bob"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.chatbot.sse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancelledStreamsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CancelledStreams cancelledStreams = new CancelledStreams(meterRegistry);
+
+    private static Flux<String> tokens(int count) {
+        return Flux.range(1, count).map(i -> " t" + i);
+    }
+
+    @Test
+    void track_CompletedAnswer_IsNotCounted() {
+        // When
+        StepVerifier.create(cancelledStreams.track(tokens(3)))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        // Then
+        assertEquals(0, cancelledStreams.cancelled());
+        assertEquals(0, cancelledStreams.tokensSaved());
+    }
+
+    @Test
+    void track_CancelledAnswer_SavesWhatTheMeanAnswerHadToGo() {
+        // Given - answers of 10 and 20 tokens ran to their end
+        cancelledStreams.track(tokens(10)).blockLast();
+        cancelledStreams.track(tokens(20)).blockLast();
+
+        // When - the client leaves after 4 tokens
+        StepVerifier.create(cancelledStreams.track(tokens(100)), 4)
+                .expectNextCount(4)
+                .thenCancel()
+                .verify();
+
+        // Then
+        assertEquals(1, cancelledStreams.cancelled());
+        assertEquals(11, cancelledStreams.tokensSaved());
+        assertEquals(1, meterRegistry.get("chat.stream.cancelled").functionCounter().count());
+        assertEquals(11, meterRegistry.get("chat.stream.tokens.saved").functionCounter().count());
+    }
+
+    @Test
+    void track_CancelledAnswerLongerThanTheMean_SavesNothing() {
+        // Given
+        cancelledStreams.track(tokens(2)).blockLast();
+
+        // When
+        cancelledStreams.track(tokens(100)).take(5).blockLast();
+
+        // Then
+        assertEquals(1, cancelledStreams.cancelled());
+        assertEquals(0, cancelledStreams.tokensSaved());
+    }
+
+    @Test
+    void track_CountsEachSubscriptionOnItsOwn() {
+        // Given
+        Flux<String> answer = cancelledStreams.track(tokens(6));
+        answer.blockLast();
+
+        // When
+        answer.take(2).blockLast();
+        answer.take(3).blockLast();
+
+        // Then - 4 and 3 tokens to go
+        assertEquals(2, cancelledStreams.cancelled());
+        assertEquals(7, cancelledStreams.tokensSaved());
+    }
+}
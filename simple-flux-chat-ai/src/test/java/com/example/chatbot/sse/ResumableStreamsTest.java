@@ -0,0 +1,331 @@
+package com.example.chatbot.sse;
+
+import com.example.chatbot.config.SseResumeProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumableStreamsTest {
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private final Sinks.Many<TokenFrame> frames = Sinks.many().unicast().onBackpressureBuffer();
+    private final AtomicInteger generations = new AtomicInteger();
+
+    private final Supplier<Flux<TokenFrame>> generation = () -> {
+        generations.incrementAndGet();
+        return frames.asFlux();
+    };
+
+    private ResumableStreams streams(int maxFrames, DataSize maxSize) {
+        return streams(maxFrames, maxSize, false);
+    }
+
+    private ResumableStreams streams(int maxFrames, DataSize maxSize, boolean multicast) {
+        return new ResumableStreams(new SseResumeProperties(true, maxFrames, maxSize, Duration.ofMinutes(1),
+                Duration.ofSeconds(5), multicast), scheduler);
+    }
+
+    private static TokenFrame frame(long id) {
+        return new TokenFrame(id, List.of("token " + id));
+    }
+
+    private void emit(long... ids) {
+        for (long id : ids) {
+            frames.tryEmitNext(frame(id));
+        }
+    }
+
+    @Test
+    void stream_ReconnectWithLastEventId_ResumesTheRunningAnswer() {
+        // Given - the client drops after the first event
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1));
+        StepVerifier.create(streams.stream("alice\nHi", null, generation))
+                .then(() -> emit(1))
+                .expectNext(frame(1))
+                .thenCancel()
+                .verify();
+        emit(2, 3);
+
+        // When & Then - the generation kept going while the client was away
+        StepVerifier.create(streams.stream("alice\nHi", "1", generation))
+                .expectNext(frame(2), frame(3))
+                .then(() -> emit(4))
+                .expectNext(frame(4))
+                .then(frames::tryEmitComplete)
+                .verifyComplete();
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void stream_WithoutLastEventId_StartsANewAnswer() {
+        // Given
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1));
+        streams.stream("alice\nHi", null, generation).subscribe();
+
+        // When
+        streams.stream("alice\nHi", null, () -> {
+            generations.incrementAndGet();
+            return Flux.just(frame(1));
+        }).blockLast();
+
+        // Then
+        assertEquals(2, generations.get());
+    }
+
+    @Test
+    void stream_ReconnectToAnUnknownStreamOrWithABadId_StartsANewAnswer() {
+        // Given
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1));
+        streams.stream("alice\nHi", null, generation).subscribe();
+        emit(1);
+
+        // When
+        streams.stream("bob\nHi", "1", () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+        streams.stream("alice\nHi", "one", () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+
+        // Then
+        assertEquals(3, generations.get());
+    }
+
+    @Test
+    void stream_KeepsAtMostMaxFramesToResumeFrom() {
+        // Given
+        ResumableStreams streams = streams(2, DataSize.ofKilobytes(1));
+        streams.stream("alice\nHi", null, generation).subscribe();
+        emit(1, 2, 3);
+
+        // When & Then - frame 1 is gone, frames 2 and 3 are still there
+        StepVerifier.create(streams.stream("alice\nHi", "1", generation))
+                .expectNext(frame(2), frame(3))
+                .thenCancel()
+                .verify();
+        assertEquals(1, generations.get());
+        streams.stream("alice\nHi", "0", () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+        assertEquals(2, generations.get());
+    }
+
+    @Test
+    void stream_KeepsAtMostMaxSizeToResumeFrom() {
+        // Given - each frame carries 7 bytes, so 16 bytes keep two of them
+        ResumableStreams streams = streams(16, DataSize.ofBytes(16));
+        streams.stream("alice\nHi", null, generation).subscribe();
+        emit(1, 2, 3);
+
+        // When & Then
+        StepVerifier.create(streams.stream("alice\nHi", "1", generation))
+                .expectNext(frame(2), frame(3))
+                .thenCancel()
+                .verify();
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void stream_SlowReaderFallingBehindTheBuffer_FailsWithoutHoldingUpTheOthers() {
+        // Given
+        ResumableStreams streams = streams(2, DataSize.ofKilobytes(1));
+        List<TokenFrame> fast = new CopyOnWriteArrayList<>();
+        streams.stream("alice\nHi", null, generation).subscribe(fast::add);
+
+        // When & Then
+        StepVerifier.create(streams.stream("alice\nHi", "0", generation), 1)
+                .then(() -> emit(1, 2, 3, 4))
+                .expectNext(frame(1))
+                .expectErrorMessage("Reader of the stream fell more than its buffer behind")
+                .verify();
+        assertEquals(List.of(frame(1), frame(2), frame(3), frame(4)), fast);
+    }
+
+    @Test
+    void stream_FinishedAnswer_CanBeResumedUntilItsGracePeriodEnds() {
+        // Given
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1));
+        streams.stream("alice\nHi", null, generation).take(1).subscribe();
+        emit(1, 2);
+        frames.tryEmitComplete();
+
+        // When & Then
+        StepVerifier.create(streams.stream("alice\nHi", "1", generation))
+                .expectNext(frame(2))
+                .verifyComplete();
+        assertEquals(1, streams.size());
+
+        scheduler.advanceTimeBy(Duration.ofMinutes(1));
+        assertEquals(0, streams.size());
+        streams.stream("alice\nHi", "1", () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+        assertEquals(2, generations.get());
+    }
+
+    @Test
+    void stream_NobodyReconnectingWithinTheTimeout_CancelsTheAnswer() {
+        // Given - the only client drops after the first event
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1));
+        StepVerifier.create(streams.stream("alice\nHi", null, generation))
+                .then(() -> emit(1))
+                .expectNext(frame(1))
+                .thenCancel()
+                .verify();
+
+        // When
+        scheduler.advanceTimeBy(Duration.ofSeconds(4));
+        assertEquals(1, frames.currentSubscriberCount());
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        // Then - the model's stream was closed and the answer can no longer be resumed
+        assertEquals(0, frames.currentSubscriberCount());
+        assertEquals(0, streams.size());
+        streams.stream("alice\nHi", "1", () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+        assertEquals(2, generations.get());
+    }
+
+    @Test
+    void stream_ReconnectWithinTheTimeout_KeepsTheAnswerGoing() {
+        // Given
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1));
+        StepVerifier.create(streams.stream("alice\nHi", null, generation))
+                .then(() -> emit(1))
+                .expectNext(frame(1))
+                .thenCancel()
+                .verify();
+        scheduler.advanceTimeBy(Duration.ofSeconds(4));
+
+        // When & Then - still there after the timeout of the first drop
+        StepVerifier.create(streams.stream("alice\nHi", "1", generation))
+                .then(() -> scheduler.advanceTimeBy(Duration.ofSeconds(2)))
+                .then(() -> emit(2))
+                .expectNext(frame(2))
+                .then(frames::tryEmitComplete)
+                .verifyComplete();
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void stream_WithoutReconnectTimeout_CancelsTheAnswerAsTheLastClientLeaves() {
+        // Given
+        ResumableStreams streams = new ResumableStreams(
+                new SseResumeProperties(true, 16, DataSize.ofKilobytes(1), Duration.ofMinutes(1), Duration.ZERO, false),
+                scheduler);
+
+        // When
+        StepVerifier.create(streams.stream("alice\nHi", null, generation))
+                .then(() -> emit(1))
+                .expectNext(frame(1))
+                .thenCancel()
+                .verify();
+
+        // Then
+        assertEquals(0, frames.currentSubscriberCount());
+        assertEquals(0, streams.size());
+    }
+
+    @Test
+    void stream_Multicast_LateSubscriberGetsTheEventsSoFarThenSharesTheAnswer() {
+        // Given
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1), true);
+        List<TokenFrame> first = new CopyOnWriteArrayList<>();
+        streams.stream("alice\nHi", null, generation).subscribe(first::add);
+        emit(1, 2);
+
+        // When & Then
+        StepVerifier.create(streams.stream("alice\nHi", null, generation))
+                .expectNext(frame(1), frame(2))
+                .then(() -> emit(3))
+                .expectNext(frame(3))
+                .then(frames::tryEmitComplete)
+                .verifyComplete();
+        assertEquals(List.of(frame(1), frame(2), frame(3)), first);
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void stream_Multicast_SlowSubscriberDoesNotHoldUpTheOthers() {
+        // Given
+        ResumableStreams streams = streams(16, DataSize.ofKilobytes(1), true);
+        List<TokenFrame> fast = new CopyOnWriteArrayList<>();
+        streams.stream("alice\nHi", null, generation).subscribe(fast::add);
+
+        // When & Then - the slow one gets the rest of the answer when it asks for it
+        StepVerifier.create(streams.stream("alice\nHi", null, generation), 1)
+                .then(() -> emit(1, 2, 3))
+                .expectNext(frame(1))
+                .then(() -> assertEquals(List.of(frame(1), frame(2), frame(3)), fast))
+                .then(frames::tryEmitComplete)
+                .thenRequest(2)
+                .expectNext(frame(2), frame(3))
+                .verifyComplete();
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void stream_Multicast_FinishedAnswerOrOneMissingItsFirstEvents_IsStartedAnew() {
+        // Given
+        ResumableStreams streams = streams(2, DataSize.ofKilobytes(1), true);
+        streams.stream("alice\nHi", null, generation).subscribe();
+        emit(1, 2, 3);
+        streams.stream("bob\nHi", null, () -> {
+            generations.incrementAndGet();
+            return Flux.just(frame(1));
+        }).blockLast();
+
+        // When
+        streams.stream("alice\nHi", null, () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+        streams.stream("bob\nHi", null, () -> {
+            generations.incrementAndGet();
+            return Flux.empty();
+        }).blockLast();
+
+        // Then
+        assertEquals(4, generations.get());
+    }
+
+    @Test
+    void stream_WhenDisabled_StartsAnAnswerPerRequest() {
+        // Given
+        ResumableStreams streams = new ResumableStreams(
+                new SseResumeProperties(false, 16, DataSize.ofKilobytes(1), Duration.ofMinutes(1), Duration.ofSeconds(5), false),
+                scheduler);
+
+        // When
+        streams.stream("alice\nHi", null, () -> {
+            generations.incrementAndGet();
+            return Flux.just(frame(1), frame(2));
+        }).blockLast();
+        streams.stream("alice\nHi", "1", () -> {
+            generations.incrementAndGet();
+            return Flux.just(frame(1), frame(2));
+        }).blockLast();
+
+        // Then
+        assertEquals(2, generations.get());
+        assertEquals(0, streams.size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.chatbot.sse;
+
+import com.example.chatbot.config.SseProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCoalescerTest {
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private TokenCoalescer coalescer(Duration window, DataSize maxFrameSize) {
+        return new TokenCoalescer(new SseProperties(window, maxFrameSize), scheduler);
+    }
+
+    @Test
+    void coalesce_SendsTheTokensOfAWindowAsOneFrame() {
+        // Given
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        List<TokenFrame> frames = new CopyOnWriteArrayList<>();
+        coalescer(Duration.ofMillis(20), DataSize.ofKilobytes(1)).coalesce(tokens.asFlux()).subscribe(frames::add);
+
+        // When
+        tokens.tryEmitNext("Hello");
+        tokens.tryEmitNext(" world");
+        scheduler.advanceTimeBy(Duration.ofMillis(19));
+
+        // Then
+        assertEquals(List.of(), frames);
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+        assertEquals(List.of(new TokenFrame(1, List.of("Hello", " world"))), frames);
+
+        // When - the next window starts with the next token
+        scheduler.advanceTimeBy(Duration.ofMillis(50));
+        tokens.tryEmitNext("!");
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+
+        // Then
+        assertEquals(new TokenFrame(2, List.of("!")), frames.get(1));
+    }
+
+    @Test
+    void coalesce_SendsAFullFrameWithoutWaitingForItsWindow() {
+        // Given
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        List<TokenFrame> frames = new CopyOnWriteArrayList<>();
+        coalescer(Duration.ofMillis(20), DataSize.ofBytes(4)).coalesce(tokens.asFlux()).subscribe(frames::add);
+
+        // When - "é" is two bytes
+        tokens.tryEmitNext("ab");
+        tokens.tryEmitNext("é");
+
+        // Then
+        assertEquals(List.of(new TokenFrame(1, List.of("ab", "é"))), frames);
+
+        // When - the window of the first frame ends while the second fills
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+        tokens.tryEmitNext("c");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then - the second frame waits for its own window
+        assertEquals(1, frames.size());
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+        assertEquals(new TokenFrame(2, List.of("c")), frames.get(1));
+    }
+
+    @Test
+    void coalesce_SendsWhatIsLeftWhenTheAnswerEnds() {
+        // Given
+        Flux<String> tokens = Flux.just("Hello", " ", "world");
+
+        // When & Then
+        StepVerifier.create(coalescer(Duration.ofMillis(20), DataSize.ofKilobytes(1)).coalesce(tokens))
+                .expectNext(new TokenFrame(1, List.of("Hello", " ", "world")))
+                .verifyComplete();
+    }
+
+    @Test
+    void coalesce_SendsWhatIsLeftBeforeAnError() {
+        // Given
+        Flux<String> tokens = Flux.just("Hello").concatWith(Flux.error(new IllegalStateException("model went away")));
+
+        // When & Then
+        StepVerifier.create(coalescer(Duration.ofMillis(20), DataSize.ofKilobytes(1)).coalesce(tokens))
+                .expectNext(new TokenFrame(1, List.of("Hello")))
+                .verifyErrorMessage("model went away");
+    }
+
+    @Test
+    void coalesce_WithoutAWindow_SendsEveryTokenOnItsOwn() {
+        // Given
+        Flux<String> tokens = Flux.just("Hello", " ", "world");
+
+        // When & Then
+        StepVerifier.create(coalescer(Duration.ZERO, DataSize.ofKilobytes(1)).coalesce(tokens))
+                .expectNext(new TokenFrame(1, List.of("Hello")))
+                .expectNext(new TokenFrame(2, List.of(" ")))
+                .expectNext(new TokenFrame(3, List.of("world")))
+                .verifyComplete();
+    }
+
+    @Test
+    void coalesce_CancelledByTheClient_CancelsTheTokens() {
+        // Given
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<String> tokens = Flux.just("Hello").concatWith(Flux.never()).doOnCancel(() -> cancelled.set(true));
+
+        // When
+        coalescer(Duration.ofMillis(20), DataSize.ofKilobytes(1)).coalesce(tokens).subscribe().dispose();
+
+        // Then
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void dataLength_CountsUtf8Bytes() {
+        assertEquals(0, new TokenFrame(1, List.of()).dataLength());
+        assertEquals(1 + 2 + 3 + 4, new TokenFrame(1, List.of("a", "é", "€", "😀")).dataLength());
+        assertEquals(1, TokenFrame.utf8Length("\uD800"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.chatbot.sse;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenFrameWriterTest {
+
+    private static String encode(TokenFrame frame) {
+        DataBuffer buffer = TokenFrameWriter.encode(frame, DefaultDataBufferFactory.sharedInstance);
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void encode_WritesTheIdAndTheTokensAsOneEvent() {
+        assertEquals("id: 7\ndata: Hello world\n\n", encode(new TokenFrame(7, List.of("Hello", " world"))));
+    }
+
+    @Test
+    void encode_KeepsTheLeadingSpaceOfTheData() {
+        assertEquals("id: 1\ndata:  world\n\n", encode(new TokenFrame(1, List.of(" world"))));
+    }
+
+    @Test
+    void encode_StartsADataLineAtEachLineBreak() {
+        // Given - \r\n split across two tokens is still one line break
+        TokenFrame frame = new TokenFrame(12, List.of("one\ntwo", " three\r", "\nfour\rfive", "\n"));
+
+        // Then
+        assertEquals("id: 12\ndata: one\ndata: two three\ndata: four\ndata: five\ndata: \n\n", encode(frame));
+    }
+
+    @Test
+    void encode_IntoPooledNettyBuffers_WritesUtf8() {
+        // Given
+        NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        TokenFrame frame = new TokenFrame(3, List.of("Grüße ", "€5 ", "😀"));
+
+        // When
+        DataBuffer buffer = TokenFrameWriter.encode(frame, bufferFactory);
+
+        // Then
+        try {
+            assertInstanceOf(NettyDataBuffer.class, buffer);
+            assertEquals("id: 3\ndata: Grüße €5 😀\n\n", buffer.toString(StandardCharsets.UTF_8));
+            assertEquals("Grüße €5 😀".getBytes(StandardCharsets.UTF_8).length, frame.dataLength());
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    @Test
+    void write_SendsEachFrameAsAServerSentEvent() {
+        // Given
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        Flux<TokenFrame> frames = Flux.just(new TokenFrame(1, List.of("Hello", ",")), new TokenFrame(2, List.of(" world")));
+
+        // When
+        new TokenFrameWriter().write(frames, ResolvableType.forClass(TokenFrame.class), MediaType.TEXT_EVENT_STREAM,
+                response, Map.of()).block();
+
+        // Then
+        assertEquals(MediaType.parseMediaType("text/event-stream;charset=UTF-8"), response.getHeaders().getContentType());
+        assertEquals("id: 1\ndata: Hello,\n\nid: 2\ndata:  world\n\n", response.getBodyAsString().block());
+    }
+
+    @Test
+    void canWrite_OnlyFramesAsServerSentEvents() {
+        // Given
+        TokenFrameWriter writer = new TokenFrameWriter();
+
+        // Then
+        assertTrue(writer.canWrite(ResolvableType.forClass(TokenFrame.class), MediaType.TEXT_EVENT_STREAM));
+        assertTrue(writer.canWrite(ResolvableType.forClass(TokenFrame.class), null));
+        assertFalse(writer.canWrite(ResolvableType.forClass(TokenFrame.class), MediaType.APPLICATION_JSON));
+        assertFalse(writer.canWrite(ResolvableType.forClass(String.class), MediaType.TEXT_EVENT_STREAM));
+        assertFalse(writer.canWrite(ResolvableType.forClass(Object.class), null));
+    }
+}
@@ -4,16 +4,27 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class InformationDeskTest {
 
+    private static final String RAILROAD_EMPLOYEES = """
+            state_code,state_name,year,month,employees
+            CA,California,2023,1,100
+            CA,California,2023,2,200
+            TX,Texas,2023,1,300
+            """;
+
     private InformationDesk informationDesk;
 
     @BeforeEach
     void setUp() {
-        informationDesk = new InformationDesk();
+        informationDesk = new InformationDesk(new RailroadEmployeeDataset(new ByteArrayResource(RAILROAD_EMPLOYEES.getBytes())));
     }
 
     @Test
@@ -55,30 +66,62 @@ class InformationDeskTest {
     @Test
     void testGetRailroadEmployeeCounts() {
         // Given
-        Long expectedCount = 100L;
         String state = "California";
         String month = "January";
-        String year = "2023";
+        Integer year = 2023;
+
+        // When
+        Long actualCount = informationDesk.getRailroadEmployeeCounts(state, month, year);
 
+        // Then
+        assertEquals(100L, actualCount, "The employee count should come from the dataset");
+        assertEquals(100L, informationDesk.getRailroadEmployeeCounts("ca", "1", 2023), "State codes and month numbers should work too");
+    }
+
+    @Test
+    void testGetRailroadEmployeeCountsWithoutMonthOrState() {
         // When
-        Long actualCount = informationDesk.getRailroadEmployeeCounts(expectedCount, state, month, year);
+        Long yearlyAverage = informationDesk.getRailroadEmployeeCounts("California", null, 2023);
+        Long allStates = informationDesk.getRailroadEmployeeCounts(null, "January", 2023);
+        Long allStatesByName = informationDesk.getRailroadEmployeeCounts("US", "February", 2023);
 
         // Then
-        assertEquals(expectedCount, actualCount, "The employee count should be returned as provided");
+        assertEquals(150L, yearlyAverage, "Without a month the yearly average should be returned");
+        assertEquals(400L, allStates, "Without a state all states should be counted");
+        assertEquals(200L, allStatesByName, "Only states with a figure should be counted");
     }
 
     @Test
     void testGetRailroadEmployeeCountsWithNullInput() {
-        // Given
-        Long expectedCount = null;
-        String state = null;
-        String month = null;
-        String year = null;
+        // When
+        Long actualCount = informationDesk.getRailroadEmployeeCounts(null, null, null);
 
+        // Then
+        assertNull(actualCount, "Should return null without a year");
+        assertNull(informationDesk.getRailroadEmployeeCounts("Atlantis", "January", 2023), "Should return null for an unknown state");
+        assertNull(informationDesk.getRailroadEmployeeCounts("Texas", "Smarch", 2023), "Should return null for an unknown month");
+        assertNull(informationDesk.getRailroadEmployeeCounts("Texas", "February", 2023), "Should return null when there is no figure");
+    }
+
+    @Test
+    void testGetRailroadEmployeeRanking() {
         // When
-        Long actualCount = informationDesk.getRailroadEmployeeCounts(expectedCount, state, month, year);
+        List<RailroadEmployeeDataset.StateCount> ranking = informationDesk.getRailroadEmployeeRanking(2023, null);
+
+        // Then
+        assertEquals(List.of(new RailroadEmployeeDataset.StateCount("Texas", 300), new RailroadEmployeeDataset.StateCount("California", 150)),
+                ranking, "States should be ranked by yearly average");
+        assertEquals(List.of(), informationDesk.getRailroadEmployeeRanking(1999, 5), "Years without figures should have no ranking");
+    }
+
+    @Test
+    void testRailroadToolsWithoutData() {
+        // Given - no railroad export configured
+        InformationDesk withoutData = new InformationDesk(new RailroadEmployeeDataset(null));
 
         // Then
-        assertNull(actualCount, "Should return null when null count is provided");
+        assertNull(withoutData.getRailroadEmployeeCounts("Texas", "January", 2023), "Should have no count without data");
+        assertNull(withoutData.getRailroadEmployeeCounts(null, null, 2023), "Should have no total without data");
+        assertEquals(List.of(), withoutData.getRailroadEmployeeRanking(2023, null), "Should have no ranking without data");
     }
 }
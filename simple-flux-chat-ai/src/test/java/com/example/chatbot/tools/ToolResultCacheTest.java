@@ -0,0 +1,239 @@
+package com.example.chatbot.tools;
+
+import com.example.chatbot.config.ToolCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolResultCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    static class CountingTools {
+        final AtomicInteger lookups = new AtomicInteger();
+        final AtomicInteger greetings = new AtomicInteger();
+        final AtomicInteger clocks = new AtomicInteger();
+        volatile CountDownLatch gate;
+        volatile boolean failing;
+
+        @Memoized(ttl = "1m")
+        @Tool(description = "Looks up the employee count of a state in a year")
+        String lookup(String state, Integer year) {
+            lookups.incrementAndGet();
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing) {
+                throw new IllegalStateException("upstream down");
+            }
+            return state + " " + year;
+        }
+
+        @Memoized(pure = true)
+        @Tool(description = "Greets someone")
+        String greet(String name) {
+            greetings.incrementAndGet();
+            return "Hello " + name;
+        }
+
+        @Tool(description = "Tells the time")
+        String clock() {
+            return "tick " + clocks.incrementAndGet();
+        }
+    }
+
+    static class PureWithTtl {
+        @Memoized(pure = true, ttl = "1m")
+        @Tool(description = "Invalid")
+        String invalid() {
+            return "";
+        }
+    }
+
+    static class ContextDependent {
+        @Memoized
+        @Tool(description = "Invalid")
+        String invalid(String query, ToolContext toolContext) {
+            return "";
+        }
+    }
+
+    private ToolResultCache cache(boolean enabled) {
+        return new ToolResultCache(new ToolCacheProperties(enabled, 100, Duration.ofMinutes(10)), meterRegistry, nanos::get);
+    }
+
+    private static ToolCallback tool(List<ToolCallback> callbacks, String name) {
+        return callbacks.stream()
+                .filter(callback -> callback.getToolDefinition().name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private double requests(String tool, String result) {
+        return meterRegistry.get("tool.cache.requests").tags("tool", tool, "result", result).functionCounter().count();
+    }
+
+    @Test
+    void sameArgumentsInAnyFormat_RunTheToolOnce() {
+        // Given
+        CountingTools tools = new CountingTools();
+        ToolCallback lookup = tool(cache(true).memoize(tools), "lookup");
+
+        // When
+        String first = lookup.call("{\"state\":\"CA\",\"year\":2023}");
+        String second = lookup.call("{ \"year\": 2023.0, \"state\": \"CA\" }");
+
+        // Then
+        assertEquals(first, second);
+        assertEquals(1, tools.lookups.get());
+        assertEquals(1, requests("lookup", "hit"));
+        assertEquals(1, requests("lookup", "miss"));
+        assertEquals(1, meterRegistry.get("tool.execution").tags("tool", "lookup", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void differentArguments_RunTheToolAgain() {
+        // Given
+        CountingTools tools = new CountingTools();
+        ToolCallback lookup = tool(cache(true).memoize(tools), "lookup");
+
+        // When
+        lookup.call("{\"state\":\"CA\",\"year\":2023}");
+        lookup.call("{\"state\":\"NY\",\"year\":2023}");
+
+        // Then
+        assertEquals(2, tools.lookups.get());
+        assertEquals(2, requests("lookup", "miss"));
+    }
+
+    @Test
+    void results_ExpireAfterTheirToolsTtlUnlessPure() {
+        // Given
+        CountingTools tools = new CountingTools();
+        List<ToolCallback> callbacks = cache(true).memoize(tools);
+        tool(callbacks, "lookup").call("{\"state\":\"CA\",\"year\":2023}");
+        tool(callbacks, "greet").call("{\"name\":\"Ada\"}");
+
+        // When
+        nanos.addAndGet(Duration.ofDays(365).toNanos());
+        tool(callbacks, "lookup").call("{\"state\":\"CA\",\"year\":2023}");
+        tool(callbacks, "greet").call("{\"name\":\"Ada\"}");
+
+        // Then
+        assertEquals(2, tools.lookups.get());
+        assertEquals(1, tools.greetings.get());
+    }
+
+    @Test
+    void toolWithoutMemoized_RunsOnEveryCallAndIsTimed() {
+        // Given
+        CountingTools tools = new CountingTools();
+        ToolCallback clock = tool(cache(true).memoize(tools), "clock");
+
+        // When
+        String first = clock.call("{}");
+        String second = clock.call("{}");
+
+        // Then
+        assertNotEquals(first, second);
+        assertEquals(2, meterRegistry.get("tool.execution").tags("tool", "clock").timer().count());
+        assertNull(meterRegistry.find("tool.cache.requests").tags("tool", "clock").functionCounter());
+    }
+
+    @Test
+    void failedCall_IsNotCached() {
+        // Given
+        CountingTools tools = new CountingTools();
+        ToolCallback lookup = tool(cache(true).memoize(tools), "lookup");
+        tools.failing = true;
+        assertThrows(RuntimeException.class, () -> lookup.call("{\"state\":\"CA\",\"year\":2023}"));
+
+        // When
+        tools.failing = false;
+        String result = lookup.call("{\"state\":\"CA\",\"year\":2023}");
+
+        // Then
+        assertTrue(result.contains("CA 2023"));
+        assertEquals(2, tools.lookups.get());
+        assertEquals(1, meterRegistry.get("tool.execution").tags("tool", "lookup", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void concurrentCallsWithTheSameArguments_ShareOneRun() throws Exception {
+        // Given
+        CountingTools tools = new CountingTools();
+        tools.gate = new CountDownLatch(1);
+        ToolCallback lookup = tool(cache(true).memoize(tools), "lookup");
+
+        // When
+        List<Future<String>> calls = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                calls.add(executor.submit(() -> lookup.call("{\"state\":\"CA\",\"year\":2023}")));
+            }
+            while (requests("lookup", "hit") + requests("lookup", "miss") < 8) {
+                Thread.sleep(1);
+            }
+            tools.gate.countDown();
+
+            // Then
+            for (Future<String> call : calls) {
+                assertTrue(call.get(5, TimeUnit.SECONDS).contains("CA 2023"));
+            }
+        }
+        assertEquals(1, tools.lookups.get());
+        assertEquals(7, requests("lookup", "hit"));
+    }
+
+    @Test
+    void disabledCache_RunsMemoizedToolsOnEveryCall() {
+        // Given
+        CountingTools tools = new CountingTools();
+        ToolCallback greet = tool(cache(false).memoize(tools), "greet");
+
+        // When
+        greet.call("{\"name\":\"Ada\"}");
+        greet.call("{\"name\":\"Ada\"}");
+
+        // Then
+        assertEquals(2, tools.greetings.get());
+    }
+
+    @Test
+    void invalidDeclarations_AreRejected() {
+        ToolResultCache cache = cache(true);
+
+        assertThrows(IllegalArgumentException.class, () -> cache.memoize(new PureWithTtl()));
+        assertThrows(IllegalArgumentException.class, () -> cache.memoize(new ContextDependent()));
+    }
+
+    @Test
+    void canonicalArguments_SortKeysDropNullsAndNormalizeNumbers() {
+        assertEquals(ToolResultCache.canonicalArguments("{\"a\":1,\"b\":[2.50,{\"d\":null,\"c\":true}]}"),
+                ToolResultCache.canonicalArguments("{\"b\":[2.5,{\"c\":true}],\"a\":1.0}"));
+        assertNotEquals(ToolResultCache.canonicalArguments("{\"a\":\"x\"}"), ToolResultCache.canonicalArguments("{\"a\":\"X\"}"));
+        assertEquals("not json", ToolResultCache.canonicalArguments("not json"));
+        assertEquals("{}", ToolResultCache.canonicalArguments(""));
+    }
+}